@@ -0,0 +1,41 @@
+#!/bin/bash
+# Launcher for the Twitter-Discord Processor (cron or daemon mode).
+# Uses an application class-data-sharing (AppCDS) archive next to the JAR to speed up JVM startup:
+# - <jar-name>.jsa from `mvn package -Pappcds` is used if present and matches the JAR,
+# - otherwise the JVM (Java 19+) creates/refreshes the archive automatically at the end of a run.
+# Set APPCDS=false to start without the archive.
+
+# --- Application Execution ---
+# Get the directory where the script is located
+SCRIPT_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" &> /dev/null && pwd )"
+
+# Find the application JAR file (handles changing version numbers)
+# Assumes only ONE such JAR exists in the directory
+APP_JAR=$(ls "$SCRIPT_DIR"/twitter-discord-processor-*.jar 2>/dev/null | head -n 1)
+
+# Check if JAR file was found
+if [ -z "$APP_JAR" ] || [ ! -f "$APP_JAR" ]; then
+    echo "ERROR: Application JAR file not found in $SCRIPT_DIR matching twitter-discord-processor-*.jar at $(date)"
+    exit 1
+fi
+
+# Arguments are passed through: [base_data_directory_path] [max_tweets_to_fetch]
+declare -a JVM_OPTS=()
+if [ "${APPCDS:-true}" != "false" ]; then
+    CDS_ARCHIVE="${APP_JAR%.jar}.jsa"
+    # AutoCreateSharedArchive validates the archive against the JAR and regenerates it when outdated
+    JVM_OPTS+=("-XX:+AutoCreateSharedArchive" "-XX:SharedArchiveFile=$CDS_ARCHIVE" "-Xlog:cds=off" "-Xlog:cds+dynamic=off")
+fi
+
+echo "Starting Twitter-Discord Processor (JAR: $APP_JAR) at $(date)"
+java "${JVM_OPTS[@]}" $JAVA_OPTS -jar "$APP_JAR" "$@"
+
+# Optional: Check exit code
+EXIT_CODE=$?
+if [ $EXIT_CODE -ne 0 ]; then
+    echo "Application finished with error code: $EXIT_CODE at $(date)"
+else
+    echo "Application finished successfully at $(date)"
+fi
+
+exit $EXIT_CODE
@@ -0,0 +1,55 @@
+#!/bin/bash
+# Startup benchmark: measures the time from JVM start (and from entering main) until the
+# first processing cycle would start, with and without the AppCDS archive.
+#
+# Usage: scripts/startup-benchmark.sh <jar> [iterations] [archive]
+#   <jar>        The fat JAR (e.g. target/twitter-discord-processor-1.0-SNAPSHOT.jar)
+#   [iterations] Runs per variant (default: 5)
+#   [archive]    AppCDS archive (default: <jar-name>.jsa, see `mvn package -Pappcds`)
+#
+# The application is started with -Dstartup.benchmark=true, so it initializes all services
+# (config, Discord login, Twitter user lookup) and exits right before the first cycle.
+# The usual environment variables and config.properties are therefore required.
+# Set BENCH_MAIN=com.example.StartupTraining to benchmark the offline training run instead
+# (no credentials needed, reports total JVM wall time only).
+
+APP_JAR="$1"
+ITERATIONS="${2:-5}"
+CDS_ARCHIVE="${3:-${APP_JAR%.jar}.jsa}"
+
+if [ -z "$APP_JAR" ] || [ ! -f "$APP_JAR" ]; then
+    echo "Usage: $0 <jar> [iterations] [archive]"
+    exit 1
+fi
+
+run_variant() {
+    local label="$1"
+    shift
+    local total_jvm=0 total_main=0 total_wall=0
+    for ((i = 1; i <= ITERATIONS; i++)); do
+        local start_ns end_ns output jvm_ms main_ms wall_ms
+        start_ns=$(date +%s%N)
+        if [ -n "$BENCH_MAIN" ]; then
+            output=$(java "$@" -cp "$APP_JAR" "$BENCH_MAIN" 2>&1)
+        else
+            output=$(java "$@" -Dstartup.benchmark=true -jar "$APP_JAR" 2>&1)
+        fi
+        end_ns=$(date +%s%N)
+        wall_ms=$(( (end_ns - start_ns) / 1000000 ))
+        main_ms=$(echo "$output" | sed -n 's/.*Startup timing: ready for first cycle \([0-9]*\) ms after main, \([0-9]*\) ms after JVM start.*/\1/p' | tail -n 1)
+        jvm_ms=$(echo "$output" | sed -n 's/.*Startup timing: ready for first cycle \([0-9]*\) ms after main, \([0-9]*\) ms after JVM start.*/\2/p' | tail -n 1)
+        total_wall=$((total_wall + wall_ms))
+        total_main=$((total_main + ${main_ms:-0}))
+        total_jvm=$((total_jvm + ${jvm_ms:-0}))
+        echo "  [$label] run $i: jvm-start->cycle=${jvm_ms:-n/a} ms, main->cycle=${main_ms:-n/a} ms, wall=${wall_ms} ms"
+    done
+    echo "[$label] average over $ITERATIONS runs: jvm-start->cycle=$((total_jvm / ITERATIONS)) ms, main->cycle=$((total_main / ITERATIONS)) ms, wall=$((total_wall / ITERATIONS)) ms"
+}
+
+echo "Startup benchmark for $APP_JAR ($ITERATIONS runs per variant)"
+run_variant "default CDS only" -Xshare:auto
+if [ -f "$CDS_ARCHIVE" ]; then
+    run_variant "AppCDS archive" "-XX:SharedArchiveFile=$CDS_ARCHIVE" -Xlog:cds=off
+else
+    echo "No AppCDS archive found at $CDS_ARCHIVE. Build it with: mvn clean package -Pappcds"
+fi
@@ -3,22 +3,28 @@ package com.example;
 import com.example.args.CommandLineArgs;
 import com.example.config.AppConfig;
 import com.example.core.ApplicationService;
+import com.example.core.DaemonRunner;
 import com.example.core.ServiceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.util.Optional;
 
 /**
  * Main entry point for the Twitter-Discord Processor application.
- * Initializes configuration, services, and runs the main processing cycle.
+ * Initializes configuration, services, and runs the main processing cycle
+ * (once, or repeatedly when daemon mode is enabled).
  * Delegates shutdown to the ServiceRegistry.
  */
 public class Main {
 
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
+    // -Dstartup.benchmark=true: stop right before the first cycle (used by scripts/startup-benchmark.sh)
+    private static final String STARTUP_BENCHMARK_PROPERTY = "startup.benchmark";
 
     public static void main(String[] args) {
+        long mainStartNanos = System.nanoTime();
         logger.info("Application starting...");
         ServiceRegistry serviceRegistry = null; // Hold registry for shutdown access
 
@@ -44,10 +50,20 @@ public class Main {
             // Pass the config, args, and registry to the service that orchestrates the work
             ApplicationService appService = new ApplicationService(appConfig, cliArgs, serviceRegistry);
 
-            // 5. Run the Main Application Logic Cycle
-            appService.runCycle();
+            logStartupTiming(mainStartNanos);
+            if (Boolean.getBoolean(STARTUP_BENCHMARK_PROPERTY)) {
+                logger.info("Startup benchmark mode: skipping the processing cycle.");
+                return;
+            }
 
-            logger.info("Main processing cycle completed successfully.");
+            // 5. Run the Main Application Logic Cycle
+            if (appConfig.isDaemonMode()) {
+                // Keep the registry (and its connections) alive and run cycles until shutdown
+                new DaemonRunner(appService, serviceRegistry.getPollScheduler()).run();
+            } else {
+                appService.runCycle();
+                logger.info("Main processing cycle completed successfully.");
+            }
 
         } catch (Exception e) {
             // Catch critical errors during setup (e.g., directory creation, JDA login) or execution
@@ -71,5 +87,14 @@ public class Main {
         }
     }
 
+    /**
+     * Logs how long it took from JVM start (and from entering main) until the first cycle can start.
+     */
+    private static void logStartupTiming(long mainStartNanos) {
+        long sinceMainMillis = (System.nanoTime() - mainStartNanos) / 1_000_000;
+        long sinceJvmStartMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        logger.info("Startup timing: ready for first cycle {} ms after main, {} ms after JVM start.", sinceMainMillis, sinceJvmStartMillis);
+    }
+
     // Removed isNullOrBlank helper - logic moved to validator/config
 }
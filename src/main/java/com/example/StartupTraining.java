@@ -0,0 +1,73 @@
+package com.example;
+
+import com.example.config.PropertiesLoader;
+import com.example.file.SpoolCodec;
+import com.example.file.SpoolCodecs;
+import com.example.file.TweetContextStore;
+import com.example.file.TweetWriter;
+import com.example.twitter.TweetData;
+import com.example.twitter.TweetEntities;
+import com.github.twitch4j.TwitchClient;
+import com.github.twitch4j.TwitchClientBuilder;
+import io.github.redouane59.twitter.TwitterClient;
+import io.github.redouane59.twitter.signature.TwitterCredentials;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.JDABuilder;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Training run for the application class-data-sharing (AppCDS) archive.
+ * Exercises the startup paths of the application and its libraries (config loading, Logback,
+ * Jackson, twittered, JDA, twitch4j) without credentials or network access, so the classes
+ * they load end up in the archive. Used by the {@code appcds} Maven profile.
+ */
+public class StartupTraining {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTraining.class);
+
+    public static void main(String[] args) throws Exception {
+        logger.info("Starting AppCDS training run...");
+        long start = System.nanoTime();
+
+        new PropertiesLoader();
+
+        // Spool round trip through the same Jackson setup as TweetWriter and DiscordNotifier
+        Path trainingDir = Files.createTempDirectory("cds-training");
+        try {
+            TweetData tweet = new TweetData(1L, "training", "https://x.com/training/status/1", List.of(),
+                    LocalDateTime.now(), "training", "https://x.com/training", null,
+                    "training", null, null, "1", "1", "en", null, "everyone", null,
+                    new TweetEntities(List.of(new TweetEntities.Link("https://t.co/training", "https://example.com/")),
+                            null, List.of("training"), null, null, null, null));
+            SpoolCodecs codecs = new SpoolCodecs(true, TweetContextStore.inMemory(), false);
+            for (SpoolCodec codec : SpoolCodec.values()) {
+                new TweetWriter(trainingDir, false, codec, codecs).writeTweetToFile(tweet);
+                codecs.read(codec, trainingDir.resolve(codec.fileName(1L)).toFile());
+            }
+        } finally {
+            FileUtils.deleteQuietly(trainingDir.toFile());
+        }
+
+        // Library setup paths that don't need the network
+        new TwitterClient(TwitterCredentials.builder().bearerToken("training").build());
+        JDABuilder.createDefault("training");
+        new EmbedBuilder().setTitle("X Relay", "https://x.com").setColor(Color.CYAN)
+                .setDescription("training").setTimestamp(Instant.now()).build();
+        try (TwitchClient twitchClient = TwitchClientBuilder.builder().withEnableHelix(true).withClientId("training").build()) {
+            twitchClient.getHelix();
+        } catch (Exception e) {
+            logger.warn("Twitch client training step failed: {}", e.getMessage());
+        }
+
+        logger.info("AppCDS training run finished in {} ms.", (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -13,6 +13,7 @@ public class CommandLineArgs {
 
     private static final Logger logger = LoggerFactory.getLogger(CommandLineArgs.class);
     private static final int DEFAULT_MAX_TWEETS = 10;
+    private static final int MAX_TWEETS_LIMIT = 3200; // The timeline endpoint only reaches back 3200 tweets
 
     private final String basePath;
     private final int maxTweetsToFetch;
@@ -58,9 +59,12 @@ public class CommandLineArgs {
                     logger.warn("Invalid number provided for max tweets ({}). Must be positive. Using default: {}", args[1], DEFAULT_MAX_TWEETS);
                     parsedMaxTweets = DEFAULT_MAX_TWEETS;
                 } else {
-                    if (parsedMaxTweets > 100) {
-                        logger.warn("Requested max tweets ({}) exceeds typical API limit (100). Will fetch up to 100.", parsedMaxTweets);
-                        parsedMaxTweets = 100; // Cap at a reasonable limit
+                    if (parsedMaxTweets > MAX_TWEETS_LIMIT) {
+                        logger.warn("Requested max tweets ({}) exceeds the timeline limit ({}). Will fetch up to {}.", parsedMaxTweets, MAX_TWEETS_LIMIT, MAX_TWEETS_LIMIT);
+                        parsedMaxTweets = MAX_TWEETS_LIMIT;
+                    } else if (parsedMaxTweets > 100) {
+                        // More than one page (100) is always fetched page by page, even without twitter.pagination.enabled
+                        logger.info("Requested max tweets ({}) spans several timeline pages. They are fetched page by page.", parsedMaxTweets);
                     }
                     logger.info("Using provided max tweets to fetch: {}", parsedMaxTweets);
                 }
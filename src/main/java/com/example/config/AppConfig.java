@@ -3,6 +3,10 @@ package com.example.config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -13,26 +17,129 @@ import java.util.Optional;
 public class AppConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(AppConfig.class);
+    private static final int DEFAULT_DAEMON_INTERVAL_MINUTES = 20;
+    private static final int DEFAULT_MIN_POLL_INTERVAL_SECONDS = 60;
+    private static final int DEFAULT_PROFILE_CACHE_TTL_HOURS = 24;
+    private static final int DEFAULT_TWITCH_USER_CACHE_TTL_HOURS = 168;
+    private static final String DEFAULT_TWITCH_TOKEN_URL = "https://id.twitch.tv/oauth2/token";
+    private static final int DEFAULT_TWITCH_TOKEN_REFRESH_MARGIN_HOURS = 24;
+    private static final int DEFAULT_JOURNAL_SEGMENT_SIZE_MB = 16;
+    private static final int DEFAULT_INPUT_WATCH_SETTLE_MILLIS = 500;
+    private static final int DEFAULT_INPUT_SCAN_MAX_IN_MEMORY = 100_000;
+    private static final int DEFAULT_ARCHIVE_COMPACTION_MIN_AGE_DAYS = 30;
+    private static final int DEFAULT_RETENTION_INTERVAL_MINUTES = 60;
+    private static final int DEFAULT_TCO_CACHE_SIZE = 10_000;
+    private static final List<String> RETENTION_DIRECTORIES = List.of("bin", "processed", "failed", "logs");
+    private static final int MAX_JOURNAL_SEGMENT_SIZE_MB = 1024; // A segment is mapped into one buffer, so it must stay below 2 GB
 
-    private final String twitterBearerToken;
-    private final String discordBotToken;
-    private final String discordChannelId;
-    private final String twitchClientId;
-    private final String twitchClientSecret;
-    private final String twitchUsername; // Configured Twitch username for logo
-    private final String twitterUsername; // Resolved Twitter username to use
+    private final Accounts accounts;
+    private final Polling polling;
+    private final Lookups lookups;
+    private final Spool spool;
+    private final Input input;
+    private final Archive archive;
+    private final Retention retention;
 
     // Private constructor - use factory method to create
-    private AppConfig(String twitterBearerToken, String discordBotToken, String discordChannelId,
-                      String twitchClientId, String twitchClientSecret, String twitchUsername,
-                      String twitterUsername) {
-        this.twitterBearerToken = twitterBearerToken;
-        this.discordBotToken = discordBotToken;
-        this.discordChannelId = discordChannelId;
-        this.twitchClientId = twitchClientId;
-        this.twitchClientSecret = twitchClientSecret;
-        this.twitchUsername = twitchUsername;
-        this.twitterUsername = twitterUsername;
+    private AppConfig(Accounts accounts, Polling polling, Lookups lookups, Spool spool, Input input, Archive archive,
+                      Retention retention) {
+        this.accounts = accounts;
+        this.polling = polling;
+        this.lookups = lookups;
+        this.spool = spool;
+        this.input = input;
+        this.archive = archive;
+        this.retention = retention;
+    }
+
+    /**
+     * Tokens and names of the Twitter, Discord and Twitch accounts.
+     *
+     * @param twitterUsername Resolved Twitter username to use.
+     * @param twitchUsername  Configured Twitch username for logo.
+     */
+    private record Accounts(String twitterBearerToken, String twitterUsername, String discordBotToken, String discordChannelId,
+                            String twitchClientId, String twitchClientSecret, String twitchUsername) {
+    }
+
+    /**
+     * When and how much the timeline is fetched.
+     *
+     * @param daemonMode              Keep services alive and run cycles on an internal schedule.
+     * @param daemonIntervalMinutes   Default (and maximum) delay between two cycles in daemon mode.
+     * @param minPollIntervalSeconds  Lower bound for the adaptive poll delay.
+     * @param twitterMonthlyReadLimit Monthly Twitter API read budget, 0 = unlimited.
+     * @param paginationEnabled       Follow next_token to catch up on more than one timeline page.
+     */
+    private record Polling(boolean daemonMode, int daemonIntervalMinutes, int minPollIntervalSeconds,
+                           int twitterMonthlyReadLimit, boolean paginationEnabled) {
+    }
+
+    /**
+     * Cached lookups of profiles, tokens and links.
+     *
+     * @param profileCacheTtlHours          How long the cached Twitter author profile is used before a refresh.
+     * @param twitchUserCacheTtlHours       How long cached Twitch user info is used before a new lookup.
+     * @param twitchTokenUrl                OAuth endpoint for the app access token (client credentials).
+     * @param twitchTokenRefreshMarginHours Refresh the persisted token this long before it expires.
+     * @param tcoResolveEnabled             Ask t.co for links the tweet entities do not expand.
+     * @param tcoCacheSize                  Resolved t.co links kept in the persisted LRU cache.
+     */
+    private record Lookups(int profileCacheTtlHours, int twitchUserCacheTtlHours, String twitchTokenUrl,
+                           int twitchTokenRefreshMarginHours, boolean tcoResolveEnabled, int tcoCacheSize) {
+    }
+
+    /**
+     * How fetched tweets are handed to the processing step.
+     *
+     * @param journal          Spool tweets in the append-only journal instead of one file per tweet.
+     * @param segmentSizeMb    Size of one journal segment file.
+     * @param atomicFileWrites Stage tweet files and publish each fetched page with one directory sync.
+     * @param smileFiles       Write new tweet files as binary Smile (.smile) instead of JSON (.json).
+     * @param codecBlackbird   Generated accessors (Blackbird) instead of reflection for tweet files.
+     * @param sharedContexts   Write tweets with a key of the shared author/Twitch context instead of its fields.
+     */
+    private record Spool(boolean journal, int segmentSizeMb, boolean atomicFileWrites, boolean smileFiles,
+                         boolean codecBlackbird, boolean sharedContexts) {
+    }
+
+    /**
+     * How input/ is scanned.
+     *
+     * @param watchEnabled Process new input files as soon as they appear (daemon mode).
+     * @param settleMillis How long a new input file must stay unchanged before it is processed.
+     * @param maxInMemory  Tweet IDs sorted in memory per input scan before sorting on disk.
+     */
+    private record Input(boolean watchEnabled, int settleMillis, int maxInMemory) {
+    }
+
+    /**
+     * Layout of the finished tweet files.
+     *
+     * @param sharded              processed/, failed/ and bin/ split into month buckets.
+     * @param compactionEnabled    Fold old processed tweet files into compressed archive segments.
+     * @param compactionMinAgeDays Processed tweets younger than this stay individual files.
+     */
+    private record Archive(boolean sharded, boolean compactionEnabled, int compactionMinAgeDays) {
+    }
+
+    /**
+     * Eviction of old files from bin/, processed/, failed/ and logs/.
+     *
+     * @param dryRun          Only report what the retention sweep would evict.
+     * @param intervalMinutes Minimum time between two retention sweeps.
+     * @param limits          Age limit and quota per directory name.
+     */
+    private record Retention(boolean enabled, boolean dryRun, int intervalMinutes, Map<String, RetentionLimits> limits) {
+    }
+
+    /**
+     * Retention limits of one directory.
+     *
+     * @param maxAgeDays Files older than this many days are evicted, 0 = no age limit.
+     * @param maxMb      The oldest files are evicted while the directory is larger, 0 = no quota.
+     */
+    public record RetentionLimits(int maxAgeDays, int maxMb) {
     }
 
     /**
@@ -52,13 +159,35 @@ public class AppConfig {
         }
 
         // Validation passed, load validated values
-        String twitterBearerToken = System.getenv("TWITTER_BEARER_TOKEN");
-        String discordBotToken = System.getenv("DISCORD_BOT_TOKEN");
-        String discordChannelId = propsLoader.getProperty("discord.channel.id");
-        String twitchClientId = System.getenv("TWITCH_CLIENT_ID");
-        String twitchClientSecret = System.getenv("TWITCH_CLIENT_SECRET");
-        String twitchUsername = propsLoader.getProperty("twitch.username");
+        Accounts accounts = readAccounts(propsLoader);
+        // Optional runtime settings (fall back to defaults if missing or invalid)
+        Polling polling = readPolling(propsLoader);
+        Lookups lookups = readLookups(propsLoader);
+        Spool spool = readSpool(propsLoader);
+        Input input = readInput(propsLoader);
+        Archive archive = readArchive(propsLoader);
+        Retention retention = readRetention(propsLoader);
 
+        if (retention.enabled() && archive.compactionEnabled()) {
+            int processedMaxAgeDays = retention.limits().get("processed").maxAgeDays();
+            if (processedMaxAgeDays > 0 && processedMaxAgeDays <= archive.compactionMinAgeDays()) {
+                logger.warn("retention.processed.max.age.days ({}) is not above archive.compaction.min.age.days ({}). Processed tweets are deleted before they are archived.",
+                        processedMaxAgeDays, archive.compactionMinAgeDays());
+            }
+        }
+        if (input.watchEnabled() && !polling.daemonMode()) {
+            logger.info("input.watch.enabled only applies in daemon mode. Input files are processed once per run.");
+        }
+        if (polling.daemonMode()) {
+            logger.info("Daemon mode enabled. Cycles will run every {} seconds to {} minutes, depending on the Twitter rate limit.",
+                    polling.minPollIntervalSeconds(), polling.daemonIntervalMinutes());
+        }
+
+        logger.info("Configuration loaded and validated successfully.");
+        return Optional.of(new AppConfig(accounts, polling, lookups, spool, input, archive, retention));
+    }
+
+    private static Accounts readAccounts(PropertiesLoader propsLoader) {
         // Determine Twitter Username (we know at least one is present due to validation)
         String twitterUsername = System.getenv("TWITTER_USERNAME");
         String usernameSource;
@@ -70,12 +199,151 @@ public class AppConfig {
         }
         logger.info("Using Twitter username '{}' (from {})", twitterUsername, usernameSource);
 
-        logger.info("Configuration loaded and validated successfully.");
-        return Optional.of(new AppConfig(
-                twitterBearerToken, discordBotToken, discordChannelId,
-                twitchClientId, twitchClientSecret, twitchUsername,
-                twitterUsername
-        ));
+        return new Accounts(System.getenv("TWITTER_BEARER_TOKEN"), twitterUsername,
+                System.getenv("DISCORD_BOT_TOKEN"), propsLoader.getProperty("discord.channel.id"),
+                System.getenv("TWITCH_CLIENT_ID"), System.getenv("TWITCH_CLIENT_SECRET"), propsLoader.getProperty("twitch.username"));
+    }
+
+    private static Polling readPolling(PropertiesLoader propsLoader) {
+        return new Polling(
+                readBooleanProperty(propsLoader, "daemon.enabled", false),
+                readPositiveIntProperty(propsLoader, "daemon.interval.minutes", DEFAULT_DAEMON_INTERVAL_MINUTES),
+                readPositiveIntProperty(propsLoader, "twitter.poll.min.interval.seconds", DEFAULT_MIN_POLL_INTERVAL_SECONDS),
+                readNonNegativeIntProperty(propsLoader, "twitter.monthly.read.limit", 0),
+                readBooleanProperty(propsLoader, "twitter.pagination.enabled", false));
+    }
+
+    private static Lookups readLookups(PropertiesLoader propsLoader) {
+        String twitchTokenUrl = propsLoader.getProperty("twitch.token.url");
+        if (isNullOrBlank(twitchTokenUrl)) {
+            twitchTokenUrl = DEFAULT_TWITCH_TOKEN_URL;
+        }
+        return new Lookups(
+                readPositiveIntProperty(propsLoader, "twitter.profile.cache.ttl.hours", DEFAULT_PROFILE_CACHE_TTL_HOURS),
+                readPositiveIntProperty(propsLoader, "twitch.user.cache.ttl.hours", DEFAULT_TWITCH_USER_CACHE_TTL_HOURS),
+                twitchTokenUrl.trim(),
+                readPositiveIntProperty(propsLoader, "twitch.token.refresh.margin.hours", DEFAULT_TWITCH_TOKEN_REFRESH_MARGIN_HOURS),
+                readBooleanProperty(propsLoader, "twitter.tco.resolve.enabled", false),
+                readPositiveIntProperty(propsLoader, "twitter.tco.cache.size", DEFAULT_TCO_CACHE_SIZE));
+    }
+
+    private static Spool readSpool(PropertiesLoader propsLoader) {
+        String spoolMode = propsLoader.getProperty("spool.mode");
+        boolean journalSpool = false;
+        if (!isNullOrBlank(spoolMode)) {
+            journalSpool = "journal".equalsIgnoreCase(spoolMode.trim());
+            if (!journalSpool && !"files".equalsIgnoreCase(spoolMode.trim())) {
+                logger.warn("Unknown spool.mode '{}'. Expected 'files' or 'journal'. Using default: files", spoolMode);
+            }
+        }
+        int journalSegmentSizeMb = readPositiveIntProperty(propsLoader, "spool.journal.segment.size.mb", DEFAULT_JOURNAL_SEGMENT_SIZE_MB);
+        if (journalSegmentSizeMb > MAX_JOURNAL_SEGMENT_SIZE_MB) {
+            logger.warn("Property 'spool.journal.segment.size.mb' must be at most {} but was {}. Using {}.",
+                    MAX_JOURNAL_SEGMENT_SIZE_MB, journalSegmentSizeMb, MAX_JOURNAL_SEGMENT_SIZE_MB);
+            journalSegmentSizeMb = MAX_JOURNAL_SEGMENT_SIZE_MB;
+        }
+        String spoolFileFormat = propsLoader.getProperty("spool.files.format");
+        boolean smileSpoolFiles = false;
+        if (!isNullOrBlank(spoolFileFormat)) {
+            smileSpoolFiles = "smile".equalsIgnoreCase(spoolFileFormat.trim());
+            if (!smileSpoolFiles && !"json".equalsIgnoreCase(spoolFileFormat.trim())) {
+                logger.warn("Unknown spool.files.format '{}'. Expected 'json' or 'smile'. Using default: json", spoolFileFormat);
+            }
+        }
+        return new Spool(journalSpool, journalSegmentSizeMb,
+                readBooleanProperty(propsLoader, "spool.files.atomic.enabled", false),
+                smileSpoolFiles,
+                readBooleanProperty(propsLoader, "spool.codec.blackbird.enabled", true),
+                readBooleanProperty(propsLoader, "spool.shared.context.enabled", false));
+    }
+
+    private static Input readInput(PropertiesLoader propsLoader) {
+        return new Input(
+                readBooleanProperty(propsLoader, "input.watch.enabled", false),
+                readPositiveIntProperty(propsLoader, "input.watch.settle.millis", DEFAULT_INPUT_WATCH_SETTLE_MILLIS),
+                readPositiveIntProperty(propsLoader, "input.scan.max.in.memory", DEFAULT_INPUT_SCAN_MAX_IN_MEMORY));
+    }
+
+    private static Archive readArchive(PropertiesLoader propsLoader) {
+        String archiveLayout = propsLoader.getProperty("archive.layout");
+        boolean shardedArchive = false;
+        if (!isNullOrBlank(archiveLayout)) {
+            shardedArchive = "sharded".equalsIgnoreCase(archiveLayout.trim());
+            if (!shardedArchive && !"flat".equalsIgnoreCase(archiveLayout.trim())) {
+                logger.warn("Unknown archive.layout '{}'. Expected 'flat' or 'sharded'. Using default: flat", archiveLayout);
+            }
+        }
+        return new Archive(shardedArchive,
+                readBooleanProperty(propsLoader, "archive.compaction.enabled", false),
+                readPositiveIntProperty(propsLoader, "archive.compaction.min.age.days", DEFAULT_ARCHIVE_COMPACTION_MIN_AGE_DAYS));
+    }
+
+    private static Retention readRetention(PropertiesLoader propsLoader) {
+        Map<String, RetentionLimits> retentionLimits = new LinkedHashMap<>();
+        for (String directory : RETENTION_DIRECTORIES) {
+            retentionLimits.put(directory, new RetentionLimits(
+                    readNonNegativeIntProperty(propsLoader, "retention." + directory + ".max.age.days", 0),
+                    readNonNegativeIntProperty(propsLoader, "retention." + directory + ".max.mb", 0)));
+        }
+        return new Retention(
+                readBooleanProperty(propsLoader, "retention.enabled", false),
+                readBooleanProperty(propsLoader, "retention.dry.run", false),
+                readPositiveIntProperty(propsLoader, "retention.interval.minutes", DEFAULT_RETENTION_INTERVAL_MINUTES),
+                Collections.unmodifiableMap(retentionLimits));
+    }
+
+    /**
+     * Reads an optional boolean property ("true"/"false").
+     * @return The parsed value, or the default if the property is missing or blank.
+     */
+    private static boolean readBooleanProperty(PropertiesLoader propsLoader, String key, boolean defaultValue) {
+        String value = propsLoader.getProperty(key);
+        if (isNullOrBlank(value)) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Reads an optional positive integer property.
+     * @return The parsed value, or the default if the property is missing, blank or invalid.
+     */
+    private static int readPositiveIntProperty(PropertiesLoader propsLoader, String key, int defaultValue) {
+        String value = propsLoader.getProperty(key);
+        if (isNullOrBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+            logger.warn("Property '{}' must be positive but was {}. Using default: {}", key, parsed, defaultValue);
+        } catch (NumberFormatException e) {
+            logger.warn("Could not parse property '{}' value '{}' as a number. Using default: {}", key, value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Reads an optional non-negative integer property, where 0 usually means "no limit".
+     * @return The parsed value, or the default if the property is missing, blank or invalid.
+     */
+    private static int readNonNegativeIntProperty(PropertiesLoader propsLoader, String key, int defaultValue) {
+        String value = propsLoader.getProperty(key);
+        if (isNullOrBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= 0) {
+                return parsed;
+            }
+            logger.warn("Property '{}' must not be negative but was {}. Using default: {}", key, parsed, defaultValue);
+        } catch (NumberFormatException e) {
+            logger.warn("Could not parse property '{}' value '{}' as a number. Using default: {}", key, value, defaultValue);
+        }
+        return defaultValue;
     }
 
     // Helper method consistent with validator
@@ -84,11 +352,38 @@ public class AppConfig {
     }
 
     // --- Getters ---
-    public String getTwitterBearerToken() { return twitterBearerToken; }
-    public String getDiscordBotToken() { return discordBotToken; }
-    public String getDiscordChannelId() { return discordChannelId; }
-    public String getTwitchClientId() { return twitchClientId; }
-    public String getTwitchClientSecret() { return twitchClientSecret; }
-    public String getTwitchUsername() { return twitchUsername; }
-    public String getTwitterUsername() { return twitterUsername; }
+    public String getTwitterBearerToken() { return accounts.twitterBearerToken(); }
+    public String getDiscordBotToken() { return accounts.discordBotToken(); }
+    public String getDiscordChannelId() { return accounts.discordChannelId(); }
+    public String getTwitchClientId() { return accounts.twitchClientId(); }
+    public String getTwitchClientSecret() { return accounts.twitchClientSecret(); }
+    public String getTwitchUsername() { return accounts.twitchUsername(); }
+    public String getTwitterUsername() { return accounts.twitterUsername(); }
+    public boolean isDaemonMode() { return polling.daemonMode(); }
+    public int getDaemonIntervalMinutes() { return polling.daemonIntervalMinutes(); }
+    public int getMinPollIntervalSeconds() { return polling.minPollIntervalSeconds(); }
+    public int getTwitterMonthlyReadLimit() { return polling.twitterMonthlyReadLimit(); }
+    public boolean isPaginationEnabled() { return polling.paginationEnabled(); }
+    public int getProfileCacheTtlHours() { return lookups.profileCacheTtlHours(); }
+    public int getTwitchUserCacheTtlHours() { return lookups.twitchUserCacheTtlHours(); }
+    public String getTwitchTokenUrl() { return lookups.twitchTokenUrl(); }
+    public int getTwitchTokenRefreshMarginHours() { return lookups.twitchTokenRefreshMarginHours(); }
+    public boolean isJournalSpool() { return spool.journal(); }
+    public int getJournalSegmentSizeMb() { return spool.segmentSizeMb(); }
+    public boolean isAtomicFileWrites() { return spool.atomicFileWrites(); }
+    public boolean isSmileSpoolFiles() { return spool.smileFiles(); }
+    public boolean isSpoolCodecBlackbird() { return spool.codecBlackbird(); }
+    public boolean isSharedTweetContexts() { return spool.sharedContexts(); }
+    public boolean isInputWatchEnabled() { return input.watchEnabled(); }
+    public int getInputWatchSettleMillis() { return input.settleMillis(); }
+    public int getInputScanMaxInMemory() { return input.maxInMemory(); }
+    public boolean isShardedArchive() { return archive.sharded(); }
+    public boolean isArchiveCompactionEnabled() { return archive.compactionEnabled(); }
+    public int getArchiveCompactionMinAgeDays() { return archive.compactionMinAgeDays(); }
+    public boolean isRetentionEnabled() { return retention.enabled(); }
+    public boolean isRetentionDryRun() { return retention.dryRun(); }
+    public int getRetentionIntervalMinutes() { return retention.intervalMinutes(); }
+    public Map<String, RetentionLimits> getRetentionLimits() { return retention.limits(); }
+    public boolean isTcoResolveEnabled() { return lookups.tcoResolveEnabled(); }
+    public int getTcoCacheSize() { return lookups.tcoCacheSize(); }
 }
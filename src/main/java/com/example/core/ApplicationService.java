@@ -2,15 +2,18 @@ package com.example.core;
 
 import com.example.config.AppConfig; // Need config for usernames
 import com.example.args.CommandLineArgs; // Need args for maxTweets
+import com.example.file.ProcessedArchiveCompactor;
+import com.example.file.RetentionSweeper;
 import com.example.twitch.TwitchUserInfo;
-import com.example.twitter.TweetData;
+import com.example.twitter.TimelineCursor;
+import com.example.twitter.TwitterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Orchestrates the main application workflow using services from the ServiceRegistry.
@@ -23,6 +26,7 @@ public class ApplicationService {
     private final AppConfig appConfig;
     private final CommandLineArgs commandLineArgs;
     private final ServiceRegistry services;
+    private final AtomicBoolean maintenanceRunning = new AtomicBoolean(); // Compaction and retention sweep in daemon mode
 
 
     /**
@@ -39,51 +43,58 @@ public class ApplicationService {
 
     /**
      * Executes one cycle of the application's core logic:
-     * - Fetches Twitch info.
-     * - Reads last tweet ID.
-     * - Fetches new tweets.
-     * - Writes new tweets to files.
-     * - Updates last tweet ID.
+     * - Reads the committed tweet ID from the fetch checkpoint.
+     * - Fetches new tweets (and Twitch info, only if there are new tweets).
+     * - Writes new tweets to files, skipping the ones the checkpoint lists as spooled.
+     * - Records the written tweets and commits the checkpoint.
      * - Processes files in the input directory.
+     * - Compacts old processed files into the archive (at most once a day, if enabled).
+     * - Evicts old files by the retention limits (if enabled).
+     * In daemon mode the compaction and the eviction run one after the other in a background thread.
      */
     public void runCycle() {
         logger.info("Starting application cycle...");
 
-        // --- Fetch Twitch Info Once ---
-        Optional<TwitchUserInfo> twitchInfoOpt = fetchTwitchInfo();
-        String twitchLogoUrl = twitchInfoOpt.map(TwitchUserInfo::profileImageUrl).orElse(null);
-        String twitchChanUrl = twitchInfoOpt.map(TwitchUserInfo::channelUrl).orElse(null);
-        // --- End Fetch Twitch Info ---
-
         // --- Read Last Tweet ID ---
-        Optional<String> sinceId = services.getLastTweetIdManager().readLastTweetId();
+        OptionalLong sinceId = services.getFetchCheckpointStore().readSinceId();
         // --- End Read Last Tweet ID ---
 
         // --- Attempt to Fetch and Write Tweets ---
-        List<TweetData> fetchedTweets = fetchAndWriteTweets(
-                sinceId,
-                appConfig.getTwitchUsername(), // Use config for Twitch username
-                twitchLogoUrl,
-                twitchChanUrl
-        );
+        // More than one page is always fetched page by page, so the since_id never skips the rest
+        if (appConfig.isPaginationEnabled() || commandLineArgs.getMaxTweetsToFetch() > TwitterService.MAX_PAGE_SIZE) {
+            fetchAndWriteTweetPages(sinceId, appConfig.getTwitchUsername());
+        } else {
+            fetchAndWriteTweets(
+                    sinceId,
+                    appConfig.getTwitchUsername() // Use config for Twitch username
+            );
+        }
         // --- End Fetch and Write Tweets ---
 
         // --- Process Input Files (Always Run) ---
         processInputFiles();
         // --- End Process Input Files ---
 
+        if (appConfig.isDaemonMode()) {
+            runMaintenanceInBackground();
+        } else {
+            runMaintenance();
+        }
+
         logger.info("Application cycle finished.");
     }
 
     /**
-     * Helper method to fetch Twitch user info.
+     * Helper method to fetch Twitch user info, served from the TwitchUserCache while the cached entry is fresh.
+     * The TwitchService is only created (and the Twitch API only called) on a cache miss.
      * @return Optional containing TwitchUserInfo.
      */
     private Optional<TwitchUserInfo> fetchTwitchInfo() {
         Optional<TwitchUserInfo> twitchInfoOpt = Optional.empty();
         try {
             logger.info("Fetching Twitch user info for configured user: {}", appConfig.getTwitchUsername());
-            twitchInfoOpt = services.getTwitchService().fetchUserInfo(appConfig.getTwitchUsername());
+            twitchInfoOpt = services.getTwitchUserCache().get(appConfig.getTwitchUsername(),
+                    logins -> services.getTwitchService().fetchUserInfos(logins));
             if (!twitchInfoOpt.isPresent()) {
                 logger.warn("Could not fetch Twitch user info for {}. Embeds will not include Twitch thumbnail.", appConfig.getTwitchUsername());
             }
@@ -94,62 +105,103 @@ public class ApplicationService {
     }
 
     /**
-     * Helper method to fetch new tweets, write them to files, and update the last ID.
+     * Helper method to fetch new tweets, write them to files, and commit the fetch checkpoint.
+     * Each tweet is written as soon as it is assembled; the page is recorded in the checkpoint
+     * once it is flushed, and only then committed. A fetch that fails part way keeps the
+     * checkpoint where it was.
+     * Twitch info is fetched lazily, so cycles without new tweets never touch the Twitch API.
      * @param sinceId Optional last tweet ID.
      * @param twitchUsername Configured Twitch username.
-     * @param twitchLogoUrl Fetched Twitch logo URL.
-     * @param twitchChanUrl Fetched Twitch channel URL.
-     * @return The list of fetched tweets (can be empty).
+     * @return The number of fetched tweets (can be 0).
      */
-    private List<TweetData> fetchAndWriteTweets(Optional<String> sinceId, String twitchUsername, String twitchLogoUrl, String twitchChanUrl) {
-        List<TweetData> fetchedTweets = Collections.emptyList();
-        String highestFetchedId = null;
+    private int fetchAndWriteTweets(OptionalLong sinceId, String twitchUsername) {
         try {
             logger.info("Attempting to fetch up to {} tweets for user {} since ID {}",
-                    commandLineArgs.getMaxTweetsToFetch(), appConfig.getTwitterUsername(), sinceId.orElse("None"));
+                    commandLineArgs.getMaxTweetsToFetch(), appConfig.getTwitterUsername(), TimelineCursor.describeSinceId(sinceId.orElse(0)));
 
-            fetchedTweets = services.getTwitterService().fetchTimelineTweets(
+            return timelineSpooler().spoolPage(sinceId, tweetConsumer -> services.getTwitterService().fetchTimelineTweets(
                     commandLineArgs.getMaxTweetsToFetch(),
                     sinceId,
                     twitchUsername,
-                    twitchLogoUrl,
-                    twitchChanUrl
-            );
+                    this::fetchTwitchInfo,
+                    tweetConsumer
+            ));
+        } catch (Exception e) {
+            logger.error("Error occurred during tweet fetching or writing: {}. Proceeding to process existing files.", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Paginated variant of {@link #fetchAndWriteTweets}: follows the timeline pages back to the
+     * last tweet ID and writes each tweet to the spool as soon as it is assembled.
+     * Every flushed page is recorded in the checkpoint together with the page cursor, and the
+     * committed tweet ID is only advanced once all pages are written, so an interrupted catch-up
+     * resumes at the page it stopped instead of jumping past the tweets it has not fetched yet.
+     * @param sinceId Optional last tweet ID; ignored while an unfinished catch-up is resumed.
+     * @param twitchUsername Configured Twitch username.
+     */
+    private void fetchAndWriteTweetPages(OptionalLong sinceId, String twitchUsername) {
+        try {
+            TimelineCursor cursor = services.getFetchCheckpointStore().readCursor()
+                    .orElseGet(() -> TimelineCursor.startingAfter(sinceId.orElse(0)));
+            logger.info("Attempting to fetch up to {} tweets in pages for user {} since ID {}",
+                    commandLineArgs.getMaxTweetsToFetch(), appConfig.getTwitterUsername(),
+                    cursor.describeSinceId());
 
-            if (fetchedTweets.isEmpty()) {
-                logger.info("No new tweets fetched since ID {} or an error occurred.", sinceId.orElse("start"));
-            } else {
-                logger.info("Fetched {} new tweets.", fetchedTweets.size());
-                logger.info("Writing tweets to input directory: {}", services.getDirectoryManager().getInputDir());
+            timelineSpooler().spoolPages(sinceId, (tweetConsumer, pageCompleted) -> services.getTwitterService().fetchTimelinePages(
+                    commandLineArgs.getMaxTweetsToFetch(),
+                    cursor,
+                    twitchUsername,
+                    this::fetchTwitchInfo,
+                    tweetConsumer,
+                    pageCompleted
+            ));
+        } catch (Exception e) {
+            logger.error("Error occurred during paginated tweet fetching or writing: {}. Proceeding to process existing files.", e.getMessage(), e);
+        }
+    }
 
-                highestFetchedId = fetchedTweets.stream()
-                        .map(TweetData::getId)
-                        .max(Comparator.naturalOrder())
-                        .orElse(null);
+    private TimelineSpooler timelineSpooler() {
+        return new TimelineSpooler(services.getFetchCheckpointStore(), services.getTweetSpool());
+    }
 
-                for (TweetData tweet : fetchedTweets) {
-                    services.getTweetWriter().writeTweetToFile(tweet);
-                }
+    private void runMaintenance() {
+        services.getArchiveCompactor().ifPresent(ProcessedArchiveCompactor::compactIfDue);
+        // After the compaction, so processed tweets are archived before they are evicted
+        services.getRetentionSweeper().ifPresent(RetentionSweeper::sweepIfDue);
+    }
 
-                if (highestFetchedId != null) {
-                    services.getLastTweetIdManager().writeLastTweetId(highestFetchedId);
-                } else {
-                    logger.warn("Could not determine the highest ID from the fetched tweets.");
+    // Skipped while the run of an earlier cycle is busy; the registry stops the executor before closing the archive
+    private void runMaintenanceInBackground() {
+        if (services.getArchiveCompactor().isEmpty() && services.getRetentionSweeper().isEmpty()) {
+            return;
+        }
+        if (!maintenanceRunning.compareAndSet(false, true)) {
+            logger.debug("Archive compaction or retention sweep of an earlier cycle is still running. Skipping.");
+            return;
+        }
+        try {
+            services.getMaintenanceExecutor().execute(() -> {
+                try {
+                    runMaintenance();
+                } finally {
+                    maintenanceRunning.set(false);
                 }
-            }
-        } catch (Exception e) {
-            logger.error("Error occurred during tweet fetching or writing: {}. Proceeding to process existing files.", e.getMessage(), e);
+            });
+        } catch (RejectedExecutionException e) {
+            maintenanceRunning.set(false);
+            logger.debug("Shutting down, skipping archive compaction and retention sweep.");
         }
-        return fetchedTweets; // Return the list (might be empty)
     }
 
     /**
-     * Helper method to trigger the processing of files in the input directory.
+     * Helper method to trigger the processing of the pending tweets in the spool.
      */
     private void processInputFiles() {
         try {
-            logger.info("Processing existing files in input directory and notifying Discord...");
-            services.getTweetProcessor().processInputFiles();
+            logger.info("Processing pending tweets in the spool and notifying Discord...");
+            services.getTweetSpool().processPending();
         } catch (Exception e) {
             logger.error("Error occurred during input file processing: {}", e.getMessage(), e);
             // Decide if this error should halt the application or just be logged
@@ -0,0 +1,144 @@
+package com.example.core;
+
+import com.example.twitter.AdaptivePollScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the application resident and runs {@link ApplicationService#runCycle()} on an internal schedule.
+ * The services in the ServiceRegistry (Discord gateway session, HTTP clients) are created once
+ * and reused by every cycle instead of being rebuilt by each cron invocation.
+ * The delay before each cycle is planned by the {@link AdaptivePollScheduler} from the
+ * Twitter rate limit window seen by the previous cycle.
+ */
+public class DaemonRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DaemonRunner.class);
+    private static final long SHUTDOWN_GRACE_MILLIS = 30_000; // Max time to wait for a running cycle on shutdown
+
+    private final ApplicationService applicationService;
+    private final AdaptivePollScheduler pollScheduler;
+    private final ScheduledExecutorService scheduler;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile Throwable fatalError; // Set if a cycle failed in a way the daemon cannot continue from
+
+    /**
+     * @param applicationService The service whose cycle should be run repeatedly.
+     * @param pollScheduler Plans the delay between the end of one cycle and the start of the next.
+     */
+    public DaemonRunner(ApplicationService applicationService, AdaptivePollScheduler pollScheduler) {
+        this.applicationService = applicationService;
+        this.pollScheduler = pollScheduler;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "cycle-scheduler");
+            thread.setDaemon(false);
+            return thread;
+        });
+        // On shutdown, drop the pending next cycle instead of waiting for its delay to expire
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler = executor;
+    }
+
+    /**
+     * Schedules the cycles and blocks the calling thread until the daemon is stopped,
+     * either via {@link #stop()} or by a JVM shutdown signal (e.g. SIGTERM from systemd).
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     * @throws IllegalStateException If a cycle failed with an Error or the next cycle could not be
+     *         scheduled, so the process exits with a failure and its supervisor can restart it.
+     */
+    public void run() throws InterruptedException {
+        Thread callerThread = Thread.currentThread();
+        Thread shutdownHook = new Thread(() -> {
+            logger.info("Shutdown signal received. Stopping daemon...");
+            stop();
+            try {
+                // Give the caller time to shut down the registered services before the JVM halts
+                callerThread.join(SHUTDOWN_GRACE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "daemon-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        logger.info("Daemon mode started.");
+        // Each cycle schedules the next one once it is done, so cycles never overlap
+        scheduler.execute(this::runCycleAndReschedule);
+
+        stopped.await();
+        if (fatalError != null) {
+            removeShutdownHook(shutdownHook);
+            throw new IllegalStateException("Daemon stopped after a fatal error: " + fatalError, fatalError);
+        }
+        logger.info("Daemon mode stopped.");
+    }
+
+    /**
+     * Stops scheduling new cycles and waits (bounded) for a running cycle to finish.
+     */
+    public void stop() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Running cycle did not finish within {} ms. Forcing scheduler shutdown.", SHUTDOWN_GRACE_MILLIS);
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    // Nothing may escape: the scheduled future would swallow it, no next cycle would be scheduled
+    // and run() would wait forever. An exception of a cycle is logged and the next cycle runs as
+    // usual; an Error (e.g. OutOfMemoryError) or a failed reschedule stops the daemon instead.
+    private void runCycleAndReschedule() {
+        try {
+            try {
+                applicationService.runCycle();
+            } catch (Exception e) {
+                logger.error("Unhandled error during daemon cycle: {}. Next cycle will run as scheduled.", e.getMessage(), e);
+            }
+            scheduleNextCycle();
+        } catch (Throwable t) {
+            logger.error("Fatal error in daemon cycle: {}. Stopping the daemon.", t, t);
+            fatalError = t;
+            scheduler.shutdown();
+            stopped.countDown();
+        }
+    }
+
+    private void scheduleNextCycle() {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        Duration delay = pollScheduler.nextPollDelay();
+        logger.info("Next cycle scheduled in {} seconds (at {}).", delay.toSeconds(), Instant.now().plus(delay));
+        try {
+            scheduler.schedule(this::runCycleAndReschedule, delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Scheduler is shutting down, next cycle not scheduled.");
+        }
+    }
+
+    private static void removeShutdownHook(Thread shutdownHook) {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            logger.debug("JVM is already shutting down, shutdown hook stays registered.");
+        }
+    }
+}
@@ -3,19 +3,47 @@ package com.example.core;
 import com.example.config.AppConfig;
 import com.example.args.CommandLineArgs;
 import com.example.discord.DiscordNotifier;
+import com.example.file.ArchiveStore;
 import com.example.file.DirectoryManager;
-import com.example.file.LastTweetIdManager;
+import com.example.file.FileTweetSpool;
+import com.example.file.InputDirectoryWatcher;
+import com.example.file.JournalTweetSpool;
+import com.example.file.FetchCheckpointStore;
+import com.example.file.ProcessedArchiveCompactor;
+import com.example.file.RetentionSweeper;
 import com.example.file.SingleTweetFileProcessor;
+import com.example.file.SpoolCodec;
+import com.example.file.SpoolCodecs;
+import com.example.file.TweetContextStore;
+import com.example.file.TweetIdIndex;
 import com.example.file.TweetProcessor;
+import com.example.file.TweetSpool;
 import com.example.file.TweetWriter;
 import com.example.log.LogsDirLogBackPropertyDefiner;
+import com.example.twitch.TwitchAppTokenProvider;
 import com.example.twitch.TwitchService;
+import com.example.twitch.TwitchUserCache;
+import com.example.twitter.AdaptivePollScheduler;
+import com.example.twitter.RateLimitTracker;
+import com.example.twitter.TcoUrlExpander;
+import com.example.twitter.ReadQuotaLedger;
+import com.example.twitter.TwitterProfileCache;
 import com.example.twitter.TwitterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.security.auth.login.LoginException;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Instantiates and holds references to all application services.
@@ -24,19 +52,41 @@ import java.io.IOException;
 public class ServiceRegistry {
 
     private static final Logger logger = LoggerFactory.getLogger(ServiceRegistry.class);
+    private static final Duration MAINTENANCE_STOP_TIMEOUT = Duration.ofSeconds(30);
 
     // Core Services (kept private)
     private final DirectoryManager directoryManager;
-    private final LastTweetIdManager lastTweetIdManager;
+    private final FetchCheckpointStore fetchCheckpointStore;
     private final DiscordNotifier discordNotifier;
-    private final TwitchService twitchService;
+    private final TcoUrlExpander urlExpander;
+    private final AppConfig config; // Needed for lazy service creation
+    private volatile TwitchService twitchService; // Created on first use
+    private final TwitchUserCache twitchUserCache;
+    private final RateLimitTracker rateLimitTracker;
+    private final ReadQuotaLedger readQuotaLedger;
+    private final AdaptivePollScheduler pollScheduler;
     private final TwitterService twitterService;
     private final TweetWriter tweetWriter;
     private final SingleTweetFileProcessor singleTweetFileProcessor;
+    private final TweetIdIndex processedIds; // Null if the index could not be opened
+    private final TweetIdIndex failedIds;
+    private final ArchiveStore processedArchive; // Null if the archive directory could not be read
+    private final ProcessedArchiveCompactor archiveCompactor; // Null unless compaction is enabled
+    private final RetentionSweeper retentionSweeper; // Null unless retention is enabled
     private final TweetProcessor tweetProcessor;
+    private final TweetSpool tweetSpool;
+    private final InputDirectoryWatcher inputDirectoryWatcher; // Null unless watching is enabled in daemon mode
+    // Compaction and retention sweep in daemon mode; one thread, so a sweep never deletes files a compaction is archiving
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Initializes all services based on configuration and arguments.
+     * The slow network-bound services (Discord login, Twitter user lookup) are started in parallel;
+     * the TwitchService is only created when a cycle first needs it.
      * Throws exceptions if essential services cannot be initialized.
      *
      * @param config Validated application configuration.
@@ -44,53 +94,230 @@ public class ServiceRegistry {
      * @throws IOException If DirectoryManager fails.
      * @throws LoginException If DiscordNotifier fails login.
      * @throws InterruptedException If DiscordNotifier initialization is interrupted.
-     * @throws RuntimeException If TwitchService or other critical initialization fails.
+     * @throws RuntimeException If TwitterService or other critical initialization fails.
      */
     public ServiceRegistry(AppConfig config, CommandLineArgs args)
             throws IOException, LoginException, InterruptedException, RuntimeException {
 
         logger.info("Initializing Service Registry...");
+        long registryStart = System.nanoTime();
+        this.config = config;
 
         // 1. Directory and Logging Setup
         logger.debug("Initializing DirectoryManager...");
-        this.directoryManager = new DirectoryManager(args.getBasePath());
+        long start = System.nanoTime();
+        this.directoryManager = new DirectoryManager(args.getBasePath(), config.isShardedArchive());
         LogsDirLogBackPropertyDefiner.setDirectoryManager(this.directoryManager);
         System.setProperty("LOG_DIR", this.directoryManager.getLogsDir().toAbsolutePath().toString());
         logger.info("Log directory set to: {}", this.directoryManager.getLogsDir().toAbsolutePath());
+        logStartupTime("DirectoryManager", start);
+
+        // Before anything reads or writes tweet files
+        SpoolCodecs codecs = new SpoolCodecs(config.isSpoolCodecBlackbird(),
+                new TweetContextStore(this.directoryManager.getContextsDir()), config.isSharedTweetContexts());
 
         // 2. Initialize Managers and External API Services
-        logger.debug("Initializing LastTweetIdManager...");
-        this.lastTweetIdManager = new LastTweetIdManager(this.directoryManager);
+        logger.debug("Initializing FetchCheckpointStore...");
+        this.fetchCheckpointStore = new FetchCheckpointStore(this.directoryManager);
+
+        logger.debug("Initializing RateLimitTracker, ReadQuotaLedger and AdaptivePollScheduler...");
+        this.rateLimitTracker = new RateLimitTracker(this.directoryManager.getRateLimitStateFile());
+        this.readQuotaLedger = new ReadQuotaLedger(this.directoryManager.getQuotaLedgerFile(), config.getTwitterMonthlyReadLimit());
+        this.pollScheduler = new AdaptivePollScheduler(this.rateLimitTracker, this.readQuotaLedger,
+                Duration.ofSeconds(config.getMinPollIntervalSeconds()),
+                Duration.ofMinutes(config.getDaemonIntervalMinutes()));
+
+        this.twitchUserCache = new TwitchUserCache(this.directoryManager.getTwitchUserCacheFile(),
+                Duration.ofHours(config.getTwitchUserCacheTtlHours()));
+        TwitterProfileCache profileCache = new TwitterProfileCache(this.directoryManager.getProfileCacheFile(),
+                Duration.ofHours(config.getProfileCacheTtlHours()));
 
-        logger.debug("Initializing DiscordNotifier...");
-        // Assign to local variable first to handle potential null in shutdown if constructor fails partially
+        this.urlExpander = new TcoUrlExpander(this.directoryManager.getTcoCacheFile(), config.getTcoCacheSize(),
+                config.isTcoResolveEnabled());
+
+        // Discord login and the Twitter user lookup (without a cached profile) both block on the network, so they run side by side
         DiscordNotifier tempDiscordNotifier = null;
+        TwitterService tempTwitterService = null;
+        ExecutorService initExecutor = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "service-init"));
         try {
-            tempDiscordNotifier = new DiscordNotifier(config.getDiscordBotToken(), config.getDiscordChannelId());
+            logger.debug("Initializing DiscordNotifier and TwitterService in parallel...");
+            Future<DiscordNotifier> discordFuture = initExecutor.submit(() -> timed("DiscordNotifier",
+                    () -> new DiscordNotifier(config.getDiscordBotToken(), config.getDiscordChannelId(), this.urlExpander, codecs)));
+            Future<TwitterService> twitterFuture = initExecutor.submit(() -> timed("TwitterService",
+                    () -> new TwitterService(config.getTwitterBearerToken(), config.getTwitterUsername(),
+                            this.rateLimitTracker, this.readQuotaLedger, this.pollScheduler, profileCache)));
+            try {
+                tempDiscordNotifier = await(discordFuture);
+                tempTwitterService = await(twitterFuture);
+            } catch (LoginException | InterruptedException | RuntimeException e) {
+                // Don't leave a connected JDA instance behind if the other service failed
+                shutdownQuietly(tempDiscordNotifier != null ? tempDiscordNotifier : awaitQuietly(discordFuture));
+                throw e;
+            }
         } finally {
-            // Ensure discordNotifier field is set even if constructor threw an exception
-            // (though it would likely propagate up)
-            this.discordNotifier = tempDiscordNotifier;
+            initExecutor.shutdown(); // Both tasks are done, or their result is no longer needed
         }
-
-
-        logger.debug("Initializing TwitchService...");
-        this.twitchService = new TwitchService(config.getTwitchClientId(), config.getTwitchClientSecret());
-
-        logger.debug("Initializing TwitterService...");
-        this.twitterService = new TwitterService(config.getTwitterBearerToken(), config.getTwitterUsername());
+        this.discordNotifier = tempDiscordNotifier;
+        this.twitterService = tempTwitterService;
 
         // 3. Initialize File/Processing Services
         logger.debug("Initializing TweetWriter...");
-        this.tweetWriter = new TweetWriter(this.directoryManager.getInputDir());
+        this.tweetWriter = new TweetWriter(this.directoryManager.getInputDir(), config.isAtomicFileWrites(),
+                config.isSmileSpoolFiles() ? SpoolCodec.SMILE : SpoolCodec.JSON, codecs);
 
         logger.debug("Initializing SingleTweetFileProcessor...");
-        this.singleTweetFileProcessor = new SingleTweetFileProcessor(this.directoryManager, this.discordNotifier);
+        this.processedArchive = openProcessedArchive(this.directoryManager.getArchiveDir());
+        this.processedIds = openTweetIdIndex(this.directoryManager.getProcessedIdsFile(), this.directoryManager.getProcessedDir(),
+                this.processedArchive);
+        this.failedIds = openTweetIdIndex(this.directoryManager.getFailedIdsFile(), this.directoryManager.getFailedDir(), null);
+        this.singleTweetFileProcessor = new SingleTweetFileProcessor(this.directoryManager, this.discordNotifier,
+                this.processedIds, this.failedIds, this.processedArchive);
+        this.archiveCompactor = config.isArchiveCompactionEnabled() && this.processedArchive != null
+                ? new ProcessedArchiveCompactor(this.directoryManager, this.processedArchive,
+                        Duration.ofDays(config.getArchiveCompactionMinAgeDays()))
+                : null;
+        this.retentionSweeper = config.isRetentionEnabled() ? createRetentionSweeper(config) : null;
 
         logger.debug("Initializing TweetProcessor...");
-        this.tweetProcessor = new TweetProcessor(this.directoryManager, this.singleTweetFileProcessor);
+        this.tweetProcessor = new TweetProcessor(this.directoryManager, this.singleTweetFileProcessor,
+                config.getInputScanMaxInMemory());
+
+        if (config.isJournalSpool()) {
+            logger.debug("Initializing JournalTweetSpool...");
+            try {
+                this.tweetSpool = new JournalTweetSpool(this.directoryManager.getJournalDir(),
+                        config.getJournalSegmentSizeMb() * 1024 * 1024, this.discordNotifier, codecs);
+            } catch (IOException e) {
+                shutdownQuietly(this.discordNotifier);
+                throw e;
+            }
+        } else {
+            this.tweetSpool = new FileTweetSpool(this.tweetWriter, this.tweetProcessor);
+        }
+
+        this.inputDirectoryWatcher = startInputDirectoryWatcher(config);
+
+        logger.info("Service Registry initialization complete in {} ms (TwitchService deferred until first use).",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - registryStart));
+    }
+
+    private RetentionSweeper createRetentionSweeper(AppConfig config) {
+        Map<String, RetentionSweeper.Policy> policies = new HashMap<>();
+        config.getRetentionLimits().forEach((directory, limits) ->
+                policies.put(directory, RetentionSweeper.Policy.of(limits.maxAgeDays(), limits.maxMb())));
+        return new RetentionSweeper(this.directoryManager, policies, Duration.ofMinutes(config.getRetentionIntervalMinutes()),
+                config.isRetentionDryRun());
+    }
+
+    private static ArchiveStore openProcessedArchive(Path archiveDir) {
+        try {
+            return new ArchiveStore(archiveDir);
+        } catch (IOException e) {
+            logger.error("Could not open the tweet archive {}: {}. Archive compaction is disabled.", archiveDir, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static TweetIdIndex openTweetIdIndex(Path indexFile, Path sourceDir, ArchiveStore archive) {
+        try {
+            return TweetIdIndex.open(indexFile, sourceDir, archive);
+        } catch (IOException e) {
+            logger.error("Could not open tweet ID index {}: {}. Duplicate checks fall back to the directories.", indexFile, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    // Only a resident process benefits from watching; a cron run scans the input directory once anyway
+    private InputDirectoryWatcher startInputDirectoryWatcher(AppConfig config) {
+        if (!config.isInputWatchEnabled() || !config.isDaemonMode()) {
+            return null;
+        }
+        if (config.isJournalSpool()) {
+            logger.warn("input.watch.enabled is ignored with spool.mode=journal: tweets are not spooled in the input directory.");
+            return null;
+        }
+        InputDirectoryWatcher watcher = new InputDirectoryWatcher(this.directoryManager.getInputDir(), this.tweetProcessor,
+                Duration.ofMillis(config.getInputWatchSettleMillis()));
+        try {
+            watcher.start();
+            return watcher;
+        } catch (IOException e) {
+            logger.error("Could not watch the input directory: {}. Input files are processed by the cycles only.", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Callable variant that may throw the checked exceptions of the service constructors.
+     */
+    @FunctionalInterface
+    private interface ServiceFactory<T> {
+        T create() throws Exception;
+    }
+
+    private static <T> T timed(String serviceName, ServiceFactory<T> factory) throws Exception {
+        long start = System.nanoTime();
+        T service = factory.create();
+        logStartupTime(serviceName, start);
+        return service;
+    }
+
+    private static void logStartupTime(String serviceName, long startNanos) {
+        logger.info("Startup timing: {} initialized in {} ms.", serviceName,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    // Unwraps the ExecutionException so callers see the same exceptions as with serial initialization
+    private static <T> T await(Future<T> future) throws LoginException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LoginException loginException) {
+                throw loginException;
+            }
+            if (cause instanceof InterruptedException interruptedException) {
+                throw interruptedException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Service initialization failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static <T> T awaitQuietly(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+    }
+
+    private static void shutdownQuietly(DiscordNotifier notifier) {
+        if (notifier != null) {
+            try {
+                notifier.shutdown();
+            } catch (Exception e) {
+                logger.error("Error shutting down DiscordNotifier after failed initialization: {}", e.getMessage(), e);
+            }
+        }
+    }
 
-        logger.info("Service Registry initialization complete.");
+    private void stopMaintenance() {
+        // An interrupted compaction stops at the next segment and is repeated with the next run
+        maintenanceExecutor.shutdownNow();
+        try {
+            if (!maintenanceExecutor.awaitTermination(MAINTENANCE_STOP_TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+                logger.warn("Archive compaction or retention sweep still running after {} seconds. Shutting down anyway.",
+                        MAINTENANCE_STOP_TIMEOUT.toSeconds());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -99,6 +326,14 @@ public class ServiceRegistry {
     public void shutdown() {
         logger.info("Shutting down registered services...");
 
+        // First, so no settled input file is handed to the notifier while it shuts down
+        if (this.inputDirectoryWatcher != null) {
+            this.inputDirectoryWatcher.close();
+        }
+
+        // Before the archive and the ID indexes are closed, which the compaction and the sweep use
+        stopMaintenance();
+
         // Shut down DiscordNotifier
         if (this.discordNotifier != null) {
             try {
@@ -110,17 +345,29 @@ public class ServiceRegistry {
         } else {
             logger.warn("DiscordNotifier was null, skipping its shutdown.");
         }
+        // After the notifier, which resolves the links of the tweets it posts
+        if (this.urlExpander != null) {
+            this.urlExpander.close();
+        }
+
+        if (this.processedIds != null) {
+            this.processedIds.close();
+        }
+        if (this.failedIds != null) {
+            this.failedIds.close();
+        }
+        if (this.processedArchive != null) {
+            this.processedArchive.close();
+        }
 
-        // Add shutdown logic for other services here if needed in the future
-        // e.g., if TwitchService held persistent connections:
-        // if (this.twitchService != null) {
-        //     try {
-        //         logger.debug("Attempting to shut down TwitchService...");
-        //         // this.twitchService.close(); // Assuming a close() method exists
-        //     } catch (Exception e) {
-        //         logger.error("Error during TwitchService shutdown: {}", e.getMessage(), e);
-        //     }
-        // }
+        if (this.tweetSpool != null) {
+            try {
+                logger.debug("Attempting to close the tweet spool...");
+                this.tweetSpool.close();
+            } catch (Exception e) {
+                logger.error("Error while closing the tweet spool: {}", e.getMessage(), e);
+            }
+        }
 
         logger.info("Service shutdown sequence complete.");
     }
@@ -129,11 +376,40 @@ public class ServiceRegistry {
     // --- Getters for Services (needed by ApplicationService) ---
     // Consider making these package-private if only core package needs them
     public DirectoryManager getDirectoryManager() { return directoryManager; }
-    public LastTweetIdManager getLastTweetIdManager() { return lastTweetIdManager; }
+    public FetchCheckpointStore getFetchCheckpointStore() { return fetchCheckpointStore; }
+    public TwitchUserCache getTwitchUserCache() { return twitchUserCache; }
     // public DiscordNotifier getDiscordNotifier() { return discordNotifier; } // Might not be needed externally now
-    public TwitchService getTwitchService() { return twitchService; }
+
+    /**
+     * Gets the TwitchService, creating it on first use so cycles without new tweets never pay for it.
+     * @return The TwitchService instance.
+     * @throws RuntimeException If the TwitchService cannot be initialized.
+     */
+    public TwitchService getTwitchService() {
+        TwitchService service = twitchService;
+        if (service == null) {
+            synchronized (this) {
+                service = twitchService;
+                if (service == null) {
+                    long start = System.nanoTime();
+                    TwitchAppTokenProvider tokenProvider = new TwitchAppTokenProvider(config.getTwitchClientId(),
+                            config.getTwitchClientSecret(), config.getTwitchTokenUrl(),
+                            directoryManager.getTwitchTokenFile(), Duration.ofHours(config.getTwitchTokenRefreshMarginHours()));
+                    service = new TwitchService(config.getTwitchClientId(), config.getTwitchClientSecret(), tokenProvider);
+                    logStartupTime("TwitchService (lazy)", start);
+                    twitchService = service;
+                }
+            }
+        }
+        return service;
+    }
     public TwitterService getTwitterService() { return twitterService; }
+    public AdaptivePollScheduler getPollScheduler() { return pollScheduler; }
     public TweetWriter getTweetWriter() { return tweetWriter; }
     // public SingleTweetFileProcessor getSingleTweetFileProcessor() { return singleTweetFileProcessor; } // Internal detail?
     public TweetProcessor getTweetProcessor() { return tweetProcessor; }
+    public TweetSpool getTweetSpool() { return tweetSpool; }
+    public Optional<ProcessedArchiveCompactor> getArchiveCompactor() { return Optional.ofNullable(archiveCompactor); }
+    public Optional<RetentionSweeper> getRetentionSweeper() { return Optional.ofNullable(retentionSweeper); }
+    public ExecutorService getMaintenanceExecutor() { return maintenanceExecutor; }
 }
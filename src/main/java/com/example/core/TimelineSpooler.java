@@ -0,0 +1,165 @@
+package com.example.core;
+
+import com.example.file.FetchCheckpointStore;
+import com.example.file.TweetSpool;
+import com.example.twitter.TimelineCursor;
+import com.example.twitter.TweetData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Writes fetched tweets to the spool and keeps the fetch checkpoint in step with it: a batch is
+ * recorded only after the spool flushed it, and the committed tweet ID only advances once the
+ * whole range is written. A fetch that stops early records what reached the spool but never
+ * moves the mark past tweets it has not emitted.
+ */
+class TimelineSpooler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimelineSpooler.class);
+
+    private final FetchCheckpointStore checkpoint;
+    private final TweetSpool spool;
+
+    /**
+     * Fetches one timeline page.
+     */
+    @FunctionalInterface
+    interface PageFetch {
+        /**
+         * @param tweetConsumer Receives each tweet as soon as it is assembled.
+         * @return The number of fetched tweets.
+         */
+        int fetch(Consumer<TweetData> tweetConsumer);
+    }
+
+    /**
+     * Fetches timeline pages from a cursor.
+     */
+    @FunctionalInterface
+    interface PagesFetch {
+        /**
+         * @param tweetConsumer Receives each tweet as soon as it is assembled.
+         * @param pageCompleted Receives the cursor after each page, once all its tweets were consumed.
+         * @return The cursor after the last page fetched.
+         */
+        TimelineCursor fetch(Consumer<TweetData> tweetConsumer, Consumer<TimelineCursor> pageCompleted);
+    }
+
+    TimelineSpooler(FetchCheckpointStore checkpoint, TweetSpool spool) {
+        this.checkpoint = checkpoint;
+        this.spool = spool;
+    }
+
+    /**
+     * Spools one page fetched since the given ID and commits the checkpoint to its newest tweet.
+     * If the fetch fails part way, the tweets written so far are recorded as spooled and the mark
+     * stays where it was, so the next fetch gets the page again and skips only those tweets.
+     *
+     * @param sinceId The since_id of the fetch, or empty.
+     * @param fetch Fetches the page.
+     * @return The number of fetched tweets (can be 0).
+     * @throws RuntimeException The error of the fetch, after the checkpoint was updated.
+     */
+    int spoolPage(OptionalLong sinceId, PageFetch fetch) {
+        SpoolBatch batch = new SpoolBatch();
+        int fetchedCount;
+        try {
+            fetchedCount = fetch.fetch(batch::write);
+        } catch (RuntimeException e) {
+            // The older tweets of the page were never emitted, so the newest ID must not be committed
+            logger.warn("Timeline fetch aborted after {} new tweet(s). The checkpoint stays at since ID {}.",
+                    batch.spooled.size() + batch.failed.size(), TimelineCursor.describeSinceId(sinceId.orElse(0)));
+            if (batch.hasUnrecorded()) {
+                batch.record(spool.flush(), null);
+            }
+            checkpoint.abandonRange();
+            throw e;
+        }
+        // The whole page is made durable at once, before the checkpoint moves past it
+        Set<Long> notDurable = spool.flush();
+
+        if (batch.newestId == 0) {
+            logger.info("No new tweets fetched since ID {} or an error occurred.", TimelineCursor.describeSinceId(sinceId.orElse(0)));
+        } else {
+            logger.info("Fetched {} new tweets ({} written, {} already spooled, {} failed).",
+                    fetchedCount, batch.spooled.size(), batch.skipped, batch.failed.size());
+            // Recorded as a finished range first, so a crash before the commit completes it on the next start
+            batch.record(notDurable, new TimelineCursor(sinceId.orElse(0), null, batch.newestId));
+            checkpoint.completeRange(batch.newestId);
+        }
+        return fetchedCount;
+    }
+
+    /**
+     * Spools the pages of a catch-up. Every flushed page is recorded together with the page
+     * cursor, and the mark only advances once all pages are written, so an interrupted catch-up
+     * resumes at the page it stopped.
+     *
+     * @param sinceId The since_id the catch-up started from, for the log.
+     * @param fetch Fetches the pages.
+     */
+    void spoolPages(OptionalLong sinceId, PagesFetch fetch) {
+        SpoolBatch batch = new SpoolBatch();
+        TimelineCursor finalCursor = fetch.fetch(batch::write,
+                // Recorded after the page is flushed: a crash in between only refetches the same page
+                pageCursor -> batch.record(spool.flush(), pageCursor));
+        // Publishes and records what an interrupted page already wrote
+        if (batch.hasUnrecorded()) {
+            batch.record(spool.flush(), finalCursor);
+        }
+
+        if (finalCursor.isResuming()) {
+            logger.info("Timeline catch-up not finished yet. It resumes at the saved page on the next cycle.");
+        } else if (finalCursor.newestId() != 0) {
+            checkpoint.completeRange(finalCursor.newestId());
+        } else {
+            logger.info("No new tweets fetched since ID {} or an error occurred.", TimelineCursor.describeSinceId(sinceId.orElse(0)));
+            checkpoint.abandonRange();
+        }
+    }
+
+    /**
+     * The tweets of one page between two spool flushes. Tweets the checkpoint already lists as
+     * spooled are skipped, so a refetched page does not put them in the spool twice.
+     */
+    private final class SpoolBatch {
+        private final List<Long> spooled = new ArrayList<>();
+        private final List<Long> failed = new ArrayList<>();
+        private long newestId; // Over all pages; 0 until a tweet arrived
+        private int skipped;
+
+        private void write(TweetData tweet) {
+            long id = tweet.getId();
+            newestId = Math.max(newestId, id);
+            if (checkpoint.isSpooled(id)) {
+                logger.info("Tweet {} is already in the spool. Skipping.", id);
+                skipped++;
+            } else if (spool.write(tweet)) {
+                spooled.add(id);
+            } else {
+                failed.add(id);
+            }
+        }
+
+        private boolean hasUnrecorded() {
+            return !spooled.isEmpty() || !failed.isEmpty();
+        }
+
+        // notDurable: the result of the spool flush for this batch; only those tweets count as failed
+        private void record(Set<Long> notDurable, TimelineCursor cursor) {
+            if (!notDurable.isEmpty()) {
+                spooled.removeIf(notDurable::contains);
+                failed.addAll(notDurable);
+            }
+            checkpoint.recordBatch(spooled, failed, cursor);
+            spooled.clear();
+            failed.clear();
+        }
+    }
+}
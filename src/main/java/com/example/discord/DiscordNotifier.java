@@ -1,8 +1,10 @@
 package com.example.discord;
 
+import com.example.file.SpoolCodec;
+import com.example.file.SpoolCodecs;
+import com.example.twitter.SnowflakeId;
+import com.example.twitter.TcoUrlExpander;
 import com.example.twitter.TweetData; // Need TweetData for deserialization
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
@@ -17,9 +19,8 @@ import javax.security.auth.login.LoginException;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Collections;
@@ -31,21 +32,28 @@ public class DiscordNotifier {
     private static final Logger logger = LoggerFactory.getLogger(DiscordNotifier.class);
     private final JDA jda;
     private final String channelId;
+    private final TcoUrlExpander urlExpander; // Replaces the t.co links of the posted text
+    private final SpoolCodecs codecs;
     private static final int MAX_STANDARD_MESSAGE_LENGTH = 2000;
     private static final int HISTORY_CHECK_LIMIT = 10; // How many messages back to check
-    private final ObjectMapper objectMapper;
 
-    public DiscordNotifier(String botToken, String channelId) throws LoginException, InterruptedException {
+    /**
+     * Logs in to Discord and waits until the bot is ready.
+     * @param botToken The Discord bot token.
+     * @param channelId The channel the tweets are posted to.
+     * @param urlExpander Expands the t.co links of the tweet texts.
+     * @param codecs Decodes the consumed tweets.
+     */
+    public DiscordNotifier(String botToken, String channelId, TcoUrlExpander urlExpander, SpoolCodecs codecs) throws LoginException, InterruptedException {
         if (botToken == null || channelId == null) {
             logger.error("Discord Bot Token and Channel ID must be provided.");
             throw new IllegalArgumentException("Discord Bot Token and Channel ID must be provided.");
         }
         this.channelId = channelId;
+        this.urlExpander = urlExpander;
+        this.codecs = codecs;
         logger.info("Initializing Discord Notifier for channel ID: {}", channelId);
 
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-
         try {
             this.jda = JDABuilder.createDefault(botToken).build();
             this.jda.awaitReady();
@@ -61,27 +69,72 @@ public class DiscordNotifier {
     }
 
     /**
-     * Consumes a tweet JSON file, checks recent channel history for duplicates,
+     * Consumes a tweet file, checks recent channel history for duplicates,
      * and sends an embed to Discord if the tweet hasn't been posted recently.
+     * The file is decoded by the {@link SpoolCodec} of its extension (JSON unless {@code .smile}).
+     * Only its ID and URL are read for the duplicate check; the whole tweet is decoded only if
+     * it is posted.
      *
-     * @param tweetJsonFile The JSON file containing tweet context.
+     * @param tweetJsonFile The file containing tweet context.
      * @return True if processing is considered successful (either posted or skipped duplicate), false on error.
      */
     public boolean consume(File tweetJsonFile) {
-        logger.info("Consuming tweet context from JSON file: {}", tweetJsonFile.getName());
-        TweetData tweetData = null; // Declare outside try block
+        logger.info("Consuming tweet context from file: {}", tweetJsonFile.getName());
+        SpoolCodec codec = SpoolCodec.forFileName(tweetJsonFile.getName()).orElse(SpoolCodec.JSON);
+        SpoolCodec.TweetKey key;
+        try {
+            key = codec.readKey(tweetJsonFile);
+        } catch (IOException e) {
+            logger.error("Failed to read or parse tweet file {}: {}", tweetJsonFile.getName(), e.getMessage(), e);
+            return false; // Indicate failure reading file
+        }
+        return consume(key, () -> codecs.read(codec, tweetJsonFile), tweetJsonFile.getName());
+    }
 
+    /**
+     * Like {@link #consume(File)}, for a tweet stored as a record (e.g. in the journal).
+     *
+     * @param content The encoded tweet.
+     * @param codec The format of the content.
+     * @param sourceName Where the tweet came from (file name or journal position), for logging.
+     * @return True if processing is considered successful (either posted or skipped duplicate), false on error.
+     */
+    public boolean consume(byte[] content, SpoolCodec codec, String sourceName) {
+        SpoolCodec.TweetKey key;
         try {
-            // --- Deserialize JSON file to TweetData object ---
-            tweetData = objectMapper.readValue(tweetJsonFile, TweetData.class);
-            logger.debug("Successfully deserialized JSON data for tweet ID: {}", tweetData.getId());
-            // --- End Deserialization ---
+            key = codec.decodeKey(content);
+        } catch (IOException e) {
+            logger.error("Failed to parse tweet from {}: {}", sourceName, e.getMessage(), e);
+            return false;
+        }
+        return consume(key, () -> codecs.decode(codec, content), sourceName);
+    }
 
+    /**
+     * Checks recent channel history for duplicates of an already deserialized tweet
+     * and sends an embed to Discord if the tweet hasn't been posted recently.
+     *
+     * @param tweetData The tweet context.
+     * @param sourceName Where the tweet came from (file name or journal position), for logging.
+     * @return True if processing is considered successful (either posted or skipped duplicate), false on error.
+     */
+    public boolean consume(TweetData tweetData, String sourceName) {
+        return consume(new SpoolCodec.TweetKey(tweetData.getId(), tweetData.getUrl()), () -> tweetData, sourceName);
+    }
+
+    // Decodes the whole tweet only once it is clear that it will be posted
+    @FunctionalInterface
+    private interface TweetLoader {
+        TweetData load() throws IOException;
+    }
+
+    private boolean consume(SpoolCodec.TweetKey key, TweetLoader tweetLoader, String sourceName) {
+        try {
             // --- Extract key data for checking and embedding ---
-            String tweetUrl = tweetData.getUrl(); // URL is crucial for duplicate check
+            String tweetUrl = key.url(); // URL is crucial for duplicate check
 
             if (tweetUrl == null || tweetUrl.isEmpty()) {
-                logger.error("Tweet URL missing in deserialized TweetData from file: {}. Cannot process.", tweetJsonFile.getName());
+                logger.error("Tweet URL missing in tweet {} from {}. Cannot process.", key.id(), sourceName);
                 return false; // Cannot check for duplicates or post meaningfully without URL
             }
             // --- End Data Extraction ---
@@ -131,33 +184,33 @@ public class DiscordNotifier {
 
 
             // --- Proceed with building and sending if no duplicate found ---
+            TweetData tweetData;
+            try {
+                tweetData = tweetLoader.load();
+                logger.debug("Successfully deserialized data for tweet ID: {}", tweetData.getId());
+            } catch (IOException e) {
+                logger.error("Failed to read or parse tweet {} from {}: {}", key.id(), sourceName, e.getMessage(), e);
+                return false;
+            }
             // Extract remaining data needed for embed
-            String tweetText = tweetData.getText();
+            String tweetText = urlExpander.expand(tweetData.getText(), tweetData.getEntities());
             String authorName = tweetData.getAuthorName();
             String authorProfileUrl = tweetData.getAuthorProfileUrl();
             String authorImageUrl = tweetData.getAuthorProfileImageUrl();
             List<String> imageUrls = tweetData.getImageUrls();
             String twitchImageUrl = tweetData.getTwitchProfileImageUrl();
-            LocalDateTime createdAt = tweetData.getCreatedAt();
 
             // Basic Validation
             if (tweetText == null || tweetText.isEmpty() || authorName == null || authorName.isEmpty()) {
-                logger.error("Required fields (Text, AuthorName) missing or empty in deserialized TweetData from file: {}", tweetJsonFile.getName());
+                logger.error("Required fields (Text, AuthorName) missing or empty in deserialized TweetData from {}", sourceName);
                 return false; // Cannot build embed properly
             }
 
-            // Parse Timestamp
-            Instant timestamp = Instant.now();
-            if (createdAt != null) {
-                try {
-                    timestamp = createdAt.toInstant(ZoneOffset.UTC);
-                } catch (Exception e) {
-                    logger.error("Error converting LocalDateTime to Instant for tweet {}. Using current time. Error: {}",
-                            tweetData.getId(), e.getMessage());
-                }
-            } else {
-                logger.warn("CreatedAt timestamp missing in TweetData for tweet {}. Using current time for embed.", tweetData.getId());
-            }
+            // Creation time from createdAt, or else decoded from the Snowflake ID
+            Instant timestamp = tweetData.getCreatedInstant().orElseGet(() -> {
+                logger.warn("Creation time missing in TweetData for tweet {}. Using current time for embed.", tweetData.getId());
+                return Instant.now();
+            });
 
             // Build Embed
             EmbedBuilder embedBuilder = new EmbedBuilder();
@@ -195,29 +248,26 @@ public class DiscordNotifier {
             MessageEmbed embed = embedBuilder.build();
             logger.debug("Sending embed to Discord channel {}: Title='{}'", channelId, embed.getTitle());
             channel.sendMessageEmbeds(embed).queue(
-                    success -> logger.info("Successfully sent embed for {} to Discord channel {}", tweetJsonFile.getName(), channelId),
-                    error -> handleDiscordSendError(error, tweetJsonFile.getName(), channelId, "embed")
+                    success -> logger.info("Successfully sent embed for {} to Discord channel {} (relay delay: {})", sourceName, channelId,
+                            SnowflakeId.timestampOf(key.id()).map(created -> Duration.between(created, Instant.now()).toSeconds() + " s").orElse("unknown")),
+                    error -> handleDiscordSendError(error, sourceName, channelId, "embed")
             );
 
             if (extraTextMessage != null) {
-                logger.info("Sending separate message(s) for long tweet text from file {}", tweetJsonFile.getName());
+                logger.info("Sending separate message(s) for long tweet text from {}", sourceName);
                 List<String> messageChunks = splitMessage(extraTextMessage, MAX_STANDARD_MESSAGE_LENGTH);
                 for (String chunk : messageChunks) {
                     channel.sendMessage(chunk).queue(
-                            success -> logger.debug("Successfully sent text chunk for {} to Discord channel {}", tweetJsonFile.getName(), channelId),
-                            error -> handleDiscordSendError(error, tweetJsonFile.getName(), channelId, "text chunk")
+                            success -> logger.debug("Successfully sent text chunk for {} to Discord channel {}", sourceName, channelId),
+                            error -> handleDiscordSendError(error, sourceName, channelId, "text chunk")
                     );
                 }
             }
 
             return true; // Indicate successful posting attempt
 
-        } catch (IOException e) {
-            logger.error("Failed to read or parse JSON tweet file {}: {}", tweetJsonFile.getName(), e.getMessage(), e);
-            return false; // Indicate failure reading file
         } catch (Exception e) {
-            logger.error("An unexpected error occurred during Discord notification for file {}: {}",
-                    (tweetData != null ? tweetJsonFile.getName() : "UNKNOWN"), e.getMessage(), e);
+            logger.error("An unexpected error occurred during Discord notification for {}: {}", sourceName, e.getMessage(), e);
             return false; // Indicate general failure
         }
     }
@@ -0,0 +1,277 @@
+package com.example.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed archive segments of processed tweet files.
+ * <p>
+ * A segment {@code segment-<firstId>-<lastId>.json.gz} holds the original content of each tweet
+ * file as its own gzip member, so the whole segment is a regular (multi-member) gzip file that
+ * {@code zcat} reads as a stream of documents, while a single tweet can be inflated from its
+ * offset alone. Despite the {@code .json.gz} name (kept so existing segments stay readable), a
+ * member is whatever the tweet file was: JSON, or Smile for {@code .smile} files; readers tell
+ * them apart with {@link SpoolCodec#forContent}.
+ * <p>
+ * The sidecar {@code .idx} file lists {@code (id, offset, length)} sorted by ID for binary
+ * search. The index is renamed into place last, so a segment without an index is an unfinished
+ * write and is ignored.
+ */
+public class ArchiveStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveStore.class);
+    private static final Pattern SEGMENT_INDEX_NAME = Pattern.compile("segment-(\\d+)-(\\d+)\\.idx");
+    private static final String SEGMENT_SUFFIX = ".json.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_MAGIC = 0x54415243; // "TARC"
+    private static final int INDEX_HEADER_BYTES = 8; // magic, entry count
+    private static final int INDEX_ENTRY_BYTES = 20; // id (long), offset (long), length (int)
+
+    private final Path archiveDir;
+    private final List<Segment> segments = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * An archived tweet file.
+     *
+     * @param id The tweet ID.
+     * @param content The original file content (JSON or Smile).
+     */
+    public record ArchivedTweet(long id, byte[] content) {
+    }
+
+    /**
+     * A tweet file to archive.
+     *
+     * @param id The tweet ID.
+     * @param file The tweet file.
+     */
+    public record TweetFile(long id, Path file) {
+    }
+
+    private record Segment(long firstId, long lastId, Path dataFile, Path indexFile) {
+        private boolean covers(long id) { return id >= firstId && id <= lastId; }
+    }
+
+    /**
+     * Opens the archive directory and lists its complete segments. The directory is created
+     * with the first segment.
+     *
+     * @param archiveDir The archive directory.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public ArchiveStore(Path archiveDir) throws IOException {
+        this.archiveDir = archiveDir;
+        if (!Files.isDirectory(archiveDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiveDir, "segment-*" + INDEX_SUFFIX)) {
+            for (Path indexFile : stream) {
+                Matcher matcher = SEGMENT_INDEX_NAME.matcher(indexFile.getFileName().toString());
+                String baseName = indexFile.getFileName().toString().replace(INDEX_SUFFIX, "");
+                Path dataFile = archiveDir.resolve(baseName + SEGMENT_SUFFIX);
+                if (matcher.matches() && Files.exists(dataFile)) {
+                    segments.add(new Segment(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), dataFile, indexFile));
+                }
+            }
+        }
+        logger.info("Opened tweet archive {} with {} segment(s).", archiveDir.toAbsolutePath(), segments.size());
+    }
+
+    /**
+     * Looks up an archived tweet by ID.
+     *
+     * @param id The tweet ID.
+     * @return The original content of the tweet file, or empty if it is not archived.
+     */
+    public synchronized Optional<ArchivedTweet> read(long id) {
+        for (Segment segment : segments) {
+            if (!segment.covers(id)) {
+                continue;
+            }
+            try {
+                Optional<byte[]> content = readFromSegment(segment, id);
+                if (content.isPresent()) {
+                    return Optional.of(new ArchivedTweet(id, content.get()));
+                }
+            } catch (IOException e) {
+                logger.error("Could not read tweet {} from archive segment {}: {}", id, segment.dataFile().getFileName(), e.getMessage(), e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param id The tweet ID.
+     * @return true if the tweet is in an archive segment.
+     */
+    public synchronized boolean contains(long id) {
+        for (Segment segment : segments) {
+            try {
+                if (segment.covers(id) && findEntry(segment, id).isPresent()) {
+                    return true;
+                }
+            } catch (IOException e) {
+                logger.error("Could not read archive index {}: {}", segment.indexFile().getFileName(), e.getMessage(), e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the ID of every archived tweet to the consumer (e.g. to rebuild an ID index).
+     *
+     * @param idConsumer Receives the IDs.
+     */
+    public synchronized void forEachId(LongConsumer idConsumer) {
+        for (Segment segment : segments) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.indexFile())))) {
+                in.readInt();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    idConsumer.accept(in.readLong());
+                    in.skipNBytes(INDEX_ENTRY_BYTES - Long.BYTES);
+                }
+            } catch (IOException e) {
+                logger.error("Could not read archive index {}: {}", segment.indexFile().getFileName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the given tweet files (sorted by ID) into a new segment and its index, both synced
+     * to disk before they are renamed into place. The source files are not touched. A segment
+     * file without an index (an unfinished write) is replaced; a complete segment never is.
+     *
+     * @param tweets The tweet IDs and files, sorted by ID without duplicates.
+     * @return The number of archived tweets.
+     * @throws FileAlreadyExistsException If a complete segment with the same ID range exists.
+     * @throws IOException If the segment cannot be written or the archive is closed.
+     */
+    public synchronized int writeSegment(List<TweetFile> tweets) throws IOException {
+        if (closed) {
+            throw new IOException("Tweet archive " + archiveDir + " is closed");
+        }
+        if (tweets.isEmpty()) {
+            return 0;
+        }
+        long firstId = tweets.get(0).id();
+        long lastId = tweets.get(tweets.size() - 1).id();
+        String baseName = "segment-" + firstId + "-" + lastId;
+        Files.createDirectories(archiveDir);
+        Path dataFile = archiveDir.resolve(baseName + SEGMENT_SUFFIX);
+        Path indexFile = archiveDir.resolve(baseName + INDEX_SUFFIX);
+        Path dataTemp = archiveDir.resolve(baseName + SEGMENT_SUFFIX + ".tmp");
+        Path indexTemp = archiveDir.resolve(baseName + INDEX_SUFFIX + ".tmp");
+        if (Files.exists(indexFile)) {
+            throw new FileAlreadyExistsException(indexFile.toString(), null, "archive segment with the same ID range exists");
+        }
+
+        long[] offsets = new long[tweets.size()];
+        int[] lengths = new int[tweets.size()];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(dataTemp))) {
+            long offset = 0;
+            ByteArrayOutputStream member = new ByteArrayOutputStream();
+            for (int i = 0; i < tweets.size(); i++) {
+                member.reset();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+                    gzip.write(Files.readAllBytes(tweets.get(i).file()));
+                }
+                member.writeTo(out);
+                offsets[i] = offset;
+                lengths[i] = member.size();
+                offset += member.size();
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexTemp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(tweets.size());
+            for (int i = 0; i < tweets.size(); i++) {
+                out.writeLong(tweets.get(i).id());
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+        if (Files.deleteIfExists(dataFile)) {
+            logger.warn("Replacing unfinished archive segment {} (no index).", dataFile.getFileName());
+        }
+        // A rename replaces an existing target, hence the checks above; the index goes last and marks the segment complete
+        AtomicFiles.moveIntoPlace(dataTemp, dataFile);
+        AtomicFiles.moveIntoPlace(indexTemp, indexFile);
+        AtomicFiles.syncDirectory(archiveDir);
+        segments.add(new Segment(firstId, lastId, dataFile, indexFile));
+        logger.info("Wrote archive segment {} with {} tweet(s) ({} KB).", dataFile.getFileName(), tweets.size(), Files.size(dataFile) / 1024);
+        return tweets.size();
+    }
+
+    /**
+     * Waits for a segment that is being written and refuses further writes. Reads keep working,
+     * since every read opens the segment files itself.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+    }
+
+    private static Optional<byte[]> readFromSegment(Segment segment, long id) throws IOException {
+        Optional<long[]> entry = findEntry(segment, id);
+        if (entry.isEmpty()) {
+            return Optional.empty();
+        }
+        byte[] member = new byte[(int) entry.get()[1]];
+        try (RandomAccessFile data = new RandomAccessFile(segment.dataFile().toFile(), "r")) {
+            data.seek(entry.get()[0]);
+            data.readFully(member);
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(member))) {
+            return Optional.of(gzip.readAllBytes());
+        }
+    }
+
+    // Binary search over the sorted index entries; returns {offset, length}
+    private static Optional<long[]> findEntry(Segment segment, long id) throws IOException {
+        try (RandomAccessFile index = new RandomAccessFile(segment.indexFile().toFile(), "r")) {
+            if (index.readInt() != INDEX_MAGIC) {
+                throw new IOException("Invalid archive index header");
+            }
+            int low = 0;
+            int high = index.readInt() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                index.seek(INDEX_HEADER_BYTES + (long) mid * INDEX_ENTRY_BYTES);
+                long value = index.readLong();
+                if (value < id) {
+                    low = mid + 1;
+                } else if (value > id) {
+                    high = mid - 1;
+                } else {
+                    return Optional.of(new long[]{index.readLong(), index.readInt()});
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Crash-safe replacement of small state files.
+ * <p>
+ * The new content is written to a {@code <name>.tmp} sibling, synced, renamed over the target and
+ * the directory is synced, so a crash or power loss leaves either the old or the new file, never a
+ * torn or empty one.
+ */
+public final class AtomicFiles {
+
+    private static final Logger logger = LoggerFactory.getLogger(AtomicFiles.class);
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final FileAttribute<Set<PosixFilePermission>> OWNER_ONLY =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+
+    /**
+     * Writes the content of a file, e.g. with an ObjectMapper or a DataOutputStream.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * @param target The file to replace (created if missing).
+     * @param content The new content.
+     * @throws IOException If the file cannot be written; the previous file is left as it was.
+     */
+    public static void replace(Path target, byte[] content) throws IOException {
+        replace(target, out -> out.write(content));
+    }
+
+    /**
+     * @param target The file to replace (created if missing).
+     * @param writer Writes the new content.
+     * @throws IOException If the file cannot be written; the previous file is left as it was.
+     */
+    public static void replace(Path target, ContentWriter writer) throws IOException {
+        replace(target, writer, false);
+    }
+
+    /**
+     * Like {@link #replace(Path, byte[])}, for credentials: the temporary file is created readable
+     * by the owner only (where the file system supports it) before the content is written.
+     *
+     * @param target The file to replace (created if missing).
+     * @param content The new content.
+     * @throws IOException If the file cannot be written; the previous file is left as it was.
+     */
+    public static void replaceOwnerOnly(Path target, byte[] content) throws IOException {
+        replace(target, out -> out.write(content), true);
+    }
+
+    /**
+     * Syncs a file written elsewhere and renames it over the target. The directory is not synced,
+     * so a batch of moves can share one {@link #syncDirectory(Path)}.
+     *
+     * @param source The written file.
+     * @param target The file to replace (created if missing).
+     * @throws IOException If the file cannot be synced or renamed.
+     */
+    public static void moveIntoPlace(Path source, Path target) throws IOException {
+        forceFile(source);
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param file A file whose content must be on disk.
+     * @throws IOException If the file cannot be opened or synced.
+     */
+    public static void forceFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Makes the renames into a directory durable. Failures are only logged.
+     *
+     * @param directory The directory to sync.
+     */
+    public static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory for syncing (e.g. Windows)
+            logger.debug("Could not sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void replace(Path target, ContentWriter writer, boolean ownerOnly) throws IOException {
+        Path tempFile = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (OutputStream out = new BufferedOutputStream(openTempFile(tempFile, ownerOnly))) {
+                writer.writeTo(out);
+            }
+            moveIntoPlace(tempFile, target);
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    private static OutputStream openTempFile(Path tempFile, boolean ownerOnly) throws IOException {
+        if (!ownerOnly) {
+            return Files.newOutputStream(tempFile);
+        }
+        // A leftover temporary file could carry wider permissions
+        Files.deleteIfExists(tempFile);
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            return Channels.newOutputStream(Files.newByteChannel(tempFile, options, OWNER_ONLY));
+        } catch (UnsupportedOperationException e) {
+            logger.debug("Could not restrict permissions of {}: {}", tempFile, e.getMessage());
+            return Channels.newOutputStream(Files.newByteChannel(tempFile, options));
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.file;
 
+import com.example.twitter.SnowflakeId;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,11 +11,27 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.OptionalLong;
 
 public class DirectoryManager {
 
     private static final Logger logger = LoggerFactory.getLogger(DirectoryManager.class);
-    public static final String LAST_TWEET_ID_FILENAME = "LAST_TWEET_ID.txt"; // Define filename
+    public static final String LAST_TWEET_ID_FILENAME = "LAST_TWEET_ID.txt"; // Replaced by the fetch checkpoint
+    public static final String FETCH_CHECKPOINT_FILENAME = "FETCH_CHECKPOINT.json";
+    public static final String RATE_LIMIT_STATE_FILENAME = "TWITTER_RATE_LIMIT.json";
+    public static final String QUOTA_LEDGER_FILENAME = "TWITTER_QUOTA.json";
+    public static final String PROFILE_CACHE_FILENAME = "TWITTER_PROFILE.json";
+    public static final String TWITCH_USER_CACHE_FILENAME = "TWITCH_USERS.json";
+    public static final String TWITCH_TOKEN_FILENAME = "TWITCH_TOKEN.json";
+    public static final String TCO_CACHE_FILENAME = "TCO_LINKS.json";
+    public static final String PROCESSED_IDS_FILENAME = "PROCESSED_IDS.idx";
+    public static final String FAILED_IDS_FILENAME = "FAILED_IDS.idx";
+    public static final String RETENTION_STATE_FILENAME = "RETENTION_STATE.json";
+    public static final String OTHER_SHARD = "other"; // Files without a Snowflake tweet ID in their name
+    private static final DateTimeFormatter SHARD_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM").withZone(ZoneOffset.UTC);
 
     private final Path baseDir;
     private final Path inputDir;
@@ -22,11 +39,35 @@ public class DirectoryManager {
     private final Path binDir;
     private final Path processedDir;
     private final Path failedDir;
-    private final Path lastTweetIdFile; // Path to the ID file
+    private final Path lastTweetIdFile; // Last tweet ID before the fetch checkpoint, read once to migrate it
+    private final Path fetchCheckpointFile; // Committed tweet ID and the fetch in progress
+    private final Path rateLimitStateFile; // Last known Twitter timeline rate limit window
+    private final Path quotaLedgerFile; // Monthly Twitter read counter
+    private final Path profileCacheFile; // Cached Twitter author profile
+    private final Path twitchUserCacheFile; // Cached Twitch user info
+    private final Path twitchTokenFile; // Persisted Twitch app access token
+    private final Path tcoCacheFile; // Resolved t.co links without an entity
+    private final Path journalDir; // Segments of the journal spool, created on first use
+    private final Path archiveDir; // Compressed segments of old processed tweet files, created on first use
+    private final Path contextsDir; // Author/Twitch contexts referenced by compact tweet files, created on first use
+    private final Path processedIdsFile; // Index of the tweet IDs in processed/
+    private final Path failedIdsFile; // Index of the tweet IDs in failed/
+    private final Path retentionStateFile; // Inventory of the retention sweep
+    private final boolean shardedLayout; // processed/, failed/ and bin/ split into <yyyy>/<MM>/ buckets
 
 
     public DirectoryManager(String basePath) throws IOException {
+        this(basePath, false);
+    }
+
+    /**
+     * @param basePath The base data directory.
+     * @param shardedLayout Store finished tweet files in month buckets (see {@link #resolveArchivedFile}).
+     * @throws IOException If a directory cannot be created.
+     */
+    public DirectoryManager(String basePath, boolean shardedLayout) throws IOException {
         this.baseDir = Paths.get(basePath);
+        this.shardedLayout = shardedLayout;
         // Define all directories directly under baseDir
         this.inputDir = baseDir.resolve("input");
         this.logsDir = baseDir.resolve("logs");
@@ -35,6 +76,19 @@ public class DirectoryManager {
         this.failedDir = baseDir.resolve("failed");
         // Define the path for the last tweet ID file directly under baseDir
         this.lastTweetIdFile = baseDir.resolve(LAST_TWEET_ID_FILENAME);
+        this.fetchCheckpointFile = baseDir.resolve(FETCH_CHECKPOINT_FILENAME);
+        this.rateLimitStateFile = baseDir.resolve(RATE_LIMIT_STATE_FILENAME);
+        this.quotaLedgerFile = baseDir.resolve(QUOTA_LEDGER_FILENAME);
+        this.profileCacheFile = baseDir.resolve(PROFILE_CACHE_FILENAME);
+        this.twitchUserCacheFile = baseDir.resolve(TWITCH_USER_CACHE_FILENAME);
+        this.twitchTokenFile = baseDir.resolve(TWITCH_TOKEN_FILENAME);
+        this.tcoCacheFile = baseDir.resolve(TCO_CACHE_FILENAME);
+        this.journalDir = baseDir.resolve("journal");
+        this.archiveDir = baseDir.resolve("archive");
+        this.contextsDir = baseDir.resolve("contexts");
+        this.processedIdsFile = baseDir.resolve(PROCESSED_IDS_FILENAME);
+        this.failedIdsFile = baseDir.resolve(FAILED_IDS_FILENAME);
+        this.retentionStateFile = baseDir.resolve(RETENTION_STATE_FILENAME);
 
         logger.info("Ensuring directory structure exists under base path: {}", baseDir.toAbsolutePath());
 
@@ -50,8 +104,8 @@ public class DirectoryManager {
         Files.createDirectories(failedDir);
         logger.debug("Ensured directory exists: {}", failedDir.toAbsolutePath());
 
-        // Don't create the ID file itself here, just ensure the base directory exists
-        logger.debug("Path for last tweet ID file: {}", lastTweetIdFile.toAbsolutePath());
+        // Don't create the checkpoint file itself here, just ensure the base directory exists
+        logger.debug("Path for fetch checkpoint file: {}", fetchCheckpointFile.toAbsolutePath());
     }
 
     @NotNull
@@ -81,10 +135,158 @@ public class DirectoryManager {
     public Path getBinDir() { return binDir; }
 
     /**
-     * Gets the Path object for the file storing the last processed tweet ID.
+     * Resolves where a finished tweet file is stored in processed/, failed/ or bin/.
+     * In the sharded layout that is the month bucket of the tweet's Snowflake timestamp (UTC),
+     * e.g. {@code processed/2024/05/tweet_<id>.json}; files without a tweet ID go to {@code other/}.
+     * In the flat layout it is the directory itself.
+     *
+     * @param archiveDir The processed, failed or bin directory.
+     * @param fileName The file name.
+     * @return The path of the file in the configured layout.
+     */
+    public Path resolveArchivedFile(Path archiveDir, String fileName) {
+        return shardedLayout ? resolveShardedFile(archiveDir, fileName) : archiveDir.resolve(fileName);
+    }
+
+    /**
+     * Looks up a finished tweet file in both layouts, so files are found while the flat
+     * directories are being migrated.
+     *
+     * @param archiveDir The processed, failed or bin directory.
+     * @param fileName The file name.
+     * @return The existing file, or empty if it is in neither layout.
+     */
+    public Optional<Path> findArchivedFile(Path archiveDir, String fileName) {
+        Path primary = resolveArchivedFile(archiveDir, fileName);
+        if (Files.exists(primary)) {
+            return Optional.of(primary);
+        }
+        Path secondary = shardedLayout ? archiveDir.resolve(fileName) : resolveShardedFile(archiveDir, fileName);
+        return Files.exists(secondary) ? Optional.of(secondary) : Optional.empty();
+    }
+
+    /**
+     * @param archiveDir The processed, failed or bin directory.
+     * @param fileName The file name.
+     * @return The path of the file in the sharded layout.
+     */
+    public static Path resolveShardedFile(Path archiveDir, String fileName) {
+        OptionalLong tweetId = InputDirectoryScanner.parseTweetId(fileName);
+        String shard = tweetId.isPresent()
+                ? SnowflakeId.timestampOf(tweetId.getAsLong()).map(SHARD_FORMAT::format).orElse(OTHER_SHARD)
+                : OTHER_SHARD;
+        return archiveDir.resolve(shard).resolve(fileName);
+    }
+
+    /**
+     * Gets the Path object for the file that stored the last processed tweet ID before the fetch checkpoint.
      * @return Path to the LAST_TWEET_ID file.
      */
     public Path getLastTweetIdFile() { // Getter for the ID file path
         return lastTweetIdFile;
     }
+
+    /**
+     * Gets the Path object for the fetch checkpoint (committed tweet ID and the fetch in progress).
+     * @return Path to the fetch checkpoint file.
+     */
+    public Path getFetchCheckpointFile() {
+        return fetchCheckpointFile;
+    }
+
+    /**
+     * Gets the Path object for the file storing the last known Twitter rate limit window.
+     * @return Path to the rate limit state file.
+     */
+    public Path getRateLimitStateFile() {
+        return rateLimitStateFile;
+    }
+
+    /**
+     * Gets the Path object for the monthly Twitter read quota ledger.
+     * @return Path to the quota ledger file.
+     */
+    public Path getQuotaLedgerFile() {
+        return quotaLedgerFile;
+    }
+
+    /**
+     * Gets the Path object for the cached Twitter author profile.
+     * @return Path to the profile cache file.
+     */
+    public Path getProfileCacheFile() {
+        return profileCacheFile;
+    }
+
+    /**
+     * Gets the Path object for the cached Twitch user info.
+     * @return Path to the Twitch user cache file.
+     */
+    public Path getTwitchUserCacheFile() {
+        return twitchUserCacheFile;
+    }
+
+    /**
+     * Gets the Path object for the cache of resolved t.co links.
+     * @return Path to the t.co link cache file.
+     */
+    public Path getTcoCacheFile() {
+        return tcoCacheFile;
+    }
+
+    /**
+     * Gets the Path object for the persisted Twitch app access token.
+     * @return Path to the Twitch token file.
+     */
+    public Path getTwitchTokenFile() {
+        return twitchTokenFile;
+    }
+
+    /**
+     * Gets the Path object for the directory of the journal spool (only used with spool.mode=journal).
+     * @return Path to the journal directory.
+     */
+    public Path getJournalDir() {
+        return journalDir;
+    }
+
+    /**
+     * Gets the Path object for the archive segments of compacted processed tweet files.
+     * @return Path to the archive directory.
+     */
+    public Path getArchiveDir() {
+        return archiveDir;
+    }
+
+    /**
+     * Gets the Path object for the shared tweet contexts (only used with spool.shared.context.enabled=true).
+     * @return Path to the contexts directory.
+     */
+    public Path getContextsDir() {
+        return contextsDir;
+    }
+
+    /**
+     * Gets the Path object for the index of the tweet IDs in the processed directory.
+     * @return Path to the processed IDs index.
+     */
+    public Path getProcessedIdsFile() {
+        return processedIdsFile;
+    }
+
+    /**
+     * Gets the Path object for the index of the tweet IDs in the failed directory.
+     * @return Path to the failed IDs index.
+     */
+    public Path getFailedIdsFile() {
+        return failedIdsFile;
+    }
+
+    /**
+     * Gets the Path object for the inventory of the retention sweep.
+     * @return Path to the retention state file.
+     */
+    public Path getRetentionStateFile() {
+        return retentionStateFile;
+    }
 }
@@ -0,0 +1,217 @@
+package com.example.file;
+
+import com.example.twitter.SnowflakeId;
+import com.example.twitter.TimelineCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+
+/**
+ * Crash-consistent fetch position in the FETCH_CHECKPOINT.json file: the committed high-water mark
+ * (the since_id of the next fetch) and a write-ahead record of the fetch in progress.
+ * <p>
+ * The record holds the fetched range (the page cursor of a paginated catch-up), the IDs of the
+ * tweets that are durably in the spool, and the IDs that could not be spooled. It is saved after
+ * every flushed batch, and the mark only advances once the whole range is fetched: to the newest
+ * tweet, or, if some tweets failed, to the newest spooled tweet below the oldest failed one, so
+ * the failed ones are fetched again. Spooled IDs above the mark are kept, so a re-fetch skips
+ * them instead of spooling them twice. A range that was fully recorded but not committed yet
+ * is committed on the next start. Every change replaces the file atomically (synced
+ * temporary file and rename), so a crash leaves either the old or the new checkpoint.
+ * IDs are compared as numbers.
+ * <p>
+ * On the first start, the position is taken over from LAST_TWEET_ID.txt, which is deleted once
+ * the checkpoint is written.
+ */
+public class FetchCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FetchCheckpointStore.class);
+    private static final long NONE = 0L; // No tweet fetched yet; tweet IDs are positive
+
+    private final Path checkpointFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private long committedId;
+    private TimelineCursor cursor;
+    private final NavigableSet<Long> spooledIds = new TreeSet<>();
+    private final NavigableSet<Long> failedIds = new TreeSet<>();
+
+    /**
+     * Persisted checkpoint.
+     *
+     * @param committedId The high-water mark: every tweet up to it is spooled (0 if none).
+     * @param cursor      The fetched range of an unfinished catch-up, or null.
+     * @param spooledIds  Tweets above the mark that are durably spooled, ascending.
+     * @param failedIds   Tweets of the current range that could not be spooled, ascending.
+     */
+    record Checkpoint(long committedId, TimelineCursor cursor, List<Long> spooledIds, List<Long> failedIds) {
+    }
+
+    /**
+     * Loads the checkpoint, or takes the position over from the files it replaces.
+     *
+     * @param directoryManager The directory manager instance.
+     */
+    public FetchCheckpointStore(DirectoryManager directoryManager) {
+        this.checkpointFile = directoryManager.getFetchCheckpointFile();
+        if (Files.isReadable(checkpointFile)) {
+            load();
+            if (cursor != null && !cursor.isResuming() && cursor.newestId() != NONE) {
+                // The range was fetched and recorded, only the commit was interrupted
+                commitRange(cursor.newestId());
+            }
+        } else {
+            migrateLastTweetIdFile(directoryManager.getLastTweetIdFile());
+        }
+        logger.info("FetchCheckpointStore initialized from {}: committed ID {}, {} spooled and {} failed tweet(s) above it, catch-up in progress: {}.",
+                checkpointFile.toAbsolutePath(), committedId, spooledIds.size(), failedIds.size(), cursor != null);
+    }
+
+    /**
+     * @return The since_id for the next fetch, or OptionalLong.empty() if nothing was fetched yet.
+     */
+    public OptionalLong readSinceId() {
+        return committedId == NONE ? OptionalLong.empty() : OptionalLong.of(committedId);
+    }
+
+    /**
+     * @return The cursor of an unfinished catch-up, or Optional.empty() if none is in progress.
+     */
+    public Optional<TimelineCursor> readCursor() {
+        return Optional.ofNullable(cursor);
+    }
+
+    /**
+     * @param tweetId A fetched tweet ID.
+     * @return true if the tweet is already durably in the spool and must not be written again.
+     */
+    public boolean isSpooled(long tweetId) {
+        return tweetId <= committedId || spooledIds.contains(tweetId);
+    }
+
+    /**
+     * Records a flushed batch of the current range. Call after the spool flush, so every ID
+     * recorded as spooled is durable.
+     *
+     * @param spooled IDs written to the spool and flushed.
+     * @param failed IDs that could not be written or flushed.
+     * @param rangeCursor The cursor after the batch while the range is not complete yet, otherwise null.
+     */
+    public void recordBatch(Collection<Long> spooled, Collection<Long> failed, TimelineCursor rangeCursor) {
+        spooled.stream().filter(id -> id > committedId).forEach(spooledIds::add);
+        failedIds.addAll(failed);
+        cursor = rangeCursor;
+        persist();
+        if (!failed.isEmpty()) {
+            logger.warn("{} tweet(s) could not be spooled: {}. The checkpoint stays below them, so they are fetched again.",
+                    failed.size(), failed);
+        }
+    }
+
+    /**
+     * Advances the mark once the whole range up to newestId is fetched and recorded.
+     *
+     * @param newestId The newest tweet ID of the range.
+     * @return The new mark.
+     */
+    public long completeRange(long newestId) {
+        return commitRange(newestId);
+    }
+
+    // Also called from the constructor, so not overridable
+    private long commitRange(long newestId) {
+        long mark = newestId;
+        if (!failedIds.isEmpty()) {
+            // Everything below the oldest failed tweet is spooled
+            Long belowFailed = spooledIds.lower(failedIds.first());
+            mark = belowFailed != null ? belowFailed : committedId;
+        }
+        committedId = Math.max(committedId, mark);
+        spooledIds.headSet(committedId, true).clear();
+        failedIds.clear();
+        cursor = null;
+        persist();
+        logger.info("Checkpoint committed at tweet ID {} ({} spooled tweet(s) above it).", committedId, spooledIds.size());
+        return committedId;
+    }
+
+    /**
+     * Ends a catch-up that found no tweets, keeping the mark.
+     */
+    public void abandonRange() {
+        if (cursor == null && failedIds.isEmpty()) {
+            return;
+        }
+        cursor = null;
+        failedIds.clear();
+        persist();
+    }
+
+    private void load() {
+        try {
+            Checkpoint checkpoint = objectMapper.readValue(checkpointFile.toFile(), Checkpoint.class);
+            committedId = checkpoint.committedId();
+            cursor = checkpoint.cursor();
+            if (checkpoint.spooledIds() != null) {
+                spooledIds.addAll(checkpoint.spooledIds());
+            }
+            if (checkpoint.failedIds() != null) {
+                failedIds.addAll(checkpoint.failedIds());
+            }
+        } catch (IOException e) {
+            // Only possible if the file was edited by hand: the file is always replaced atomically
+            logger.error("Could not read fetch checkpoint {}: {}. Fetching without since_id.", checkpointFile.toAbsolutePath(), e.getMessage(), e);
+        }
+    }
+
+    private void migrateLastTweetIdFile(Path lastTweetIdFile) {
+        if (!Files.isReadable(lastTweetIdFile)) {
+            return;
+        }
+        String content;
+        try {
+            content = Files.readString(lastTweetIdFile, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            logger.error("Could not read {}: {}. Fetching without since_id.", lastTweetIdFile.getFileName(), e.getMessage());
+            return;
+        }
+        try {
+            committedId = SnowflakeId.parse(content);
+        } catch (NumberFormatException e) {
+            logger.warn("Content of {} ({}) is not a valid tweet ID format. Ignoring it.", lastTweetIdFile.getFileName(), content);
+            return;
+        }
+        if (persist()) {
+            logger.info("Moved the fetch position from {} to {}.", lastTweetIdFile.getFileName(), checkpointFile.getFileName());
+            try {
+                Files.deleteIfExists(lastTweetIdFile);
+            } catch (IOException e) {
+                logger.warn("Could not delete the replaced position file {}: {}", lastTweetIdFile.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    // Replaced atomically, so a crash never leaves a half-written checkpoint behind
+    private boolean persist() {
+        Checkpoint checkpoint = new Checkpoint(committedId, cursor, new ArrayList<>(spooledIds), new ArrayList<>(failedIds));
+        try {
+            AtomicFiles.replace(checkpointFile, out -> objectMapper.writeValue(out, checkpoint));
+            logger.debug("Saved fetch checkpoint: {}", checkpoint);
+            return true;
+        } catch (IOException e) {
+            logger.error("Could not write fetch checkpoint {}: {}", checkpointFile.toAbsolutePath(), e.getMessage(), e);
+            return false;
+        }
+    }
+}
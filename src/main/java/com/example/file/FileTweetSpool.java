@@ -0,0 +1,35 @@
+package com.example.file;
+
+import com.example.twitter.TweetData;
+
+import java.util.Set;
+
+/**
+ * The default spool: one JSON file per tweet in {@code input/}, moved to {@code processed/}
+ * or {@code failed/} once it was handled.
+ */
+public class FileTweetSpool implements TweetSpool {
+
+    private final TweetWriter tweetWriter;
+    private final TweetProcessor tweetProcessor;
+
+    public FileTweetSpool(TweetWriter tweetWriter, TweetProcessor tweetProcessor) {
+        this.tweetWriter = tweetWriter;
+        this.tweetProcessor = tweetProcessor;
+    }
+
+    @Override
+    public boolean write(TweetData tweetData) {
+        return tweetWriter.writeTweetToFile(tweetData);
+    }
+
+    @Override
+    public Set<Long> flush() {
+        return tweetWriter.commitBatch();
+    }
+
+    @Override
+    public void processPending() {
+        tweetProcessor.processInputFiles();
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Lists the tweet files of the input directory in tweet ID order, in bounded batches.
+ * <p>
+ * The directory is streamed ({@link DirectoryStream}) and only the numeric IDs parsed from the
+ * {@code tweet_<id>.json} (or {@code .smile}, see {@link SpoolCodec}) names are kept, as primitive
+ * longs. Up to {@code maxInMemory} IDs are sorted in memory; a larger backlog is sorted in runs
+ * that are spilled to temporary files and merged. Other spool files (e.g. dropped in by hand)
+ * follow after the tweet files, sorted by name.
+ */
+public class InputDirectoryScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(InputDirectoryScanner.class);
+    // No leading zeros, so the file name can be rebuilt from the ID (and the SpoolCodec extension)
+    private static final Pattern TWEET_FILE_NAME = Pattern.compile("tweet_(0|[1-9]\\d{0,18})\\.(?:json|smile)");
+    private static final String SPOOL_FILE_GLOB = "*.{json,smile}";
+    private static final int INITIAL_RUN_CAPACITY = 1024;
+
+    /**
+     * Orders file names by tweet ID; names without a tweet ID follow, sorted by name.
+     */
+    public static final Comparator<String> FILE_NAME_ORDER = (a, b) -> {
+        OptionalLong idA = parseTweetId(a);
+        OptionalLong idB = parseTweetId(b);
+        if (idA.isPresent() && idB.isPresent()) {
+            return Long.compare(idA.getAsLong(), idB.getAsLong());
+        }
+        if (idA.isPresent() != idB.isPresent()) {
+            return idA.isPresent() ? -1 : 1;
+        }
+        return a.compareTo(b);
+    };
+
+    private final Path inputDir;
+    private final int maxInMemory;
+    private final int batchSize;
+    private final EnumSet<SpoolCodec> tweetFileCodecs = EnumSet.noneOf(SpoolCodec.class); // Extensions seen by the current scan
+
+    /**
+     * @param inputDir The directory to scan.
+     * @param maxInMemory Maximum number of tweet IDs sorted in memory before a run is spilled to disk.
+     * @param batchSize Maximum number of files handed to the consumer at once.
+     */
+    public InputDirectoryScanner(Path inputDir, int maxInMemory, int batchSize) {
+        this.inputDir = inputDir;
+        this.maxInMemory = Math.max(1, maxInMemory);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Parses the tweet ID from a {@code tweet_<id>.json} or {@code tweet_<id>.smile} file name.
+     *
+     * @param fileName The file name.
+     * @return The ID, or empty if the name has another format.
+     */
+    public static OptionalLong parseTweetId(String fileName) {
+        Matcher matcher = TWEET_FILE_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(matcher.group(1)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty(); // 19 digits beyond Long.MAX_VALUE
+        }
+    }
+
+    /**
+     * Scans the input directory and hands its spool files to the consumer, in tweet ID order.
+     *
+     * @param batchConsumer Receives the files in batches of at most batchSize.
+     * @return The number of files handed to the consumer.
+     * @throws IOException If the directory cannot be listed or a spilled run cannot be written or read.
+     */
+    public int scan(Consumer<List<Path>> batchConsumer) throws IOException {
+        long start = System.nanoTime();
+        long[] run = new long[Math.min(maxInMemory, INITIAL_RUN_CAPACITY)];
+        int runSize = 0;
+        List<String> otherNames = new ArrayList<>();
+        List<Path> spilledRuns = new ArrayList<>();
+        Path spillDir = null;
+        tweetFileCodecs.clear();
+        try {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(inputDir, SPOOL_FILE_GLOB)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    OptionalLong id = parseTweetId(name);
+                    if (id.isEmpty()) {
+                        otherNames.add(name);
+                        continue;
+                    }
+                    SpoolCodec.forFileName(name).ifPresent(tweetFileCodecs::add);
+                    if (runSize == maxInMemory) {
+                        if (spillDir == null) {
+                            spillDir = Files.createTempDirectory("input-scan");
+                        }
+                        spilledRuns.add(spillRun(run, runSize, spillDir, spilledRuns.size()));
+                        runSize = 0;
+                    } else if (runSize == run.length) {
+                        run = Arrays.copyOf(run, (int) Math.min(maxInMemory, run.length * 2L));
+                    }
+                    run[runSize++] = id.getAsLong();
+                }
+            }
+
+            BatchEmitter emitter = new BatchEmitter(batchConsumer);
+            if (spilledRuns.isEmpty()) {
+                Arrays.sort(run, 0, runSize);
+                for (int i = 0; i < runSize; i++) {
+                    emitter.addTweet(run[i]);
+                }
+            } else {
+                spilledRuns.add(spillRun(run, runSize, spillDir, spilledRuns.size()));
+                run = null; // The merge only needs one buffered ID per run
+                mergeRuns(spilledRuns, emitter);
+            }
+            otherNames.sort(Comparator.naturalOrder());
+            for (String name : otherNames) {
+                emitter.add(inputDir.resolve(name));
+            }
+            emitter.flush();
+
+            logger.info("Scanned {} file(s) in {} ({} sorted run(s) on disk) in {} ms.", emitter.emitted, inputDir,
+                    spilledRuns.size(), (System.nanoTime() - start) / 1_000_000);
+            return emitter.emitted;
+        } finally {
+            if (spillDir != null) {
+                deleteSpillDir(spillDir);
+            }
+        }
+    }
+
+    // With a single format in the directory the name is rebuilt without a lookup; mixed formats are looked up
+    private void addTweetFiles(BatchEmitter emitter, long id) {
+        if (tweetFileCodecs.size() == 1) {
+            emitter.add(inputDir.resolve(tweetFileCodecs.iterator().next().fileName(id)));
+            return;
+        }
+        for (SpoolCodec codec : tweetFileCodecs) {
+            Path file = inputDir.resolve(codec.fileName(id));
+            if (Files.exists(file)) {
+                emitter.add(file);
+            }
+        }
+    }
+
+    private static Path spillRun(long[] run, int runSize, Path spillDir, int runIndex) throws IOException {
+        Arrays.sort(run, 0, runSize);
+        Path runFile = spillDir.resolve("run-" + runIndex + ".bin");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile)))) {
+            for (int i = 0; i < runSize; i++) {
+                out.writeLong(run[i]);
+            }
+        }
+        logger.debug("Spilled a sorted run of {} tweet IDs to {}.", runSize, runFile);
+        return runFile;
+    }
+
+    // k-way merge of the sorted runs, smallest head first
+    private void mergeRuns(List<Path> runFiles, BatchEmitter emitter) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(Comparator.comparingLong(RunReader::current));
+        try {
+            for (Path runFile : runFiles) {
+                RunReader reader = new RunReader(runFile);
+                if (reader.advance()) {
+                    heads.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!heads.isEmpty()) {
+                RunReader smallest = heads.poll();
+                emitter.addTweet(smallest.current());
+                if (smallest.advance()) {
+                    heads.add(smallest);
+                } else {
+                    smallest.close();
+                }
+            }
+        } finally {
+            for (RunReader reader : heads) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void deleteSpillDir(Path spillDir) {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spillDir);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary scan directory {}: {}", spillDir, e.getMessage());
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        private long current;
+
+        private RunReader(Path runFile) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile)));
+        }
+
+        private long current() { return current; }
+
+        private boolean advance() throws IOException {
+            try {
+                current = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private final class BatchEmitter {
+        private final Consumer<List<Path>> consumer;
+        private List<Path> batch = new ArrayList<>();
+        private int emitted;
+        private long lastTweetId = -1; // Both formats of a tweet are listed once per format, but emitted once
+
+        private BatchEmitter(Consumer<List<Path>> consumer) {
+            this.consumer = consumer;
+        }
+
+        private void addTweet(long id) {
+            if (id != lastTweetId) {
+                lastTweetId = id;
+                addTweetFiles(this, id);
+            }
+        }
+
+        private void add(Path file) {
+            batch.add(file);
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            emitted += batch.size();
+            consumer.accept(batch);
+            batch = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the input directory and hands new tweet JSON files to the {@link TweetProcessor}
+ * as soon as they are fully written, instead of waiting for the next cycle's full scan.
+ * <p>
+ * A file counts as fully written once its size and modification time have not changed for the
+ * settle delay. Files that settle together are processed together, in tweet ID order. If the
+ * watch service drops events ({@code OVERFLOW}), the whole directory is rescanned instead.
+ */
+public class InputDirectoryWatcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(InputDirectoryWatcher.class);
+
+    private final Path inputDir;
+    private final TweetProcessor tweetProcessor;
+    private final Duration settleDelay;
+    private final Map<Path, Observation> candidates = new HashMap<>(); // Only touched by the watcher thread
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    // Last seen size and modification time of a candidate, and since when they were unchanged
+    private record Observation(long size, long lastModified, long unchangedSinceNanos) {
+    }
+
+    /**
+     * @param inputDir The directory to watch.
+     * @param tweetProcessor Processes the settled files (and the full rescans).
+     * @param settleDelay How long a file must stay unchanged before it is processed.
+     */
+    public InputDirectoryWatcher(Path inputDir, TweetProcessor tweetProcessor, Duration settleDelay) {
+        this.inputDir = inputDir;
+        this.tweetProcessor = tweetProcessor;
+        this.settleDelay = settleDelay;
+    }
+
+    /**
+     * Registers the watch on the input directory and starts the watcher thread.
+     *
+     * @throws IOException If the directory cannot be watched.
+     */
+    public synchronized void start() throws IOException {
+        if (watcherThread != null) {
+            return;
+        }
+        watchService = inputDir.getFileSystem().newWatchService();
+        inputDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcherThread = new Thread(this::watchLoop, "input-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("Watching input directory {} for new tweet files (settle delay {} ms).",
+                inputDir.toAbsolutePath(), settleDelay.toMillis());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close(); // Wakes the watcher thread up with ClosedWatchServiceException
+        } catch (IOException e) {
+            logger.warn("Could not close the input directory watch service: {}", e.getMessage());
+        }
+        try {
+            watcherThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Stopped watching input directory {}.", inputDir.toAbsolutePath());
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                // Without candidates there is nothing to settle, so block until the next event
+                key = candidates.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(settleDelay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            try {
+                boolean overflow = false;
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (event.context() instanceof Path name && SpoolCodec.forFileName(name.toString()).isPresent()) {
+                            candidates.putIfAbsent(inputDir.resolve(name), null);
+                        }
+                    }
+                    if (!key.reset()) {
+                        logger.error("Input directory {} is no longer accessible. Stopping the watcher; files are picked up by the cycles only.",
+                                inputDir.toAbsolutePath());
+                        return;
+                    }
+                }
+                if (overflow) {
+                    logger.warn("Input directory watch overflowed (events were lost). Rescanning the whole directory.");
+                    candidates.clear();
+                    tweetProcessor.processInputFiles();
+                } else {
+                    processSettledFiles();
+                }
+            } catch (Exception e) {
+                // Keep watching; whatever was missed is found by the next full scan
+                logger.error("Error while processing watched input files: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void processSettledFiles() {
+        long now = System.nanoTime();
+        List<File> settled = new ArrayList<>();
+        Iterator<Map.Entry<Path, Observation>> iterator = candidates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Observation> entry = iterator.next();
+            Path file = entry.getKey();
+            long size;
+            long lastModified;
+            try {
+                size = Files.size(file);
+                lastModified = Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                // Already moved away (e.g. by a cycle's full scan)
+                iterator.remove();
+                continue;
+            }
+            Observation last = entry.getValue();
+            if (last == null || last.size() != size || last.lastModified() != lastModified) {
+                entry.setValue(new Observation(size, lastModified, now));
+            } else if (now - last.unchangedSinceNanos() >= settleDelay.toNanos()) {
+                // An empty file that stays empty is settled too: the processor moves it to failed/
+                settled.add(file.toFile());
+                iterator.remove();
+            }
+        }
+        if (!settled.isEmpty()) {
+            logger.info("{} new tweet file(s) settled in the input directory. Processing them now.", settled.size());
+            tweetProcessor.processFiles(settled);
+        }
+    }
+}
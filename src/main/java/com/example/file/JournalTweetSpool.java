@@ -0,0 +1,285 @@
+package com.example.file;
+
+import com.example.discord.DiscordNotifier;
+import com.example.twitter.TweetData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Spool backed by a {@link TweetJournal}: tweets are appended as compact JSON records to
+ * memory-mapped segments instead of one file per tweet, and the processed/failed state is kept
+ * as offsets in a small state file instead of moving files between directories.
+ * <p>
+ * Pending tweets are posted in tweet ID order. Everything before {@code consumedOffset} is handled;
+ * records after it that were handled out of offset order are listed in {@code doneOffsets}.
+ * Once a segment is fully consumed it is compacted: its failed records are copied to the
+ * failed journal and the segment is deleted.
+ * <p>
+ * Every append is forced to disk right away, so {@link #flush()} has nothing left to do.
+ */
+public class JournalTweetSpool implements TweetSpool {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalTweetSpool.class);
+    public static final String STATE_FILENAME = "JOURNAL_STATE.json";
+    private static final String FAILED_JOURNAL_DIR = "failed";
+    private static final int RECENT_ID_LIMIT = 1000; // Consumed IDs remembered to drop re-fetched tweets
+    // Tweets handled between two state writes; a crash re-posts at most these, which the
+    // Discord duplicate check (last 10 messages) catches
+    private static final int STATE_PERSIST_INTERVAL = 5;
+    private static final String MDC_KEY = "logFileName"; // Same per-tweet log as the file spool
+
+    private final TweetJournal journal;
+    private final TweetJournal failedJournal;
+    private final DiscordNotifier discordNotifier;
+    private final SpoolCodecs codecs;
+    private final Path stateFile;
+    private final ObjectMapper stateMapper = new ObjectMapper();
+    private final Set<Long> knownIds = new LinkedHashSet<>(); // Recently consumed and pending tweet IDs
+    // The consumption state, updated in place and written as a JournalState snapshot
+    private long consumedOffset;
+    private final Set<Long> doneOffsets = new HashSet<>();
+    private final Set<Long> failedOffsets = new LinkedHashSet<>();
+    private final ArrayDeque<Long> recentIds = new ArrayDeque<>();
+    private int unpersistedChanges;
+
+    /**
+     * Persisted consumption state.
+     *
+     * @param consumedOffset All records before this offset are processed or failed.
+     * @param doneOffsets    Records at or after consumedOffset that are already processed or failed.
+     * @param failedOffsets  Failed records not yet moved to the failed journal.
+     * @param recentIds      IDs of the most recently consumed tweets, oldest first.
+     */
+    record JournalState(long consumedOffset, List<Long> doneOffsets, List<Long> failedOffsets, List<Long> recentIds) {
+    }
+
+    private record Pending(long offset, long id) {
+    }
+
+    /**
+     * Opens (or creates) the journal spool.
+     *
+     * @param journalDir Directory for the segments and the state file.
+     * @param segmentSize Size of a journal segment in bytes.
+     * @param discordNotifier Posts the pending tweets.
+     * @param codecs Encodes the appended tweets.
+     * @throws IOException If the journal cannot be opened or its state file cannot be read.
+     */
+    public JournalTweetSpool(Path journalDir, int segmentSize, DiscordNotifier discordNotifier, SpoolCodecs codecs) throws IOException {
+        this.journal = new TweetJournal(journalDir, segmentSize);
+        this.failedJournal = new TweetJournal(journalDir.resolve(FAILED_JOURNAL_DIR), segmentSize);
+        this.discordNotifier = discordNotifier;
+        this.codecs = codecs;
+        this.stateFile = journalDir.resolve(STATE_FILENAME);
+
+        JournalState state;
+        try {
+            state = loadState();
+        } catch (IOException e) {
+            journal.close();
+            failedJournal.close();
+            throw e;
+        }
+        this.consumedOffset = state.consumedOffset();
+        doneOffsets.addAll(state.doneOffsets());
+        failedOffsets.addAll(state.failedOffsets());
+        recentIds.addAll(state.recentIds());
+        knownIds.addAll(recentIds);
+        List<Pending> pending = scanPending();
+        pending.forEach(p -> knownIds.add(p.id()));
+        persistStateIfChanged();
+        logger.info("JournalTweetSpool initialized in {}: {} pending tweet(s), consumed up to offset {}.",
+                journalDir.toAbsolutePath(), pending.size(), consumedOffset);
+    }
+
+    @Override
+    public synchronized boolean write(TweetData tweetData) {
+        if (knownIds.contains(tweetData.getId())) {
+            logger.info("Tweet {} is already in the journal. Skipping.", tweetData.getId());
+            return true;
+        }
+        try {
+            // Same JSON shape as the per-tweet files, without the pretty printing
+            long offset = journal.append(codecs.encodeRecord(SpoolCodec.JSON, tweetData));
+            knownIds.add(tweetData.getId());
+            logger.info("Appended tweet {} to the journal at offset {}.", tweetData.getId(), offset);
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to append tweet {} to the journal: {}", tweetData.getId(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void processPending() {
+        List<Pending> pending = scanPending();
+        if (pending.isEmpty()) {
+            logger.info("No pending tweets in the journal.");
+            compact();
+            return;
+        }
+        pending.sort(Comparator.comparingLong(Pending::id));
+        logger.info("Found {} pending tweet(s) in the journal. Processing them in ID order.", pending.size());
+
+        int failed = 0;
+        for (Pending next : pending) {
+            if (!processRecord(next)) {
+                failed++;
+            }
+        }
+        logger.info("Finished processing journal batch: {} processed, {} failed.", pending.size() - failed, failed);
+        persistStateIfChanged();
+        // Every pending tweet is consumed now, so only the recent IDs are still needed for the duplicate check
+        knownIds.clear();
+        knownIds.addAll(recentIds);
+        compact();
+    }
+
+    @Override
+    public synchronized void close() {
+        persistStateIfChanged();
+        journal.close();
+        failedJournal.close();
+    }
+
+    // Posts one record and records the outcome; returns false if it failed
+    private boolean processRecord(Pending pending) {
+        String sourceName = "journal@" + pending.offset();
+        MDC.put(MDC_KEY, "tweet_" + pending.id());
+        boolean success = false;
+        try {
+            logger.info("Starting processing for tweet {} from {}", pending.id(), sourceName);
+            Optional<TweetJournal.Entry> entry = journal.read(pending.offset());
+            if (entry.isPresent()) {
+                success = discordNotifier.consume(entry.get().payload(), SpoolCodec.JSON, sourceName);
+            }
+        } catch (Exception e) {
+            logger.error("Unexpected error processing tweet {} from {}: {}", pending.id(), sourceName, e.getMessage(), e);
+        } finally {
+            markDone(pending, success);
+            logger.info("Finished processing attempt for tweet {} ({}).", pending.id(), success ? "processed" : "failed");
+            MDC.remove(MDC_KEY);
+        }
+        return success;
+    }
+
+    private void markDone(Pending pending, boolean success) {
+        doneOffsets.add(pending.offset());
+        if (!success) {
+            failedOffsets.add(pending.offset());
+        }
+        recentIds.addLast(pending.id());
+        if (recentIds.size() > RECENT_ID_LIMIT) {
+            recentIds.removeFirst();
+        }
+
+        // Move the watermark over the contiguous run of handled records
+        Optional<TweetJournal.Entry> entry = journal.read(consumedOffset);
+        while (entry.isPresent() && doneOffsets.remove(entry.get().offset())) {
+            consumedOffset = entry.get().nextOffset();
+            entry = journal.read(consumedOffset);
+        }
+        if (++unpersistedChanges >= STATE_PERSIST_INTERVAL) {
+            persistStateIfChanged();
+        }
+    }
+
+    // Lists the records after the watermark that are not handled yet
+    private List<Pending> scanPending() {
+        List<Pending> pending = new ArrayList<>();
+        Optional<TweetJournal.Entry> entry = journal.read(consumedOffset);
+        while (entry.isPresent()) {
+            TweetJournal.Entry current = entry.get();
+            if (!doneOffsets.contains(current.offset())) {
+                try {
+                    pending.add(new Pending(current.offset(), SpoolCodec.JSON.decodeKey(current.payload()).id()));
+                } catch (IOException e) {
+                    logger.error("Journal record at offset {} is not valid tweet JSON: {}. Marking it as failed.", current.offset(), e.getMessage());
+                    markDone(new Pending(current.offset(), 0), false);
+                }
+            }
+            entry = journal.read(current.nextOffset());
+        }
+        return pending;
+    }
+
+    // Copies the failed records of fully consumed segments to the failed journal, then deletes those segments
+    private void compact() {
+        List<TweetJournal.Entry> compactable = journal.entriesOfSegmentsBefore(consumedOffset);
+        if (compactable.isEmpty()) {
+            return;
+        }
+        List<TweetJournal.Entry> failedEntries = new ArrayList<>();
+        for (TweetJournal.Entry entry : compactable) {
+            if (failedOffsets.contains(entry.offset())) {
+                failedEntries.add(entry);
+            }
+        }
+        try {
+            for (TweetJournal.Entry entry : failedEntries) {
+                failedJournal.append(entry.payload());
+            }
+        } catch (IOException e) {
+            logger.error("Could not copy failed records to the failed journal: {}. Skipping compaction.", e.getMessage(), e);
+            return;
+        }
+        failedEntries.forEach(entry -> failedOffsets.remove(entry.offset()));
+        unpersistedChanges++;
+        persistStateIfChanged();
+        int deleted = journal.deleteSegmentsBefore(consumedOffset);
+        // Failed records behind an unreadable record were not listed; they are in the .corrupt segment now
+        long startOffset = journal.startOffset();
+        if (failedOffsets.removeIf(failedOffset -> failedOffset < startOffset)) {
+            logger.warn("Some failed records could not be read from the journal and were not kept in the failed journal.");
+            unpersistedChanges++;
+            persistStateIfChanged();
+        }
+        logger.info("Compacted journal: {} segment(s) with {} record(s) deleted, {} failed record(s) kept in the failed journal.",
+                deleted, compactable.size(), failedEntries.size());
+    }
+
+    // An unreadable state is an error: falling back to the journal start would post every record again
+    private JournalState loadState() throws IOException {
+        if (!Files.exists(stateFile)) {
+            return new JournalState(journal.startOffset(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+        try {
+            JournalState loaded = stateMapper.readValue(stateFile.toFile(), JournalState.class);
+            return new JournalState(loaded.consumedOffset(),
+                    loaded.doneOffsets() != null ? loaded.doneOffsets() : new ArrayList<>(),
+                    loaded.failedOffsets() != null ? loaded.failedOffsets() : new ArrayList<>(),
+                    loaded.recentIds() != null ? loaded.recentIds() : new ArrayList<>());
+        } catch (IOException e) {
+            throw new IOException("Could not read journal state " + stateFile.toAbsolutePath() + ": " + e.getMessage()
+                    + ". Restore it or delete it to post the whole journal again.", e);
+        }
+    }
+
+    // Replaced atomically, so neither a crash nor a power loss leaves a half-written state behind
+    private void persistStateIfChanged() {
+        if (unpersistedChanges == 0) {
+            return;
+        }
+        unpersistedChanges = 0;
+        JournalState state = new JournalState(consumedOffset, new ArrayList<>(doneOffsets), new ArrayList<>(failedOffsets), new ArrayList<>(recentIds));
+        try {
+            AtomicFiles.replace(stateFile, out -> stateMapper.writeValue(out, state));
+        } catch (IOException e) {
+            logger.error("Could not persist journal state to {}: {}", stateFile.toAbsolutePath(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.file;
+
+/**
+ * Bloom filter over primitive longs (10 bits and 7 hash functions per expected entry, about 1%
+ * false positives). Answers "definitely not contained" without touching the backing set.
+ */
+final class LongBloomFilter {
+
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_FUNCTIONS = 7;
+    private static final int MIN_BITS = 1 << 16;
+
+    private final long[] words;
+    private final long bitMask;
+
+    /**
+     * @param expectedEntries Number of entries the filter is sized for.
+     */
+    LongBloomFilter(long expectedEntries) {
+        long bits = Long.highestOneBit(Math.max(MIN_BITS, expectedEntries * BITS_PER_ENTRY - 1)) << 1;
+        this.words = new long[(int) (bits >>> 6)];
+        this.bitMask = bits - 1;
+    }
+
+    void add(long value) {
+        long hash = mix(value);
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long value) {
+        long hash = mix(value);
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long sizeInBytes() { return words.length * (long) Long.BYTES; }
+
+    // SplitMix64 finalizer: sequential tweet IDs spread over all bits
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.file;
+
+import com.example.twitter.SnowflakeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Folds old tweet files from processed/ (flat or sharded) into {@link ArchiveStore} segments and
+ * deletes them afterwards, so the directory only keeps recent tweets as individual files.
+ * <p>
+ * A tweet is old once its Snowflake timestamp (or, for other IDs, the file's modification time)
+ * is older than the minimum age. Files are archived in tweet ID order, but a later run can
+ * archive older IDs (e.g. a retried tweet processed late), so segment ranges may overlap; lookups
+ * check every segment whose range covers the ID. A file is deleted only after its segment is on
+ * disk; a file left behind by an interrupted run is found in the archive on the next run and just
+ * deleted. The processed ID index keeps the archived IDs, so archived tweets are still recognized
+ * as duplicates.
+ * <p>
+ * Usage: {@code java -cp <jar> com.example.file.ProcessedArchiveCompactor [base_data_directory_path] [min_age_days]}
+ * compacts right away; {@code ... ProcessedArchiveCompactor <base_data_directory_path> get <tweet_id>}
+ * prints an archived tweet file as JSON.
+ */
+public class ProcessedArchiveCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedArchiveCompactor.class);
+    private static final String LAST_RUN_MARKER = ".last-compaction"; // Its modification time is the last run
+    private static final Duration RUN_INTERVAL = Duration.ofDays(1);
+    private static final int MAX_TWEETS_PER_SEGMENT = 10_000;
+    private static final int MAX_SOURCE_DEPTH = 3; // <dir>/<yyyy>/<MM>/<file> in the sharded layout
+
+    private final DirectoryManager directoryManager;
+    private final ArchiveStore archive;
+    private final Duration minAge;
+
+    /**
+     * @param directoryManager Provides the processed directory.
+     * @param archive The archive to write the segments to.
+     * @param minAge Processed tweets younger than this are left alone.
+     */
+    public ProcessedArchiveCompactor(DirectoryManager directoryManager, ArchiveStore archive, Duration minAge) {
+        this.directoryManager = directoryManager;
+        this.archive = archive;
+        this.minAge = minAge;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String basePath = args.length >= 1 ? args[0] : DirectoryManager.basePathRelativeToJar();
+        DirectoryManager directoryManager = new DirectoryManager(basePath);
+        ArchiveStore archive = new ArchiveStore(directoryManager.getArchiveDir());
+        if (args.length >= 3 && "get".equals(args[1])) {
+            Optional<ArchiveStore.ArchivedTweet> tweet = archive.read(Long.parseLong(args[2]));
+            if (tweet.isEmpty()) {
+                logger.error("Tweet {} is not in the archive.", args[2]);
+                System.exit(1);
+            }
+            byte[] content = tweet.get().content();
+            System.out.println(SpoolCodec.forContent(content).toJson(content));
+            return;
+        }
+        int minAgeDays = args.length >= 2 ? Integer.parseInt(args[1]) : 30;
+        new ProcessedArchiveCompactor(directoryManager, archive, Duration.ofDays(minAgeDays)).compact();
+    }
+
+    /**
+     * Compacts unless the last run was less than a day ago. Cheap to call after every cycle.
+     */
+    public void compactIfDue() {
+        Path marker = directoryManager.getArchiveDir().resolve(LAST_RUN_MARKER);
+        try {
+            if (Files.exists(marker)
+                    && Files.getLastModifiedTime(marker).toInstant().isAfter(Instant.now().minus(RUN_INTERVAL))) {
+                logger.debug("Archive compaction ran less than {} ago. Skipping.", RUN_INTERVAL);
+                return;
+            }
+            compact();
+            Files.createDirectories(marker.getParent());
+            Files.write(marker, new byte[0]);
+            Files.setLastModifiedTime(marker, FileTime.from(Instant.now()));
+        } catch (InterruptedIOException e) {
+            logger.info("{}. Continuing with the next run.", e.getMessage());
+        } catch (IOException e) {
+            logger.error("Archive compaction failed: {}. Retrying with the next cycle.", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Archives and deletes every processed tweet file older than the minimum age.
+     *
+     * @return The number of tweet files removed from processed/.
+     * @throws IOException If processed/ cannot be listed or a segment cannot be written.
+     */
+    public int compact() throws IOException {
+        long start = System.nanoTime();
+        Path processedDir = directoryManager.getProcessedDir();
+        long[] ids = findCompactableIds(processedDir, Instant.now().minus(minAge));
+        logger.info("Compacting {} processed tweet file(s) older than {} days into {}...", ids.length, minAge.toDays(),
+                directoryManager.getArchiveDir().toAbsolutePath());
+
+        int removed = 0;
+        List<ArchiveStore.TweetFile> segment = new ArrayList<>();
+        List<ArchiveStore.TweetFile> otherFormats = new ArrayList<>(); // Deleted together with the segment
+        for (long id : ids) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Files of the unfinished segment are still in processed/ and archived by the next run
+                throw new InterruptedIOException("Archive compaction interrupted after " + removed + " tweet file(s)");
+            }
+            List<ArchiveStore.TweetFile> files = findTweetFiles(processedDir, id);
+            if (files.isEmpty()) {
+                continue;
+            }
+            if (archive.contains(id)) {
+                // Archived by an interrupted earlier run
+                removed += deleteAll(files);
+                continue;
+            }
+            // Both formats of a tweet hold the same tweet: the first is archived, all are deleted
+            segment.add(files.get(0));
+            otherFormats.addAll(files.subList(1, files.size()));
+            if (segment.size() == MAX_TWEETS_PER_SEGMENT) {
+                removed += archiveAndDelete(segment, otherFormats);
+                segment.clear();
+                otherFormats.clear();
+            }
+        }
+        removed += archiveAndDelete(segment, otherFormats);
+        if (removed > 0) {
+            deleteEmptyShards(processedDir);
+        }
+        logger.info("Archive compaction finished: {} tweet file(s) removed from processed/ in {} ms.", removed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return removed;
+    }
+
+    private List<ArchiveStore.TweetFile> findTweetFiles(Path processedDir, long id) {
+        List<ArchiveStore.TweetFile> files = new ArrayList<>(1);
+        for (SpoolCodec codec : SpoolCodec.values()) {
+            directoryManager.findArchivedFile(processedDir, codec.fileName(id))
+                    .ifPresent(file -> files.add(new ArchiveStore.TweetFile(id, file)));
+        }
+        return files;
+    }
+
+    private int archiveAndDelete(List<ArchiveStore.TweetFile> segment, List<ArchiveStore.TweetFile> otherFormats) throws IOException {
+        if (segment.isEmpty()) {
+            return 0;
+        }
+        archive.writeSegment(segment);
+        return deleteAll(segment) + deleteAll(otherFormats);
+    }
+
+    // Sorted, distinct IDs of the tweet files that are old enough; a file can be in both layouts while they are migrated
+    private static long[] findCompactableIds(Path processedDir, Instant cutoff) throws IOException {
+        long[] ids = new long[1024];
+        int count = 0;
+        if (!Files.isDirectory(processedDir)) {
+            return new long[0];
+        }
+        try (Stream<Path> files = Files.find(processedDir, MAX_SOURCE_DEPTH, (path, attributes) -> {
+            if (!attributes.isRegularFile()) {
+                return false;
+            }
+            OptionalLong id = InputDirectoryScanner.parseTweetId(path.getFileName().toString());
+            if (id.isEmpty()) {
+                return false;
+            }
+            Instant created = SnowflakeId.timestampOf(id.getAsLong()).orElse(attributes.lastModifiedTime().toInstant());
+            return created.isBefore(cutoff);
+        })) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = InputDirectoryScanner.parseTweetId(iterator.next().getFileName().toString()).getAsLong();
+            }
+        }
+        return Arrays.stream(ids, 0, count).sorted().distinct().toArray();
+    }
+
+    private static int deleteAll(List<ArchiveStore.TweetFile> tweets) {
+        int deleted = 0;
+        for (ArchiveStore.TweetFile tweet : tweets) {
+            try {
+                Files.deleteIfExists(tweet.file());
+                deleted++;
+            } catch (IOException e) {
+                logger.warn("Could not delete archived tweet file {}: {}", tweet.file(), e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    // Removes the month (and then year) buckets emptied by the compaction
+    private static void deleteEmptyShards(Path processedDir) throws IOException {
+        List<Path> directories;
+        try (Stream<Path> paths = Files.find(processedDir, 2, (path, attributes) -> attributes.isDirectory())) {
+            directories = paths.filter(path -> !path.equals(processedDir))
+                    .sorted((a, b) -> b.getNameCount() - a.getNameCount())
+                    .toList();
+        }
+        for (Path directory : directories) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (DirectoryNotEmptyException e) {
+                // Still holds recent tweets
+            } catch (IOException e) {
+                logger.debug("Could not delete empty shard {}: {}", directory, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package com.example.file;
+
+import com.example.twitter.SnowflakeId;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deletes old files from bin/, processed/, failed/ and the per-tweet logs in logs/, by age and
+ * by a byte quota per directory.
+ * <p>
+ * The sweep works on buckets: the directory itself and, in the sharded layout, its month buckets
+ * ({@code <yyyy>/<MM>}) and {@code other/}. The file count, bytes, oldest file and highest tweet
+ * ID of every bucket are kept in RETENTION_STATE.json, so a bucket whose modification time did
+ * not change is not even listed. A changed bucket is listed, but only the tweet files with an ID
+ * above the highest known one are stat'ed; if the count does not add up (files were removed or
+ * older IDs added), the bucket is rescanned completely, as is every bucket once a week. Tweet
+ * file ages come from the Snowflake ID in the name, so the age limit needs no stat either.
+ * <p>
+ * Files are evicted oldest first: everything older than the age limit, then, while the directory
+ * is over its quota, the oldest remaining files. A month bucket that goes as a whole is deleted
+ * without looking at its files' sizes. In logs/ only the per-tweet logs ({@code tweet_<id>.log})
+ * are touched; logback rolls application.log itself. The tweet ID indexes keep the IDs of evicted
+ * files, so evicted tweets are still recognized as duplicates. In a dry run nothing is deleted and
+ * the report lists what would have been.
+ * <p>
+ * Usage: {@code java -cp <jar> com.example.file.RetentionSweeper <base_data_directory_path>
+ * <directory>:<max_age_days>:<max_mb>... [--dry-run]}, e.g. {@code processed:90:500 logs:30:0}
+ * (0 = no limit); sweeps right away and prints the report.
+ */
+public class RetentionSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionSweeper.class);
+    private static final Pattern TWEET_FILE_NAME = Pattern.compile("tweet_(\\d{1,19})\\.[a-z]+"); // .json, .smile and .log
+    private static final Pattern YEAR_SHARD = Pattern.compile("\\d{4}");
+    private static final Pattern MONTH_SHARD = Pattern.compile("\\d{2}");
+    private static final String ROOT_BUCKET = "";
+    private static final Duration FULL_SCAN_INTERVAL = Duration.ofDays(7);
+    private static final long MB = 1024L * 1024L;
+
+    private final Path stateFile;
+    private final Map<String, Target> targets;
+    private final Duration interval;
+    private final boolean dryRun;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile State state; // Each daemon-mode sweep runs on a new thread
+
+    /**
+     * Limits of one directory.
+     *
+     * @param maxAge   Files older than this are evicted, or null for no age limit.
+     * @param maxBytes The oldest files are evicted while the directory is larger, or 0 for no quota.
+     */
+    public record Policy(Duration maxAge, long maxBytes) {
+
+        /**
+         * @param maxAgeDays Age limit in days, 0 for none.
+         * @param maxMb Quota in MB, 0 for none.
+         * @return The policy.
+         */
+        public static Policy of(int maxAgeDays, int maxMb) {
+            return new Policy(maxAgeDays > 0 ? Duration.ofDays(maxAgeDays) : null, Math.max(0, maxMb) * MB);
+        }
+
+        public boolean isUnlimited() { return maxAge == null && maxBytes <= 0; }
+    }
+
+    /**
+     * Outcome of one directory's sweep.
+     *
+     * @param directory      The directory name.
+     * @param files          Files left (or, in a dry run, that would be left).
+     * @param bytes          Bytes left.
+     * @param ageFiles       Files evicted because of their age.
+     * @param ageBytes       Bytes of those files.
+     * @param quotaFiles     Files evicted to get below the quota.
+     * @param quotaBytes     Bytes of those files.
+     * @param bucketsListed  Buckets that were listed.
+     * @param bucketsSkipped Buckets whose modification time was unchanged.
+     * @param filesStated    Files whose size or modification time was read.
+     */
+    public record DirectoryReport(String directory, long files, long bytes, long ageFiles, long ageBytes,
+                                  long quotaFiles, long quotaBytes, int bucketsListed, int bucketsSkipped, long filesStated) {
+    }
+
+    /**
+     * Inventory of one bucket.
+     *
+     * @param modifiedMillis Modification time of the bucket directory when it was listed (-1 forces a listing).
+     * @param files          Tracked files in the bucket.
+     * @param bytes          Their total size.
+     * @param oldestMillis   Creation time of the oldest of them (Long.MAX_VALUE if none).
+     * @param maxScannedId   Highest tweet ID whose size is included.
+     */
+    record BucketState(long modifiedMillis, int files, long bytes, long oldestMillis, long maxScannedId) {
+    }
+
+    /**
+     * Persisted sweep state.
+     *
+     * @param lastSweepMillis    Start of the last sweep.
+     * @param lastFullScanMillis Start of the last sweep that rescanned every bucket.
+     * @param directories        Bucket inventory per directory name, keyed by bucket path ("" for the directory itself).
+     */
+    record State(long lastSweepMillis, long lastFullScanMillis, Map<String, Map<String, BucketState>> directories) {
+    }
+
+    private record Target(String name, Path dir, Policy policy, boolean tweetFilesOnly) {
+    }
+
+    // A file of a listed bucket; time is its Snowflake timestamp or modification time, size -1 until stat'ed
+    private record FileEntry(Path path, long id, long timeMillis, long size) {
+    }
+
+    private static final class Counters {
+        private int bucketsListed;
+        private int bucketsSkipped;
+        private long filesStated;
+        private long ageFiles;
+        private long ageBytes;
+        private long quotaFiles;
+        private long quotaBytes;
+    }
+
+    /**
+     * @param directoryManager Provides the directories and the state file.
+     * @param policies Policy per directory name ("bin", "processed", "failed", "logs"); unlimited ones are skipped.
+     * @param interval Minimum time between two sweeps of {@link #sweepIfDue}.
+     * @param dryRun Only report what would be evicted.
+     */
+    public RetentionSweeper(DirectoryManager directoryManager, Map<String, Policy> policies, Duration interval, boolean dryRun) {
+        this.stateFile = directoryManager.getRetentionStateFile();
+        this.interval = interval;
+        this.dryRun = dryRun;
+        Map<String, Path> directories = Map.of("bin", directoryManager.getBinDir(), "processed", directoryManager.getProcessedDir(),
+                "failed", directoryManager.getFailedDir(), "logs", directoryManager.getLogsDir());
+        this.targets = new LinkedHashMap<>();
+        for (String name : List.of("bin", "processed", "failed", "logs")) {
+            Policy policy = policies.get(name);
+            if (policy != null && !policy.isUnlimited()) {
+                targets.put(name, new Target(name, directories.get(name), policy, "logs".equals(name)));
+            }
+        }
+        this.state = loadState();
+        logger.info("RetentionSweeper initialized for {} (interval {} minutes, dry run: {}).", targets.keySet(), interval.toMinutes(), dryRun);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RetentionSweeper <base_data_directory_path> <directory>:<max_age_days>:<max_mb>... [--dry-run]");
+            System.exit(2);
+        }
+        Map<String, Policy> policies = new HashMap<>();
+        boolean dryRun = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("--dry-run".equals(args[i])) {
+                dryRun = true;
+                continue;
+            }
+            String[] parts = args[i].split(":");
+            if (parts.length != 3) {
+                System.err.println("Invalid limit '" + args[i] + "'. Expected <directory>:<max_age_days>:<max_mb>.");
+                System.exit(2);
+            }
+            policies.put(parts[0], Policy.of(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+        }
+        // The layout does not matter: the sweep finds the month buckets itself
+        new RetentionSweeper(new DirectoryManager(args[0]), policies, Duration.ZERO, dryRun).sweep();
+    }
+
+    /**
+     * Sweeps unless the last sweep started less than the interval ago. Cheap to call after every cycle.
+     */
+    public void sweepIfDue() {
+        if (!isDue()) {
+            logger.debug("Retention sweep ran less than {} minutes ago. Skipping.", interval.toMinutes());
+            return;
+        }
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            logger.error("Retention sweep failed: {}. Retrying with the next cycle.", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Scans the inventory and evicts what the policies require.
+     *
+     * @return One report per swept directory.
+     */
+    public List<DirectoryReport> sweep() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("A retention sweep is already running. Skipping.");
+            return List.of();
+        }
+        try {
+            long start = System.nanoTime();
+            Instant now = Instant.now();
+            boolean fullScan = now.toEpochMilli() - state.lastFullScanMillis() >= FULL_SCAN_INTERVAL.toMillis();
+            Map<String, Map<String, BucketState>> inventory = new HashMap<>(state.directories());
+            List<DirectoryReport> reports = new ArrayList<>();
+            for (Target target : targets.values()) {
+                Counters counters = new Counters();
+                try {
+                    TreeMap<String, BucketState> buckets = scan(target, inventory.getOrDefault(target.name(), Map.of()), fullScan, counters);
+                    TreeMap<String, BucketState> remaining = evict(target, new TreeMap<>(buckets), now, counters);
+                    // A dry run keeps the scanned inventory: nothing was deleted
+                    inventory.put(target.name(), dryRun ? buckets : remaining);
+                    DirectoryReport report = report(target, dryRun ? simulatedRemaining(buckets, counters) : remaining, counters);
+                    reports.add(report);
+                    logReport(target, report);
+                } catch (IOException e) {
+                    logger.error("Retention sweep of {} failed: {}. Retrying with the next sweep.", target.dir(), e.getMessage(), e);
+                }
+            }
+            state = new State(now.toEpochMilli(), fullScan ? now.toEpochMilli() : state.lastFullScanMillis(), inventory);
+            saveState();
+            logger.info("Retention sweep finished in {} ms{}.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    fullScan ? " (full rescan)" : "");
+            return reports;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private boolean isDue() {
+        return !targets.isEmpty() && Instant.now().toEpochMilli() - state.lastSweepMillis() >= interval.toMillis();
+    }
+
+    // --- Inventory ---
+
+    private TreeMap<String, BucketState> scan(Target target, Map<String, BucketState> known, boolean fullScan, Counters counters) throws IOException {
+        TreeMap<String, BucketState> buckets = new TreeMap<>();
+        Path dir = target.dir();
+        if (!Files.isDirectory(dir)) {
+            return buckets;
+        }
+        BucketState knownRoot = known.get(ROOT_BUCKET);
+        long rootModified = Files.getLastModifiedTime(dir).toMillis();
+        TreeSet<String> shards = new TreeSet<>(); // Year directories and other/
+        if (!fullScan && knownRoot != null && knownRoot.modifiedMillis() == rootModified) {
+            // New year directories would have changed the root, so the known buckets are complete
+            buckets.put(ROOT_BUCKET, knownRoot);
+            counters.bucketsSkipped++;
+            known.keySet().stream().filter(name -> !name.isEmpty()).map(name -> name.split("/")[0]).forEach(shards::add);
+        } else {
+            buckets.put(ROOT_BUCKET, scanBucket(target, dir, true, rootModified, fullScan ? null : knownRoot, counters, shards));
+        }
+        for (String shard : shards) {
+            Path shardDir = dir.resolve(shard);
+            if (DirectoryManager.OTHER_SHARD.equals(shard)) {
+                scanKnownBucket(target, shardDir, shard, known, fullScan, counters).ifPresent(state -> buckets.put(shard, state));
+                continue;
+            }
+            try (DirectoryStream<Path> months = Files.newDirectoryStream(shardDir)) {
+                for (Path monthDir : months) {
+                    String name = shard + "/" + monthDir.getFileName();
+                    if (MONTH_SHARD.matcher(monthDir.getFileName().toString()).matches()) {
+                        scanKnownBucket(target, monthDir, name, known, fullScan, counters).ifPresent(state -> buckets.put(name, state));
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // Removed since it was recorded
+            }
+        }
+        return buckets;
+    }
+
+    private Optional<BucketState> scanKnownBucket(Target target, Path bucketDir, String name, Map<String, BucketState> known,
+                                                            boolean fullScan, Counters counters) throws IOException {
+        if (!Files.isDirectory(bucketDir)) {
+            return Optional.empty();
+        }
+        long modified = Files.getLastModifiedTime(bucketDir).toMillis();
+        BucketState knownBucket = known.get(name);
+        if (!fullScan && knownBucket != null && knownBucket.modifiedMillis() == modified) {
+            counters.bucketsSkipped++;
+            return Optional.of(knownBucket);
+        }
+        return Optional.of(scanBucket(target, bucketDir, false, modified, fullScan ? null : knownBucket, counters, null));
+    }
+
+    // Lists the bucket; stats only new tweet files if the known inventory still adds up, otherwise every file
+    private BucketState scanBucket(Target target, Path bucketDir, boolean root, long modified, BucketState known,
+                                   Counters counters, TreeSet<String> shards) throws IOException {
+        counters.bucketsListed++;
+        List<Path> tweetFiles = new ArrayList<>();
+        List<Path> otherFiles = new ArrayList<>();
+        long[] ids = new long[0];
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(bucketDir)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                if (root && (YEAR_SHARD.matcher(fileName).matches() || DirectoryManager.OTHER_SHARD.equals(fileName))) {
+                    if (Files.isDirectory(path)) {
+                        shards.add(fileName);
+                        continue;
+                    }
+                }
+                OptionalLong id = tweetIdOf(fileName);
+                if (id.isPresent()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+                    }
+                    ids[count++] = id.getAsLong();
+                    tweetFiles.add(path);
+                } else if (!target.tweetFilesOnly()) {
+                    otherFiles.add(path);
+                }
+            }
+        }
+
+        if (known != null && otherFiles.isEmpty()) {
+            int added = 0;
+            long addedBytes = 0;
+            long oldest = known.oldestMillis();
+            long maxId = known.maxScannedId();
+            for (int i = 0; i < count; i++) {
+                if (ids[i] > known.maxScannedId()) {
+                    FileEntry entry = stat(tweetFiles.get(i), ids[i], counters);
+                    if (entry != null) {
+                        added++;
+                        addedBytes += entry.size();
+                        oldest = Math.min(oldest, entry.timeMillis());
+                        maxId = Math.max(maxId, ids[i]);
+                    }
+                }
+            }
+            if (known.files() + added == count) {
+                return new BucketState(modified, count, known.bytes() + addedBytes, oldest, maxId);
+            }
+            logger.debug("Inventory of {} does not add up ({} + {} files known, {} listed). Rescanning it.", bucketDir,
+                    known.files(), added, count);
+        }
+
+        int files = 0;
+        long bytes = 0;
+        long oldest = Long.MAX_VALUE;
+        long maxId = 0;
+        for (int i = 0; i < count; i++) {
+            FileEntry entry = stat(tweetFiles.get(i), ids[i], counters);
+            if (entry != null) {
+                files++;
+                bytes += entry.size();
+                oldest = Math.min(oldest, entry.timeMillis());
+                maxId = Math.max(maxId, ids[i]);
+            }
+        }
+        for (Path path : otherFiles) {
+            FileEntry entry = stat(path, 0, counters);
+            if (entry != null) {
+                files++;
+                bytes += entry.size();
+                oldest = Math.min(oldest, entry.timeMillis());
+            }
+        }
+        return new BucketState(modified, files, bytes, oldest, maxId);
+    }
+
+    // --- Eviction ---
+
+    private TreeMap<String, BucketState> evict(Target target, TreeMap<String, BucketState> buckets, Instant now, Counters counters) throws IOException {
+        Policy policy = target.policy();
+        List<String> oldestFirst = new ArrayList<>(buckets.keySet());
+        oldestFirst.sort(Comparator.comparingLong(name -> buckets.get(name).oldestMillis()));
+
+        long cutoff = policy.maxAge() != null ? now.minus(policy.maxAge()).toEpochMilli() : Long.MIN_VALUE;
+        if (policy.maxAge() != null) {
+            for (String name : oldestFirst) {
+                BucketState bucket = buckets.get(name);
+                if (bucket == null || bucket.files() == 0 || bucket.oldestMillis() >= cutoff) {
+                    continue;
+                }
+                long[] evicted = monthEndMillis(name) <= cutoff
+                        ? evictBucket(target, name, bucket, buckets)
+                        : evictFiles(target, name, bucket, buckets, Long.MIN_VALUE, cutoff, Long.MAX_VALUE, counters);
+                counters.ageFiles += evicted[0];
+                counters.ageBytes += evicted[1];
+            }
+        }
+
+        if (policy.maxBytes() > 0) {
+            oldestFirst = new ArrayList<>(buckets.keySet());
+            oldestFirst.sort(Comparator.comparingLong(name -> buckets.get(name).oldestMillis()));
+            long total = buckets.values().stream().mapToLong(BucketState::bytes).sum();
+            for (String name : oldestFirst) {
+                BucketState bucket = buckets.get(name);
+                if (total <= policy.maxBytes()) {
+                    break;
+                }
+                if (bucket == null || bucket.files() == 0) {
+                    continue;
+                }
+                long[] evicted = monthEndMillis(name) != Long.MAX_VALUE && total - bucket.bytes() >= policy.maxBytes()
+                        ? evictBucket(target, name, bucket, buckets)
+                        : evictFiles(target, name, bucket, buckets, cutoff, Long.MAX_VALUE, total - policy.maxBytes(), counters);
+                counters.quotaFiles += evicted[0];
+                counters.quotaBytes += evicted[1];
+                total -= evicted[1];
+            }
+        }
+        return buckets;
+    }
+
+    // Deletes every file of a month bucket; its size is known from the inventory
+    private long[] evictBucket(Target target, String name, BucketState bucket, Map<String, BucketState> buckets) throws IOException {
+        Path bucketDir = target.dir().resolve(name);
+        if (!dryRun) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(bucketDir)) {
+                for (Path path : stream) {
+                    if (!target.tweetFilesOnly() || tweetIdOf(path.getFileName().toString()).isPresent()) {
+                        deleteQuietly(path);
+                    }
+                }
+            }
+            deleteEmptyDirectory(bucketDir);
+            deleteEmptyDirectory(bucketDir.getParent());
+        }
+        buckets.remove(name);
+        logger.debug("{} bucket {} of {} ({} files, {} bytes).", dryRun ? "Would evict" : "Evicted", name, target.name(),
+                bucket.files(), bucket.bytes());
+        return new long[]{bucket.files(), bucket.bytes()};
+    }
+
+    // Deletes the files of a bucket oldest first while they are older than the cutoff, until bytesToFree are freed.
+    // Files older than evictedBeforeMillis were already evicted by age; in a dry run they are still there.
+    private long[] evictFiles(Target target, String name, BucketState bucket, Map<String, BucketState> buckets,
+                              long evictedBeforeMillis, long cutoffMillis, long bytesToFree, Counters counters) throws IOException {
+        Path bucketDir = name.isEmpty() ? target.dir() : target.dir().resolve(name);
+        List<FileEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(bucketDir)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                OptionalLong id = tweetIdOf(fileName);
+                if (id.isPresent() && SnowflakeId.isSnowflake(id.getAsLong())) {
+                    entries.add(new FileEntry(path, id.getAsLong(), SnowflakeId.timestampOf(id.getAsLong()).orElseThrow().toEpochMilli(), -1));
+                } else if (id.isPresent() || (!target.tweetFilesOnly() && Files.isRegularFile(path))) {
+                    FileEntry entry = stat(path, id.orElse(0), counters);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(FileEntry::timeMillis).thenComparingLong(FileEntry::id));
+
+        long files = 0;
+        long bytes = 0;
+        int index = 0;
+        for (; index < entries.size() && bytes < bytesToFree; index++) {
+            FileEntry entry = entries.get(index);
+            if (entry.timeMillis() >= cutoffMillis) {
+                break;
+            }
+            if (entry.timeMillis() < evictedBeforeMillis) {
+                continue;
+            }
+            long size = entry.size() >= 0 ? entry.size() : sizeOf(entry.path(), counters);
+            if (size < 0) {
+                continue; // Already gone
+            }
+            if (!dryRun && !deleteQuietly(entry.path())) {
+                continue;
+            }
+            files++;
+            bytes += size;
+        }
+        long oldest = index < entries.size() ? entries.get(index).timeMillis() : Long.MAX_VALUE;
+        // Listed again next time, which also picks up files added during the sweep
+        buckets.put(name, new BucketState(-1, (int) Math.max(0, bucket.files() - files), Math.max(0, bucket.bytes() - bytes),
+                oldest, bucket.maxScannedId()));
+        if (!dryRun && !name.isEmpty() && index == entries.size()) {
+            deleteEmptyDirectory(bucketDir);
+            deleteEmptyDirectory(bucketDir.getParent());
+        }
+        return new long[]{files, bytes};
+    }
+
+    // --- Helpers ---
+
+    private static OptionalLong tweetIdOf(String fileName) {
+        Matcher matcher = TWEET_FILE_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(matcher.group(1)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty(); // 19 digits beyond Long.MAX_VALUE
+        }
+    }
+
+    // End of a month bucket (UTC), or Long.MAX_VALUE for the directory itself and other/
+    private static long monthEndMillis(String bucketName) {
+        String[] parts = bucketName.split("/");
+        if (parts.length != 2) {
+            return Long.MAX_VALUE;
+        }
+        return YearMonth.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])).plusMonths(1)
+                .atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    // Null if the file disappeared or is not a regular file
+    private static FileEntry stat(Path path, long id, Counters counters) {
+        try {
+            counters.filesStated++;
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            long time = SnowflakeId.timestampOf(id).map(Instant::toEpochMilli).orElse(attributes.lastModifiedTime().toMillis());
+            return new FileEntry(path, id, time, attributes.size());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long sizeOf(Path path, Counters counters) {
+        try {
+            counters.filesStated++;
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void deleteEmptyDirectory(Path directory) {
+        try {
+            Files.deleteIfExists(directory);
+        } catch (DirectoryNotEmptyException e) {
+            // Still holds files
+        } catch (IOException e) {
+            logger.debug("Could not delete empty directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static Map<String, BucketState> simulatedRemaining(Map<String, BucketState> scanned, Counters counters) {
+        long files = scanned.values().stream().mapToLong(BucketState::files).sum() - counters.ageFiles - counters.quotaFiles;
+        long bytes = scanned.values().stream().mapToLong(BucketState::bytes).sum() - counters.ageBytes - counters.quotaBytes;
+        return Map.of(ROOT_BUCKET, new BucketState(-1, (int) files, bytes, 0, 0));
+    }
+
+    private static DirectoryReport report(Target target, Map<String, BucketState> remaining, Counters counters) {
+        return new DirectoryReport(target.name(),
+                remaining.values().stream().mapToLong(BucketState::files).sum(),
+                remaining.values().stream().mapToLong(BucketState::bytes).sum(),
+                counters.ageFiles, counters.ageBytes, counters.quotaFiles, counters.quotaBytes,
+                counters.bucketsListed, counters.bucketsSkipped, counters.filesStated);
+    }
+
+    private void logReport(Target target, DirectoryReport report) {
+        Policy policy = target.policy();
+        logger.info("{}Retention {}: {} {} file(s) ({} KB) older than {} and {} file(s) ({} KB) over the {} quota; {} file(s) ({} KB) left. "
+                        + "{} bucket(s) listed, {} unchanged, {} file(s) stat'ed.",
+                dryRun ? "Dry run: " : "", report.directory(), dryRun ? "would evict" : "evicted",
+                report.ageFiles(), report.ageBytes() / 1024, policy.maxAge() != null ? policy.maxAge().toDays() + " days" : "(no age limit)",
+                report.quotaFiles(), report.quotaBytes() / 1024, policy.maxBytes() > 0 ? policy.maxBytes() / MB + " MB" : "(no)",
+                report.files(), report.bytes() / 1024, report.bucketsListed(), report.bucketsSkipped(), report.filesStated());
+    }
+
+    private State loadState() {
+        if (!Files.isReadable(stateFile)) {
+            return new State(0, 0, Map.of());
+        }
+        try {
+            State loaded = objectMapper.readValue(stateFile.toFile(), State.class);
+            return new State(loaded.lastSweepMillis(), loaded.lastFullScanMillis(),
+                    loaded.directories() != null ? loaded.directories() : Map.of());
+        } catch (IOException e) {
+            logger.warn("Could not read retention state {}: {}. Rescanning all directories.", stateFile.toAbsolutePath(), e.getMessage());
+            return new State(0, 0, Map.of());
+        }
+    }
+
+    private void saveState() {
+        try {
+            AtomicFiles.replace(stateFile, out -> objectMapper.writeValue(out, state));
+        } catch (IOException e) {
+            logger.error("Could not write retention state {}: {}", stateFile.toAbsolutePath(), e.getMessage(), e);
+        }
+    }
+}
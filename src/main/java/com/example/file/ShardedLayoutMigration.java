@@ -0,0 +1,105 @@
+package com.example.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the finished tweet files of flat processed/, failed/ and bin/ directories into the
+ * sharded layout ({@code <dir>/<yyyy>/<MM>/}, see {@link DirectoryManager#resolveArchivedFile}).
+ * <p>
+ * Safe to run while the service is running with {@code archive.layout=sharded}: every file is
+ * moved with one atomic rename, and the service finds files in both layouts. The migration is
+ * resumable: only files still at the top level of a directory are moved, so an interrupted run
+ * simply continues with the remaining ones when started again.
+ * <p>
+ * Usage: {@code java -cp <jar> com.example.file.ShardedLayoutMigration [base_data_directory_path] [max_moves_per_second]}
+ */
+public class ShardedLayoutMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedLayoutMigration.class);
+    private static final int PROGRESS_INTERVAL = 10_000;
+
+    private final int maxMovesPerSecond; // 0 = unthrottled
+    private long moved;
+    private long skipped;
+
+    public ShardedLayoutMigration(int maxMovesPerSecond) {
+        this.maxMovesPerSecond = maxMovesPerSecond;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String basePath = args.length >= 1 ? args[0] : DirectoryManager.basePathRelativeToJar();
+        int maxMovesPerSecond = args.length >= 2 ? Integer.parseInt(args[1]) : 0;
+        DirectoryManager directoryManager = new DirectoryManager(basePath, true);
+        ShardedLayoutMigration migration = new ShardedLayoutMigration(maxMovesPerSecond);
+        for (Path dir : List.of(directoryManager.getProcessedDir(), directoryManager.getFailedDir(), directoryManager.getBinDir())) {
+            migration.migrate(dir);
+        }
+        logger.info("Migration finished: {} file(s) moved, {} skipped.", migration.moved, migration.skipped);
+    }
+
+    /**
+     * Moves every file at the top level of the directory into its shard.
+     *
+     * @param archiveDir The processed, failed or bin directory.
+     * @throws IOException If the directory cannot be listed.
+     * @throws InterruptedException If interrupted while throttling.
+     */
+    public void migrate(Path archiveDir) throws IOException, InterruptedException {
+        logger.info("Migrating {} to the sharded layout...", archiveDir.toAbsolutePath());
+        long start = System.nanoTime();
+        long movedBefore = moved;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiveDir, Files::isRegularFile)) {
+            for (Path file : stream) {
+                Path target = DirectoryManager.resolveShardedFile(archiveDir, file.getFileName().toString());
+                if (moveIfAbsent(file, target)) {
+                    moved++;
+                    if (moved % PROGRESS_INTERVAL == 0) {
+                        logger.info("{} file(s) moved so far...", moved);
+                    }
+                    throttle(start, moved - movedBefore);
+                } else {
+                    skipped++;
+                }
+            }
+        }
+        logger.info("Migrated {}: {} file(s) moved in {} ms.", archiveDir.getFileName(), moved - movedBefore,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static boolean moveIfAbsent(Path file, Path target) {
+        try {
+            if (Files.exists(target)) {
+                logger.warn("{} already exists in the sharded layout. Leaving {} in place.", target, file);
+                return false;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            // The service may have moved or binned the file in the meantime
+            logger.warn("Could not move {} to {}: {}", file, target, e.getMessage());
+            return false;
+        }
+    }
+
+    // Keeps the I/O of a large migration from competing with the running service
+    private void throttle(long startNanos, long movedInDir) throws InterruptedException {
+        if (maxMovesPerSecond <= 0) {
+            return;
+        }
+        long dueNanos = startNanos + movedInDir * TimeUnit.SECONDS.toNanos(1) / maxMovesPerSecond;
+        long waitNanos = dueNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
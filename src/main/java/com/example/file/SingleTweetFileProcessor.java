@@ -11,12 +11,18 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.OptionalLong;
 // import java.util.Optional; // No longer needed
 
 /**
  * Handles the processing logic for a single tweet JSON file,
  * including checks, consumption, moving, and per-file logging via MDC.
  * Assumes all necessary context is within the file itself.
+ * With {@link TweetIdIndex}es for the processed and failed directories, the duplicate check
+ * for {@code tweet_<id>.json} files is an in-memory lookup instead of two file system lookups.
+ * Tweets compacted into the {@link ArchiveStore} are no longer in processed/; without an index,
+ * the duplicate check looks them up in the archive.
  */
 public class SingleTweetFileProcessor {
 
@@ -24,15 +30,35 @@ public class SingleTweetFileProcessor {
     private static final String MDC_KEY = "logFileName"; // Kept MDC key based on logback.xml
 
     private final DiscordNotifier discordNotifier;
+    private final DirectoryManager directoryManager; // Resolves the (possibly sharded) archive paths
     private final Path processedDir;
     private final Path failedDir;
     private final Path binDir;
+    private final TweetIdIndex processedIds; // Null: check the directories instead
+    private final TweetIdIndex failedIds;
+    private final ArchiveStore processedArchive; // Null: processed/ is not compacted
     // private final Optional<TwitchUserInfo> twitchInfo; // Removed
 
     // Updated constructor - removed twitchInfo parameter
     public SingleTweetFileProcessor(DirectoryManager directoryManager,
                                     DiscordNotifier discordNotifier) {
+        this(directoryManager, discordNotifier, null, null, null);
+    }
+
+    /**
+     * @param directoryManager Provides the processed, failed and bin directories.
+     * @param discordNotifier Posts the tweets.
+     * @param processedIds Index of the tweet IDs in the processed directory, or null to check the directory.
+     * @param failedIds Index of the tweet IDs in the failed directory, or null to check the directory.
+     * @param processedArchive Archive of compacted processed tweets, or null.
+     */
+    public SingleTweetFileProcessor(DirectoryManager directoryManager, DiscordNotifier discordNotifier,
+                                    TweetIdIndex processedIds, TweetIdIndex failedIds, ArchiveStore processedArchive) {
         this.discordNotifier = discordNotifier;
+        this.directoryManager = directoryManager;
+        this.processedIds = processedIds;
+        this.failedIds = failedIds;
+        this.processedArchive = processedArchive;
         this.processedDir = directoryManager.getProcessedDir();
         this.failedDir = directoryManager.getFailedDir();
         this.binDir = directoryManager.getBinDir();
@@ -46,14 +72,15 @@ public class SingleTweetFileProcessor {
      */
     public void processFile(File inputFile) {
         String inputFileName = inputFile.getName();
-        // Ensure we only process .json files (basic check)
-        if (!inputFileName.toLowerCase().endsWith(".json")) {
-            logger.trace("Skipping non-JSON file: {}", inputFileName);
+        // Ensure we only process spool files (.json or .smile)
+        Optional<SpoolCodec> codec = SpoolCodec.forFileName(inputFileName);
+        if (codec.isEmpty()) {
+            logger.trace("Skipping non-spool file: {}", inputFileName);
             return;
         }
 
-        // Create log file name based on JSON file name (e.g., tweet_12345)
-        String logFileName = inputFileName.replace(".json", ""); // Use .json extension
+        // Create log file name based on the file name without extension (e.g., tweet_12345)
+        String logFileName = inputFileName.substring(0, inputFileName.length() - codec.get().extension().length());
 
         MDC.put(MDC_KEY, logFileName); // Set MDC for SiftingAppender
 
@@ -63,16 +90,14 @@ public class SingleTweetFileProcessor {
             // --- Check if already processed or failed ---
             // Note: This check might be redundant if also performed in TweetProcessor,
             // but kept here for robustness based on previous state.
-            Path processedFilePath = processedDir.resolve(inputFileName);
-            Path failedFilePath = failedDir.resolve(inputFileName);
-
-            if (Files.exists(processedFilePath)) {
+            OptionalLong tweetId = InputDirectoryScanner.parseTweetId(inputFileName);
+            if (isAlreadyIn(processedIds, processedDir, tweetId, inputFileName, false) || isArchived(tweetId)) {
                 logger.info("File already exists in processed directory. Skipping.");
                 moveDuplicateToBin(inputFile);
                 return;
             }
 
-            if (Files.exists(failedFilePath)) {
+            if (isAlreadyIn(failedIds, failedDir, tweetId, inputFileName, true)) {
                 logger.info("File already exists in failed directory. Skipping.");
                 moveDuplicateToBin(inputFile);
                 return;
@@ -95,11 +120,14 @@ public class SingleTweetFileProcessor {
             }
 
             // --- Move File Based on Success ---
+            // Recorded before the move: after a crash in between, the file is binned as a duplicate instead of posted twice
+            recordOutcome(tweetId, success);
             moveFileAfterProcessing(inputFile, success);
 
         } catch (Exception e) {
             logger.error("Unexpected error processing JSON file {}: {}", inputFileName, e.getMessage(), e); // Goes to specific tweet log
             try {
+                recordOutcome(InputDirectoryScanner.parseTweetId(inputFileName), false);
                 moveFileAfterProcessing(inputFile, false);
             } catch (Exception moveEx) {
                 logger.error("Could not move file {} to failed directory after unexpected error: {}", inputFileName, moveEx.getMessage(), moveEx); // Goes to specific tweet log
@@ -110,15 +138,42 @@ public class SingleTweetFileProcessor {
         }
     }
 
+    /**
+     * Index lookup for tweet files; other file names fall back to the directory.
+     * With confirmHit, an index hit is confirmed in the directory, so a failed file moved back
+     * to input/ by hand is retried. Only duplicates pay that lookup, new tweets miss the index.
+     */
+    private boolean isAlreadyIn(TweetIdIndex index, Path dir, OptionalLong tweetId, String inputFileName, boolean confirmHit) {
+        if (index != null && tweetId.isPresent()) {
+            boolean indexed = index.contains(tweetId.getAsLong());
+            return indexed && (!confirmHit || directoryManager.findArchivedFile(dir, inputFileName).isPresent());
+        }
+        return directoryManager.findArchivedFile(dir, inputFileName).isPresent();
+    }
+
+    // The processed index also holds the archived IDs, so the archive is only asked without it
+    private boolean isArchived(OptionalLong tweetId) {
+        return processedIds == null && processedArchive != null && tweetId.isPresent()
+                && processedArchive.contains(tweetId.getAsLong());
+    }
+
+    private void recordOutcome(OptionalLong tweetId, boolean success) {
+        TweetIdIndex index = success ? processedIds : failedIds;
+        if (index != null && tweetId.isPresent()) {
+            index.add(tweetId.getAsLong());
+        }
+    }
+
     // moveFileAfterProcessing uses the main logger (application.log and console)
     private void moveFileAfterProcessing(File inputFile, boolean success) {
         String inputFileName = inputFile.getName();
-        File targetDir = success ? processedDir.toFile() : failedDir.toFile();
+        Path targetFile = directoryManager.resolveArchivedFile(success ? processedDir : failedDir, inputFileName);
         String targetDirName = success ? "processed" : "failed";
         try {
-            FileUtils.moveFileToDirectory(inputFile, targetDir, true);
+            Files.createDirectories(targetFile.getParent());
+            FileUtils.moveFile(inputFile, targetFile.toFile());
             // Use the main logger for file operations summary
-            LoggerFactory.getLogger(TweetProcessor.class).info("Moved {} to {} directory: {}", inputFileName, targetDirName, targetDir.getAbsolutePath());
+            LoggerFactory.getLogger(TweetProcessor.class).info("Moved {} to {} directory: {}", inputFileName, targetDirName, targetFile.getParent().toAbsolutePath());
         } catch (IOException e) {
             LoggerFactory.getLogger(TweetProcessor.class).error("Failed to move file {} to {} directory after processing: {}", inputFileName, targetDirName, e.getMessage(), e);
         }
@@ -128,12 +183,10 @@ public class SingleTweetFileProcessor {
     // moveDuplicateToBin uses the main logger (application.log and console)
     private void moveDuplicateToBin(File inputFile) {
         String inputFileName = inputFile.getName();
-        File moveFileDest = binDir.resolve(inputFileName).toFile();
-        LoggerFactory.getLogger(TweetProcessor.class).debug("Moving duplicate input file {} to bin directory: {}", inputFileName, binDir.toAbsolutePath());
+        File moveFileDest = directoryManager.resolveArchivedFile(binDir, inputFileName).toFile();
+        LoggerFactory.getLogger(TweetProcessor.class).debug("Moving duplicate input file {} to bin directory: {}", inputFileName, moveFileDest.getParent());
         try {
-            if (!binDir.toFile().exists()) {
-                Files.createDirectories(binDir);
-            }
+            Files.createDirectories(moveFileDest.getParentFile().toPath());
             FileUtils.moveFile(inputFile, moveFileDest);
             LoggerFactory.getLogger(TweetProcessor.class).info("Moved duplicate input file {} to bin.", inputFileName);
         } catch (IOException e) {
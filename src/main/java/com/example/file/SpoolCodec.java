@@ -0,0 +1,177 @@
+package com.example.file;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Encoding of the tweet files in the input, processed and failed directories, chosen by file
+ * extension so files of both formats can be read side by side.
+ * <ul>
+ *   <li>{@link #JSON}: pretty-printed JSON ({@code .json}), readable with any text tool.</li>
+ *   <li>{@link #SMILE}: Jackson's binary JSON ({@code .smile}) with the same fields; smaller and
+ *       faster to write and parse. Printed as JSON by {@link SpoolFileTool}.</li>
+ * </ul>
+ * Tweets are bound to {@code TweetData} by the {@link SpoolCodecs} configured at startup; a codec
+ * itself only knows its format and holds no settings.
+ * <p>
+ * {@link #readKey} and {@link #decodeKey} stream through a tweet for just its ID and URL, for
+ * checks that decide whether the whole tweet is needed at all.
+ */
+public enum SpoolCodec {
+
+    JSON(".json", JsonFactory::new, true),
+    SMILE(".smile", SmileFactory::new, false);
+
+    // Every Smile document starts with ":)\n"
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final String extension;
+    private final Supplier<JsonFactory> factory;
+    private final boolean indented;
+    // Untyped access only (keys and trees), which no setting changes
+    private final ObjectMapper treeMapper;
+
+    /**
+     * The fields a tweet is identified by, read without decoding the rest.
+     *
+     * @param id  The tweet ID, or 0 if the tweet has none.
+     * @param url The tweet URL, or null if the tweet has none.
+     */
+    public record TweetKey(long id, String url) {
+    }
+
+    SpoolCodec(String extension, Supplier<JsonFactory> factory, boolean indented) {
+        this.extension = extension;
+        this.factory = factory;
+        this.indented = indented;
+        this.treeMapper = new ObjectMapper(factory.get());
+    }
+
+    /**
+     * @return The file extension including the dot, e.g. {@code .json}.
+     */
+    public String extension() { return extension; }
+
+    /**
+     * @param id The tweet ID.
+     * @return The spool file name of the tweet, e.g. {@code tweet_<id>.json}.
+     */
+    public String fileName(long id) { return "tweet_" + id + extension; }
+
+    /**
+     * Reads only the ID and URL of a tweet file. The writers put both first, so the parser
+     * stops after the first few fields and never materializes the text, entities or media.
+     *
+     * @param file A tweet file in this format.
+     * @return The ID and URL.
+     * @throws IOException If the file cannot be read or is not a JSON object in this format.
+     */
+    public TweetKey readKey(File file) throws IOException {
+        try (JsonParser parser = treeMapper.getFactory().createParser(file)) {
+            return parseKey(parser);
+        }
+    }
+
+    /**
+     * @param content An encoded tweet.
+     * @return The ID and URL, see {@link #readKey}.
+     * @throws IOException If the content is not a JSON object in this format.
+     */
+    public TweetKey decodeKey(byte[] content) throws IOException {
+        try (JsonParser parser = treeMapper.getFactory().createParser(content)) {
+            return parseKey(parser);
+        }
+    }
+
+    // Top-level fields only; other values (including nested ones) are skipped without being decoded
+    private static TweetKey parseKey(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Tweet is not a JSON object");
+        }
+        long id = 0;
+        boolean idRead = false;
+        String url = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME && (!idRead || url == null)) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("id".equals(field)) {
+                id = parser.getValueAsLong(0); // Written as a string; 0 for null or a non-numeric value
+                idRead = true;
+            } else if ("url".equals(field)) {
+                url = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new TweetKey(id, url);
+    }
+
+    /**
+     * Converts the content of a file in this format to pretty-printed JSON, without binding it
+     * to {@code TweetData} (so it also works for files of older or newer versions).
+     *
+     * @param content The file content.
+     * @return The content as JSON text.
+     * @throws IOException If the content is not valid in this format.
+     */
+    public String toJson(byte[] content) throws IOException {
+        JsonNode tree = treeMapper.readTree(content);
+        return JSON.treeMapper.writerWithDefaultPrettyPrinter().writeValueAsString(tree);
+    }
+
+    /**
+     * @param fileName A file name.
+     * @return The codec for the file's extension, or empty if it is not a spool file.
+     */
+    public static Optional<SpoolCodec> forFileName(String fileName) {
+        String lowerCaseName = fileName.toLowerCase();
+        for (SpoolCodec codec : values()) {
+            if (lowerCaseName.endsWith(codec.extension)) {
+                return Optional.of(codec);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Detects the format from the content, for data without a file name (e.g. archive segments).
+     *
+     * @param content The encoded tweet.
+     * @return SMILE if the content starts with the Smile header, JSON otherwise.
+     */
+    public static SpoolCodec forContent(byte[] content) {
+        if (content.length >= SMILE_HEADER.length
+                && content[0] == SMILE_HEADER[0] && content[1] == SMILE_HEADER[1] && content[2] == SMILE_HEADER[2]) {
+            return SMILE;
+        }
+        return JSON;
+    }
+
+    /**
+     * @param name A codec name from the configuration ("json" or "smile"), case-insensitive.
+     * @return The codec, or empty if the name is unknown.
+     */
+    public static Optional<SpoolCodec> forName(String name) {
+        for (SpoolCodec codec : values()) {
+            if (codec.name().equalsIgnoreCase(name.trim())) {
+                return Optional.of(codec);
+            }
+        }
+        return Optional.empty();
+    }
+
+    // A new factory per mapper, as a mapper configures the factory it is given
+    JsonFactory newFactory() { return factory.get(); }
+
+    // Whether files of this format are pretty-printed
+    boolean indented() { return indented; }
+}
@@ -0,0 +1,276 @@
+package com.example.file;
+
+import com.example.twitter.TweetContext;
+import com.example.twitter.TweetData;
+import com.example.twitter.TweetEntities;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Jackson setup of the {@link SpoolCodec} formats for tweets: each format gets an
+ * {@link ObjectReader} and {@link ObjectWriter} pre-resolved for {@link TweetData}, so reading and
+ * writing skip the per-call type lookup of {@code ObjectMapper.readValue(File, Class)}. With
+ * Blackbird, property access goes through generated lambdas instead of reflection; if the module
+ * cannot be loaded or fails a round trip on this JVM, reflection is used. Files are encoded into
+ * and read from a per-thread buffer that is reused across tweets instead of allocating a new one
+ * per file.
+ * <p>
+ * With shared contexts, a tweet is written with the key of its {@link TweetContext} instead of
+ * the author and Twitch fields; the context is saved to the {@link TweetContextStore} before the
+ * first tweet that refers to it. Both shapes are always read.
+ * <p>
+ * Created once at startup and passed to everything that reads or writes tweets; an instance never
+ * changes.
+ */
+public final class SpoolCodecs {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpoolCodecs.class);
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024; // Larger buffers are dropped after use
+    private static final ThreadLocal<PooledBuffer> BUFFERS = ThreadLocal.withInitial(PooledBuffer::new);
+
+    private final Map<SpoolCodec, Binding> bindings;
+    private final TweetContextStore contextStore;
+    private final boolean sharedContexts;
+
+    /**
+     * The pre-resolved reader and writers of one format.
+     */
+    private record Binding(ObjectReader reader, ObjectWriter writer, ObjectWriter recordWriter) {
+    }
+
+    /**
+     * Mix-in of the compact format: the context key replaces the author and Twitch fields,
+     * which are still read from older files.
+     */
+    private abstract static class CompactTweetData {
+        @JsonProperty(access = JsonProperty.Access.READ_WRITE)
+        abstract String getContextKey();
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+        abstract String getAuthorName();
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+        abstract String getAuthorProfileUrl();
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+        abstract String getAuthorProfileImageUrl();
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+        abstract String getTwitchUsername();
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+        abstract String getTwitchProfileImageUrl();
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+        abstract String getTwitchChannelUrl();
+    }
+
+    /**
+     * @param blackbird Use the Blackbird module (generated property accessors instead of reflection) if it works on this JVM.
+     * @param contextStore Resolves the context keys of compact tweets, and stores the contexts of written ones.
+     * @param sharedContexts Write tweets in the compact format, with a context key instead of the author and Twitch fields.
+     */
+    public SpoolCodecs(boolean blackbird, TweetContextStore contextStore, boolean sharedContexts) {
+        this.contextStore = contextStore;
+        this.sharedContexts = sharedContexts;
+        boolean accessors = blackbird && blackbirdWorks();
+        Map<SpoolCodec, Binding> bound = new EnumMap<>(SpoolCodec.class);
+        for (SpoolCodec codec : SpoolCodec.values()) {
+            bound.put(codec, bind(codec, accessors, contextStore, sharedContexts));
+        }
+        this.bindings = bound;
+        logger.info("Tweet codecs configured (Blackbird accessors: {}, shared contexts: {}).", accessors, sharedContexts);
+    }
+
+    /**
+     * @return Codecs that write full tweets with reflection-based access, resolving context keys
+     *         only against the contexts created in this JVM (for tools and tests).
+     */
+    public static SpoolCodecs defaults() {
+        return new SpoolCodecs(false, TweetContextStore.inMemory(), false);
+    }
+
+    /**
+     * Encodes a tweet in the file shape of the format (indented JSON, or Smile).
+     *
+     * @param codec The format.
+     * @param tweetData The tweet.
+     * @return The encoded tweet.
+     * @throws IOException If the tweet or its context cannot be written.
+     */
+    public byte[] encode(SpoolCodec codec, TweetData tweetData) throws IOException {
+        saveContext(tweetData);
+        return bindings.get(codec).writer().writeValueAsBytes(tweetData);
+    }
+
+    /**
+     * Encodes without indentation, for tweets stored as records of a larger file (the journal).
+     *
+     * @param codec The format.
+     * @param tweetData The tweet.
+     * @return The encoded tweet.
+     * @throws IOException If the tweet or its context cannot be written.
+     */
+    public byte[] encodeRecord(SpoolCodec codec, TweetData tweetData) throws IOException {
+        saveContext(tweetData);
+        return bindings.get(codec).recordWriter().writeValueAsBytes(tweetData);
+    }
+
+    /**
+     * @param codec The format of the content.
+     * @param content An encoded tweet, in either the full or the compact shape.
+     * @return The tweet.
+     * @throws IOException If the content is not a valid tweet in this format.
+     */
+    public TweetData decode(SpoolCodec codec, byte[] content) throws IOException {
+        return bindings.get(codec).reader().readValue(content);
+    }
+
+    /**
+     * Encodes into the calling thread's pooled buffer instead of a new array.
+     *
+     * @param codec The format.
+     * @param tweetData The tweet.
+     * @return A read-only view of the encoded tweet, valid until the thread's next pooled encode or read.
+     * @throws IOException If the tweet cannot be encoded.
+     */
+    public ByteBuffer encodePooled(SpoolCodec codec, TweetData tweetData) throws IOException {
+        saveContext(tweetData);
+        PooledBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        bindings.get(codec).writer().writeValue(buffer, tweetData);
+        return ByteBuffer.wrap(buffer.array(), 0, buffer.size()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes a tweet file through the calling thread's pooled buffer.
+     *
+     * @param codec The format.
+     * @param file The file to create or overwrite.
+     * @param tweetData The tweet.
+     * @throws IOException If the tweet cannot be encoded or the file cannot be written.
+     */
+    public void write(SpoolCodec codec, File file, TweetData tweetData) throws IOException {
+        ByteBuffer encoded = encodePooled(codec, tweetData);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+        } finally {
+            BUFFERS.get().trim();
+        }
+    }
+
+    /**
+     * Reads a tweet file into the calling thread's pooled buffer and decodes it from there.
+     *
+     * @param codec The format of the file.
+     * @param file The tweet file.
+     * @return The tweet.
+     * @throws IOException If the file cannot be read or is not a valid tweet in this format.
+     */
+    public TweetData read(SpoolCodec codec, File file) throws IOException {
+        PooledBuffer buffer = BUFFERS.get();
+        try {
+            return bindings.get(codec).reader().readValue(buffer.readFully(file.toPath()), 0, buffer.size());
+        } finally {
+            buffer.trim();
+        }
+    }
+
+    // The context must be on disk before a tweet refers to it
+    private void saveContext(TweetData tweetData) throws IOException {
+        if (sharedContexts) {
+            contextStore.save(tweetData.getContext());
+        }
+    }
+
+    // Blackbird generates accessors with method handles, which a JVM or security setup can refuse
+    private static boolean blackbirdWorks() {
+        try {
+            TweetData sample = new TweetData(1L, "sample", "https://x.com/i/status/1", List.of(), LocalDateTime.now(),
+                    "sample", "https://x.com/sample", null, null, null, null, "1", "1", "en", null, "everyone", null,
+                    TweetEntities.EMPTY);
+            for (SpoolCodec codec : SpoolCodec.values()) {
+                Binding binding = bind(codec, true, TweetContextStore.inMemory(), false);
+                binding.reader().readValue(binding.writer().writeValueAsBytes(sample));
+            }
+            return true;
+        } catch (IOException | RuntimeException | LinkageError e) {
+            logger.warn("Blackbird accessors are not available ({}). Using reflection.", e.toString());
+            return false;
+        }
+    }
+
+    // Same setup for both formats, so a tweet has the same fields in either
+    private static Binding bind(SpoolCodec codec, boolean blackbird, TweetContextStore contextStore, boolean sharedContexts) {
+        ObjectMapper objectMapper = new ObjectMapper(codec.newFactory());
+        objectMapper.registerModule(new JavaTimeModule());
+        if (blackbird) {
+            objectMapper.registerModule(new BlackbirdModule());
+        }
+        if (sharedContexts) {
+            objectMapper.addMixIn(TweetData.class, CompactTweetData.class);
+        }
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.setInjectableValues(new InjectableValues.Std().addValue(TweetContext.Resolver.class, contextStore));
+        ObjectWriter writer = objectMapper.writerFor(TweetData.class);
+        return new Binding(objectMapper.readerFor(TweetData.class), codec.indented() ? writer.withDefaultPrettyPrinter() : writer, writer);
+    }
+
+    /**
+     * Growable byte buffer of one thread, reused for every tweet it encodes or reads.
+     */
+    private static final class PooledBuffer extends ByteArrayOutputStream {
+
+        private PooledBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        private byte[] array() { return buf; }
+
+        // Reads the whole file into the buffer and returns the backing array (valid up to size())
+        private byte[] readFully(Path file) throws IOException {
+            reset();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long fileSize = channel.size();
+                if (fileSize > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Tweet file too large: " + file);
+                }
+                if (buf.length < fileSize) {
+                    buf = new byte[(int) fileSize];
+                }
+                ByteBuffer target = ByteBuffer.wrap(buf, 0, (int) fileSize);
+                while (target.hasRemaining() && channel.read(target) >= 0) {
+                    // Read until the buffer is full or the file ends
+                }
+                count = target.position();
+            }
+            return buf;
+        }
+
+        // An unusually large tweet doesn't pin its buffer to the thread
+        private void trim() {
+            if (buf.length > MAX_RETAINED_BUFFER_SIZE) {
+                buf = new byte[INITIAL_BUFFER_SIZE];
+                count = 0;
+            }
+        }
+    }
+}
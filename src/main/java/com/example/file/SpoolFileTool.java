@@ -0,0 +1,107 @@
+package com.example.file;
+
+import com.example.twitter.TweetData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Command line tool for the tweet spool files.
+ * <ul>
+ *   <li>{@code inspect <file>...} prints tweet files of any {@link SpoolCodec} as JSON.</li>
+ *   <li>{@code migrate <directory> <json|smile>} converts the tweet files in a directory (and its
+ *       month buckets, see {@link DirectoryManager#resolveShardedFile}) to the given format.</li>
+ * </ul>
+ * A migrated file is written next to the original as {@code <name>.tmp}, synced and renamed to
+ * its new name before the original is deleted, so an interrupted migration leaves at most a
+ * tweet in both formats (the duplicate is binned by the processor) and can simply be run again.
+ * Stop the service before migrating the input directory. Tweets in the compact format are
+ * resolved through the {@code contexts/} directory next to the migrated one and converted
+ * with their author and Twitch fields.
+ * <p>
+ * Usage: {@code java -cp <jar> com.example.file.SpoolFileTool inspect <file>...} or
+ * {@code java -cp <jar> com.example.file.SpoolFileTool migrate <directory> <json|smile>}
+ */
+public class SpoolFileTool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpoolFileTool.class);
+    private static final int MAX_DEPTH = 3; // <dir>/<yyyy>/<MM>/<file> in the sharded layout
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && "inspect".equals(args[0])) {
+            for (int i = 1; i < args.length; i++) {
+                inspect(Path.of(args[i]));
+            }
+        } else if (args.length == 3 && "migrate".equals(args[0])) {
+            Optional<SpoolCodec> target = SpoolCodec.forName(args[2]);
+            if (target.isEmpty()) {
+                logger.error("Unknown format '{}'. Expected 'json' or 'smile'.", args[2]);
+                System.exit(1);
+            }
+            Path directory = Path.of(args[1]);
+            // The contexts directory is a sibling of input/, processed/ and failed/
+            SpoolCodecs codecs = new SpoolCodecs(true, new TweetContextStore(directory.toAbsolutePath().resolveSibling("contexts")), false);
+            migrate(directory, target.get(), codecs);
+        } else {
+            logger.error("Usage: SpoolFileTool inspect <file>... | SpoolFileTool migrate <directory> <json|smile>");
+            System.exit(1);
+        }
+    }
+
+    private static void inspect(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        SpoolCodec codec = SpoolCodec.forFileName(file.getFileName().toString()).orElse(SpoolCodec.forContent(content));
+        System.out.println(codec.toJson(content));
+    }
+
+    /**
+     * Converts every tweet file in the directory that is not yet in the target format.
+     *
+     * @param directory The input, processed or failed directory.
+     * @param target The format to convert to.
+     * @param codecs Decodes and encodes the converted tweets.
+     * @return The number of converted files.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static int migrate(Path directory, SpoolCodec target, SpoolCodecs codecs) throws IOException {
+        long start = System.nanoTime();
+        List<Path> files;
+        try (Stream<Path> paths = Files.find(directory, MAX_DEPTH, (path, attributes) -> attributes.isRegularFile()
+                && InputDirectoryScanner.parseTweetId(path.getFileName().toString()).isPresent())) {
+            files = paths.toList();
+        }
+        int converted = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            SpoolCodec source = SpoolCodec.forFileName(fileName).orElseThrow();
+            if (source == target) {
+                continue;
+            }
+            try {
+                byte[] content = Files.readAllBytes(file);
+                TweetData tweetData = codecs.decode(source, content);
+                byte[] encoded = codecs.encode(target, tweetData);
+                long id = InputDirectoryScanner.parseTweetId(fileName).getAsLong();
+                Path targetFile = file.resolveSibling(target.fileName(id));
+                AtomicFiles.replace(targetFile, encoded);
+                Files.delete(file);
+                converted++;
+                bytesBefore += content.length;
+                bytesAfter += encoded.length;
+            } catch (IOException e) {
+                logger.error("Could not convert {} to {}: {}", file, target, e.getMessage());
+            }
+        }
+        logger.info("Converted {} of {} tweet file(s) in {} to {} in {} ms ({} KB -> {} KB).", converted, files.size(),
+                directory, target, (System.nanoTime() - start) / 1_000_000, bytesBefore / 1024, bytesAfter / 1024);
+        return converted;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.file;
+
+import com.example.twitter.TweetContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link TweetContext}s referenced by tweet files in the compact spool format, one small
+ * {@code <key>.json} file per context in the contexts directory.
+ * <p>
+ * A context is saved before the first tweet that refers to it is written, and afterwards only
+ * looked up in memory, so an account's context is written once instead of with every tweet.
+ * Context files are never deleted: archived tweets keep referring to them.
+ */
+public class TweetContextStore implements TweetContext.Resolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(TweetContextStore.class);
+    private static final String FILE_SUFFIX = ".json";
+
+    private final Path contextsDir;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> savedKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param contextsDir Directory of the context files (created with the first one), or null to
+     *                    only resolve the contexts created in this JVM.
+     */
+    public TweetContextStore(Path contextsDir) {
+        this.contextsDir = contextsDir;
+    }
+
+    /**
+     * @return A store without a directory, for tools that only read and write full tweets.
+     */
+    public static TweetContextStore inMemory() {
+        return new TweetContextStore(null);
+    }
+
+    /**
+     * Makes sure the context is on disk (synced) before a tweet refers to it by key.
+     *
+     * @param context The context of a tweet about to be written.
+     * @throws IOException If the context file cannot be written.
+     */
+    public void save(TweetContext context) throws IOException {
+        if (contextsDir == null || savedKeys.contains(context.getKey())) {
+            return;
+        }
+        synchronized (this) {
+            Path file = contextsDir.resolve(context.getKey() + FILE_SUFFIX);
+            if (!Files.exists(file)) {
+                Files.createDirectories(contextsDir);
+                AtomicFiles.replace(file, out -> objectMapper.writeValue(out, context));
+                logger.info("Saved tweet context {} ({} / {}) to {}.", context.getKey(), context.getAuthorName(),
+                        context.getTwitchUsername(), file.getFileName());
+            }
+            savedKeys.add(context.getKey());
+        }
+    }
+
+    /**
+     * @param key A context key from a compact tweet file.
+     * @return The shared context instance, or empty if the key is unknown.
+     */
+    @Override
+    public Optional<TweetContext> resolve(String key) {
+        Optional<TweetContext> interned = TweetContext.findInterned(key);
+        if (interned.isPresent() || contextsDir == null) {
+            return interned;
+        }
+        Path file = contextsDir.resolve(key + FILE_SUFFIX);
+        if (!Files.isReadable(file)) {
+            logger.error("Tweet context {} not found in {}.", key, contextsDir.toAbsolutePath());
+            return Optional.empty();
+        }
+        try {
+            TweetContext context = objectMapper.readValue(file.toFile(), TweetContext.class);
+            if (!context.getKey().equals(key)) {
+                logger.error("Tweet context file {} does not match its key (content key {}).", file, context.getKey());
+                return Optional.empty();
+            }
+            savedKeys.add(key);
+            return Optional.of(context);
+        } catch (IOException e) {
+            logger.error("Could not read tweet context {}: {}", file.toAbsolutePath(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.OptionalLong;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Persistent set of tweet IDs (primitive longs) backed by a memory-mapped file, with a
+ * {@link LongBloomFilter} in front. Replaces the per-tweet {@code Files.exists} lookups in the
+ * ever-growing processed/failed directories.
+ * <p>
+ * File layout: a header ({@code magic, version, sortedCount, tailCount}), the sorted IDs, then
+ * up to {@link #MAX_TAIL} recently added IDs in insertion order. The file is pre-sized for a full
+ * tail, so an add is one long plus the header count written to the mapping. A full tail is
+ * merged into the sorted section by writing a new file and renaming it over the old one.
+ * If the file is missing or damaged, it is rebuilt from the {@code tweet_<id>.json} names in
+ * the source directory (flat or sharded, see {@link DirectoryManager#resolveArchivedFile}) and
+ * from the IDs in the {@link ArchiveStore} the directory is compacted into.
+ */
+public class TweetIdIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TweetIdIndex.class);
+    private static final int MAGIC = 0x54494458; // "TIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24; // magic, version, sortedCount (long), tailCount (int), padding
+    private static final int SORTED_COUNT_POSITION = 8;
+    private static final int TAIL_COUNT_POSITION = 16;
+    private static final int MAX_SOURCE_DEPTH = 3; // <dir>/<yyyy>/<MM>/<file> in the sharded layout
+    static final int MAX_TAIL = 8192;
+
+    private final Path indexFile;
+    private final Path sourceDir;
+    private final ArchiveStore archive; // Null if the source directory is not compacted
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long sortedCount;
+    // Sorted copy of the file's tail, for binary search; sized for a full tail, so an add copies no array
+    private long[] tail = new long[MAX_TAIL];
+    private int tailCount;
+    private LongBloomFilter bloomFilter;
+
+    private TweetIdIndex(Path indexFile, Path sourceDir, ArchiveStore archive) {
+        this.indexFile = indexFile;
+        this.sourceDir = sourceDir;
+        this.archive = archive;
+    }
+
+    /**
+     * Opens the index, rebuilding it from the source directory if the file is missing or damaged.
+     *
+     * @param indexFile The index file.
+     * @param sourceDir The directory whose tweet files the index mirrors (e.g. processed/).
+     * @return The opened index.
+     * @throws IOException If the index can neither be opened nor rebuilt.
+     */
+    public static TweetIdIndex open(Path indexFile, Path sourceDir) throws IOException {
+        return open(indexFile, sourceDir, null);
+    }
+
+    /**
+     * Opens the index, rebuilding it from the source directory and the archived IDs if the file
+     * is missing or damaged.
+     *
+     * @param indexFile The index file.
+     * @param sourceDir The directory whose tweet files the index mirrors (e.g. processed/).
+     * @param archive The archive the source directory is compacted into, or null.
+     * @return The opened index.
+     * @throws IOException If the index can neither be opened nor rebuilt.
+     */
+    public static TweetIdIndex open(Path indexFile, Path sourceDir, ArchiveStore archive) throws IOException {
+        TweetIdIndex index = new TweetIdIndex(indexFile, sourceDir, archive);
+        if (!Files.exists(indexFile) || !index.tryMap()) {
+            index.rebuildFromSourceDir();
+            if (!index.tryMap()) {
+                throw new IOException("Rebuilt tweet ID index " + indexFile + " could not be opened.");
+            }
+        }
+        logger.info("Opened tweet ID index {} with {} IDs (Bloom filter {} KB).",
+                indexFile.getFileName(), index.size(), index.bloomFilter.sizeInBytes() / 1024);
+        return index;
+    }
+
+    /**
+     * @param id A tweet ID.
+     * @return true if the ID was added to the index.
+     */
+    public synchronized boolean contains(long id) {
+        if (!bloomFilter.mightContain(id)) {
+            return false;
+        }
+        if (Arrays.binarySearch(tail, 0, tailCount, id) >= 0) {
+            return true;
+        }
+        // Binary search over the mapped sorted section, no boxing and no copy
+        long low = 0;
+        long high = sortedCount - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long value = buffer.getLong(positionOf(mid));
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an ID and forces it to disk. Adding an ID that is already contained does nothing.
+     *
+     * @param id A tweet ID.
+     */
+    public synchronized void add(long id) {
+        if (contains(id)) {
+            return;
+        }
+        if (tailCount >= MAX_TAIL) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // Keep the ID in memory at least; the next start rebuilds from the directory
+                logger.error("Could not compact tweet ID index {}: {}. Rebuilding it on the next start.", indexFile, e.getMessage(), e);
+                insertIntoTail(id);
+                bloomFilter.add(id);
+                markDamaged();
+                return;
+            }
+        }
+        int position = positionOf(sortedCount + tailCount);
+        buffer.putLong(position, id);
+        buffer.force(position, Long.BYTES);
+        buffer.putInt(TAIL_COUNT_POSITION, tailCount + 1);
+        buffer.force(TAIL_COUNT_POSITION, Integer.BYTES);
+        insertIntoTail(id);
+        bloomFilter.add(id);
+    }
+
+    /**
+     * @return The number of IDs in the index.
+     */
+    public synchronized long size() {
+        return sortedCount + tailCount;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not close tweet ID index {}: {}", indexFile, e.getMessage());
+        }
+    }
+
+    // Maps the file and validates its header; false if it needs a rebuild
+    private boolean tryMap() {
+        try {
+            long fileSize = Files.size(indexFile);
+            if (fileSize < HEADER_BYTES || fileSize > Integer.MAX_VALUE) {
+                logger.warn("Tweet ID index {} has an invalid size ({} bytes).", indexFile, fileSize);
+                return false;
+            }
+            FileChannel newChannel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            long newSortedCount = newBuffer.getLong(SORTED_COUNT_POSITION);
+            int newTailCount = newBuffer.getInt(TAIL_COUNT_POSITION);
+            if (newBuffer.getInt(0) != MAGIC || newBuffer.getInt(4) != VERSION || newSortedCount < 0
+                    || newTailCount < 0 || newTailCount > MAX_TAIL
+                    || HEADER_BYTES + (newSortedCount + MAX_TAIL) * Long.BYTES != fileSize) {
+                logger.warn("Tweet ID index {} has an invalid header.", indexFile);
+                newChannel.close();
+                return false;
+            }
+            close();
+            channel = newChannel;
+            buffer = newBuffer;
+            sortedCount = newSortedCount;
+            tailCount = newTailCount;
+            for (int i = 0; i < tailCount; i++) {
+                tail[i] = buffer.getLong(positionOf(sortedCount + i));
+            }
+            Arrays.sort(tail, 0, tailCount);
+            rebuildBloomFilter();
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not map tweet ID index {}: {}", indexFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private void rebuildBloomFilter() {
+        // Sized for a full tail on top; every compaction rebuilds it for the new size
+        LongBloomFilter filter = new LongBloomFilter(size() + MAX_TAIL);
+        for (long i = 0; i < sortedCount; i++) {
+            filter.add(buffer.getLong(positionOf(i)));
+        }
+        for (int i = 0; i < tailCount; i++) {
+            filter.add(tail[i]);
+        }
+        bloomFilter = filter;
+    }
+
+    // Merges the sorted section and the tail into a new file, then swaps it in
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        long mergedCount = sortedCount + tailCount;
+        AtomicFiles.replace(indexFile, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            writeHeader(out, mergedCount);
+            long i = 0;
+            int t = 0;
+            while (i < sortedCount || t < tailCount) {
+                if (t == tailCount || (i < sortedCount && buffer.getLong(positionOf(i)) < tail[t])) {
+                    out.writeLong(buffer.getLong(positionOf(i++)));
+                } else {
+                    out.writeLong(tail[t++]);
+                }
+            }
+            writeEmptyTail(out);
+        });
+        if (!tryMap()) {
+            throw new IOException("Compacted tweet ID index could not be mapped.");
+        }
+        logger.info("Compacted tweet ID index {} to {} sorted IDs in {} ms.", indexFile.getFileName(), mergedCount,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void rebuildFromSourceDir() throws IOException {
+        long start = System.nanoTime();
+        long[] ids = collectSourceIds();
+        AtomicFiles.replace(indexFile, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            writeHeader(out, ids.length);
+            for (long id : ids) {
+                out.writeLong(id);
+            }
+            writeEmptyTail(out);
+        });
+        logger.info("Rebuilt tweet ID index {} from {} with {} IDs in {} ms.", indexFile.getFileName(), sourceDir, ids.length,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // The sorted, unique IDs of the source directory and the archive
+    private long[] collectSourceIds() throws IOException {
+        long[] ids = new long[1024];
+        int count = 0;
+        if (Files.isDirectory(sourceDir)) {
+            try (Stream<Path> files = Files.walk(sourceDir, MAX_SOURCE_DEPTH)) {
+                Iterator<Path> iterator = files.iterator();
+                while (iterator.hasNext()) {
+                    OptionalLong id = InputDirectoryScanner.parseTweetId(iterator.next().getFileName().toString());
+                    if (id.isPresent()) {
+                        if (count == ids.length) {
+                            ids = Arrays.copyOf(ids, count * 2);
+                        }
+                        ids[count++] = id.getAsLong();
+                    }
+                }
+            }
+        }
+        if (archive != null) {
+            LongStream.Builder archived = LongStream.builder();
+            archive.forEachId(archived);
+            long[] archivedIds = archived.build().toArray();
+            ids = Arrays.copyOf(ids, count + archivedIds.length);
+            System.arraycopy(archivedIds, 0, ids, count, archivedIds.length);
+            count += archivedIds.length;
+        }
+        Arrays.sort(ids, 0, count);
+        // A file can be in both layouts while they are migrated, or both in the directory and the archive
+        return Arrays.copyOf(ids, removeAdjacentDuplicates(ids, count));
+    }
+
+    // Clears the magic so the next open rebuilds the index from the directory
+    private void markDamaged() {
+        buffer.putInt(0, 0);
+        buffer.force(0, Integer.BYTES);
+    }
+
+    private void insertIntoTail(long id) {
+        if (tailCount == tail.length) {
+            // Only after a failed compaction: the IDs beyond a full tail are kept in memory
+            tail = Arrays.copyOf(tail, tail.length * 2);
+        }
+        int insertAt = -Arrays.binarySearch(tail, 0, tailCount, id) - 1;
+        System.arraycopy(tail, insertAt, tail, insertAt + 1, tailCount - insertAt);
+        tail[insertAt] = id;
+        tailCount++;
+    }
+
+    private static int removeAdjacentDuplicates(long[] sorted, int count) {
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return unique;
+    }
+
+    private static void writeHeader(DataOutputStream out, long sortedCount) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sortedCount);
+        out.writeInt(0); // tailCount
+        out.writeInt(0); // padding
+    }
+
+    private static void writeEmptyTail(DataOutputStream out) throws IOException {
+        out.write(new byte[MAX_TAIL * Long.BYTES]);
+    }
+
+    private static int positionOf(long entry) {
+        return (int) (HEADER_BYTES + entry * Long.BYTES);
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of records in memory-mapped segment files.
+ * <p>
+ * Each record is stored as {@code [int length][int crc32][payload]}. A segment file is
+ * pre-sized to the segment size, so the unwritten tail reads as zeros and marks the end of the
+ * segment; a record with a bad checksum (torn write after a crash) marks it as well.
+ * Records are addressed by a logical offset: the segment's base offset (its file name) plus the
+ * position in the segment. When a record does not fit into the active segment, a new segment is
+ * started at the end offset of the previous one.
+ * <p>
+ * A consumed segment with a record that fails its checks after recovery (e.g. a disk error) is
+ * renamed to {@code segment-<offset>.log.corrupt} instead of being deleted.
+ */
+public class TweetJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TweetJournal.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final int HEADER_BYTES = Integer.BYTES * 2; // length + crc32
+
+    private final Path journalDir;
+    private final int segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>(); // base offset -> segment
+    private Segment active;
+
+    /**
+     * A record read from the journal.
+     *
+     * @param offset     Logical offset of the record.
+     * @param nextOffset Logical offset right after the record.
+     * @param payload    The record payload.
+     */
+    public record Entry(long offset, long nextOffset, byte[] payload) {
+    }
+
+    private static final class Segment {
+        private final long baseOffset;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private boolean damaged; // Has a record that could not be read; kept for inspection instead of deleted
+
+        private Segment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private long endOffset() { return baseOffset + writePosition; }
+    }
+
+    /**
+     * Opens the journal in the given directory, recovering the write position of every segment.
+     *
+     * @param journalDir Directory holding the segment files (created if needed).
+     * @param segmentSize Size of a new segment file in bytes.
+     * @throws IOException If the directory or a segment cannot be opened.
+     */
+    public TweetJournal(Path journalDir, int segmentSize) throws IOException {
+        this.journalDir = journalDir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(journalDir);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(journalDir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                Optional<Long> baseOffset = parseBaseOffset(path);
+                if (baseOffset.isEmpty()) {
+                    logger.warn("Ignoring journal file with unexpected name: {}", path.getFileName());
+                    continue;
+                }
+                segments.put(baseOffset.get(), openSegment(baseOffset.get(), path, (int) Math.max(Files.size(path), HEADER_BYTES)));
+            }
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(0L, segmentSize);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        logger.info("Opened journal {} with {} segment(s), offsets {} to {}.",
+                journalDir.toAbsolutePath(), segments.size(), segments.firstKey(), active.endOffset());
+    }
+
+    /**
+     * Appends a record and forces it to disk.
+     *
+     * @param payload The record payload.
+     * @return The logical offset of the record.
+     * @throws IOException If a new segment cannot be created.
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (active.writePosition + recordBytes > active.buffer.capacity()) {
+            roll(recordBytes);
+        }
+        int position = active.writePosition;
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        active.buffer.putInt(position, payload.length);
+        active.buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+        active.buffer.put(position + HEADER_BYTES, payload);
+        active.buffer.force(position, recordBytes);
+        active.writePosition = position + recordBytes;
+        return active.baseOffset + position;
+    }
+
+    /**
+     * Reads the record at the given offset. An offset at the end of a segment continues with
+     * the first record of the next segment.
+     *
+     * @param offset A record offset, or the nextOffset of the previous record.
+     * @return The record, or Optional.empty() at the end of the journal or if the offset does not
+     *         start an intact record (bad length or checksum).
+     */
+    public synchronized Optional<Entry> read(long offset) {
+        Map.Entry<Long, Segment> floor = segments.floorEntry(offset);
+        if (floor == null) {
+            // Offset lies before the oldest segment (already compacted): continue at the oldest record
+            if (segments.isEmpty()) {
+                return Optional.empty();
+            }
+            floor = segments.firstEntry();
+            offset = floor.getKey();
+        }
+        Segment segment = floor.getValue();
+        while (offset >= segment.endOffset()) {
+            Map.Entry<Long, Segment> next = segments.higherEntry(segment.baseOffset);
+            if (next == null) {
+                return Optional.empty();
+            }
+            segment = next.getValue();
+            offset = segment.baseOffset;
+        }
+        int position = (int) (offset - segment.baseOffset);
+        // Same checks as the recovery, so an offset into the middle of a record never yields garbage
+        int length = position + HEADER_BYTES <= segment.writePosition ? segment.buffer.getInt(position) : 0;
+        if (length <= 0 || (long) position + HEADER_BYTES + length > segment.writePosition) {
+            logger.error("Journal offset {} in {} does not start a record (length {}).", offset, segment.path.getFileName(), length);
+            return Optional.empty();
+        }
+        byte[] payload = new byte[length];
+        segment.buffer.get(position + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != segment.buffer.getInt(position + Integer.BYTES)) {
+            logger.error("Journal record at offset {} in {} has a bad checksum.", offset, segment.path.getFileName());
+            return Optional.empty();
+        }
+        return Optional.of(new Entry(offset, offset + HEADER_BYTES + length, payload));
+    }
+
+    /**
+     * @return The offset of the oldest record still in the journal.
+     */
+    public synchronized long startOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * @return The offset right after the newest record.
+     */
+    public synchronized long endOffset() {
+        return active.endOffset();
+    }
+
+    /**
+     * Lists the records of the segments that end at or before the given offset, i.e. the segments
+     * {@link #deleteSegmentsBefore(long)} would delete.
+     *
+     * A segment is listed up to its first unreadable record; the rest of it cannot be walked.
+     *
+     * @param offset The offset up to which all records are consumed.
+     * @return The readable records of those segments, in offset order.
+     */
+    public synchronized List<Entry> entriesOfSegmentsBefore(long offset) {
+        List<Entry> entries = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment == active || segment.endOffset() > offset) {
+                break;
+            }
+            long position = segment.baseOffset;
+            while (position < segment.endOffset()) {
+                Optional<Entry> entry = read(position);
+                if (entry.isEmpty()) {
+                    logger.error("Skipping the rest of journal segment {} after the unreadable record at offset {}.",
+                            segment.path.getFileName(), position);
+                    segment.damaged = true;
+                    break;
+                }
+                entries.add(entry.get());
+                position = entry.get().nextOffset();
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes the segments whose records all lie before the given offset. The active segment is kept.
+     * A segment with an unreadable record is renamed to {@code .corrupt} instead.
+     *
+     * @param offset The offset up to which all records are consumed.
+     * @return The number of deleted segments.
+     */
+    public synchronized int deleteSegmentsBefore(long offset) {
+        int deleted = 0;
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.endOffset() > offset) {
+                break;
+            }
+            segments.remove(oldest.baseOffset);
+            try {
+                oldest.channel.close();
+                if (oldest.damaged) {
+                    Path corrupt = oldest.path.resolveSibling(oldest.path.getFileName() + CORRUPT_SUFFIX);
+                    Files.move(oldest.path, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                    logger.warn("Moved consumed journal segment {} with an unreadable record to {}.",
+                            oldest.path.getFileName(), corrupt.getFileName());
+                } else {
+                    Files.deleteIfExists(oldest.path);
+                    logger.info("Deleted consumed journal segment {}.", oldest.path.getFileName());
+                }
+                deleted++;
+            } catch (IOException e) {
+                logger.error("Could not delete journal segment {}: {}", oldest.path, e.getMessage(), e);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.buffer.force();
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.warn("Could not close journal segment {}: {}", segment.path.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    private void roll(int recordBytes) throws IOException {
+        long baseOffset = active.endOffset();
+        // A record larger than the segment size gets a segment of its own
+        Segment next = createSegment(baseOffset, Math.max(segmentSize, recordBytes));
+        logger.info("Journal segment {} is full at {} bytes. Rolled to {}.",
+                active.path.getFileName(), active.writePosition, next.path.getFileName());
+        active = next;
+    }
+
+    private Segment createSegment(long baseOffset, int size) throws IOException {
+        Path path = journalDir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseOffset, SEGMENT_SUFFIX));
+        Segment segment = openSegment(baseOffset, path, size);
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    private Segment openSegment(long baseOffset, Path path, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        Segment segment = new Segment(baseOffset, path, channel, buffer);
+        segment.writePosition = recoverWritePosition(buffer);
+        return segment;
+    }
+
+    // Scans the records until the zero-filled tail or the first torn record
+    private static int recoverWritePosition(MappedByteBuffer buffer) {
+        int position = 0;
+        CRC32 crc = new CRC32();
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_BYTES, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                logger.warn("Journal record at position {} has a bad checksum (interrupted write). Truncating the segment there.", position);
+                // Zero the torn record so its leftovers can't be mistaken for a record after the next append
+                buffer.put(position, new byte[HEADER_BYTES + length]);
+                buffer.force(position, HEADER_BYTES + length);
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private static Optional<Long> parseBaseOffset(Path path) {
+        String name = path.getFileName().toString();
+        String digits = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+        try {
+            return Optional.of(Long.parseLong(digits));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -4,12 +4,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Comparator;
+import java.util.List;
 
 /**
- * Scans the input directory, sorts the files by name (ascending),
+ * Scans the input directory in tweet ID order (see {@link InputDirectoryScanner}),
  * and delegates the processing of each file to a SingleTweetFileProcessor instance.
+ * Scans and single-file batches (from the {@link InputDirectoryWatcher}) are serialized,
+ * so a file is never posted twice.
  */
 public class TweetProcessor {
 
@@ -17,55 +22,80 @@ public class TweetProcessor {
 
     private final File inputDir;
     private final SingleTweetFileProcessor singleFileProcessor; // Use the new processor
+    private final InputDirectoryScanner scanner;
+    private static final int DEFAULT_SCAN_MAX_IN_MEMORY = 100_000;
+    private static final int SCAN_BATCH_SIZE = 500;
 
     // Constructor now takes SingleTweetFileProcessor
     public TweetProcessor(DirectoryManager directoryManager, SingleTweetFileProcessor singleFileProcessor) {
+        this(directoryManager, singleFileProcessor, DEFAULT_SCAN_MAX_IN_MEMORY);
+    }
+
+    /**
+     * @param directoryManager Provides the input directory.
+     * @param singleFileProcessor Processes each file.
+     * @param scanMaxInMemory Number of tweet IDs sorted in memory before the scan sorts on disk.
+     */
+    public TweetProcessor(DirectoryManager directoryManager, SingleTweetFileProcessor singleFileProcessor, int scanMaxInMemory) {
         this.inputDir = directoryManager.getInputDir().toFile();
+        this.scanner = new InputDirectoryScanner(directoryManager.getInputDir(), scanMaxInMemory, SCAN_BATCH_SIZE);
         this.singleFileProcessor = singleFileProcessor; // Store the injected processor
         logger.info("TweetProcessor initialized for input directory: {}", inputDir.getAbsolutePath());
     }
 
     /**
-     * Processes all valid files found in the input directory,
-     * sorting them by filename first.
+     * Processes all JSON files found in the input directory, in tweet ID order.
+     * The directory is streamed in bounded batches, so a large backlog is never listed at once.
      */
-    public void processInputFiles() {
+    public synchronized void processInputFiles() {
         logger.info("Starting scan of input directory: {}", inputDir.getAbsolutePath());
-        File[] files = inputDir.listFiles(); // Get the initial list of files
-
-        if (files == null) {
-            logger.error("Could not list files in input directory: {}. Check permissions.", inputDir.getAbsolutePath());
+        int[] fileCount = {0};
+        try {
+            scanner.scan(batch -> {
+                for (Path inputFile : batch) {
+                    // Only process actual files
+                    if (Files.isRegularFile(inputFile)) {
+                        fileCount[0]++;
+                        // Delegate processing of this single file
+                        singleFileProcessor.processFile(inputFile.toFile());
+                    } else {
+                        logger.trace("Skipping non-file item: {}", inputFile.getFileName());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            logger.error("Could not scan input directory: {}. Check permissions. ({})", inputDir.getAbsolutePath(), e.getMessage(), e);
             return;
         }
 
-        if (files.length == 0) {
+        if (fileCount[0] == 0) {
             logger.info("No files found in input directory during this scan.");
-            return;
+        } else {
+            logger.info("Finished processing batch. {} files were evaluated.", fileCount[0]);
         }
+    }
 
-        // --- Sort files by name (ascending) ---
-        // This effectively sorts by tweet ID assuming the format tweet_<id>.json
-        Arrays.sort(files, Comparator.comparing(File::getName));
-        logger.info("Found {} items in input directory. Sorted files by name.", files.length);
-        // --- End Sorting ---
-
+    /**
+     * Processes the given files from the input directory, in tweet ID order.
+     * Files that were already moved away (e.g. by a full scan) are skipped.
+     *
+     * @param files Files in the input directory.
+     * @return The number of files that were processed.
+     */
+    public synchronized int processFiles(List<File> files) {
+        List<File> sorted = files.stream()
+                .sorted(Comparator.comparing(File::getName, InputDirectoryScanner.FILE_NAME_ORDER))
+                .toList();
         int fileCount = 0;
-        for (File inputFile : files) {
-            // Only process actual files
+        for (File inputFile : sorted) {
             if (inputFile.isFile()) {
                 fileCount++;
-                // Delegate processing of this single file
                 singleFileProcessor.processFile(inputFile);
             } else {
-                logger.trace("Skipping non-file item: {}", inputFile.getName());
+                logger.debug("File {} is no longer in the input directory. Skipping.", inputFile.getName());
             }
         }
-
-        if (fileCount == 0) {
-            logger.info("No files (only directories or other items) found in input directory to process.");
-        } else {
-            logger.info("Finished processing batch. {} files were evaluated.", fileCount);
-        }
+        return fileCount;
     }
 
     // Removed the moveOrDeleteFile method - its logic is now in SingleTweetFileProcessor
@@ -0,0 +1,42 @@
+package com.example.file;
+
+import com.example.twitter.TweetData;
+
+import java.util.Set;
+
+/**
+ * Hand-over point between fetching tweets and posting them to Discord.
+ * Fetched tweets are written to the spool; each cycle then processes everything pending in it.
+ */
+public interface TweetSpool {
+
+    /**
+     * Adds a fetched tweet to the spool.
+     *
+     * @param tweetData The tweet with all context needed to post it.
+     * @return true if the tweet is in the spool (written now or already there), false if it could not be written.
+     */
+    boolean write(TweetData tweetData);
+
+    /**
+     * Makes the tweets written since the last flush durable and visible to {@link #processPending()}.
+     * Called once per fetched batch (page), before the batch is recorded in the fetch checkpoint.
+     *
+     * @return The IDs of the tweets written since the last flush that could not be made durable;
+     *         empty if all of them are.
+     */
+    default Set<Long> flush() {
+        return Set.of();
+    }
+
+    /**
+     * Posts all pending tweets (oldest first) and marks each one as processed or failed.
+     */
+    void processPending();
+
+    /**
+     * Releases resources held by the spool.
+     */
+    default void close() {
+    }
+}
@@ -1,54 +1,219 @@
 package com.example.file;
 
 import com.example.twitter.TweetData;
-import com.fasterxml.jackson.databind.ObjectMapper; // Import ObjectMapper
-import com.fasterxml.jackson.databind.SerializationFeature; // For pretty printing, optional
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule; // For LocalDateTime
-// Removed FileUtils import as ObjectMapper writes directly
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 // Removed StandardCharsets import
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 // Removed Collectors import
 
+/**
+ * Writes fetched tweets as {@code tweet_<id>.json} (or, with the Smile codec, {@code .smile})
+ * files to the input directory.
+ * <p>
+ * In atomic mode the files are staged in {@code input/.staging/} and only published by
+ * {@link #commitBatch()} as a group: all staged files are synced first, then renamed into the
+ * input directory, then the input directory is synced once for the whole batch. A crash never leaves a
+ * truncated tweet file in the input directory; staged files of an unfinished batch are
+ * deleted on the next start (the tweets are fetched again, since they are only recorded in the
+ * fetch checkpoint after the commit).
+ * <p>
+ * Otherwise the files are written in place, and {@link #commitBatch()} syncs the ones written
+ * since the last commit and then the input directory, so every tweet recorded in the fetch
+ * checkpoint is durable in either mode.
+ * <p>
+ * Java has no call that syncs several files at once, so a batch costs one sync per file plus
+ * one for the directory. All file syncs run before the first rename, so no file sync also has to
+ * flush the renames of the batch; those are made durable by the one directory sync.
+ */
 public class TweetWriter {
 
     // IMAGE_URL_SEPARATOR no longer needed for JSON
     // public static final String IMAGE_URL_SEPARATOR = ",";
     private static final Logger logger = LoggerFactory.getLogger(TweetWriter.class);
     private final Path inputDirPath;
-    private final ObjectMapper objectMapper; // Jackson ObjectMapper instance
+    private final SpoolCodec codec; // Format of the written files
+    private final SpoolCodecs codecs;
+    private static final String STAGING_DIR = ".staging"; // A directory, so TweetProcessor skips it
+    private final boolean atomicWrites;
+    private final Path stagingDirPath;
+    private final List<StagedFile> stagedFiles = new ArrayList<>(); // Written but not yet published
+    private final List<WrittenFile> unsyncedFiles = new ArrayList<>(); // Written in place but not yet synced
+
+    private record StagedFile(long tweetId, Path stagedPath, Path targetPath) {
+    }
+
+    private record WrittenFile(long tweetId, Path path) {
+    }
 
     public TweetWriter(Path inputDirPath) {
-        this.inputDirPath = inputDirPath;
-        logger.info("TweetWriter initialized for input directory: {}", inputDirPath);
+        this(inputDirPath, false);
+    }
+
+    /**
+     * @param inputDirPath Directory the tweet files are published to.
+     * @param atomicWrites Stage the files and publish them with {@link #commitBatch()} instead of writing them in place.
+     */
+    public TweetWriter(Path inputDirPath, boolean atomicWrites) {
+        this(inputDirPath, atomicWrites, SpoolCodec.JSON, SpoolCodecs.defaults());
+    }
 
-        // Initialize ObjectMapper and configure it
-        this.objectMapper = new ObjectMapper();
-        // Register module to handle Java 8 Date/Time types like LocalDateTime
-        this.objectMapper.registerModule(new JavaTimeModule());
-        // Disable writing dates as timestamps (write as ISO-8601 strings)
-        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        // Optional: Enable pretty printing for readability
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    /**
+     * @param inputDirPath Directory the tweet files are published to.
+     * @param atomicWrites Stage the files and publish them with {@link #commitBatch()} instead of writing them in place.
+     * @param codec Format of the tweet files.
+     * @param codecs Encodes the tweet files.
+     */
+    public TweetWriter(Path inputDirPath, boolean atomicWrites, SpoolCodec codec, SpoolCodecs codecs) {
+        this.inputDirPath = inputDirPath;
+        this.atomicWrites = atomicWrites;
+        this.codec = codec;
+        this.codecs = codecs;
+        this.stagingDirPath = inputDirPath.resolve(STAGING_DIR);
+        logger.info("TweetWriter initialized for input directory: {} (atomic writes: {}, format: {})", inputDirPath, atomicWrites, codec);
+        if (atomicWrites) {
+            discardUnpublishedFiles();
+        }
     }
 
-    public void writeTweetToFile(TweetData tweetData) {
-        // Change file extension to .json
-        String fileName = "tweet_" + tweetData.getId() + ".json";
+    /**
+     * Writes the tweet file, or stages it for the next {@link #commitBatch()} in atomic mode.
+     *
+     * @param tweetData The tweet to write.
+     * @return true if the file was written (or staged).
+     */
+    public synchronized boolean writeTweetToFile(TweetData tweetData) {
+        String fileName = codec.fileName(tweetData.getId());
+        if (atomicWrites) {
+            return stageTweetFile(tweetData, fileName);
+        }
         File outputFile = inputDirPath.resolve(fileName).toFile();
-        logger.debug("Preparing to write tweet {} to JSON file: {}", tweetData.getId(), outputFile.getAbsolutePath());
+        logger.debug("Preparing to write tweet {} to file: {}", tweetData.getId(), outputFile.getAbsolutePath());
 
         try {
             // Serialize the TweetData object directly to the file
-            objectMapper.writeValue(outputFile, tweetData);
-            logger.info("Successfully wrote tweet {} to JSON file {}", tweetData.getId(), outputFile.getAbsolutePath());
+            codecs.write(codec, outputFile, tweetData);
+            unsyncedFiles.add(new WrittenFile(tweetData.getId(), outputFile.toPath()));
+            logger.info("Successfully wrote tweet {} to file {}", tweetData.getId(), outputFile.getAbsolutePath());
+            return true;
         } catch (IOException e) {
             // Log the error with stack trace
-            logger.error("Failed to write tweet {} to JSON file {}: {}", tweetData.getId(), outputFile.getName(), e.getMessage(), e);
+            logger.error("Failed to write tweet {} to file {}: {}", tweetData.getId(), outputFile.getName(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Publishes the files staged since the last commit: syncs all of them, renames them into the
+     * input directory and finally syncs the input directory once for the whole batch.
+     * Without atomic writes, syncs the files written since the last commit and the input
+     * directory instead.
+     *
+     * @return The IDs of the tweets whose files could not be published (they stay in the staging
+     *         directory until the next start) or synced.
+     */
+    public synchronized Set<Long> commitBatch() {
+        if (!atomicWrites) {
+            return syncWrittenFiles();
+        }
+        if (stagedFiles.isEmpty()) {
+            return Set.of();
+        }
+        long start = System.nanoTime();
+        Set<Long> unpublished = new HashSet<>();
+        List<StagedFile> durable = new ArrayList<>(stagedFiles.size());
+        for (StagedFile staged : stagedFiles) {
+            try {
+                AtomicFiles.forceFile(staged.stagedPath());
+                durable.add(staged);
+            } catch (IOException e) {
+                logger.error("Failed to sync staged tweet {} file {}: {}", staged.tweetId(), staged.stagedPath(), e.getMessage(), e);
+                unpublished.add(staged.tweetId());
+            }
+        }
+        long synced = System.nanoTime();
+        int published = 0;
+        for (StagedFile staged : durable) {
+            try {
+                // Synced above, so every renamed file of the batch has its content on disk
+                Files.move(staged.stagedPath(), staged.targetPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                published++;
+            } catch (IOException e) {
+                logger.error("Failed to publish tweet {} to {}: {}", staged.tweetId(), staged.targetPath(), e.getMessage(), e);
+                unpublished.add(staged.tweetId());
+            }
+        }
+        stagedFiles.clear();
+        // One directory sync makes all renames of the batch durable
+        AtomicFiles.syncDirectory(inputDirPath);
+        logger.info("Committed {} tweet file(s) to {} in {} ms ({} ms syncing the files).", published, inputDirPath,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), TimeUnit.NANOSECONDS.toMillis(synced - start));
+        return unpublished;
+    }
+
+    private Set<Long> syncWrittenFiles() {
+        if (unsyncedFiles.isEmpty()) {
+            return Set.of();
+        }
+        long start = System.nanoTime();
+        Set<Long> unsynced = new HashSet<>();
+        for (WrittenFile written : unsyncedFiles) {
+            try {
+                AtomicFiles.forceFile(written.path());
+            } catch (NoSuchFileException e) {
+                // Already consumed by the input watcher, which moved it out of the input directory
+                logger.debug("Tweet file {} was processed before it was synced.", written.path().getFileName());
+            } catch (IOException e) {
+                logger.error("Failed to sync tweet {} file {}: {}", written.tweetId(), written.path(), e.getMessage(), e);
+                unsynced.add(written.tweetId());
+            }
+        }
+        int synced = unsyncedFiles.size() - unsynced.size();
+        unsyncedFiles.clear();
+        AtomicFiles.syncDirectory(inputDirPath);
+        logger.info("Synced {} tweet file(s) in {} in {} ms.", synced, inputDirPath,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return unsynced;
+    }
+
+    private boolean stageTweetFile(TweetData tweetData, String fileName) {
+        Path stagedPath = stagingDirPath.resolve(fileName);
+        try {
+            Files.createDirectories(stagingDirPath);
+            codecs.write(codec, stagedPath.toFile(), tweetData);
+            stagedFiles.add(new StagedFile(tweetData.getId(), stagedPath, inputDirPath.resolve(fileName)));
+            logger.info("Staged tweet {} for the next commit: {}", tweetData.getId(), stagedPath);
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to stage tweet {} in {}: {}", tweetData.getId(), stagedPath, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    // Staged files of a batch that never committed; their tweets are fetched again
+    private void discardUnpublishedFiles() {
+        if (!Files.isDirectory(stagingDirPath)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(stagingDirPath)) {
+            for (Path leftover : stream) {
+                Files.deleteIfExists(leftover);
+                logger.warn("Deleted unpublished tweet file from an interrupted batch: {}", leftover.getFileName());
+            }
+        } catch (IOException e) {
+            logger.error("Could not clean up staging directory {}: {}", stagingDirPath, e.getMessage(), e);
         }
     }
 }
@@ -0,0 +1,33 @@
+package com.example.twitch;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A Twitch app access token (client credentials grant) as persisted in the data directory.
+ *
+ * @param clientId             The client ID the token was issued for.
+ * @param accessToken          The access token.
+ * @param issuedAtEpochSecond  When the token was obtained (epoch seconds).
+ * @param expiresAtEpochSecond When the token expires (epoch seconds).
+ */
+public record TwitchAppToken(String clientId, String accessToken, long issuedAtEpochSecond, long expiresAtEpochSecond) {
+
+    /**
+     * @param now The current time.
+     * @param margin Time before the expiry from which the token counts as expiring.
+     * @return true if the token expires within the margin (or has expired).
+     */
+    public boolean expiresWithin(Instant now, Duration margin) {
+        return !Instant.ofEpochSecond(expiresAtEpochSecond).minus(margin).isAfter(now);
+    }
+
+    /**
+     * @param margin The configured refresh margin.
+     * @return The margin, capped at half the token's lifetime so a short-lived token isn't refreshed on every use.
+     */
+    public Duration refreshMargin(Duration margin) {
+        Duration halfLifetime = Duration.ofSeconds(Math.max(0, expiresAtEpochSecond - issuedAtEpochSecond) / 2);
+        return margin.compareTo(halfLifetime) > 0 ? halfLifetime : margin;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.twitch;
+
+import com.example.file.AtomicFiles;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides the Twitch app access token for Helix requests and keeps it in the data directory,
+ * so a new process reuses the token instead of doing a client credentials exchange first.
+ * <ul>
+ *     <li>Token valid for longer than the refresh margin: used as is.</li>
+ *     <li>Token valid, but expiring within the margin: used, and a new one is fetched in the background.</li>
+ *     <li>No token, expired, or invalidated after a 401: a new one is fetched before the request.</li>
+ * </ul>
+ */
+public class TwitchAppTokenProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwitchAppTokenProvider.class);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration EXPIRED_MARGIN = Duration.ofMinutes(1); // Never send a token about to expire mid-request
+
+    private final String clientId;
+    private final String clientSecret;
+    private final URI tokenUri;
+    private final Path tokenFile;
+    private final Duration refreshMargin;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicBoolean refreshRunning = new AtomicBoolean(false);
+    private volatile TwitchAppToken token;
+
+    /**
+     * @param clientId The Twitch application client ID.
+     * @param clientSecret The Twitch application client secret.
+     * @param tokenUrl The OAuth token endpoint (https://id.twitch.tv/oauth2/token in production).
+     * @param tokenFile File the token is persisted to.
+     * @param refreshMargin Time before the expiry from which the token is refreshed in the background.
+     */
+    public TwitchAppTokenProvider(String clientId, String clientSecret, String tokenUrl, Path tokenFile, Duration refreshMargin) {
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.tokenUri = URI.create(tokenUrl);
+        this.tokenFile = tokenFile;
+        this.refreshMargin = refreshMargin;
+        this.token = load().orElse(null);
+    }
+
+    /**
+     * Gets a valid app access token, fetching a new one only if there is no usable token.
+     *
+     * @return The access token, or Optional.empty() if none could be fetched.
+     */
+    public Optional<String> getAccessToken() {
+        Instant now = Instant.now();
+        TwitchAppToken current = this.token;
+        if (current != null && !current.expiresWithin(now, EXPIRED_MARGIN)) {
+            if (current.expiresWithin(now, current.refreshMargin(refreshMargin))) {
+                refreshInBackground();
+            }
+            return Optional.of(current.accessToken());
+        }
+        synchronized (this) {
+            current = this.token;
+            if (current == null || current.expiresWithin(Instant.now(), EXPIRED_MARGIN)) {
+                current = requestToken();
+            }
+            return Optional.ofNullable(current).map(TwitchAppToken::accessToken);
+        }
+    }
+
+    /**
+     * Drops the current token (e.g. after Helix answered 401), so the next call fetches a new one.
+     *
+     * @param rejectedToken The token that was rejected; ignored if the token has already been replaced.
+     */
+    public synchronized void invalidate(String rejectedToken) {
+        TwitchAppToken current = this.token;
+        if (current != null && current.accessToken().equals(rejectedToken)) {
+            logger.warn("Twitch app access token was rejected. A new one is fetched on the next request.");
+            this.token = null;
+        }
+    }
+
+    private void refreshInBackground() {
+        if (!refreshRunning.compareAndSet(false, true)) {
+            return;
+        }
+        logger.info("Twitch app access token expires at {}. Refreshing it in the background.",
+                this.token != null ? Instant.ofEpochSecond(this.token.expiresAtEpochSecond()) : "unknown");
+        Thread refreshThread = new Thread(() -> {
+            try {
+                synchronized (this) {
+                    requestToken();
+                }
+            } finally {
+                refreshRunning.set(false);
+            }
+        }, "twitch-token-refresh");
+        refreshThread.setDaemon(true); // Never keeps a cron run alive
+        refreshThread.start();
+    }
+
+    // Client credentials exchange; on failure the previous token (if any) stays in place
+    private TwitchAppToken requestToken() {
+        logger.info("Requesting a new Twitch app access token from {}", tokenUri);
+        String form = "client_id=" + encode(clientId)
+                + "&client_secret=" + encode(clientSecret)
+                + "&grant_type=client_credentials";
+        HttpRequest request = HttpRequest.newBuilder(tokenUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                logger.error("Twitch token endpoint answered {}: {}", response.statusCode(), response.body());
+                return this.token;
+            }
+            JsonNode body = objectMapper.readTree(response.body());
+            String accessToken = body.path("access_token").asText(null);
+            long expiresIn = body.path("expires_in").asLong(0);
+            if (accessToken == null || expiresIn <= 0) {
+                logger.error("Twitch token endpoint response has no access_token or expires_in.");
+                return this.token;
+            }
+            long issuedAt = Instant.now().getEpochSecond();
+            TwitchAppToken fetched = new TwitchAppToken(clientId, accessToken, issuedAt, issuedAt + expiresIn);
+            this.token = fetched;
+            persist(fetched);
+            logger.info("Obtained Twitch app access token, valid until {}.", Instant.ofEpochSecond(fetched.expiresAtEpochSecond()));
+            return fetched;
+        } catch (IOException e) {
+            logger.error("Error requesting Twitch app access token: {}", e.getMessage(), e);
+            return this.token;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while requesting Twitch app access token.");
+            return this.token;
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private Optional<TwitchAppToken> load() {
+        if (!Files.isReadable(tokenFile)) {
+            return Optional.empty();
+        }
+        try {
+            TwitchAppToken loaded = objectMapper.readValue(tokenFile.toFile(), TwitchAppToken.class);
+            if (loaded.accessToken() == null || !clientId.equals(loaded.clientId())) {
+                logger.info("Persisted Twitch app access token belongs to another client ID. Ignoring it.");
+                return Optional.empty();
+            }
+            logger.info("Loaded persisted Twitch app access token, valid until {}.", Instant.ofEpochSecond(loaded.expiresAtEpochSecond()));
+            return Optional.of(loaded);
+        } catch (IOException e) {
+            logger.warn("Could not read Twitch token file {}: {}", tokenFile.toAbsolutePath(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // The token is a credential, so the file is readable by the owner only from the moment it is created
+    private void persist(TwitchAppToken appToken) {
+        try {
+            AtomicFiles.replaceOwnerOnly(tokenFile, objectMapper.writeValueAsBytes(appToken));
+        } catch (IOException e) {
+            logger.warn("Could not persist Twitch app access token to {}: {}", tokenFile.toAbsolutePath(), e.getMessage());
+        }
+    }
+}
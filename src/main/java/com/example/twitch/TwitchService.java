@@ -1,44 +1,49 @@
 package com.example.twitch;
 
-import com.github.philippheuer.credentialmanager.domain.OAuth2Credential;
 import com.github.twitch4j.TwitchClient;
 import com.github.twitch4j.TwitchClientBuilder;
+import com.github.twitch4j.common.exception.UnauthorizedException;
 import com.github.twitch4j.helix.domain.User;
 import com.github.twitch4j.helix.domain.UserList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class TwitchService {
 
     private static final Logger logger = LoggerFactory.getLogger(TwitchService.class);
+    private static final int MAX_LOGINS_PER_REQUEST = 100; // Helix "Get Users" limit
     private final TwitchClient twitchClient;
     private final String clientId;
     private final String clientSecret;
+    private final TwitchAppTokenProvider tokenProvider;
 
-    public TwitchService(String clientId, String clientSecret) {
+    public TwitchService(String clientId, String clientSecret, TwitchAppTokenProvider tokenProvider) {
         if (clientId == null || clientSecret == null) {
             logger.error("Twitch Client ID and Client Secret must be provided via environment variables.");
             throw new IllegalArgumentException("Twitch Client ID and Client Secret are required.");
         }
         this.clientId = clientId;
         this.clientSecret = clientSecret;
+        this.tokenProvider = tokenProvider;
 
         logger.info("Initializing TwitchService...");
         // Build TwitchClient instance
-        // Using App Access Token flow (Client Credentials) for server-to-server API calls
+        // Using App Access Token flow (Client Credentials) for server-to-server API calls.
+        // The token comes from the TwitchAppTokenProvider (persisted across runs) and is passed per request,
+        // so the client is built without the secret and never does its own token exchange.
         try {
-            // Note: For production, consider a more robust credential manager or token refresh strategy
-            OAuth2Credential credential = new OAuth2Credential("twitch", clientSecret); // Secret used here, might need App Access Token flow explicitly
-
             twitchClient = TwitchClientBuilder.builder()
                     .withEnableHelix(true)
                     .withClientId(clientId) // Client ID needed for requests
-                    .withClientSecret(clientSecret) // Needed for App Access Token generation
-                    // .withDefaultAuthToken(credential) // Might be needed depending on library version/flow
                     .build();
             logger.info("TwitchClient initialized successfully.");
         } catch (Exception e) {
@@ -58,27 +63,82 @@ public class TwitchService {
             logger.warn("Cannot fetch Twitch user info for null or empty username.");
             return Optional.empty();
         }
-        logger.info("Fetching Twitch user info for username: {}", username);
-        try {
-            // Fetch user data using the Helix endpoint
-            UserList resultList = twitchClient.getHelix().getUsers(null, null, Collections.singletonList(username)).execute();
+        return Optional.ofNullable(fetchUserInfos(Collections.singletonList(username)).get(normalizeLogin(username)));
+    }
 
-            if (resultList == null || resultList.getUsers() == null || resultList.getUsers().isEmpty()) {
-                logger.warn("No Twitch user found for username: {}", username);
-                return Optional.empty();
+    /**
+     * Fetches user information for several usernames from the Twitch Helix API,
+     * with up to 100 logins (the Helix limit) per request.
+     *
+     * @param usernames The Twitch usernames to look up.
+     * @return The users found, keyed by lower-case login. Unknown users and failed batches are missing.
+     */
+    public Map<String, TwitchUserInfo> fetchUserInfos(Collection<String> usernames) {
+        List<String> logins = usernames.stream()
+                .filter(name -> name != null && !name.trim().isEmpty())
+                .map(TwitchService::normalizeLogin)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<String, TwitchUserInfo> result = new HashMap<>();
+        for (int from = 0; from < logins.size(); from += MAX_LOGINS_PER_REQUEST) {
+            List<String> batch = logins.subList(from, Math.min(from + MAX_LOGINS_PER_REQUEST, logins.size()));
+            logger.info("Fetching Twitch user info for {} username(s): {}", batch.size(), batch);
+            Optional<String> accessToken = tokenProvider.getAccessToken();
+            if (accessToken.isEmpty()) {
+                logger.error("No Twitch app access token available. Cannot fetch Twitch user info for {}.", batch);
+                return result;
             }
+            try {
+                // Fetch user data using the Helix endpoint
+                UserList resultList = getUsers(accessToken.get(), batch);
 
-            User twitchUser = resultList.getUsers().get(0);
-            String profileImageUrl = twitchUser.getProfileImageUrl();
-            String channelUrl = "https://www.twitch.tv/" + twitchUser.getLogin(); // Construct channel URL
+                if (resultList == null || resultList.getUsers() == null || resultList.getUsers().isEmpty()) {
+                    logger.warn("No Twitch user found for usernames: {}", batch);
+                    continue;
+                }
+                for (User twitchUser : resultList.getUsers()) {
+                    String profileImageUrl = twitchUser.getProfileImageUrl();
+                    String channelUrl = "https://www.twitch.tv/" + twitchUser.getLogin(); // Construct channel URL
+                    result.put(normalizeLogin(twitchUser.getLogin()), new TwitchUserInfo(profileImageUrl, channelUrl));
+                }
+                logger.info("Successfully fetched Twitch info for {} of {} username(s).", resultList.getUsers().size(), batch.size());
+            } catch (Exception e) {
+                // Log API errors or other exceptions
+                logger.error("Error fetching Twitch user info for {}: {}", batch, e.getMessage(), e);
+            }
+        }
+        return result;
+    }
 
-            logger.info("Successfully fetched Twitch info for {}: Profile Image URL obtained.", username);
-            return Optional.of(new TwitchUserInfo(profileImageUrl, channelUrl));
+    // One retry with a new token if Helix rejects the persisted one (e.g. revoked before its expiry)
+    private UserList getUsers(String accessToken, List<String> logins) {
+        try {
+            return twitchClient.getHelix().getUsers(accessToken, null, logins).execute();
+        } catch (RuntimeException e) {
+            if (!isUnauthorized(e)) {
+                throw e;
+            }
+            tokenProvider.invalidate(accessToken);
+            String newToken = tokenProvider.getAccessToken()
+                    .orElseThrow(() -> new IllegalStateException("No Twitch app access token available after a 401", e));
+            return twitchClient.getHelix().getUsers(newToken, null, logins).execute();
+        }
+    }
 
-        } catch (Exception e) {
-            // Log API errors or other exceptions
-            logger.error("Error fetching Twitch user info for {}: {}", username, e.getMessage(), e);
-            return Optional.empty();
+    private static boolean isUnauthorized(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnauthorizedException) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * @param username A Twitch username in any case.
+     * @return The login as Helix returns it (lower case, trimmed).
+     */
+    public static String normalizeLogin(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
     }
 }
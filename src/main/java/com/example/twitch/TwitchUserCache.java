@@ -0,0 +1,159 @@
+package com.example.twitch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Persistent TTL cache of {@link TwitchUserInfo} records, keyed by lower-case login.
+ * Profile images and channel URLs change maybe once a year, so a cached entry is used until its
+ * TTL expires, and the Twitch API (and even the TwitchService) is only needed for missing or
+ * expired entries. Those are resolved in one batched lookup.
+ */
+public class TwitchUserCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwitchUserCache.class);
+    private static final TypeReference<Map<String, CachedUser>> CACHE_TYPE = new TypeReference<>() {
+    };
+
+    private final Path cacheFile;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, CachedUser> entries;
+
+    /**
+     * Persisted cache entry.
+     *
+     * @param profileImageUrl    URL of the user's profile picture.
+     * @param channelUrl         URL to the user's Twitch channel.
+     * @param fetchedEpochSecond When the entry was fetched from the API (epoch seconds).
+     */
+    record CachedUser(String profileImageUrl, String channelUrl, long fetchedEpochSecond) {
+    }
+
+    /**
+     * @param cacheFile File the cache is persisted to.
+     * @param ttl How long a cached entry is used before it is fetched again.
+     */
+    public TwitchUserCache(Path cacheFile, Duration ttl) {
+        this.cacheFile = cacheFile;
+        this.ttl = ttl;
+        this.entries = load();
+        logger.info("TwitchUserCache initialized with {} cached user(s) (TTL: {} hours).", entries.size(), ttl.toHours());
+    }
+
+    /**
+     * Gets the info of one user, fetching it only if it is not cached or expired.
+     *
+     * @param username The Twitch username.
+     * @param loader Batched lookup for the logins that need fetching (e.g. TwitchService::fetchUserInfos).
+     * @return The user info, or Optional.empty() if it is neither cached nor could be fetched.
+     */
+    public Optional<TwitchUserInfo> get(String username, Function<Collection<String>, Map<String, TwitchUserInfo>> loader) {
+        if (username == null || username.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(getAll(Collections.singletonList(username), loader).get(TwitchService.normalizeLogin(username)));
+    }
+
+    /**
+     * Gets the info of several users. All missing or expired entries are fetched in one call of the loader.
+     * If the loader fails for an expired entry, the expired entry is used.
+     *
+     * @param usernames The Twitch usernames.
+     * @param loader Batched lookup for the logins that need fetching (e.g. TwitchService::fetchUserInfos).
+     * @return The known users, keyed by lower-case login.
+     */
+    public synchronized Map<String, TwitchUserInfo> getAll(Collection<String> usernames,
+                                                           Function<Collection<String>, Map<String, TwitchUserInfo>> loader) {
+        Instant now = Instant.now();
+        Map<String, TwitchUserInfo> result = new LinkedHashMap<>();
+        List<String> toFetch = new ArrayList<>();
+        for (String username : usernames) {
+            if (username == null || username.trim().isEmpty()) {
+                continue;
+            }
+            String login = TwitchService.normalizeLogin(username);
+            CachedUser cached = entries.get(login);
+            if (cached != null && !isExpired(cached, now)) {
+                result.put(login, toInfo(cached));
+            } else if (!toFetch.contains(login)) {
+                toFetch.add(login);
+            }
+        }
+        if (toFetch.isEmpty()) {
+            logger.debug("All {} Twitch user(s) served from cache.", result.size());
+            return result;
+        }
+
+        logger.info("Twitch user cache miss or expired for {}. Fetching them.", toFetch);
+        Map<String, TwitchUserInfo> fetched;
+        try {
+            fetched = loader.apply(toFetch);
+        } catch (Exception e) {
+            logger.error("Error fetching Twitch users {}: {}", toFetch, e.getMessage(), e);
+            fetched = Collections.emptyMap();
+        }
+        boolean changed = false;
+        for (String login : toFetch) {
+            TwitchUserInfo info = fetched.get(login);
+            if (info != null) {
+                entries.put(login, new CachedUser(info.profileImageUrl(), info.channelUrl(), now.getEpochSecond()));
+                result.put(login, info);
+                changed = true;
+            } else if (entries.containsKey(login)) {
+                logger.warn("Could not refresh Twitch user {}. Using the expired cache entry.", login);
+                result.put(login, toInfo(entries.get(login)));
+            }
+        }
+        if (changed) {
+            persist();
+        }
+        return result;
+    }
+
+    private boolean isExpired(CachedUser cached, Instant now) {
+        return Instant.ofEpochSecond(cached.fetchedEpochSecond()).plus(ttl).isBefore(now);
+    }
+
+    private static TwitchUserInfo toInfo(CachedUser cached) {
+        return new TwitchUserInfo(cached.profileImageUrl(), cached.channelUrl());
+    }
+
+    private Map<String, CachedUser> load() {
+        if (!Files.isReadable(cacheFile)) {
+            return new HashMap<>();
+        }
+        try {
+            Map<String, CachedUser> loaded = objectMapper.readValue(cacheFile.toFile(), CACHE_TYPE);
+            return loaded != null ? new HashMap<>(loaded) : new HashMap<>();
+        } catch (IOException e) {
+            logger.warn("Could not read Twitch user cache {}: {}. Starting with an empty cache.", cacheFile.toAbsolutePath(), e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private void persist() {
+        try {
+            objectMapper.writeValue(cacheFile.toFile(), entries);
+        } catch (IOException e) {
+            logger.warn("Could not persist Twitch user cache to {}: {}", cacheFile.toAbsolutePath(), e.getMessage());
+        }
+    }
+}
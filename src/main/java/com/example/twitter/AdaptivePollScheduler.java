@@ -0,0 +1,133 @@
+package com.example.twitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Plans timeline polls from the rate limit window reported by the API.
+ * <ul>
+ *     <li>Window exhausted: the next poll lands just after the window resets.</li>
+ *     <li>Quota left: the remaining requests are spread evenly until the reset,
+ *     so plenty of quota means faster polling.</li>
+ *     <li>No window known yet: the configured default interval is used.</li>
+ * </ul>
+ * The delay is clamped between the configured minimum and maximum interval, but is never
+ * shorter than the interval the {@link ReadQuotaLedger} plans for the monthly read budget.
+ */
+public class AdaptivePollScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePollScheduler.class);
+    private static final Duration RESET_MARGIN = Duration.ofSeconds(2); // Clock skew safety after a window reset
+
+    private final RateLimitTracker rateLimitTracker;
+    private final ReadQuotaLedger readQuotaLedger;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+
+    /**
+     * @param rateLimitTracker Source of the last known timeline rate limit window.
+     * @param readQuotaLedger Monthly read budget planner.
+     * @param minInterval Lower bound between two polls, even with plenty of quota.
+     * @param maxInterval Upper bound between two polls; also used when no window is known.
+     */
+    public AdaptivePollScheduler(RateLimitTracker rateLimitTracker, ReadQuotaLedger readQuotaLedger,
+                                 Duration minInterval, Duration maxInterval) {
+        this.rateLimitTracker = rateLimitTracker;
+        this.readQuotaLedger = readQuotaLedger;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval.compareTo(minInterval) < 0 ? minInterval : maxInterval;
+    }
+
+    /**
+     * @return true unless the last known window is exhausted and has not reset yet
+     * (a request now would be a guaranteed 429), the monthly read budget is used up,
+     * or the budget plans the next poll for later.
+     */
+    public boolean isPollAllowedNow() {
+        Instant now = Instant.now();
+        boolean windowAvailable = rateLimitTracker.getTimelineWindow()
+                .map(window -> !window.isExhaustedAt(now))
+                .orElse(true);
+        if (!windowAvailable) {
+            return false;
+        }
+        if (readQuotaLedger.remainingReads() <= 0) {
+            logger.info("Monthly read budget is used up. No timeline poll until it resets.");
+            return false;
+        }
+        Duration untilBudgetAllows = readQuotaLedger.untilNextPlannedPoll(now);
+        if (!untilBudgetAllows.isZero()) {
+            logger.info("Monthly read budget plans the next timeline poll in {} seconds.", untilBudgetAllows.toSeconds());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a follow-up page of a poll that is already running may be requested.
+     * Unlike {@link #isPollAllowedNow()}, the planned poll interval is not applied, since the
+     * poll that fetched the first page just reset it.
+     *
+     * @return true if the last known window is not exhausted and monthly reads are left.
+     */
+    public boolean isFollowUpRequestAllowedNow() {
+        Instant now = Instant.now();
+        boolean windowAvailable = rateLimitTracker.getTimelineWindow()
+                .map(window -> !window.isExhaustedAt(now))
+                .orElse(true);
+        return windowAvailable && readQuotaLedger.remainingReads() > 0;
+    }
+
+    /**
+     * Computes how long to wait before the next timeline poll.
+     *
+     * @return The delay until the next poll.
+     */
+    public Duration nextPollDelay() {
+        Duration rateLimitDelay = nextRateLimitDelay();
+        Duration budgetDelay = readQuotaLedger.untilNextPlannedPoll(Instant.now());
+        return budgetDelay.compareTo(rateLimitDelay) > 0 ? budgetDelay : rateLimitDelay;
+    }
+
+    private Duration nextRateLimitDelay() {
+        Instant now = Instant.now();
+        Optional<RateLimitWindow> windowOpt = rateLimitTracker.getTimelineWindow();
+        if (windowOpt.isEmpty()) {
+            logger.debug("No rate limit window known yet. Using default poll interval {}.", maxInterval);
+            return maxInterval;
+        }
+        RateLimitWindow window = windowOpt.get();
+        Duration untilReset = Duration.between(now, window.resetAt());
+        if (untilReset.isNegative() || untilReset.isZero()) {
+            // Window already reset, full quota is available again
+            return minInterval;
+        }
+
+        Duration delay;
+        if (window.remaining() <= 0) {
+            // Exhausted: never poll before the reset, a request now is a guaranteed 429
+            delay = untilReset.plus(RESET_MARGIN);
+            logger.info("Timeline rate limit exhausted. Next poll right after the window resets at {}.", window.resetAt());
+            return delay.compareTo(minInterval) < 0 ? minInterval : delay;
+        }
+        // Spread the remaining requests evenly over the rest of the window
+        delay = untilReset.dividedBy(window.remaining());
+        delay = clamp(delay);
+        logger.debug("{} timeline requests remaining until {}. Next poll in {}.", window.remaining(), window.resetAt(), delay);
+        return delay;
+    }
+
+    private Duration clamp(Duration delay) {
+        if (delay.compareTo(minInterval) < 0) {
+            return minInterval;
+        }
+        if (delay.compareTo(maxInterval) > 0) {
+            return maxInterval;
+        }
+        return delay;
+    }
+}
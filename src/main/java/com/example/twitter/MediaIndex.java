@@ -0,0 +1,59 @@
+package com.example.twitter;
+
+import io.github.redouane59.twitter.dto.tweet.TweetV2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Photo URLs of a timeline page's {@code includes.media}, indexed by media key.
+ * Built once per page, so resolving a tweet's attachments is one lookup per media key
+ * instead of a scan over all media of the page.
+ */
+class MediaIndex {
+
+    private static final MediaIndex EMPTY = new MediaIndex(Collections.emptyMap());
+
+    private final Map<String, String> photoUrlsByKey;
+
+    private MediaIndex(Map<String, String> photoUrlsByKey) {
+        this.photoUrlsByKey = photoUrlsByKey;
+    }
+
+    /**
+     * @param includedMedia The media of a timeline page (may be null).
+     * @return The index of the page's photos that have a URL.
+     */
+    static MediaIndex of(List<TweetV2.MediaEntityV2> includedMedia) {
+        if (includedMedia == null || includedMedia.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, String> photoUrlsByKey = new HashMap<>(includedMedia.size() * 2);
+        for (TweetV2.MediaEntityV2 media : includedMedia) {
+            if (media != null && media.getKey() != null && media.getUrl() != null && "photo".equals(media.getType())) {
+                photoUrlsByKey.putIfAbsent(media.getKey(), media.getUrl());
+            }
+        }
+        return new MediaIndex(photoUrlsByKey);
+    }
+
+    /**
+     * @param mediaKeys The media keys of a tweet's attachments.
+     * @return The photo URLs in attachment order; keys of videos, GIFs or missing media are skipped.
+     */
+    List<String> photoUrls(String[] mediaKeys) {
+        List<String> urls = new ArrayList<>(mediaKeys.length);
+        for (String key : mediaKeys) {
+            String url = key != null ? photoUrlsByKey.get(key) : null;
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    int size() { return photoUrlsByKey.size(); }
+}
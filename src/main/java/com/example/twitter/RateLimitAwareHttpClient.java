@@ -0,0 +1,71 @@
+package com.example.twitter;
+
+import com.github.scribejava.core.httpclient.jdk.JDKHttpClient;
+import com.github.scribejava.core.httpclient.multipart.MultipartPayload;
+import com.github.scribejava.core.model.Response;
+import com.github.scribejava.core.model.Verb;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP client for the Twitter client library that hands the rate limit headers
+ * of every user timeline response to a {@link RateLimitTracker} and counts every
+ * API read in the {@link ReadQuotaLedger}.
+ * The library itself only logs those headers and does not expose them.
+ */
+class RateLimitAwareHttpClient extends JDKHttpClient {
+
+    // Matches /2/users/{id}/tweets (the user timeline endpoint), with or without query string
+    private static final Pattern TIMELINE_URL = Pattern.compile(".*/2/users/\\d+/tweets(\\?.*)?$");
+
+    // Matches every v2 API call (timeline and user lookup)
+    private static final Pattern API_V2_URL = Pattern.compile(".*/2/.*");
+
+    private final RateLimitTracker rateLimitTracker;
+    private final ReadQuotaLedger readQuotaLedger;
+
+    RateLimitAwareHttpClient(RateLimitTracker rateLimitTracker, ReadQuotaLedger readQuotaLedger) {
+        this.rateLimitTracker = rateLimitTracker;
+        this.readQuotaLedger = readQuotaLedger;
+    }
+
+    @Override
+    public Response execute(String userAgent, Map<String, String> headers, Verb httpVerb, String completeUrl,
+                            byte[] bodyContents) throws InterruptedException, ExecutionException, IOException {
+        return track(completeUrl, super.execute(userAgent, headers, httpVerb, completeUrl, bodyContents));
+    }
+
+    @Override
+    public Response execute(String userAgent, Map<String, String> headers, Verb httpVerb, String completeUrl,
+                            MultipartPayload bodyContents) throws InterruptedException, ExecutionException, IOException {
+        return track(completeUrl, super.execute(userAgent, headers, httpVerb, completeUrl, bodyContents));
+    }
+
+    @Override
+    public Response execute(String userAgent, Map<String, String> headers, Verb httpVerb, String completeUrl,
+                            String bodyContents) throws InterruptedException, ExecutionException, IOException {
+        return track(completeUrl, super.execute(userAgent, headers, httpVerb, completeUrl, bodyContents));
+    }
+
+    @Override
+    public Response execute(String userAgent, Map<String, String> headers, Verb httpVerb, String completeUrl,
+                            File bodyContents) throws InterruptedException, ExecutionException, IOException {
+        return track(completeUrl, super.execute(userAgent, headers, httpVerb, completeUrl, bodyContents));
+    }
+
+    private Response track(String completeUrl, Response response) {
+        if (response == null || completeUrl == null || !API_V2_URL.matcher(completeUrl).matches()) {
+            return response;
+        }
+        boolean timelineRequest = TIMELINE_URL.matcher(completeUrl).matches();
+        readQuotaLedger.recordRead(timelineRequest);
+        if (timelineRequest) {
+            rateLimitTracker.recordTimelineResponse(response.getCode(), response.getHeaders());
+        }
+        return response;
+    }
+}
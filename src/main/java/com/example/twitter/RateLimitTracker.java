@@ -0,0 +1,106 @@
+package com.example.twitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the most recent rate limit window of the user timeline endpoint.
+ * The window is persisted in the data directory so a new process (e.g. the next cron run)
+ * knows whether the window is already exhausted before sending a request.
+ */
+public class RateLimitTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitTracker.class);
+    private static final String HEADER_LIMIT = "x-rate-limit-limit";
+    private static final String HEADER_REMAINING = "x-rate-limit-remaining";
+    private static final String HEADER_RESET = "x-rate-limit-reset";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final Path stateFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile RateLimitWindow timelineWindow;
+
+    /**
+     * @param stateFile File used to persist the last known window (created on first update).
+     */
+    public RateLimitTracker(Path stateFile) {
+        this.stateFile = stateFile;
+        this.timelineWindow = loadWindow();
+    }
+
+    /**
+     * Records the rate limit headers of a timeline response.
+     *
+     * @param responseCode The HTTP status code.
+     * @param headers The response headers (any case).
+     */
+    public void recordTimelineResponse(int responseCode, Map<String, String> headers) {
+        Optional<String> remainingHeader = header(headers, HEADER_REMAINING);
+        Optional<String> resetHeader = header(headers, HEADER_RESET);
+        if (resetHeader.isEmpty() || (remainingHeader.isEmpty() && responseCode != HTTP_TOO_MANY_REQUESTS)) {
+            logger.debug("Timeline response {} carried no rate limit headers.", responseCode);
+            return;
+        }
+        try {
+            int limit = header(headers, HEADER_LIMIT).map(String::trim).map(Integer::parseInt).orElse(-1);
+            // A 429 means the window is exhausted, whatever the remaining header says
+            int remaining = responseCode == HTTP_TOO_MANY_REQUESTS ? 0 : Integer.parseInt(remainingHeader.get().trim());
+            long reset = Long.parseLong(resetHeader.get().trim());
+            RateLimitWindow window = new RateLimitWindow(limit, remaining, reset, Instant.now().getEpochSecond());
+            this.timelineWindow = window;
+            logger.info("Timeline rate limit: {}/{} requests remaining, window resets at {}.", remaining, limit, window.resetAt());
+            persist(window);
+        } catch (NumberFormatException e) {
+            logger.warn("Could not parse timeline rate limit headers: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The last known timeline window, if any.
+     */
+    public Optional<RateLimitWindow> getTimelineWindow() {
+        return Optional.ofNullable(timelineWindow);
+    }
+
+    private static Optional<String> header(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return Optional.empty();
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name) && entry.getValue() != null) {
+                return Optional.of(entry.getValue());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private RateLimitWindow loadWindow() {
+        if (!Files.isReadable(stateFile)) {
+            return null;
+        }
+        try {
+            RateLimitWindow window = objectMapper.readValue(stateFile.toFile(), RateLimitWindow.class);
+            logger.debug("Loaded persisted timeline rate limit window: {}", window);
+            return window;
+        } catch (IOException e) {
+            logger.warn("Could not read rate limit state file {}: {}", stateFile.toAbsolutePath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void persist(RateLimitWindow window) {
+        try {
+            objectMapper.writeValue(stateFile.toFile(), window);
+        } catch (IOException e) {
+            logger.warn("Could not persist rate limit state to {}: {}", stateFile.toAbsolutePath(), e.getMessage());
+        }
+    }
+}
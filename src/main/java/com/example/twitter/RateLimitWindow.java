@@ -0,0 +1,26 @@
+package com.example.twitter;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of the rate limit window reported by the Twitter API response headers
+ * ({@code x-rate-limit-limit}, {@code x-rate-limit-remaining}, {@code x-rate-limit-reset}).
+ *
+ * @param limit              Requests allowed per window.
+ * @param remaining          Requests left in the current window.
+ * @param resetEpochSecond   When the current window resets (epoch seconds, as sent by the API).
+ * @param observedEpochSecond When the headers were received (epoch seconds).
+ */
+public record RateLimitWindow(int limit, int remaining, long resetEpochSecond, long observedEpochSecond) {
+
+    public Instant resetAt() {
+        return Instant.ofEpochSecond(resetEpochSecond);
+    }
+
+    /**
+     * @return true if no request is left and the window has not reset yet at the given time.
+     */
+    public boolean isExhaustedAt(Instant now) {
+        return remaining <= 0 && now.isBefore(resetAt());
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.twitter;
+
+import com.example.file.AtomicFiles;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Persistent ledger of the Twitter API reads made in the current (UTC) month.
+ * Low API tiers cap the monthly reads, so the ledger plans the poll interval to spread
+ * the remaining budget evenly over the days left in the month. Within a day, hours in which
+ * the account usually tweets get a bigger share of the polls than quiet hours.
+ */
+public class ReadQuotaLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadQuotaLedger.class);
+    private static final int HOURS_PER_DAY = 24;
+    private static final double POLL_TOLERANCE = 0.9; // Allow a poll slightly early to absorb cron jitter
+
+    private final Path ledgerFile;
+    private final long monthlyReadLimit;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private State state;
+
+    /**
+     * Persisted ledger content.
+     *
+     * @param month               The month the read counter belongs to (yyyy-MM, UTC).
+     * @param reads               API reads made in that month.
+     * @param lastPollEpochSecond Time of the last timeline request (epoch seconds, 0 if none).
+     * @param tweetsPerHour       Observed tweets per UTC hour of day (all months).
+     */
+    record State(String month, long reads, long lastPollEpochSecond, long[] tweetsPerHour) {
+    }
+
+    /**
+     * @param ledgerFile File the ledger is persisted to.
+     * @param monthlyReadLimit Reads allowed per month; 0 or less disables budget planning.
+     */
+    public ReadQuotaLedger(Path ledgerFile, long monthlyReadLimit) {
+        this.ledgerFile = ledgerFile;
+        this.monthlyReadLimit = monthlyReadLimit;
+        this.state = load();
+        logger.info("ReadQuotaLedger initialized: {} reads used in {} (monthly limit: {}).",
+                state.reads(), state.month(), monthlyReadLimit > 0 ? monthlyReadLimit : "none");
+    }
+
+    public boolean isEnabled() {
+        return monthlyReadLimit > 0;
+    }
+
+    /**
+     * Counts one API read (timeline or user lookup).
+     *
+     * @param timelineRequest true if the read was a timeline poll.
+     */
+    public synchronized void recordRead(boolean timelineRequest) {
+        State current = forCurrentMonth(state);
+        long lastPoll = timelineRequest ? Instant.now().getEpochSecond() : current.lastPollEpochSecond();
+        state = new State(current.month(), current.reads() + 1, lastPoll, current.tweetsPerHour());
+        persist();
+    }
+
+    /**
+     * Adds fetched tweets to the per-hour tweet frequency.
+     *
+     * @param tweetIds IDs of the fetched tweets; the hour (UTC) is decoded from their Snowflake timestamp.
+     */
+    public synchronized void recordTweets(long[] tweetIds) {
+        if (tweetIds.length == 0) {
+            return;
+        }
+        long[] tweetsPerHour = state.tweetsPerHour().clone();
+        for (long tweetId : tweetIds) {
+            SnowflakeId.timestampOf(tweetId).ifPresent(created -> tweetsPerHour[created.atZone(ZoneOffset.UTC).getHour()]++);
+        }
+        state = new State(state.month(), state.reads(), state.lastPollEpochSecond(), tweetsPerHour);
+        persist();
+    }
+
+    /**
+     * @return Reads left in the current month (Long.MAX_VALUE if no limit is configured).
+     */
+    public synchronized long remainingReads() {
+        if (!isEnabled()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, monthlyReadLimit - forCurrentMonth(state).reads());
+    }
+
+    /**
+     * Plans the interval between two timeline polls for the current hour so the remaining
+     * monthly budget lasts until the end of the month.
+     *
+     * @param now The current time.
+     * @return The planned interval, or Duration.ZERO if no limit is configured.
+     */
+    public synchronized Duration plannedPollInterval(Instant now) {
+        if (!isEnabled()) {
+            return Duration.ZERO;
+        }
+        ZonedDateTime nowUtc = now.atZone(ZoneOffset.UTC);
+        ZonedDateTime nextMonth = startOfNextMonth(now);
+        Duration untilMonthEnd = Duration.between(nowUtc, nextMonth);
+        long remaining = remainingReads();
+        if (remaining <= 0) {
+            logger.warn("Monthly Twitter read budget of {} is used up. Next poll when the budget resets at {}.", monthlyReadLimit, nextMonth);
+            return untilMonthEnd;
+        }
+
+        double daysLeft = Math.max(untilMonthEnd.toSeconds() / 86_400.0, 1.0 / HOURS_PER_DAY);
+        double readsPerDay = remaining / daysLeft;
+        // Share of the daily budget for this hour, +1 smoothing so quiet hours are still polled
+        long[] tweetsPerHour = state.tweetsPerHour();
+        long totalTweets = 0;
+        for (long count : tweetsPerHour) {
+            totalTweets += count;
+        }
+        double hourWeight = (tweetsPerHour[nowUtc.getHour()] + 1.0) / (totalTweets + HOURS_PER_DAY);
+        double readsThisHour = readsPerDay * hourWeight;
+        Duration interval = readsThisHour <= 0
+                ? untilMonthEnd
+                : Duration.ofMillis((long) (Duration.ofHours(1).toMillis() / readsThisHour));
+        logger.debug("Read budget: {} left for {} days ({} per day, {} this hour). Planned poll interval: {}.",
+                remaining, String.format("%.1f", daysLeft), String.format("%.1f", readsPerDay),
+                String.format("%.2f", readsThisHour), interval);
+        return interval;
+    }
+
+    /**
+     * @return Time left until the planned next poll (Duration.ZERO if a poll is due now).
+     * With the budget used up, this is the time left until the budget resets at the start of next month.
+     */
+    public synchronized Duration untilNextPlannedPoll(Instant now) {
+        if (remainingReads() <= 0) {
+            // Not measured from the last poll: that would let a poll through halfway to the reset
+            ZonedDateTime nextMonth = startOfNextMonth(now);
+            logger.warn("Monthly Twitter read budget of {} is used up. Next poll when the budget resets at {}.", monthlyReadLimit, nextMonth);
+            return Duration.between(now, nextMonth);
+        }
+        Duration interval = plannedPollInterval(now);
+        if (interval.isZero() || state.lastPollEpochSecond() == 0) {
+            return Duration.ZERO;
+        }
+        Duration sinceLastPoll = Duration.between(Instant.ofEpochSecond(state.lastPollEpochSecond()), now);
+        long toleratedMillis = (long) (interval.toMillis() * POLL_TOLERANCE);
+        if (sinceLastPoll.toMillis() >= toleratedMillis) {
+            return Duration.ZERO;
+        }
+        Duration untilDue = interval.minus(sinceLastPoll);
+        return untilDue.isNegative() ? Duration.ZERO : untilDue;
+    }
+
+    private static ZonedDateTime startOfNextMonth(Instant now) {
+        return YearMonth.from(now.atZone(ZoneOffset.UTC)).plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC);
+    }
+
+    private State forCurrentMonth(State current) {
+        String month = YearMonth.now(ZoneOffset.UTC).toString();
+        if (month.equals(current.month())) {
+            return current;
+        }
+        logger.info("New month {} started. Resetting Twitter read counter (used {} reads in {}).", month, current.reads(), current.month());
+        return new State(month, 0, current.lastPollEpochSecond(), current.tweetsPerHour());
+    }
+
+    private State load() {
+        State empty = new State(YearMonth.now(ZoneOffset.UTC).toString(), 0, 0, new long[HOURS_PER_DAY]);
+        if (!Files.isReadable(ledgerFile)) {
+            return empty;
+        }
+        try {
+            State loaded = objectMapper.readValue(ledgerFile.toFile(), State.class);
+            if (loaded.tweetsPerHour() == null || loaded.tweetsPerHour().length != HOURS_PER_DAY) {
+                loaded = new State(loaded.month(), loaded.reads(), loaded.lastPollEpochSecond(), new long[HOURS_PER_DAY]);
+            }
+            return forCurrentMonth(loaded);
+        } catch (IOException e) {
+            logger.warn("Could not read quota ledger {}: {}. Starting a new ledger.", ledgerFile.toAbsolutePath(), e.getMessage());
+            return empty;
+        }
+    }
+
+    // Replaced atomically, so a crash never leaves a torn ledger that resets the month's count
+    private void persist() {
+        try {
+            AtomicFiles.replace(ledgerFile, out -> objectMapper.writeValue(out, state));
+        } catch (IOException e) {
+            logger.warn("Could not persist quota ledger to {}: {}", ledgerFile.toAbsolutePath(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.twitter;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Decodes the creation time embedded in Twitter's Snowflake IDs: the upper 41 bits are
+ * milliseconds since the Twitter epoch (2010-11-04T01:42:54.657Z).
+ * Tweets from before Snowflake have small sequential IDs without a timestamp.
+ * <p>
+ * Tweet IDs are handled as {@code long} inside the application; the API and the JSON files
+ * carry them as decimal strings, which {@link #parse} converts at that boundary.
+ */
+public final class SnowflakeId {
+
+    public static final long TWITTER_EPOCH_MILLIS = 1288834974657L;
+    private static final int TIMESTAMP_SHIFT = 22; // 10 bits worker ID + 12 bits sequence
+    // Pre-Snowflake IDs ended around 3e10; every Snowflake ID issued after the first few minutes is larger
+    private static final long MIN_SNOWFLAKE_ID = 1L << 40;
+
+    private SnowflakeId() {
+    }
+
+    /**
+     * @param id A tweet ID as the API and the JSON files carry it.
+     * @return The ID.
+     * @throws NumberFormatException If the value is not a positive decimal tweet ID.
+     */
+    public static long parse(String id) {
+        long value = Long.parseLong(id);
+        if (value <= 0) {
+            throw new NumberFormatException("Not a tweet ID: " + id);
+        }
+        return value;
+    }
+
+    /**
+     * @param id A tweet ID.
+     * @return true if the ID carries a Snowflake timestamp.
+     */
+    public static boolean isSnowflake(long id) {
+        return id >= MIN_SNOWFLAKE_ID;
+    }
+
+    /**
+     * @param id A tweet ID.
+     * @return The creation time of the tweet, or empty for pre-Snowflake IDs.
+     */
+    public static Optional<Instant> timestampOf(long id) {
+        if (!isSnowflake(id)) {
+            return Optional.empty();
+        }
+        return Optional.of(Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + TWITTER_EPOCH_MILLIS));
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.twitter;
+
+import com.example.file.AtomicFiles;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces the t.co links of a tweet text with the URLs they stand for.
+ * <p>
+ * A link is expanded from the tweet's {@link TweetEntities} where they list it, which covers
+ * every tweet fetched from the API. Links without an entity (e.g. in tweet files of older
+ * versions or dropped into input/ by other tools) are resolved by asking t.co for the redirect,
+ * once (if enabled): the result goes into a bounded LRU cache, so repeated links cost no further
+ * lookups. The cache is persisted every {@value #PERSIST_INTERVAL} resolved links and on
+ * {@link #close()}, so restarts keep it. A link that cannot be resolved stays as it is, and is
+ * not asked for again for an hour.
+ * <p>
+ * Thread-safe; the requests run outside the lock, so a slow t.co does not hold up other tweets.
+ */
+public class TcoUrlExpander implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TcoUrlExpander.class);
+    private static final Pattern TCO_URL = Pattern.compile("https?://t\\.co/[A-Za-z0-9]+");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration FAILURE_TTL = Duration.ofHours(1); // Until a link that could not be resolved is tried again
+    static final int PERSIST_INTERVAL = 20; // Resolved links between cache file writes
+    private static final TypeReference<LinkedHashMap<String, String>> CACHE_TYPE = new TypeReference<>() {
+    };
+
+    private final Path cacheFile;
+    private final int capacity;
+    private final Resolver resolver; // Null unless resolving is enabled
+    private final Duration failureTtl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LinkedHashMap<String, String> entries; // In access order, least recently used first
+    private final LinkedHashMap<String, Long> failures; // Link -> System.nanoTime() after which it is tried again
+    private final Object persistLock = new Object(); // One cache file write at a time
+    private int unpersistedChanges; // Resolved links not in the cache file yet
+
+    /**
+     * Looks up where a t.co link redirects to.
+     */
+    @FunctionalInterface
+    interface Resolver {
+        /**
+         * @param url The t.co link.
+         * @return The URL it redirects to, or empty if it could not be resolved.
+         */
+        Optional<String> resolve(String url);
+    }
+
+    /**
+     * @param cacheFile File the resolved links are persisted to.
+     * @param capacity Maximum number of cached links; the least recently used ones are dropped.
+     * @param resolveEnabled Ask t.co for links the entities do not list; otherwise only the entities and the cache are used.
+     */
+    public TcoUrlExpander(Path cacheFile, int capacity, boolean resolveEnabled) {
+        this(cacheFile, capacity, resolveEnabled ? new RedirectResolver() : null, FAILURE_TTL);
+    }
+
+    /**
+     * @param cacheFile File the resolved links are persisted to.
+     * @param capacity Maximum number of cached links; the least recently used ones are dropped.
+     * @param resolver Resolves links the entities do not list, or null to use only the entities and the cache.
+     * @param failureTtl How long a link that could not be resolved is not asked for again.
+     */
+    TcoUrlExpander(Path cacheFile, int capacity, Resolver resolver, Duration failureTtl) {
+        this.cacheFile = cacheFile;
+        this.capacity = capacity;
+        this.resolver = resolver;
+        this.failureTtl = failureTtl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > TcoUrlExpander.this.capacity;
+            }
+        };
+        this.failures = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > TcoUrlExpander.this.capacity;
+            }
+        };
+        entries.putAll(load());
+        logger.info("TcoUrlExpander initialized with {} cached link(s) (capacity {}, resolving: {}).", entries.size(), capacity, resolver != null);
+    }
+
+    /**
+     * @param text The tweet text.
+     * @param entities The tweet's entities.
+     * @return The text with every t.co link that could be expanded replaced.
+     */
+    public String expand(String text, TweetEntities entities) {
+        if (text == null || !text.contains("t.co/")) {
+            return text;
+        }
+        Map<String, String> targets = new HashMap<>();
+        Set<String> unresolved = new LinkedHashSet<>();
+        Matcher matcher = TCO_URL.matcher(text);
+        long now = System.nanoTime();
+        synchronized (this) {
+            while (matcher.find()) {
+                String url = matcher.group();
+                Optional<String> target = entities.expandedUrlOf(url);
+                if (target.isEmpty()) {
+                    target = Optional.ofNullable(entries.get(url));
+                }
+                if (target.isPresent()) {
+                    targets.put(url, target.get());
+                } else if (resolver != null && !failedRecently(url, now)) {
+                    unresolved.add(url);
+                }
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            targets.putAll(resolveAll(unresolved));
+        }
+        matcher.reset();
+        StringBuilder expanded = new StringBuilder(text.length() + 64);
+        while (matcher.find()) {
+            String url = matcher.group();
+            matcher.appendReplacement(expanded, Matcher.quoteReplacement(targets.getOrDefault(url, url)));
+        }
+        matcher.appendTail(expanded);
+        return expanded.toString();
+    }
+
+    // Asks t.co without holding the lock, then caches the results and the failures
+    private Map<String, String> resolveAll(Set<String> urls) {
+        Map<String, String> resolved = new HashMap<>();
+        List<String> failed = new ArrayList<>();
+        for (String url : urls) {
+            if (Thread.currentThread().isInterrupted()) {
+                break; // Shutting down; the remaining links are not failures
+            }
+            resolver.resolve(url).ifPresentOrElse(location -> resolved.put(url, location), () -> failed.add(url));
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            failed.clear(); // The last request may have been interrupted rather than failed
+        }
+        int cachedBefore;
+        int cachedAfter;
+        boolean due;
+        synchronized (this) {
+            cachedBefore = entries.size();
+            entries.putAll(resolved);
+            resolved.keySet().forEach(failures::remove);
+            long retryAt = System.nanoTime() + failureTtl.toNanos();
+            failed.forEach(url -> failures.put(url, retryAt));
+            cachedAfter = entries.size();
+            unpersistedChanges += resolved.size();
+            due = unpersistedChanges >= PERSIST_INTERVAL;
+        }
+        if (!resolved.isEmpty()) {
+            logger.debug("Resolved {} t.co link(s); {} cached (was {}).", resolved.size(), cachedAfter, cachedBefore);
+        }
+        if (due) {
+            persistIfChanged();
+        }
+        return resolved;
+    }
+
+    // Caller holds the lock
+    private boolean failedRecently(String url, long now) {
+        Long retryAt = failures.get(url);
+        if (retryAt == null) {
+            return false;
+        }
+        if (now - retryAt >= 0) {
+            failures.remove(url);
+            return false;
+        }
+        return true;
+    }
+
+    private Map<String, String> load() {
+        if (!Files.isReadable(cacheFile)) {
+            return Map.of();
+        }
+        try {
+            LinkedHashMap<String, String> loaded = objectMapper.readValue(cacheFile.toFile(), CACHE_TYPE);
+            return loaded != null ? loaded : Map.of();
+        } catch (IOException e) {
+            logger.warn("Could not read t.co link cache {}: {}. Starting with an empty cache.", cacheFile.toAbsolutePath(), e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Writes the resolved links that are not in the cache file yet.
+     */
+    @Override
+    public void close() {
+        persistIfChanged();
+    }
+
+    // Written least recently used first, so loading restores the eviction order; replaced atomically, so a crash keeps the old cache
+    private void persistIfChanged() {
+        synchronized (persistLock) {
+            Map<String, String> snapshot;
+            synchronized (this) {
+                if (unpersistedChanges == 0) {
+                    return;
+                }
+                snapshot = new LinkedHashMap<>(entries);
+                unpersistedChanges = 0;
+            }
+            try {
+                AtomicFiles.replace(cacheFile, out -> objectMapper.writeValue(out, snapshot));
+            } catch (IOException e) {
+                logger.warn("Could not persist t.co link cache to {}: {}", cacheFile.toAbsolutePath(), e.getMessage());
+                synchronized (this) {
+                    unpersistedChanges += snapshot.size(); // Tried again with the next links or on close
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks t.co with one request without following the redirect: its Location header is the expansion.
+     */
+    private static final class RedirectResolver implements Resolver {
+        private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NEVER).build();
+
+        @Override
+        public Optional<String> resolve(String url) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(REQUEST_TIMEOUT)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                Optional<String> location = response.statusCode() / 100 == 3 ? response.headers().firstValue("location") : Optional.empty();
+                if (location.isEmpty()) {
+                    logger.warn("t.co answered {} without a redirect for {}. Leaving the link as it is.", response.statusCode(), url);
+                }
+                return location;
+            } catch (IOException e) {
+                logger.warn("Could not resolve {}: {}. Leaving the link as it is.", url, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid t.co link {}: {}", url, e.getMessage());
+            }
+            return Optional.empty();
+        }
+    }
+}
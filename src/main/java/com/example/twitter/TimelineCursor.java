@@ -0,0 +1,63 @@
+package com.example.twitter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Position of a paginated timeline catch-up.
+ * The API returns the timeline newest first, so a catch-up starts with the newest tweet
+ * and follows the pagination token back towards {@code sinceId}.
+ *
+ * @param sinceId         The since_id the catch-up was started with (0 on the very first run).
+ * @param paginationToken Token of the next (older) page, null once all pages have been fetched.
+ * @param newestId        ID of the newest tweet of the catch-up (from its first page), 0 until a page arrived.
+ */
+public record TimelineCursor(long sinceId, String paginationToken, long newestId) {
+
+    /**
+     * @param sinceId The since_id to start from, or 0 to start without one.
+     * @return A cursor for a new catch-up, before its first page.
+     */
+    public static TimelineCursor startingAfter(long sinceId) {
+        return new TimelineCursor(sinceId, null, 0);
+    }
+
+    /**
+     * @param sinceId A since_id, or 0 if nothing was fetched yet.
+     * @return The since_id for the log, or "start" for 0.
+     */
+    public static String describeSinceId(long sinceId) {
+        return sinceId != 0 ? Long.toString(sinceId) : "start";
+    }
+
+    /**
+     * @param nextToken The next_token of the page that was just fetched (null on the last page).
+     * @param pageNewestId The newest_id of the page that was just fetched (0 if it had none).
+     * @return The cursor after that page. The newest ID of the first page is kept.
+     */
+    public TimelineCursor afterPage(String nextToken, long pageNewestId) {
+        return new TimelineCursor(sinceId, nextToken, newestId != 0 ? newestId : pageNewestId);
+    }
+
+    /**
+     * @return true if the catch-up was started with a since_id.
+     */
+    @JsonIgnore // Derived, not persisted
+    public boolean hasSinceId() {
+        return sinceId != 0;
+    }
+
+    /**
+     * @return The since_id of the catch-up for the log, or "start" on the very first run.
+     */
+    public String describeSinceId() {
+        return describeSinceId(sinceId);
+    }
+
+    /**
+     * @return true if the next request continues an older page instead of starting at the newest tweet.
+     */
+    @JsonIgnore // Derived, not persisted
+    public boolean isResuming() {
+        return paginationToken != null;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.twitter;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The author and Twitch context of a tweet, which is the same for every tweet of an account.
+ * <p>
+ * Instances are interned by {@link #of}: all tweets with the same context share one instance,
+ * both when they are fetched and when they are read back from the spool. The {@link #getKey() key}
+ * is derived from the content, so it stays the same across restarts and tweet files can refer
+ * to the context by key instead of repeating it (see {@code TweetContextStore}).
+ */
+public final class TweetContext {
+
+    private static final int MAX_INTERNED = 10_000; // Far more accounts than one instance ever posts for
+    private static final Map<String, TweetContext> INTERNED = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final String authorName;
+    private final String authorProfileUrl;
+    private final String authorProfileImageUrl;
+    private final String twitchUsername;
+    private final String twitchProfileImageUrl;
+    private final String twitchChannelUrl;
+
+    /**
+     * Resolves context keys read from the spool, e.g. from the context files written with the tweets.
+     */
+    @FunctionalInterface
+    public interface Resolver {
+
+        /**
+         * @param key A context key.
+         * @return The context, or empty if the key is unknown.
+         */
+        Optional<TweetContext> resolve(String key);
+    }
+
+    private TweetContext(String key, String authorName, String authorProfileUrl, String authorProfileImageUrl,
+                         String twitchUsername, String twitchProfileImageUrl, String twitchChannelUrl) {
+        this.key = key;
+        this.authorName = authorName;
+        this.authorProfileUrl = authorProfileUrl;
+        this.authorProfileImageUrl = authorProfileImageUrl;
+        this.twitchUsername = twitchUsername;
+        this.twitchProfileImageUrl = twitchProfileImageUrl;
+        this.twitchChannelUrl = twitchChannelUrl;
+    }
+
+    /**
+     * Returns the shared instance for the given values. Any value may be null.
+     *
+     * @return The interned context.
+     */
+    @JsonCreator
+    public static TweetContext of(@JsonProperty("authorName") String authorName,
+                                  @JsonProperty("authorProfileUrl") String authorProfileUrl,
+                                  @JsonProperty("authorProfileImageUrl") String authorProfileImageUrl,
+                                  @JsonProperty("twitchUsername") String twitchUsername,
+                                  @JsonProperty("twitchProfileImageUrl") String twitchProfileImageUrl,
+                                  @JsonProperty("twitchChannelUrl") String twitchChannelUrl) {
+        String key = keyOf(authorName, authorProfileUrl, authorProfileImageUrl, twitchUsername, twitchProfileImageUrl, twitchChannelUrl);
+        TweetContext interned = INTERNED.get(key);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            INTERNED.clear(); // Only costs some sharing; instances in use stay valid
+        }
+        return INTERNED.computeIfAbsent(key, k -> new TweetContext(k, authorName, authorProfileUrl, authorProfileImageUrl,
+                twitchUsername, twitchProfileImageUrl, twitchChannelUrl));
+    }
+
+    /**
+     * @param key A context key.
+     * @return The context with this key if it was created in this JVM.
+     */
+    public static Optional<TweetContext> findInterned(String key) {
+        return Optional.ofNullable(INTERNED.get(key));
+    }
+
+    /**
+     * @return Hex key derived from all values (first 64 bits of their SHA-256).
+     */
+    @JsonIgnore
+    public String getKey() { return key; }
+    public String getAuthorName() { return authorName; }
+    public String getAuthorProfileUrl() { return authorProfileUrl; }
+    public String getAuthorProfileImageUrl() { return authorProfileImageUrl; }
+    public String getTwitchUsername() { return twitchUsername; }
+    public String getTwitchProfileImageUrl() { return twitchProfileImageUrl; }
+    public String getTwitchChannelUrl() { return twitchChannelUrl; }
+
+    // The key is derived from all values
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof TweetContext other && key.equals(other.key));
+    }
+
+    @Override
+    public int hashCode() { return key.hashCode(); }
+
+    @Override
+    public String toString() {
+        return "TweetContext{key='" + key + "', authorName='" + authorName + "', twitchUsername='" + twitchUsername + "'}";
+    }
+
+    // Null and "" must differ, so every value is written with a marker
+    private static String keyOf(String... values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            joined.append(value == null ? "\u0000" : "\u0001" + value).append('\u0002');
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(joined.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, Long.BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required on every JVM
+        }
+    }
+}
@@ -1,31 +1,42 @@
 package com.example.twitter;
 
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Holds processed information about a single tweet, its author,
  * associated Twitch context, and additional raw tweet fields.
+ * <p>
+ * The author and Twitch fields are held in a {@link TweetContext} shared by all tweets of the
+ * account. In JSON they are written as separate fields, or, with the compact spool format, as
+ * a single {@code contextKey} that is resolved through the injected {@link TweetContext.Resolver}.
+ * The tweet ID is a {@code long}; in JSON it stays a string, as the API delivers it.
+ * Entities, attachments and geo data are held as {@link TweetEntities}; the string dumps older
+ * tweet files stored instead ({@code tweetEntitiesStr} and friends) are ignored when read.
  */
+@JsonIgnoreProperties({"tweetEntitiesStr", "tweetAttachmentsStr", "tweetGeoStr"})
 public class TweetData {
     // --- Core Tweet Info ---
-    private final String id;
+    private final long id; // 0 if the tweet has none
     private final String text;
     private final String url; // Derived URL
     private final List<String> imageUrls; // Derived image URLs
     private final LocalDateTime createdAt;
 
-    // --- Twitter Author Info ---
-    private final String authorName;
-    private final String authorProfileUrl; // Derived URL
-    private final String authorProfileImageUrl;
-
-    // --- Twitch Context Info ---
-    private final String twitchUsername;
-    private final String twitchProfileImageUrl;
-    private final String twitchChannelUrl;
+    // --- Twitter Author and Twitch Context Info (shared, see TweetContext) ---
+    private final TweetContext context;
 
     // --- Additional Raw Tweet Fields ---
     private final String tweetAuthorId; // From Tweet object
@@ -34,64 +45,64 @@ public class TweetData {
     private final String tweetSource; // From Tweet object
     private final String tweetReplySettings; // From Tweet object
     private final String tweetInReplyToUserId; // From Tweet object
-    // Store complex objects as strings
-    private final String tweetEntitiesStr;
-    private final String tweetAttachmentsStr;
-    private final String tweetGeoStr;
+    private final TweetEntities entities; // Links, mentions, hashtags, media keys and geo data
 
 
     public TweetData() {
 
-        id = "";
+        id = 0;
         text = "";
         url = "";
         imageUrls = List.of();
         createdAt = null;
-        authorName = "";
-        authorProfileUrl = "";
-        authorProfileImageUrl = "";
-        twitchUsername = "";
-        twitchProfileImageUrl = "";
-        twitchChannelUrl = "";
+        context = TweetContext.of("", "", "", "", "", "");
         tweetAuthorId = "";
         tweetConversationId = "";
         tweetLang = "";
         tweetSource = "";
         tweetReplySettings = "";
         tweetInReplyToUserId = "";
-        tweetEntitiesStr = "";
-        tweetAttachmentsStr = "";
-        tweetGeoStr = "";
+        entities = TweetEntities.EMPTY;
     }
     // Updated Constructor
     public TweetData(
             // Core Tweet
-            String id, String text, String url, List<String> imageUrls, LocalDateTime createdAt,
+            long id, String text, String url, List<String> imageUrls, LocalDateTime createdAt,
             // Author
             String authorName, String authorProfileUrl, String authorProfileImageUrl,
             // Twitch
             String twitchUsername, String twitchProfileImageUrl, String twitchChannelUrl,
             // Additional Raw Tweet Fields
             String tweetAuthorId, String tweetConversationId, String tweetLang, String tweetSource,
-            String tweetReplySettings, String tweetInReplyToUserId, String tweetEntitiesStr, String tweetAttachmentsStr,
-            String tweetGeoStr
+            String tweetReplySettings, String tweetInReplyToUserId, TweetEntities entities
+    ) {
+        this(id, text, url, imageUrls, createdAt,
+                TweetContext.of(authorName, authorProfileUrl, authorProfileImageUrl, twitchUsername, twitchProfileImageUrl, twitchChannelUrl),
+                tweetAuthorId, tweetConversationId, tweetLang, tweetSource, tweetReplySettings, tweetInReplyToUserId,
+                entities);
+    }
+
+    /**
+     * Creates a tweet that shares the given author and Twitch context.
+     */
+    public TweetData(
+            // Core Tweet
+            long id, String text, String url, List<String> imageUrls, LocalDateTime createdAt,
+            // Author and Twitch
+            TweetContext context,
+            // Additional Raw Tweet Fields
+            String tweetAuthorId, String tweetConversationId, String tweetLang, String tweetSource,
+            String tweetReplySettings, String tweetInReplyToUserId, TweetEntities entities
     ) {
         // Core Tweet
-        this.id = Objects.requireNonNull(id, "Tweet ID cannot be null");
+        this.id = id;
         this.text = Objects.requireNonNull(text, "Tweet text cannot be null");
         this.url = Objects.requireNonNull(url, "Tweet URL cannot be null");
         this.imageUrls = (imageUrls != null) ? Collections.unmodifiableList(imageUrls) : Collections.emptyList();
         this.createdAt = createdAt;
 
-        // Author
-        this.authorName = authorName;
-        this.authorProfileUrl = authorProfileUrl;
-        this.authorProfileImageUrl = authorProfileImageUrl;
-
-        // Twitch
-        this.twitchUsername = twitchUsername;
-        this.twitchProfileImageUrl = twitchProfileImageUrl;
-        this.twitchChannelUrl = twitchChannelUrl;
+        // Author and Twitch
+        this.context = Objects.requireNonNull(context, "Tweet context cannot be null");
 
         // Additional Raw Tweet
         this.tweetAuthorId = tweetAuthorId;
@@ -100,26 +111,71 @@ public class TweetData {
         this.tweetSource = tweetSource;
         this.tweetReplySettings = tweetReplySettings;
         this.tweetInReplyToUserId = tweetInReplyToUserId;
-        this.tweetEntitiesStr = tweetEntitiesStr;
-        this.tweetAttachmentsStr = tweetAttachmentsStr;
-        this.tweetGeoStr = tweetGeoStr;
+        this.entities = entities != null ? entities : TweetEntities.EMPTY;
+    }
+
+    /**
+     * Reads a tweet in either JSON shape: with the author and Twitch fields, or with the
+     * {@code contextKey} of the compact format.
+     *
+     * @throws NullPointerException If the ID, text or URL is missing.
+     * @throws IllegalArgumentException If the context key cannot be resolved.
+     */
+    @JsonCreator
+    static TweetData fromJson(
+            @JsonProperty("id") Long id, @JsonProperty("text") String text, @JsonProperty("url") String url,
+            @JsonProperty("imageUrls") List<String> imageUrls, @JsonProperty("createdAt") LocalDateTime createdAt,
+            @JsonProperty("authorName") String authorName, @JsonProperty("authorProfileUrl") String authorProfileUrl,
+            @JsonProperty("authorProfileImageUrl") String authorProfileImageUrl,
+            @JsonProperty("twitchUsername") String twitchUsername, @JsonProperty("twitchProfileImageUrl") String twitchProfileImageUrl,
+            @JsonProperty("twitchChannelUrl") String twitchChannelUrl,
+            @JsonProperty("tweetAuthorId") String tweetAuthorId, @JsonProperty("tweetConversationId") String tweetConversationId,
+            @JsonProperty("tweetLang") String tweetLang, @JsonProperty("tweetSource") String tweetSource,
+            @JsonProperty("tweetReplySettings") String tweetReplySettings, @JsonProperty("tweetInReplyToUserId") String tweetInReplyToUserId,
+            @JsonProperty("entities") TweetEntities entities,
+            @JsonProperty("contextKey") String contextKey,
+            @JacksonInject TweetContext.Resolver contextResolver) {
+        TweetContext context;
+        if (contextKey != null) {
+            context = contextResolver.resolve(contextKey)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown tweet context " + contextKey));
+        } else {
+            context = TweetContext.of(authorName, authorProfileUrl, authorProfileImageUrl, twitchUsername, twitchProfileImageUrl, twitchChannelUrl);
+        }
+        return new TweetData(Objects.requireNonNull(id, "Tweet ID cannot be null"), text, url, imageUrls, createdAt, context,
+                tweetAuthorId, tweetConversationId, tweetLang, tweetSource, tweetReplySettings, tweetInReplyToUserId,
+                entities);
     }
 
     // --- Getters ---
     // Core Tweet
-    public String getId() { return id; }
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    public long getId() { return id; }
     public String getText() { return text; }
     public String getUrl() { return url; }
     public List<String> getImageUrls() { return imageUrls; }
     public LocalDateTime getCreatedAt() { return createdAt; }
+
+    /**
+     * @return The creation time: createdAt (UTC), or else the time encoded in the Snowflake ID.
+     */
+    @JsonIgnore
+    public Optional<Instant> getCreatedInstant() {
+        return createdAt != null ? Optional.of(createdAt.toInstant(ZoneOffset.UTC)) : SnowflakeId.timestampOf(id);
+    }
     // Twitter Author
-    public String getAuthorName() { return authorName; }
-    public String getAuthorProfileUrl() { return authorProfileUrl; }
-    public String getAuthorProfileImageUrl() { return authorProfileImageUrl; }
+    public String getAuthorName() { return context.getAuthorName(); }
+    public String getAuthorProfileUrl() { return context.getAuthorProfileUrl(); }
+    public String getAuthorProfileImageUrl() { return context.getAuthorProfileImageUrl(); }
     // Twitch Context
-    public String getTwitchUsername() { return twitchUsername; }
-    public String getTwitchProfileImageUrl() { return twitchProfileImageUrl; }
-    public String getTwitchChannelUrl() { return twitchChannelUrl; }
+    public String getTwitchUsername() { return context.getTwitchUsername(); }
+    public String getTwitchProfileImageUrl() { return context.getTwitchProfileImageUrl(); }
+    public String getTwitchChannelUrl() { return context.getTwitchChannelUrl(); }
+    @JsonIgnore
+    public TweetContext getContext() { return context; }
+    // Only written by the compact format, which replaces the author and Twitch fields with it
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    public String getContextKey() { return context.getKey(); }
     // Additional Raw Tweet
     public String getTweetAuthorId() { return tweetAuthorId; }
     public String getTweetConversationId() { return tweetConversationId; }
@@ -127,20 +183,18 @@ public class TweetData {
     public String getTweetSource() { return tweetSource; }
     public String getTweetReplySettings() { return tweetReplySettings; }
     public String getTweetInReplyToUserId() { return tweetInReplyToUserId; }
-    public String getTweetEntitiesStr() { return tweetEntitiesStr; }
-    public String getTweetAttachmentsStr() { return tweetAttachmentsStr; }
-    public String getTweetGeoStr() { return tweetGeoStr; }
+    public TweetEntities getEntities() { return entities; }
 
 
     @Override
     public String toString() {
         // Basic toString for logging brevity
         return "TweetData{" +
-                "id='" + id + '\'' +
+                "id=" + id +
                 ", text='" + text.substring(0, Math.min(text.length(), 20)) + "...'" +
                 ", createdAt=" + createdAt +
-                ", authorName='" + authorName + '\'' +
-                ", twitchUsername='" + twitchUsername + '\'' +
+                ", authorName='" + context.getAuthorName() + '\'' +
+                ", twitchUsername='" + context.getTwitchUsername() + '\'' +
                 // Indicate presence of other fields if needed
                 '}';
     }
@@ -0,0 +1,121 @@
+package com.example.twitter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.github.redouane59.twitter.dto.tweet.Geo;
+import io.github.redouane59.twitter.dto.tweet.Tweet;
+import io.github.redouane59.twitter.dto.tweet.entities.Entities;
+import io.github.redouane59.twitter.dto.tweet.entities.TextBaseEntity;
+import io.github.redouane59.twitter.dto.tweet.entities.UrlEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The entities, attachments and geo data of a tweet in a compact form: the links with their
+ * expansion, the mentioned users, hashtags, cashtags, media keys, place and coordinates.
+ * Empty parts are left out of the JSON, so a tweet without entities stores {@code {}}.
+ *
+ * @param urls        The t.co links of the text with the URL they stand for.
+ * @param mentions    Mentioned usernames, without the @.
+ * @param hashtags    Hashtags, without the #.
+ * @param cashtags    Cashtags, without the $.
+ * @param mediaKeys   Keys of the attached media.
+ * @param placeId     The tagged place, or null.
+ * @param coordinates Longitude and latitude of the tweet, or empty.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record TweetEntities(List<Link> urls, List<String> mentions, List<String> hashtags, List<String> cashtags,
+                            List<String> mediaKeys, String placeId, List<Double> coordinates) {
+
+    public static final TweetEntities EMPTY = new TweetEntities(null, null, null, null, null, null, null);
+
+    /**
+     * A t.co link of the tweet text.
+     *
+     * @param url         The t.co URL as it appears in the text.
+     * @param expandedUrl The URL it redirects to.
+     */
+    public record Link(String url, String expandedUrl) {
+    }
+
+    public TweetEntities {
+        urls = urls != null ? List.copyOf(urls) : List.of();
+        mentions = mentions != null ? List.copyOf(mentions) : List.of();
+        hashtags = hashtags != null ? List.copyOf(hashtags) : List.of();
+        cashtags = cashtags != null ? List.copyOf(cashtags) : List.of();
+        mediaKeys = mediaKeys != null ? List.copyOf(mediaKeys) : List.of();
+        coordinates = coordinates != null ? List.copyOf(coordinates) : List.of();
+    }
+
+    /**
+     * Takes the entities, attachments and geo data over from an API tweet.
+     *
+     * @param tweet The tweet as returned by the API.
+     * @return The entities, or {@link #EMPTY} if the tweet has none.
+     */
+    static TweetEntities of(Tweet tweet) {
+        Entities entities = tweet.getEntities();
+        List<Link> urls = new ArrayList<>();
+        List<String> mentions = List.of();
+        List<String> hashtags = List.of();
+        List<String> cashtags = List.of();
+        if (entities != null) {
+            if (entities.getUrls() != null) {
+                for (UrlEntity url : entities.getUrls()) {
+                    if (url.getUrl() != null && url.getExpandedUrl() != null) {
+                        urls.add(new Link(url.getUrl(), url.getExpandedUrl()));
+                    }
+                }
+            }
+            mentions = texts(entities.getUserMentions());
+            hashtags = texts(entities.getHashtags());
+            cashtags = texts(entities.getSymbols());
+        }
+        List<String> mediaKeys = tweet.getAttachments() != null && tweet.getAttachments().getMediaKeys() != null
+                ? Arrays.asList(tweet.getAttachments().getMediaKeys())
+                : List.of();
+        Geo geo = tweet.getGeo();
+        List<Double> coordinates = List.of();
+        if (geo != null && geo.getCoordinates() != null && geo.getCoordinates().getCoordinates() != null) {
+            coordinates = Arrays.stream(geo.getCoordinates().getCoordinates()).boxed().toList();
+        }
+        TweetEntities result = new TweetEntities(urls, mentions, hashtags, cashtags, mediaKeys,
+                geo != null ? geo.getPlaceId() : null, coordinates);
+        return result.isEmpty() ? EMPTY : result;
+    }
+
+    /**
+     * @param tcoUrl A t.co URL of the tweet text.
+     * @return The URL it stands for, if the entities list it.
+     */
+    public Optional<String> expandedUrlOf(String tcoUrl) {
+        for (Link link : urls) {
+            if (link.url().equals(tcoUrl)) {
+                return Optional.of(link.expandedUrl());
+            }
+        }
+        return Optional.empty();
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return urls.isEmpty() && mentions.isEmpty() && hashtags.isEmpty() && cashtags.isEmpty() && mediaKeys.isEmpty()
+                && placeId == null && coordinates.isEmpty();
+    }
+
+    private static List<String> texts(List<? extends TextBaseEntity> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return List.of();
+        }
+        List<String> texts = new ArrayList<>(entities.size());
+        for (TextBaseEntity entity : entities) {
+            if (entity.getText() != null) {
+                texts.add(entity.getText());
+            }
+        }
+        return texts;
+    }
+}
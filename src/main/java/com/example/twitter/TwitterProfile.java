@@ -0,0 +1,29 @@
+package com.example.twitter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * The parts of the Twitter user object the application needs: the ID for the timeline requests,
+ * and the name and profile image for the embeds.
+ *
+ * @param username           The username the profile was looked up with.
+ * @param id                 The user ID.
+ * @param name               The display name.
+ * @param profileImageUrl    URL of the profile image (may be null).
+ * @param fetchedEpochSecond When the profile was fetched from the API (epoch seconds).
+ */
+public record TwitterProfile(String username, String id, String name, String profileImageUrl, long fetchedEpochSecond) {
+
+    /**
+     * @param now The current time.
+     * @param ttl How long a fetched profile is used before it is refreshed.
+     * @return true if the profile is older than the TTL.
+     */
+    @JsonIgnore // Not a property
+    public boolean isStaleAt(Instant now, Duration ttl) {
+        return Instant.ofEpochSecond(fetchedEpochSecond).plus(ttl).isBefore(now);
+    }
+}
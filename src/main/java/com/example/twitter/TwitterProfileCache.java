@@ -0,0 +1,83 @@
+package com.example.twitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * On-disk cache of the author profile in the data directory.
+ * The user ID, name and profile image almost never change, so a new process starts from the
+ * cached profile instead of spending an API read (and a round trip) on the user lookup.
+ */
+public class TwitterProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwitterProfileCache.class);
+
+    private final Path cacheFile;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param cacheFile File the profile is persisted to.
+     * @param ttl How long a cached profile is used before it is refreshed.
+     */
+    public TwitterProfileCache(Path cacheFile, Duration ttl) {
+        this.cacheFile = cacheFile;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Reads the cached profile of the given user, fresh or stale.
+     *
+     * @param username The configured Twitter username.
+     * @return The cached profile, or Optional.empty() if none is cached for this username.
+     */
+    public Optional<TwitterProfile> load(String username) {
+        if (!Files.isReadable(cacheFile)) {
+            logger.info("No cached Twitter profile found at {}.", cacheFile.toAbsolutePath());
+            return Optional.empty();
+        }
+        try {
+            TwitterProfile profile = objectMapper.readValue(cacheFile.toFile(), TwitterProfile.class);
+            if (profile.id() == null || !username.equalsIgnoreCase(profile.username())) {
+                logger.info("Cached Twitter profile is for {}, not {}. Ignoring it.", profile.username(), username);
+                return Optional.empty();
+            }
+            logger.info("Loaded cached Twitter profile for {} (ID: {}, fetched at {}).",
+                    username, profile.id(), Instant.ofEpochSecond(profile.fetchedEpochSecond()));
+            return Optional.of(profile);
+        } catch (IOException e) {
+            logger.warn("Could not read Twitter profile cache {}: {}", cacheFile.toAbsolutePath(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param profile The profile to cache, overwriting the previous one.
+     */
+    public void store(TwitterProfile profile) {
+        try {
+            objectMapper.writeValue(cacheFile.toFile(), profile);
+            logger.debug("Cached Twitter profile for {} in {}.", profile.username(), cacheFile.getFileName());
+        } catch (IOException e) {
+            logger.warn("Could not write Twitter profile cache {}: {}", cacheFile.toAbsolutePath(), e.getMessage());
+        }
+    }
+
+    /**
+     * @param profile A cached profile.
+     * @return true if the profile is older than the TTL and should be refreshed.
+     */
+    public boolean isStale(TwitterProfile profile) {
+        return profile.isStaleAt(Instant.now(), ttl);
+    }
+
+    public Duration getTtl() { return ttl; }
+}
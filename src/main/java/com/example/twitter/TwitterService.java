@@ -1,8 +1,8 @@
 package com.example.twitter;
 
+import com.example.twitch.TwitchUserInfo;
 import io.github.redouane59.twitter.TwitterClient;
 import io.github.redouane59.twitter.dto.tweet.Tweet;
-import io.github.redouane59.twitter.dto.tweet.TweetV2;
 import io.github.redouane59.twitter.dto.user.User; // Keep User import
 import io.github.redouane59.twitter.dto.tweet.TweetList;
 import io.github.redouane59.twitter.dto.endpoints.AdditionalParameters;
@@ -10,177 +10,338 @@ import io.github.redouane59.twitter.signature.TwitterCredentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
 import java.time.LocalDateTime; // Import LocalDateTime
 import java.util.ArrayList;
 import java.util.Arrays; // Import Arrays
-import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional; // Import Optional
-import java.util.stream.Collectors;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class TwitterService {
 
     private static final Logger logger = LoggerFactory.getLogger(TwitterService.class);
+    private static final int MIN_PAGE_SIZE = 5; // max_results bounds of the timeline endpoint
+    public static final int MAX_PAGE_SIZE = 100; // More tweets per run are fetched page by page
 
     private final TwitterClient twitterClient;
     private final String twitterUsername;
-    private User twitterUser; // Store the fetched user object
+    private final AdaptivePollScheduler pollScheduler;
+    private final ReadQuotaLedger readQuotaLedger;
+    private final TwitterProfileCache profileCache;
+    private final AtomicBoolean profileRefreshRunning = new AtomicBoolean(false);
+    private volatile TwitterProfile twitterProfile; // Cached or fetched author profile
 
-    public TwitterService(String bearerToken, String username) {
+    public TwitterService(String bearerToken, String username, RateLimitTracker rateLimitTracker,
+                          ReadQuotaLedger readQuotaLedger, AdaptivePollScheduler pollScheduler,
+                          TwitterProfileCache profileCache) {
         if (bearerToken == null || username == null) {
             logger.error("Twitter Bearer Token and Username must be provided.");
             throw new IllegalArgumentException("Twitter Bearer Token and Username must be provided.");
         }
         this.twitterUsername = username;
+        this.pollScheduler = pollScheduler;
+        this.readQuotaLedger = readQuotaLedger;
+        this.profileCache = profileCache;
         logger.info("Initializing TwitterService for user: {}", twitterUsername);
         TwitterCredentials credentials = TwitterCredentials.builder()
                 .bearerToken(bearerToken)
                 .build();
-        this.twitterClient = new TwitterClient(credentials);
+        // Custom HTTP client so the timeline rate limit headers reach the tracker
+        this.twitterClient = new TwitterClient(credentials, new RateLimitAwareHttpClient(rateLimitTracker, readQuotaLedger));
         twitterClient.setAutomaticRetry(false); // Added by user
-        // Fetch user initially - consider error handling if this fails
-        this.twitterUser = fetchTwitterUserObject();
+        // Start from the cached profile; only the very first run (or a new username) waits for the lookup
+        this.twitterProfile = profileCache.load(username).orElse(null);
+        if (this.twitterProfile == null) {
+            this.twitterProfile = fetchTwitterProfile();
+        } else if (profileCache.isStale(this.twitterProfile)) {
+            refreshProfileInBackground();
+        }
     }
 
-    // Helper method to fetch the User object (including profile image)
-    private User fetchTwitterUserObject() {
+    // Helper method to fetch the User object (including profile image) and cache the parts we need
+    private TwitterProfile fetchTwitterProfile() {
         logger.info("Fetching Twitter user object for username: {}", this.twitterUsername);
         try {
             User user = twitterClient.getUserFromUserName(this.twitterUsername);
-            if (user == null) {
+            if (user == null || user.getId() == null) {
                 logger.error("Failed to retrieve user data object for username: {}", this.twitterUsername);
-            } else {
-                logger.info("Successfully fetched user object for {}. Profile Image URL: {}",
-                        this.twitterUsername, user.getProfileImageUrl());
+                return null;
             }
-            return user;
+            logger.info("Successfully fetched user object for {}. Profile Image URL: {}",
+                    this.twitterUsername, user.getProfileImageUrl());
+            TwitterProfile profile = new TwitterProfile(this.twitterUsername, user.getId(), user.getName(),
+                    user.getProfileImageUrl(), Instant.now().getEpochSecond());
+            profileCache.store(profile);
+            return profile;
         } catch (Exception e) {
             logger.error("Exception fetching Twitter user object for {}: {}", this.twitterUsername, e.getMessage(), e);
             return null; // Return null if fetching fails
         }
     }
 
-    // Helper function to safely get toString or "null"
-    private String safeToString(Object obj) {
-        return obj == null ? "null" : obj.toString();
+    /**
+     * Makes sure a profile is available before a timeline request: fetches it if there is none yet
+     * (e.g. the lookup at startup failed), and refreshes it in the background once its TTL expired.
+     * @return The profile to use, or null if none could be fetched.
+     */
+    private TwitterProfile currentProfile() {
+        TwitterProfile profile = this.twitterProfile;
+        if (profile == null) {
+            profile = fetchTwitterProfile();
+            this.twitterProfile = profile;
+        } else if (profileCache.isStale(profile)) {
+            refreshProfileInBackground();
+        }
+        return profile;
+    }
+
+    // The stale profile stays in use until the refresh succeeds; a failed refresh is retried next cycle
+    private void refreshProfileInBackground() {
+        if (!profileRefreshRunning.compareAndSet(false, true)) {
+            return;
+        }
+        logger.info("Cached Twitter profile for {} is older than {} hours. Refreshing it in the background.",
+                twitterUsername, profileCache.getTtl().toHours());
+        Thread refreshThread = new Thread(() -> {
+            try {
+                TwitterProfile refreshed = fetchTwitterProfile();
+                if (refreshed != null) {
+                    this.twitterProfile = refreshed;
+                }
+            } finally {
+                profileRefreshRunning.set(false);
+            }
+        }, "twitter-profile-refresh");
+        refreshThread.setDaemon(true); // Never keeps a cron run alive
+        refreshThread.start();
     }
 
     /**
      * Fetches timeline tweets since a given ID.
      *
      * @param maxResults Max tweets to fetch.
-     * @param sinceId Optional containing the ID of the earliest tweet to fetch (exclusive).
+     * @param sinceId The ID of the earliest tweet to fetch (exclusive), or empty to fetch the newest tweets.
      * @param twitchUsername Configured Twitch username for context.
-     * @param twitchProfileImageUrl Fetched Twitch profile image URL.
-     * @param twitchChannelUrl Fetched Twitch channel URL.
-     * @return List of TweetData objects containing all context.
+     * @param twitchInfoSupplier Supplies the Twitch context; only called if new tweets were fetched.
+     * @param tweetConsumer Receives each TweetData (with all context) as soon as it is assembled, newest first.
+     * @return The number of tweets handed to the consumer.
+     * @throws RuntimeException If the timeline cannot be fetched or a tweet cannot be assembled; the consumer
+     *         may already have received the newer tweets of the page, but not the older ones.
      */
     // Updated signature based on previous logic
-    public List<TweetData> fetchTimelineTweets(int maxResults,
-                                               Optional<String> sinceId, // Added sinceId parameter
-                                               String twitchUsername,
-                                               String twitchProfileImageUrl,
-                                               String twitchChannelUrl) {
-        // Use the stored twitterUser object
-        if (this.twitterUser == null) {
+    public int fetchTimelineTweets(int maxResults,
+                                   OptionalLong sinceId, // Added sinceId parameter
+                                   String twitchUsername,
+                                   Supplier<Optional<TwitchUserInfo>> twitchInfoSupplier,
+                                   Consumer<TweetData> tweetConsumer) {
+        // Use the cached (or freshly fetched) profile
+        TwitterProfile profile = currentProfile();
+        if (profile == null) {
             logger.error("Cannot fetch timeline because the user object is not available for {}", this.twitterUsername);
-            return Collections.emptyList(); // Cannot proceed without user ID
+            return 0; // Cannot proceed without user ID
+        }
+        if (!pollScheduler.isPollAllowedNow()) {
+            logger.info("Skipping timeline fetch for {}: rate limit window or monthly read budget does not allow a poll now.", twitterUsername);
+            return 0;
         }
-        String userId = this.twitterUser.getId();
+        String userId = profile.id();
         logger.info("Attempting to fetch timeline tweets for user: {} (ID: {}), max results: {}, since_id: {}",
-                twitterUsername, userId, maxResults, sinceId.orElse("None"));
+                twitterUsername, userId, maxResults, TimelineCursor.describeSinceId(sinceId.orElse(0)));
 
-        try {
-            // Build parameters, including sinceId if present
-            AdditionalParameters.AdditionalParametersBuilder paramsBuilder = AdditionalParameters.builder()
-                    .maxResults(Math.min(maxResults, 100));
+        // Build parameters, including sinceId if present
+        AdditionalParameters.AdditionalParametersBuilder paramsBuilder = AdditionalParameters.builder()
+                .maxResults(Math.min(maxResults, MAX_PAGE_SIZE));
 
-            // Add sinceId if it's present
-            sinceId.ifPresent(paramsBuilder::sinceId);
+        // Add sinceId if it's present
+        sinceId.ifPresent(id -> paramsBuilder.sinceId(Long.toString(id)));
 
-            AdditionalParameters params = paramsBuilder.build();
-            logger.debug("Fetching timeline with parameters: {}", params);
+        AdditionalParameters params = paramsBuilder.build();
+        logger.debug("Fetching timeline with parameters: {}", params);
 
-            TweetList tweetList = twitterClient.getUserTimeline(userId, params);
+        TweetList tweetList = twitterClient.getUserTimeline(userId, params);
 
-            if (tweetList == null || tweetList.getData() == null) {
-                // This can happen normally if there are no new tweets since the sinceId
-                logger.info("No new tweets found or error fetching timeline for user ID: {} since ID: {}", userId, sinceId.orElse("None"));
-                return Collections.emptyList();
-            }
-            logger.info("Successfully fetched {} tweets from timeline.", tweetList.getData().size());
-
-            List<TweetData> tweetDataList = new ArrayList<>();
-            // Use TweetV2.MediaEntityV2 as per user's version
-            List<TweetV2.MediaEntityV2> includedMedia = (tweetList.getIncludes() != null && tweetList.getIncludes().getMedia() != null)
-                    ? tweetList.getIncludes().getMedia() : Collections.emptyList();
-
-            // Prepare author details (use stored user object)
-            String authorName = this.twitterUser.getName();
-            String authorProfileUrl = "https://x.com/" + this.twitterUser.getName();
-            String authorProfileImageUrl = this.twitterUser.getProfileImageUrl();
-
-            for (Tweet tweet : tweetList.getData()) {
-                String tweetUrl = "https://x.com/" + this.twitterUsername + "/status/" + tweet.getId();
-                LocalDateTime createdAt = tweet.getCreatedAt(); // Get createdAt timestamp
-                List<String> imageUrls = new ArrayList<>();
-
-                if (tweet.getAttachments() != null && tweet.getAttachments().getMediaKeys() != null) {
-                    // Use Arrays.asList for compatibility
-                    List<String> mediaKeys = Arrays.asList(tweet.getAttachments().getMediaKeys());
-                    logger.debug("Tweet {} has media keys: {}", tweet.getId(), mediaKeys);
-                    imageUrls = includedMedia.stream()
-                            // Use getKey() as per user's version (TweetV2.MediaEntityV2)
-                            .filter(media -> mediaKeys.contains(media.getKey()) && "photo".equals(media.getType()))
-                            .map(TweetV2.MediaEntityV2::getUrl)
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toList());
-                    logger.debug("Extracted image URLs for tweet {}: {}", tweet.getId(), imageUrls);
-                } else {
-                    logger.debug("Tweet {} has no media attachments.", tweet.getId());
+        if (tweetList == null || tweetList.getData() == null) {
+            // This can happen normally if there are no new tweets since the sinceId
+            logger.info("No new tweets found or error fetching timeline for user ID: {} since ID: {}", userId,
+                    TimelineCursor.describeSinceId(sinceId.orElse(0)));
+            return 0;
+        }
+        logger.info("Successfully fetched {} tweets from timeline.", tweetList.getData().size());
+        if (tweetList.getMeta() != null && tweetList.getMeta().getNextToken() != null) {
+            logger.warn("The timeline has more new tweets than the {} fetched. Older ones are skipped; set twitter.pagination.enabled=true to catch up on them.",
+                    tweetList.getData().size());
+        }
+
+        // Twitch context is only resolved now that there is something to post
+        int processed = emitTweetData(tweetList, profile, twitchUsername, twitchInfoSupplier.get(), tweetConsumer);
+        logger.info("Processed {} tweets into TweetData objects.", processed);
+        return processed;
+    }
+
+    /**
+     * Fetches the timeline page by page, following the pagination token, and hands each tweet
+     * to the consumer as soon as it is assembled, so at most one API page is held in memory.
+     * Stops when all pages since the cursor's since_id are fetched, after maxTweets tweets,
+     * when the rate limit window or read budget runs out, or on an error. The returned cursor
+     * then still carries the pagination token, so the next call resumes at the next page.
+     *
+     * @param maxTweets Max tweets to fetch in this call (over all pages).
+     * @param cursor Where to start: a new catch-up or the cursor of an unfinished one.
+     * @param twitchUsername Configured Twitch username for context.
+     * @param twitchInfoSupplier Supplies the Twitch context; only called once, if a page has tweets.
+     * @param tweetConsumer Receives each TweetData as soon as it is assembled, newest first.
+     * @param pageCompleted Receives the cursor after each page, once all its tweets were consumed.
+     * @return The cursor after the last page fetched (the given cursor if nothing was fetched).
+     */
+    public TimelineCursor fetchTimelinePages(int maxTweets,
+                                             TimelineCursor cursor,
+                                             String twitchUsername,
+                                             Supplier<Optional<TwitchUserInfo>> twitchInfoSupplier,
+                                             Consumer<TweetData> tweetConsumer,
+                                             Consumer<TimelineCursor> pageCompleted) {
+        TwitterProfile profile = currentProfile();
+        if (profile == null) {
+            logger.error("Cannot fetch timeline because the user object is not available for {}", this.twitterUsername);
+            return cursor;
+        }
+        if (!pollScheduler.isPollAllowedNow()) {
+            logger.info("Skipping timeline fetch for {}: rate limit window or monthly read budget does not allow a poll now.", twitterUsername);
+            return cursor;
+        }
+        String userId = profile.id();
+        logger.info("Attempting paginated timeline fetch for user: {} (ID: {}), max tweets: {}, since_id: {}, resuming at page token: {}",
+                twitterUsername, userId, maxTweets, cursor.describeSinceId(),
+                cursor.isResuming() ? cursor.paginationToken() : "None");
+
+        Optional<TwitchUserInfo> twitchInfo = null; // Resolved once, with the first page that has tweets
+        int fetched = 0;
+        int pages = 0;
+        try {
+            do {
+                if (pages > 0 && !pollScheduler.isFollowUpRequestAllowedNow()) {
+                    logger.info("Rate limit window or monthly read budget exhausted after {} pages. Catch-up resumes on the next poll.", pages);
+                    break;
+                }
+                AdditionalParameters.AdditionalParametersBuilder paramsBuilder = AdditionalParameters.builder()
+                        .recursiveCall(false) // Pages are followed here, one at a time
+                        .maxResults(Math.max(MIN_PAGE_SIZE, Math.min(maxTweets - fetched, MAX_PAGE_SIZE)));
+                if (cursor.hasSinceId()) {
+                    paramsBuilder.sinceId(Long.toString(cursor.sinceId()));
+                }
+                if (cursor.isResuming()) {
+                    paramsBuilder.paginationToken(cursor.paginationToken());
+                }
+                AdditionalParameters params = paramsBuilder.build();
+                logger.debug("Fetching timeline page with parameters: {}", params);
+
+                TweetList page = twitterClient.getUserTimeline(userId, params);
+                pages++;
+                String nextToken = page != null && page.getMeta() != null ? page.getMeta().getNextToken() : null;
+                long pageNewestId = page != null && page.getMeta() != null && page.getMeta().getNewestId() != null
+                        ? SnowflakeId.parse(page.getMeta().getNewestId()) : 0;
+                if (page == null || page.getData() == null || page.getData().isEmpty()) {
+                    logger.info("Timeline page {} has no tweets for user ID: {} since ID: {}", pages, userId, cursor.describeSinceId());
+                    cursor = cursor.afterPage(nextToken, pageNewestId); // Nothing to record: the next page or the caller saves it
+                    continue;
+                }
+                if (twitchInfo == null) {
+                    twitchInfo = twitchInfoSupplier.get();
+                }
+                int pageSize = emitTweetData(page, profile, twitchUsername, twitchInfo, tweetConsumer);
+                if (pageNewestId == 0) {
+                    pageNewestId = SnowflakeId.parse(page.getData().get(0).getId()); // API order is newest first
                 }
+                fetched += pageSize;
+                cursor = cursor.afterPage(nextToken, pageNewestId);
+                logger.info("Fetched timeline page {} with {} tweets ({} so far). More pages: {}", pages, pageSize, fetched, cursor.isResuming());
+                pageCompleted.accept(cursor);
+            } while (cursor.isResuming() && fetched < maxTweets);
+        } catch (Exception e) {
+            logger.error("Error fetching Twitter timeline page {} for user {}: {}. Catch-up resumes on the next poll.",
+                    pages, twitterUsername, e.getMessage(), e);
+        }
+        if (cursor.isResuming() && fetched >= maxTweets) {
+            logger.info("Reached max tweets ({}) for this run. Remaining pages are fetched on the next poll.", maxTweets);
+        }
+        return cursor;
+    }
+
+    /**
+     * Assembles the TweetData objects of one timeline page and hands each one downstream as soon
+     * as it is complete. Media keys are resolved through an index built once for the page.
+     * Also feeds the page's tweet times to the monthly read budget planner.
+     *
+     * @param tweetList The timeline page; its data must not be null.
+     * @param profile The author profile.
+     * @param twitchUsername Configured Twitch username for context.
+     * @param twitchInfo The Twitch context for the embeds.
+     * @param tweetConsumer Receives each TweetData, in API order (newest first).
+     * @return The number of tweets handed to the consumer.
+     */
+    private int emitTweetData(TweetList tweetList, TwitterProfile profile, String twitchUsername, Optional<TwitchUserInfo> twitchInfo,
+                              Consumer<TweetData> tweetConsumer) {
+        String twitchProfileImageUrl = twitchInfo.map(TwitchUserInfo::profileImageUrl).orElse(null);
+        String twitchChannelUrl = twitchInfo.map(TwitchUserInfo::channelUrl).orElse(null);
 
+        MediaIndex mediaIndex = MediaIndex.of(tweetList.getIncludes() != null ? tweetList.getIncludes().getMedia() : null);
+        logger.debug("Indexed {} photos of the timeline page.", mediaIndex.size());
+        long[] tweetIds = new long[tweetList.getData().size()];
+        int emitted = 0;
 
-                // Create TweetData with all context (using constructor from user's fixed TweetData)
-                tweetDataList.add(new TweetData(
-                        // Core Tweet
-                        tweet.getId(),
-                        tweet.getText(),
-                        tweetUrl,
-                        imageUrls,
-                        createdAt,
-                        // Author
-                        authorName,
-                        authorProfileUrl,
-                        authorProfileImageUrl,
-                        // Twitch
-                        twitchUsername,
-                        twitchProfileImageUrl,
-                        twitchChannelUrl,
-                        // Additional Raw Tweet Fields (matching user's TweetData constructor)
-                        tweet.getAuthorId(),
-                        tweet.getConversationId(),
-                        tweet.getLang(),
-                        tweet.getSource(),
-                        tweet.getReplySettings().toString(),
-                        tweet.getInReplyToUserId(),
-                        safeToString(tweet.getEntities()),
-                        safeToString(tweet.getAttachments()),
-                        safeToString(tweet.getGeo())
-                        // Removed fields based on user's TweetData constructor
-                        // tweet.isPossiblySensitive(),
-                        // safeToString(tweet.getPublicMetrics()),
-                        // safeToString(tweet.getReferencedTweets()),
-                        // safeToString(tweet.getWithheld())
-                ));
+        // Author (cached profile) and Twitch details, shared by all tweets of the page
+        TweetContext context = TweetContext.of(profile.name(), "https://x.com/" + profile.name(), profile.profileImageUrl(),
+                twitchUsername, twitchProfileImageUrl, twitchChannelUrl);
+
+        for (Tweet tweet : tweetList.getData()) {
+            long tweetId = SnowflakeId.parse(tweet.getId()); // The only place tweet IDs enter as strings
+            String tweetUrl = "https://x.com/" + this.twitterUsername + "/status/" + tweetId;
+            LocalDateTime createdAt = tweet.getCreatedAt(); // Get createdAt timestamp
+            List<String> imageUrls = new ArrayList<>();
+
+            if (tweet.getAttachments() != null && tweet.getAttachments().getMediaKeys() != null) {
+                String[] mediaKeys = tweet.getAttachments().getMediaKeys();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Tweet {} has media keys: {}", tweet.getId(), Arrays.toString(mediaKeys));
+                }
+                imageUrls = mediaIndex.photoUrls(mediaKeys);
+                logger.debug("Extracted image URLs for tweet {}: {}", tweet.getId(), imageUrls);
+            } else {
+                logger.debug("Tweet {} has no media attachments.", tweet.getId());
             }
-            logger.info("Processed {} tweets into TweetData objects.", tweetDataList.size());
-            return tweetDataList;
 
-        } catch (Exception e) {
-            logger.error("Error fetching Twitter timeline for user {}: {}", twitterUsername, e.getMessage(), e);
-            return Collections.emptyList();
+
+            // Create TweetData with all context (using constructor from user's fixed TweetData)
+            tweetConsumer.accept(new TweetData(
+                    // Core Tweet
+                    tweetId,
+                    tweet.getText(),
+                    tweetUrl,
+                    imageUrls,
+                    createdAt,
+                    // Author and Twitch
+                    context,
+                    // Additional Raw Tweet Fields (matching user's TweetData constructor)
+                    tweet.getAuthorId(),
+                    tweet.getConversationId(),
+                    tweet.getLang(),
+                    tweet.getSource(),
+                    tweet.getReplySettings().toString(),
+                    tweet.getInReplyToUserId(),
+                    TweetEntities.of(tweet) // Entities, attachments and geo data in the compact schema
+                    // Removed fields based on user's TweetData constructor
+                    // tweet.isPossiblySensitive(),
+                    // safeToString(tweet.getPublicMetrics()),
+                    // safeToString(tweet.getReferencedTweets()),
+                    // safeToString(tweet.getWithheld())
+            ));
+            tweetIds[emitted++] = tweetId;
         }
+        // Feed the per-hour tweet frequency used by the monthly read budget planner
+        readQuotaLedger.recordTweets(tweetIds);
+        return emitted;
     }
 }
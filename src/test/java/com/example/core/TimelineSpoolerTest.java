@@ -0,0 +1,93 @@
+package com.example.core;
+
+import com.example.file.DirectoryManager;
+import com.example.file.FetchCheckpointStore;
+import com.example.file.TweetSpool;
+import com.example.twitter.TweetData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimelineSpoolerTest {
+
+    @TempDir
+    Path dataDir;
+
+    private final List<Long> spooledIds = new ArrayList<>();
+
+    // Every write succeeds and every flush makes all writes durable
+    private final TweetSpool spool = new TweetSpool() {
+        @Override
+        public boolean write(TweetData tweetData) {
+            spooledIds.add(tweetData.getId());
+            return true;
+        }
+
+        @Override
+        public void processPending() {
+        }
+    };
+
+    @Test
+    void fetchFailingHalfwayThroughAPageKeepsTheCheckpoint() throws IOException {
+        FetchCheckpointStore checkpoint = checkpoint();
+        TimelineSpooler spooler = new TimelineSpooler(checkpoint, spool);
+        spooler.spoolPage(OptionalLong.empty(), emitting(10));
+
+        // The API delivers newest first: 40 and 30 are emitted, 20 never is
+        assertThrows(IllegalStateException.class, () -> spooler.spoolPage(OptionalLong.of(10), consumer -> {
+            consumer.accept(tweet(40));
+            consumer.accept(tweet(30));
+            throw new IllegalStateException("connection reset");
+        }));
+
+        assertEquals(OptionalLong.of(10), checkpoint.readSinceId());
+        assertTrue(checkpoint.readCursor().isEmpty());
+        // Also after a restart
+        FetchCheckpointStore restarted = checkpoint();
+        assertEquals(OptionalLong.of(10), restarted.readSinceId());
+        assertTrue(restarted.isSpooled(40) && restarted.isSpooled(30));
+
+        new TimelineSpooler(restarted, spool).spoolPage(restarted.readSinceId(), emitting(40, 30, 20));
+
+        assertEquals(List.of(10L, 40L, 30L, 20L), spooledIds);
+        assertEquals(OptionalLong.of(40), restarted.readSinceId());
+    }
+
+    @Test
+    void completePageCommitsItsNewestTweet() throws IOException {
+        FetchCheckpointStore checkpoint = checkpoint();
+
+        assertEquals(3, new TimelineSpooler(checkpoint, spool).spoolPage(OptionalLong.empty(), emitting(30, 20, 10)));
+
+        assertEquals(OptionalLong.of(30), checkpoint.readSinceId());
+        assertEquals(OptionalLong.of(30), checkpoint().readSinceId());
+    }
+
+    private FetchCheckpointStore checkpoint() throws IOException {
+        return new FetchCheckpointStore(new DirectoryManager(dataDir.toString()));
+    }
+
+    private static TimelineSpooler.PageFetch emitting(long... ids) {
+        return consumer -> {
+            for (long id : ids) {
+                consumer.accept(tweet(id));
+            }
+            return ids.length;
+        };
+    }
+
+    private static TweetData tweet(long id) {
+        return new TweetData(id, "tweet " + id, "https://x.com/streamer/status/" + id, null, null, "Streamer",
+                null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
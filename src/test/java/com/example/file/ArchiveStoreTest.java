@@ -0,0 +1,88 @@
+package com.example.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveStoreTest {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void readsTweetsFromOverlappingSegmentsAfterReopening() throws IOException {
+        ArchiveStore archive = new ArchiveStore(dataDir.resolve("archive"));
+        archive.writeSegment(tweetFiles(10, 20, 30));
+        archive.writeSegment(tweetFiles(15, 25)); // A later run archiving older IDs
+
+        ArchiveStore reopened = new ArchiveStore(dataDir.resolve("archive"));
+        for (long id : new long[]{10, 15, 20, 25, 30}) {
+            assertArrayEquals(content(id), reopened.read(id).orElseThrow().content());
+        }
+        assertFalse(reopened.contains(12));
+        List<Long> ids = new ArrayList<>();
+        reopened.forEachId(ids::add);
+        assertEquals(List.of(10L, 15L, 20L, 25L, 30L), ids.stream().sorted().toList());
+    }
+
+    @Test
+    void refusesToReplaceACompleteSegment() throws IOException {
+        ArchiveStore archive = new ArchiveStore(dataDir.resolve("archive"));
+        archive.writeSegment(tweetFiles(10, 20));
+
+        assertThrows(FileAlreadyExistsException.class, () -> archive.writeSegment(tweetFiles(10, 20)));
+        assertArrayEquals(content(20), archive.read(20).orElseThrow().content());
+    }
+
+    @Test
+    void replacesASegmentWithoutIndex() throws IOException {
+        Path archiveDir = Files.createDirectories(dataDir.resolve("archive"));
+        Files.write(archiveDir.resolve("segment-10-20.json.gz"), new byte[]{1, 2, 3}); // Interrupted before the index was renamed
+        ArchiveStore archive = new ArchiveStore(archiveDir);
+        assertFalse(archive.contains(10));
+
+        archive.writeSegment(tweetFiles(10, 20));
+
+        assertTrue(archive.contains(10));
+        assertArrayEquals(content(10), new ArchiveStore(archiveDir).read(10).orElseThrow().content());
+    }
+
+    @Test
+    void closedArchiveRefusesWritesButStillReads() throws IOException {
+        ArchiveStore archive = new ArchiveStore(dataDir.resolve("archive"));
+        archive.writeSegment(tweetFiles(10, 20));
+        archive.close();
+
+        assertThrows(IOException.class, () -> archive.writeSegment(tweetFiles(30, 40)));
+        assertFalse(Files.exists(dataDir.resolve("archive").resolve("segment-30-40.json.gz")));
+        assertArrayEquals(content(10), archive.read(10).orElseThrow().content());
+    }
+
+    private List<ArchiveStore.TweetFile> tweetFiles(long... ids) throws IOException {
+        Path processedDir = Files.createDirectories(dataDir.resolve("processed"));
+        List<ArchiveStore.TweetFile> files = new ArrayList<>();
+        for (long id : ids) {
+            Path file = processedDir.resolve(SpoolCodec.JSON.fileName(id));
+            Files.write(file, content(id));
+            files.add(new ArchiveStore.TweetFile(id, file));
+        }
+        return files;
+    }
+
+    private static byte[] content(long id) {
+        return ("{\"id\":" + id + ",\"text\":\"archived tweet " + id + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.file;
+
+import com.example.twitter.TimelineCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FetchCheckpointStoreTest {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void rangeRecordedBeforeACrashIsCommittedOnTheNextStart() throws IOException {
+        FetchCheckpointStore checkpoint = open();
+        checkpoint.recordBatch(List.of(30L, 20L), List.of(), new TimelineCursor(0, null, 30));
+        // Crash before completeRange()
+
+        FetchCheckpointStore restarted = open();
+
+        assertEquals(OptionalLong.of(30), restarted.readSinceId());
+        assertEquals(Optional.empty(), restarted.readCursor());
+    }
+
+    @Test
+    void unfinishedCatchUpResumesAtItsPageAfterACrash() throws IOException {
+        FetchCheckpointStore checkpoint = open();
+        checkpoint.recordBatch(List.of(10L), List.of(), new TimelineCursor(0, null, 10));
+        checkpoint.completeRange(10);
+        TimelineCursor afterFirstPage = TimelineCursor.startingAfter(10).afterPage("next-page", 50);
+        checkpoint.recordBatch(List.of(50L, 40L), List.of(), afterFirstPage);
+
+        FetchCheckpointStore restarted = open();
+
+        assertEquals(OptionalLong.of(10), restarted.readSinceId());
+        assertEquals(Optional.of(afterFirstPage), restarted.readCursor());
+        assertTrue(restarted.isSpooled(50) && restarted.isSpooled(40));
+        assertFalse(restarted.isSpooled(30));
+    }
+
+    @Test
+    void failedTweetHoldsTheMarkBelowIt() throws IOException {
+        FetchCheckpointStore checkpoint = open();
+        checkpoint.recordBatch(List.of(10L), List.of(), null);
+        checkpoint.completeRange(10);
+
+        checkpoint.recordBatch(List.of(40L, 20L), List.of(30L), new TimelineCursor(10, null, 40));
+        assertEquals(20, checkpoint.completeRange(40));
+
+        // 30 is fetched again; 40 is skipped since it is still listed as spooled
+        assertFalse(checkpoint.isSpooled(30));
+        assertTrue(checkpoint.isSpooled(40));
+        FetchCheckpointStore restarted = open();
+        assertEquals(OptionalLong.of(20), restarted.readSinceId());
+        assertTrue(restarted.isSpooled(40));
+
+        restarted.recordBatch(List.of(30L), List.of(), new TimelineCursor(20, null, 40));
+        assertEquals(40, restarted.completeRange(40));
+    }
+
+    @Test
+    void failedOldestTweetKeepsTheMark() throws IOException {
+        FetchCheckpointStore checkpoint = open();
+        checkpoint.recordBatch(List.of(10L), List.of(), null);
+        checkpoint.completeRange(10);
+
+        checkpoint.recordBatch(List.of(30L), List.of(20L), new TimelineCursor(10, null, 30));
+
+        assertEquals(10, checkpoint.completeRange(30));
+    }
+
+    @Test
+    void lastTweetIdFileIsTakenOverAndDeleted() throws IOException {
+        Path lastTweetIdFile = Files.writeString(dataDir.resolve(DirectoryManager.LAST_TWEET_ID_FILENAME),
+                "1790000000000000000\n", StandardCharsets.UTF_8);
+
+        FetchCheckpointStore checkpoint = open();
+
+        assertEquals(OptionalLong.of(1_790_000_000_000_000_000L), checkpoint.readSinceId());
+        assertFalse(Files.exists(lastTweetIdFile));
+        assertEquals(OptionalLong.of(1_790_000_000_000_000_000L), open().readSinceId());
+    }
+
+    @Test
+    void invalidLastTweetIdFileIsIgnoredAndKept() throws IOException {
+        Path lastTweetIdFile = Files.writeString(dataDir.resolve(DirectoryManager.LAST_TWEET_ID_FILENAME),
+                "not an id", StandardCharsets.UTF_8);
+
+        FetchCheckpointStore checkpoint = open();
+
+        assertEquals(OptionalLong.empty(), checkpoint.readSinceId());
+        assertTrue(Files.exists(lastTweetIdFile));
+    }
+
+    private FetchCheckpointStore open() throws IOException {
+        return new FetchCheckpointStore(new DirectoryManager(dataDir.toString()));
+    }
+}
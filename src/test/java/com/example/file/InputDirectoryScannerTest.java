@@ -0,0 +1,122 @@
+package com.example.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputDirectoryScannerTest {
+
+    private static final int MAX_IN_MEMORY = 64;
+    private static final int BATCH_SIZE = 50;
+    private static final int LARGE_BACKLOG = 1_000_000;
+    private static final int LARGE_MAX_IN_MEMORY = 10_000;
+    private static final int LARGE_BATCH_SIZE = 1_000;
+    // A full listing of the large backlog keeps over 100 MB of paths; the scan keeps a few sorted runs
+    private static final long LARGE_RETAINED_HEAP_LIMIT = 16L * 1024 * 1024;
+
+    @TempDir
+    Path inputDir;
+
+    @Test
+    void scanSpillsAndMergesRunsInNumericIdOrder() throws IOException {
+        // Snowflake-sized IDs mixed with short ones, so name order and ID order disagree
+        Random random = new Random(42);
+        TreeSet<Long> ids = new TreeSet<>();
+        while (ids.size() < 1000) {
+            ids.add(ids.size() % 10 == 0 ? random.nextInt(1000) : 1_000_000_000_000_000_000L + random.nextInt(Integer.MAX_VALUE) * 1000L);
+        }
+        for (long id : ids) {
+            Files.createFile(inputDir.resolve("tweet_" + id + ".json"));
+        }
+
+        List<List<Path>> batches = scan();
+
+        List<Long> scannedIds = new ArrayList<>();
+        for (List<Path> batch : batches) {
+            assertTrue(!batch.isEmpty() && batch.size() <= BATCH_SIZE, "batch of " + batch.size() + " files");
+            for (Path file : batch) {
+                scannedIds.add(InputDirectoryScanner.parseTweetId(file.getFileName().toString()).orElseThrow());
+            }
+        }
+        assertEquals(new ArrayList<>(ids), scannedIds);
+        assertEquals((ids.size() + BATCH_SIZE - 1) / BATCH_SIZE, batches.size());
+    }
+
+    // Creating a million files takes a while, so this only runs with -Dscanner.large=true
+    @Test
+    @EnabledIfSystemProperty(named = "scanner.large", matches = "true")
+    void scanKeepsIdOrderAndBoundedMemoryForAMillionFiles() throws IOException {
+        // Every tenth ID is short, so name order and ID order disagree across the whole backlog
+        long id = 1_000_000_000_000_000_000L;
+        for (int i = 0; i < LARGE_BACKLOG; i++) {
+            id += 1 + (i * 7919L) % 4096;
+            Files.createFile(inputDir.resolve("tweet_" + (i % 10 == 0 ? i : id) + ".json"));
+        }
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long baseline = retainedHeap(memory);
+        long[] previousId = {-1};
+        long[] maxRetained = {0};
+        int[] batchCount = {0};
+
+        int scanned = new InputDirectoryScanner(inputDir, LARGE_MAX_IN_MEMORY, LARGE_BATCH_SIZE).scan(batch -> {
+            assertTrue(!batch.isEmpty() && batch.size() <= LARGE_BATCH_SIZE, "batch of " + batch.size() + " files");
+            for (Path file : batch) {
+                long scannedId = InputDirectoryScanner.parseTweetId(file.getFileName().toString()).orElseThrow();
+                assertTrue(scannedId > previousId[0], scannedId + " after " + previousId[0]);
+                previousId[0] = scannedId;
+            }
+            if (++batchCount[0] % 100 == 0) {
+                maxRetained[0] = Math.max(maxRetained[0], retainedHeap(memory) - baseline);
+            }
+        });
+
+        assertEquals(LARGE_BACKLOG, scanned);
+        assertTrue(maxRetained[0] < LARGE_RETAINED_HEAP_LIMIT, "scan retained " + maxRetained[0] + " bytes of heap");
+    }
+
+    @Test
+    void scanListsBothFormatsOfATweetAndOtherFilesLast() throws IOException {
+        for (String name : List.of("notes.json", "tweet_20.smile", "tweet_3.json", "tweet_100.json", "tweet_20.json", "a.smile")) {
+            Files.createFile(inputDir.resolve(name));
+        }
+
+        List<String> names = new ArrayList<>();
+        for (List<Path> batch : scan()) {
+            batch.forEach(file -> names.add(file.getFileName().toString()));
+        }
+
+        assertEquals(List.of("tweet_3.json", "tweet_20.json", "tweet_20.smile", "tweet_100.json", "a.smile", "notes.json"), names);
+    }
+
+    @Test
+    void parseTweetIdRejectsOtherNames() {
+        assertEquals(1234567890123456789L, InputDirectoryScanner.parseTweetId("tweet_1234567890123456789.json").orElseThrow());
+        assertTrue(InputDirectoryScanner.parseTweetId("tweet_0123.json").isEmpty());
+        assertTrue(InputDirectoryScanner.parseTweetId("tweet_9999999999999999999.json").isEmpty());
+        assertTrue(InputDirectoryScanner.parseTweetId("tweet_12.txt").isEmpty());
+    }
+
+    private static long retainedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private List<List<Path>> scan() throws IOException {
+        List<List<Path>> batches = new ArrayList<>();
+        new InputDirectoryScanner(inputDir, MAX_IN_MEMORY, BATCH_SIZE).scan(batch -> batches.add(List.copyOf(batch)));
+        return batches;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTweetSpoolTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    void missingStateStartsAtTheJournalStart() throws IOException {
+        new JournalTweetSpool(journalDir, SEGMENT_SIZE, null, SpoolCodecs.defaults()).close();
+
+        assertTrue(Files.isDirectory(journalDir.resolve("failed")));
+    }
+
+    @Test
+    void unreadableStateIsAnErrorInsteadOfAReplay() throws IOException {
+        new JournalTweetSpool(journalDir, SEGMENT_SIZE, null, SpoolCodecs.defaults()).close();
+        // What a rename without a prior sync can leave behind after a power loss
+        Files.write(journalDir.resolve(JournalTweetSpool.STATE_FILENAME), new byte[0]);
+
+        assertThrows(IOException.class, () -> new JournalTweetSpool(journalDir, SEGMENT_SIZE, null, SpoolCodecs.defaults()));
+    }
+}
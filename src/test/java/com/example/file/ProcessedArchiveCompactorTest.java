@@ -0,0 +1,49 @@
+package com.example.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessedArchiveCompactorTest {
+
+    private static final long OLD_TWEET_ID = 1_000_000_000_000_000_000L; // Snowflake time in 2018
+    private static final long RECENT_TWEET_ID = (System.currentTimeMillis() - 1288834974657L) << 22;
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    void archivesOldTweetsAndDeletesBothFormats() throws IOException {
+        DirectoryManager directoryManager = new DirectoryManager(baseDir.toString());
+        Path processedDir = directoryManager.getProcessedDir();
+        Path oldJson = write(processedDir.resolve(SpoolCodec.JSON.fileName(OLD_TWEET_ID)), "{\"id\":" + OLD_TWEET_ID + "}");
+        Path oldSmile = write(processedDir.resolve(SpoolCodec.SMILE.fileName(OLD_TWEET_ID)), "smile copy");
+        Path recent = write(processedDir.resolve(SpoolCodec.JSON.fileName(RECENT_TWEET_ID)), "{\"id\":" + RECENT_TWEET_ID + "}");
+        ArchiveStore archive = new ArchiveStore(directoryManager.getArchiveDir());
+
+        int removed = new ProcessedArchiveCompactor(directoryManager, archive, Duration.ofDays(30)).compact();
+
+        assertEquals(2, removed);
+        assertFalse(Files.exists(oldJson));
+        assertFalse(Files.exists(oldSmile));
+        assertTrue(Files.exists(recent));
+        assertArrayEquals(("{\"id\":" + OLD_TWEET_ID + "}").getBytes(StandardCharsets.UTF_8),
+                archive.read(OLD_TWEET_ID).orElseThrow().content());
+        assertFalse(archive.contains(RECENT_TWEET_ID));
+    }
+
+    private static Path write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.file;
+
+import com.example.file.RetentionSweeper.Policy;
+import com.example.twitter.SnowflakeId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetentionSweeperTest {
+
+    private static final int FILE_SIZE = 100;
+    private static final Instant NOW = Instant.now();
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void filesOlderThanTheAgeLimitAreEvicted() throws IOException {
+        DirectoryManager directoryManager = new DirectoryManager(dataDir.toString());
+        Path processed = directoryManager.getProcessedDir();
+        Path oldTweet = tweetFile(processed, daysAgo(400), ".json");
+        Path recentTweet = tweetFile(processed, daysAgo(1), ".json");
+        Path oldOtherFile = oldFile(processed.resolve("notes.txt"), daysAgo(400));
+        Path oldTweetLog = tweetFile(directoryManager.getLogsDir(), daysAgo(400), ".log");
+        Path applicationLog = oldFile(directoryManager.getLogsDir().resolve("application.log"), daysAgo(400));
+
+        Policy thirtyDays = Policy.of(30, 0);
+        List<RetentionSweeper.DirectoryReport> reports = sweeper(directoryManager,
+                Map.of("processed", thirtyDays, "logs", thirtyDays), false).sweep();
+
+        assertFalse(Files.exists(oldTweet));
+        assertFalse(Files.exists(oldOtherFile));
+        assertTrue(Files.exists(recentTweet));
+        assertFalse(Files.exists(oldTweetLog));
+        assertTrue(Files.exists(applicationLog), "logback rolls application.log itself");
+        RetentionSweeper.DirectoryReport processedReport = report(reports, "processed");
+        assertEquals(2, processedReport.ageFiles());
+        assertEquals(2 * FILE_SIZE, processedReport.ageBytes());
+        assertEquals(1, processedReport.files());
+        assertEquals(1, report(reports, "logs").ageFiles());
+    }
+
+    @Test
+    void quotaEvictsTheOldestTweetsFirst() throws IOException {
+        DirectoryManager directoryManager = new DirectoryManager(dataDir.toString());
+        Path processed = directoryManager.getProcessedDir();
+        // Written newest first, so neither the listing nor the modification time gives the order
+        Path newest = tweetFile(processed, daysAgo(1), ".json");
+        Path newer = tweetFile(processed, daysAgo(2), ".json");
+        Path older = tweetFile(processed, daysAgo(3), ".json");
+        Path oldest = tweetFile(processed, daysAgo(4), ".json");
+
+        RetentionSweeper.DirectoryReport report = report(sweeper(directoryManager,
+                Map.of("processed", new Policy(null, 2 * FILE_SIZE + FILE_SIZE / 2)), false).sweep(), "processed");
+
+        assertFalse(Files.exists(oldest));
+        assertFalse(Files.exists(older));
+        assertTrue(Files.exists(newer));
+        assertTrue(Files.exists(newest));
+        assertEquals(2, report.quotaFiles());
+        assertEquals(2 * FILE_SIZE, report.quotaBytes());
+        assertEquals(2, report.files());
+        assertEquals(2 * FILE_SIZE, report.bytes());
+    }
+
+    @Test
+    void dryRunReportsWhatARealRunEvicts() throws IOException {
+        Map<String, Policy> policies = Map.of("processed", new Policy(Duration.ofDays(365), FILE_SIZE + FILE_SIZE / 2));
+        DirectoryManager dryRunData = shardedTree(dataDir.resolve("dry-run"));
+        DirectoryManager realData = shardedTree(dataDir.resolve("real"));
+
+        RetentionSweeper.DirectoryReport dryRun = report(sweeper(dryRunData, policies, true).sweep(), "processed");
+        RetentionSweeper.DirectoryReport real = report(sweeper(realData, policies, false).sweep(), "processed");
+
+        assertEquals(3, real.ageFiles());
+        assertEquals(2, real.quotaFiles());
+        assertEquals(1, real.files());
+        assertEquals(real.ageFiles(), dryRun.ageFiles());
+        assertEquals(real.ageBytes(), dryRun.ageBytes());
+        assertEquals(real.quotaFiles(), dryRun.quotaFiles());
+        assertEquals(real.quotaBytes(), dryRun.quotaBytes());
+        assertEquals(real.files(), dryRun.files());
+        assertEquals(real.bytes(), dryRun.bytes());
+        assertEquals(6, countFiles(dryRunData.getProcessedDir()), "a dry run deletes nothing");
+        assertEquals(1, countFiles(realData.getProcessedDir()));
+    }
+
+    @Test
+    void unchangedBucketsAreSkippedAfterARestart() throws IOException {
+        DirectoryManager directoryManager = new DirectoryManager(dataDir.toString(), true);
+        Path processed = directoryManager.getProcessedDir();
+        Instant may = Instant.parse("2024-05-10T12:00:00Z");
+        Instant june = Instant.parse("2024-06-10T12:00:00Z");
+        archivedTweetFile(directoryManager, may);
+        archivedTweetFile(directoryManager, june);
+        archivedTweetFile(directoryManager, june.plusSeconds(60));
+        // Directory times in the past, so a file added below always changes its bucket's time
+        for (Path dir : List.of(processed, processed.resolve("2024"), processed.resolve("2024/05"), processed.resolve("2024/06"))) {
+            Files.setLastModifiedTime(dir, FileTime.from(daysAgo(30)));
+        }
+        Map<String, Policy> policies = Map.of("processed", new Policy(null, 1L << 30));
+
+        RetentionSweeper.DirectoryReport first = report(sweeper(directoryManager, policies, false).sweep(), "processed");
+        assertEquals(3, first.bucketsListed());
+        assertEquals(3, first.filesStated());
+        assertTrue(Files.exists(directoryManager.getRetentionStateFile()));
+
+        RetentionSweeper.DirectoryReport unchanged = report(sweeper(directoryManager, policies, false).sweep(), "processed");
+        assertEquals(0, unchanged.bucketsListed());
+        assertEquals(3, unchanged.bucketsSkipped());
+        assertEquals(0, unchanged.filesStated());
+        assertEquals(3, unchanged.files());
+        assertEquals(3 * FILE_SIZE, unchanged.bytes());
+
+        archivedTweetFile(directoryManager, june.plusSeconds(120));
+        RetentionSweeper.DirectoryReport added = report(sweeper(directoryManager, policies, false).sweep(), "processed");
+        assertEquals(1, added.bucketsListed());
+        assertEquals(2, added.bucketsSkipped());
+        assertEquals(1, added.filesStated(), "only the new file is stat'ed");
+        assertEquals(4, added.files());
+        assertEquals(4 * FILE_SIZE, added.bytes());
+    }
+
+    @Test
+    void inputAndJournalAreNeverTouched() throws IOException {
+        DirectoryManager directoryManager = new DirectoryManager(dataDir.toString());
+        Path pendingTweet = tweetFile(directoryManager.getInputDir(), daysAgo(400), ".json");
+        Path stagedTweet = tweetFile(Files.createDirectories(directoryManager.getInputDir().resolve(".staging")), daysAgo(400), ".json");
+        Path journalSegment = oldFile(Files.createDirectories(directoryManager.getJournalDir()).resolve("00000000000000000000.seg"), daysAgo(400));
+        Path processedTweet = tweetFile(directoryManager.getProcessedDir(), daysAgo(400), ".json");
+
+        Policy evictEverything = new Policy(Duration.ofDays(1), 1);
+        sweeper(directoryManager, Map.of("bin", evictEverything, "processed", evictEverything,
+                "failed", evictEverything, "logs", evictEverything), false).sweep();
+
+        assertFalse(Files.exists(processedTweet));
+        assertTrue(Files.exists(pendingTweet));
+        assertTrue(Files.exists(stagedTweet));
+        assertTrue(Files.exists(journalSegment));
+    }
+
+    private static RetentionSweeper sweeper(DirectoryManager directoryManager, Map<String, Policy> policies, boolean dryRun) {
+        return new RetentionSweeper(directoryManager, policies, Duration.ZERO, dryRun);
+    }
+
+    private static RetentionSweeper.DirectoryReport report(List<RetentionSweeper.DirectoryReport> reports, String directory) {
+        return reports.stream().filter(report -> report.directory().equals(directory)).findFirst().orElseThrow();
+    }
+
+    // processed/ with month buckets and two files left in the flat directory from before the migration
+    private static DirectoryManager shardedTree(Path baseDir) throws IOException {
+        DirectoryManager directoryManager = new DirectoryManager(baseDir.toString(), true);
+        archivedTweetFile(directoryManager, daysAgo(800));
+        archivedTweetFile(directoryManager, daysAgo(800).plusSeconds(60));
+        archivedTweetFile(directoryManager, daysAgo(10));
+        archivedTweetFile(directoryManager, daysAgo(5));
+        tweetFile(directoryManager.getProcessedDir(), daysAgo(500), ".json");
+        tweetFile(directoryManager.getProcessedDir(), daysAgo(2), ".json");
+        return directoryManager;
+    }
+
+    private static Path archivedTweetFile(DirectoryManager directoryManager, Instant time) throws IOException {
+        Path file = directoryManager.resolveArchivedFile(directoryManager.getProcessedDir(), "tweet_" + idAt(time) + ".json");
+        Files.createDirectories(file.getParent());
+        return Files.write(file, new byte[FILE_SIZE]);
+    }
+
+    private static Path tweetFile(Path dir, Instant time, String extension) throws IOException {
+        return Files.write(dir.resolve("tweet_" + idAt(time) + extension), new byte[FILE_SIZE]);
+    }
+
+    private static Path oldFile(Path file, Instant time) throws IOException {
+        Files.write(file, new byte[FILE_SIZE]);
+        Files.setLastModifiedTime(file, FileTime.from(time));
+        return file;
+    }
+
+    private static long idAt(Instant time) {
+        return (time.toEpochMilli() - SnowflakeId.TWITTER_EPOCH_MILLIS) << 22;
+    }
+
+    private static Instant daysAgo(int days) {
+        return NOW.minus(Duration.ofDays(days));
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
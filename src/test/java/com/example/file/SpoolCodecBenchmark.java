@@ -0,0 +1,190 @@
+package com.example.file;
+
+import com.example.twitter.TweetContext;
+import com.example.twitter.TweetData;
+import com.example.twitter.TweetEntities;
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.management.ThreadMXBean;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the {@link SpoolCodec}s on synthetic tweets: encoded size, and the time to encode and
+ * to decode a tweet. Each codec is measured with the previous setup (an {@code ObjectMapper} per
+ * component, called with the target class on every tweet) as the baseline and with the shared
+ * pre-resolved reader and writer, without and then with the Blackbird module; once in memory and
+ * once as the tweet file round trip ({@link SpoolCodecs#write}/{@link SpoolCodecs#read}, which use the pooled
+ * per-thread buffers). The ID and URL only parse used for the duplicate check is measured on the
+ * same content, with the bytes allocated per tweet while decoding. The variants run interleaved,
+ * round by round, and the fastest round of each is reported, so JIT warm-up and noise from other
+ * processes affect them alike. The sizes are reported with the author and Twitch fields and with
+ * shared contexts.
+ * <p>
+ * Usage: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.file.SpoolCodecBenchmark -Dexec.args="[tweets] [rounds]"}
+ */
+public class SpoolCodecBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpoolCodecBenchmark.class);
+    private static final int WARMUP_ROUNDS = 5;
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        int tweetCount = args.length >= 1 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length >= 2 ? Integer.parseInt(args[1]) : 20;
+        List<TweetData> tweets = createTweets(tweetCount);
+        Path dir = Files.createTempDirectory("codec-benchmark");
+        try {
+            for (boolean blackbird : new boolean[]{false, true}) {
+                SpoolCodecs codecs = new SpoolCodecs(blackbird, TweetContextStore.inMemory(), false);
+                List<Variant> variants = new ArrayList<>();
+                for (SpoolCodec codec : SpoolCodec.values()) {
+                    ObjectMapper legacyMapper = legacyMapper(codec);
+                    String shared = codec + (blackbird ? " shared + Blackbird" : " shared");
+                    byte[][] legacyEncoded = new byte[tweets.size()][];
+                    byte[][] sharedEncoded = new byte[tweets.size()][];
+                    byte[][] keyEncoded = new byte[tweets.size()][];
+                    variants.add(new Variant(codec + " ObjectMapper per component (baseline), in memory",
+                            i -> legacyEncoded[i] = legacyMapper.writeValueAsBytes(tweets.get(i)),
+                            i -> legacyMapper.readValue(legacyEncoded[i], TweetData.class)));
+                    variants.add(new Variant(shared + ", in memory",
+                            i -> sharedEncoded[i] = codecs.encode(codec, tweets.get(i)),
+                            i -> codecs.decode(codec, sharedEncoded[i])));
+                    variants.add(new Variant(shared + ", ID and URL only, in memory",
+                            i -> keyEncoded[i] = codecs.encode(codec, tweets.get(i)),
+                            i -> codec.decodeKey(keyEncoded[i])));
+                    variants.add(new Variant(codec + " ObjectMapper per component (baseline), files",
+                            i -> legacyMapper.writeValue(benchmarkFile(dir, codec, i), tweets.get(i)),
+                            i -> legacyMapper.readValue(benchmarkFile(dir, codec, i), TweetData.class)));
+                    variants.add(new Variant(shared + " + pooled buffers, files",
+                            i -> codecs.write(codec, benchmarkFile(dir, codec, i), tweets.get(i)),
+                            i -> codecs.read(codec, benchmarkFile(dir, codec, i))));
+                    variants.add(new Variant(shared + ", ID and URL only, files",
+                            i -> codecs.write(codec, benchmarkFile(dir, codec, i), tweets.get(i)),
+                            i -> codec.readKey(benchmarkFile(dir, codec, i))));
+                }
+                for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+                    for (Variant variant : variants) {
+                        variant.runRound(tweets.size(), round >= WARMUP_ROUNDS);
+                    }
+                }
+                for (Variant variant : variants) {
+                    logger.info("{}: encode {} µs/tweet, decode {} µs/tweet ({} bytes allocated per decoded tweet).", variant.name,
+                            String.format("%.2f", variant.bestEncodeNanos / 1000.0 / tweets.size()),
+                            String.format("%.2f", variant.bestDecodeNanos / 1000.0 / tweets.size()),
+                            variant.decodeAllocatedBytes / tweets.size());
+                }
+            }
+            for (boolean sharedContexts : new boolean[]{false, true}) {
+                SpoolCodecs codecs = new SpoolCodecs(true, TweetContextStore.inMemory(), sharedContexts);
+                for (SpoolCodec codec : SpoolCodec.values()) {
+                    long totalBytes = 0;
+                    for (TweetData tweet : tweets) {
+                        totalBytes += codecs.encode(codec, tweet).length;
+                    }
+                    logger.info("{}{}: {} bytes per tweet on average.", codec, sharedContexts ? " with shared contexts" : "",
+                            totalBytes / tweets.size());
+                }
+            }
+        } finally {
+            FileUtils.deleteQuietly(dir.toFile());
+        }
+    }
+
+    @FunctionalInterface
+    private interface TweetOperation {
+        void apply(int index) throws IOException;
+    }
+
+    private static final class Variant {
+        private final String name;
+        private final TweetOperation encode;
+        private final TweetOperation decode;
+        private long bestEncodeNanos = Long.MAX_VALUE;
+        private long bestDecodeNanos = Long.MAX_VALUE;
+        private long decodeAllocatedBytes; // Of the last measured round
+
+        private Variant(String name, TweetOperation encode, TweetOperation decode) {
+            this.name = name;
+            this.encode = encode;
+            this.decode = decode;
+        }
+
+        private void runRound(int tweetCount, boolean measured) throws IOException {
+            long start = System.nanoTime();
+            for (int i = 0; i < tweetCount; i++) {
+                encode.apply(i);
+            }
+            long encodeNanos = System.nanoTime() - start;
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < tweetCount; i++) {
+                decode.apply(i);
+            }
+            long decodeNanos = System.nanoTime() - start;
+            if (measured) {
+                decodeAllocatedBytes = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                bestEncodeNanos = Math.min(bestEncodeNanos, encodeNanos);
+                bestDecodeNanos = Math.min(bestDecodeNanos, decodeNanos);
+            }
+        }
+    }
+
+    private static File benchmarkFile(Path dir, SpoolCodec codec, int index) {
+        return dir.resolve(codec.fileName(index)).toFile();
+    }
+
+    // The setup TweetWriter and DiscordNotifier each had before SpoolCodec
+    private static ObjectMapper legacyMapper(SpoolCodec codec) {
+        ObjectMapper objectMapper = codec == SpoolCodec.SMILE ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        // Now required to read TweetData; not used for tweets with their author and Twitch fields
+        objectMapper.setInjectableValues(new InjectableValues.Std().addValue(TweetContext.Resolver.class, TweetContextStore.inMemory()));
+        if (codec == SpoolCodec.JSON) {
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        }
+        return objectMapper;
+    }
+
+    // Tweets shaped like the ones TwitterService writes: same author and Twitch context, varying text and media
+    private static List<TweetData> createTweets(int count) {
+        Random random = new Random(42);
+        List<TweetData> tweets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = 1_790_000_000_000_000_000L + i * 4_194_304L;
+            StringBuilder text = new StringBuilder();
+            int words = 10 + random.nextInt(40);
+            for (int w = 0; w < words; w++) {
+                text.append("word").append(random.nextInt(1000)).append(' ');
+            }
+            List<String> imageUrls = new ArrayList<>();
+            for (int m = random.nextInt(5); m > 0; m--) {
+                imageUrls.add("https://pbs.twimg.com/media/" + Long.toHexString(random.nextLong()) + ".jpg");
+            }
+            tweets.add(new TweetData(id, text.toString().trim(), "https://x.com/streamer/status/" + id, imageUrls,
+                    LocalDateTime.of(2024, 5, 1, 12, 0).plusMinutes(i), "Streamer", "https://x.com/streamer",
+                    "https://pbs.twimg.com/profile_images/1234567890/avatar_normal.jpg", "streamer",
+                    "https://static-cdn.jtvnw.net/jtv_user_pictures/streamer-profile_image-300x300.png",
+                    "https://twitch.tv/streamer", "1234567890", Long.toString(id), "en", null, "everyone", null,
+                    new TweetEntities(List.of(new TweetEntities.Link("https://t.co/" + Integer.toHexString(random.nextInt()),
+                            "https://example.com/" + random.nextInt(1000))), null, List.of("stream"), null,
+                            imageUrls.isEmpty() ? null : List.of("3_" + id), null, null)));
+        }
+        return tweets;
+    }
+}
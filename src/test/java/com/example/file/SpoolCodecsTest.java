@@ -0,0 +1,61 @@
+package com.example.file;
+
+import com.example.twitter.TweetData;
+import com.example.twitter.TweetEntities;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class SpoolCodecsTest {
+
+    @Test
+    void blackbirdWritesTheSameBytesAsReflection() throws IOException {
+        assertSameBytes(false);
+    }
+
+    @Test
+    void blackbirdWritesTheSameCompactTweetsAsReflection() throws IOException {
+        assertSameBytes(true);
+    }
+
+    // Encodes with one setup, decodes with the other and encodes again: every step must give the same bytes
+    private static void assertSameBytes(boolean sharedContexts) throws IOException {
+        TweetContextStore contextStore = TweetContextStore.inMemory();
+        SpoolCodecs blackbird = new SpoolCodecs(true, contextStore, sharedContexts);
+        SpoolCodecs reflection = new SpoolCodecs(false, contextStore, sharedContexts);
+        for (SpoolCodec codec : SpoolCodec.values()) {
+            for (TweetData tweet : tweets()) {
+                String message = codec + " tweet " + tweet.getId();
+                byte[] withBlackbird = blackbird.encode(codec, tweet);
+                byte[] withReflection = reflection.encode(codec, tweet);
+                assertArrayEquals(withReflection, withBlackbird, message);
+                assertArrayEquals(reflection.encodeRecord(codec, tweet), blackbird.encodeRecord(codec, tweet), message);
+
+                assertArrayEquals(withBlackbird, reflection.encode(codec, blackbird.decode(codec, withReflection)), message);
+                assertArrayEquals(withReflection, blackbird.encode(codec, reflection.decode(codec, withBlackbird)), message);
+            }
+        }
+    }
+
+    private static List<TweetData> tweets() {
+        TweetEntities entities = new TweetEntities(
+                List.of(new TweetEntities.Link("https://t.co/abc123", "https://example.com/stream?lang=de&t=1")),
+                List.of("someone"), List.of("stream", "Überraschung"), List.of("TWTR"), List.of("3_1790000000000000001"),
+                "01a9a39529b27f36", List.of(13.4050, 52.5200));
+        return List.of(
+                new TweetData(1_790_000_000_000_000_001L, "Live now 🎮 with \"quotes\", <tags> & ümlauts\nsecond line",
+                        "https://x.com/streamer/status/1790000000000000001",
+                        List.of("https://pbs.twimg.com/media/a.jpg", "https://pbs.twimg.com/media/b.jpg"),
+                        LocalDateTime.of(2024, 5, 1, 12, 0, 30, 123_000_000), "Streamer", "https://x.com/streamer",
+                        "https://pbs.twimg.com/profile_images/1/avatar_normal.jpg", "streamer",
+                        "https://static-cdn.jtvnw.net/jtv_user_pictures/streamer.png", "https://twitch.tv/streamer",
+                        "1234567890", "1790000000000000001", "en", "Twitter Web App", "everyone", null, entities),
+                // Missing optional fields
+                new TweetData(20, "", "https://x.com/streamer/status/20", null, null, null, null, null, null, null, null,
+                        null, null, null, null, null, null, null));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TweetIdIndexTest {
+
+    private static final int HEADER_BYTES = 24;
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void addedIdsSurviveReopening() throws IOException {
+        Path indexFile = dataDir.resolve("ids.idx");
+        try (TweetIdIndex index = TweetIdIndex.open(indexFile, dataDir.resolve("processed"))) {
+            index.add(30);
+            index.add(10);
+            index.add(20);
+            index.add(10);
+            assertEquals(3, index.size());
+        }
+
+        try (TweetIdIndex index = TweetIdIndex.open(indexFile, dataDir.resolve("processed"))) {
+            assertEquals(3, index.size());
+            assertTrue(index.contains(10) && index.contains(20) && index.contains(30));
+            assertFalse(index.contains(15));
+        }
+    }
+
+    @Test
+    void fullTailIsCompactedIntoTheSortedSection() throws IOException {
+        Path indexFile = dataDir.resolve("ids.idx");
+        Random random = new Random(7);
+        List<Long> ids = new ArrayList<>();
+        try (TweetIdIndex index = TweetIdIndex.open(indexFile, dataDir.resolve("processed"))) {
+            while (ids.size() < TweetIdIndex.MAX_TAIL + 10) {
+                long id = 1_000_000_000_000_000_000L + random.nextInt(Integer.MAX_VALUE);
+                if (!index.contains(id)) {
+                    index.add(id);
+                    ids.add(id);
+                }
+            }
+            // One compaction: a full tail became the sorted section, the last 10 IDs are the new tail
+            assertEquals(HEADER_BYTES + (TweetIdIndex.MAX_TAIL + TweetIdIndex.MAX_TAIL) * (long) Long.BYTES, Files.size(indexFile));
+            assertEquals(ids.size(), index.size());
+        }
+
+        try (TweetIdIndex index = TweetIdIndex.open(indexFile, dataDir.resolve("processed"))) {
+            assertEquals(ids.size(), index.size());
+            for (long id : ids) {
+                assertTrue(index.contains(id), "ID " + id);
+            }
+        }
+    }
+
+    @Test
+    void clearedMagicRebuildsTheIndexFromTheDirectory() throws IOException {
+        Path indexFile = dataDir.resolve("ids.idx");
+        Path processedDir = Files.createDirectories(dataDir.resolve("processed"));
+        Files.createFile(processedDir.resolve(SpoolCodec.JSON.fileName(10)));
+        try (TweetIdIndex index = TweetIdIndex.open(indexFile, processedDir)) {
+            index.add(10);
+            index.add(99); // No file in the directory, so it is gone after the rebuild
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES), 0);
+        }
+
+        try (TweetIdIndex index = TweetIdIndex.open(indexFile, processedDir)) {
+            assertEquals(1, index.size());
+            assertTrue(index.contains(10));
+            assertFalse(index.contains(99));
+        }
+    }
+
+    @Test
+    void rebuildCollectsFlatAndShardedFilesAndArchivedIds() throws IOException {
+        Path processedDir = Files.createDirectories(dataDir.resolve("processed"));
+        Path shardDir = Files.createDirectories(processedDir.resolve("2024").resolve("05"));
+        Files.createFile(processedDir.resolve(SpoolCodec.JSON.fileName(10)));
+        Files.createFile(processedDir.resolve(SpoolCodec.SMILE.fileName(20)));
+        Files.createFile(shardDir.resolve(SpoolCodec.JSON.fileName(20))); // Both layouts during a migration
+        Files.createFile(shardDir.resolve(SpoolCodec.JSON.fileName(30)));
+        Files.createFile(processedDir.resolve("notes.json"));
+        ArchiveStore archive = new ArchiveStore(dataDir.resolve("archive"));
+        Path archivedFile = Files.write(dataDir.resolve(SpoolCodec.JSON.fileName(5)), "{\"id\":5}".getBytes(StandardCharsets.UTF_8));
+        Path alsoInDirectory = Files.write(dataDir.resolve(SpoolCodec.JSON.fileName(30)), "{\"id\":30}".getBytes(StandardCharsets.UTF_8));
+        archive.writeSegment(List.of(new ArchiveStore.TweetFile(5, archivedFile), new ArchiveStore.TweetFile(30, alsoInDirectory)));
+
+        try (TweetIdIndex index = TweetIdIndex.open(dataDir.resolve("ids.idx"), processedDir, archive)) {
+            assertEquals(4, index.size());
+            for (long id : new long[]{5, 10, 20, 30}) {
+                assertTrue(index.contains(id), "ID " + id);
+            }
+            assertFalse(index.contains(15));
+        }
+    }
+}
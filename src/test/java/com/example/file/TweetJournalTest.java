@@ -0,0 +1,100 @@
+package com.example.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TweetJournalTest {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    void readsRecordsAcrossSegmentsAfterReopening() throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (TweetJournal journal = new TweetJournal(journalDir, SEGMENT_SIZE)) {
+            for (int i = 0; i < 10; i++) {
+                offsets.add(journal.append(payload(i)));
+            }
+        }
+
+        try (TweetJournal journal = new TweetJournal(journalDir, SEGMENT_SIZE)) {
+            long offset = journal.startOffset();
+            for (int i = 0; i < 10; i++) {
+                TweetJournal.Entry entry = journal.read(offset).orElseThrow();
+                assertEquals(offsets.get(i), entry.offset());
+                assertArrayEquals(payload(i), entry.payload());
+                offset = entry.nextOffset();
+            }
+            assertEquals(journal.endOffset(), offset);
+            assertTrue(journal.read(offset).isEmpty());
+        }
+    }
+
+    @Test
+    void readRejectsOffsetsThatDoNotStartAnIntactRecord() throws IOException {
+        try (TweetJournal journal = new TweetJournal(journalDir, 4096)) { // Both records in one segment
+            long first = journal.append(payload(1));
+            long second = journal.append(payload(2));
+
+            assertTrue(journal.read(first + 3).isEmpty(), "offset into the middle of a record");
+            assertTrue(journal.read(second - 1).isEmpty(), "offset into the payload of a record");
+
+            // Flip a payload byte of the second record behind the journal's back
+            try (Stream<Path> files = Files.list(journalDir);
+                 FileChannel channel = FileChannel.open(files.filter(Files::isRegularFile).findFirst().orElseThrow(), StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{'X'}), second + 8);
+            }
+            assertEquals(Optional.empty(), journal.read(second));
+            assertArrayEquals(payload(1), journal.read(first).orElseThrow().payload());
+        }
+    }
+
+    @Test
+    void unreadableRecordEndsItsSegmentAndKeepsTheSegmentAside() throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (TweetJournal journal = new TweetJournal(journalDir, 128)) { // Three records per segment
+            for (int i = 0; i < 10; i++) {
+                offsets.add(journal.append(payload(i)));
+            }
+            Path firstSegment;
+            try (Stream<Path> files = Files.list(journalDir)) {
+                firstSegment = files.sorted().findFirst().orElseThrow();
+            }
+            try (FileChannel channel = FileChannel.open(firstSegment, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{'X'}), offsets.get(1) + 8);
+            }
+
+            List<TweetJournal.Entry> entries = journal.entriesOfSegmentsBefore(journal.endOffset());
+
+            // Record 1 and record 2 behind it are lost, the later segments are complete
+            assertEquals(List.of(offsets.get(0), offsets.get(3), offsets.get(4), offsets.get(5), offsets.get(6),
+                    offsets.get(7), offsets.get(8)), entries.stream().map(TweetJournal.Entry::offset).toList());
+            assertEquals(3, journal.deleteSegmentsBefore(journal.endOffset()));
+            assertTrue(Files.exists(firstSegment.resolveSibling(firstSegment.getFileName() + ".corrupt")));
+            assertFalse(Files.exists(firstSegment));
+        }
+    }
+
+    private static byte[] payload(int i) {
+        return ("{\"id\":" + i + ",\"text\":\"tweet " + i + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.file;
+
+import com.example.twitter.TweetData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TweetWriterTest {
+
+    @TempDir
+    Path inputDir;
+
+    @Test
+    void stagedBatchIsPublishedOnlyByTheCommit() throws IOException {
+        TweetWriter writer = new TweetWriter(inputDir, true);
+        for (long id = 1; id <= 3; id++) {
+            assertTrue(writer.writeTweetToFile(tweet(id)));
+        }
+        assertFalse(Files.exists(inputDir.resolve(SpoolCodec.JSON.fileName(1))));
+
+        assertEquals(Set.of(), writer.commitBatch());
+
+        for (long id = 1; id <= 3; id++) {
+            assertEquals(id, SpoolCodecs.defaults().read(SpoolCodec.JSON, inputDir.resolve(SpoolCodec.JSON.fileName(id)).toFile()).getId());
+        }
+        try (Stream<Path> staged = Files.list(inputDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void stagedFilesOfAnInterruptedBatchAreDiscardedOnStart() throws IOException {
+        new TweetWriter(inputDir, true).writeTweetToFile(tweet(1)); // Never committed
+
+        new TweetWriter(inputDir, true);
+
+        try (Stream<Path> staged = Files.list(inputDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+        assertFalse(Files.exists(inputDir.resolve(SpoolCodec.JSON.fileName(1))));
+    }
+
+    @Test
+    void filesWrittenInPlaceAreSyncedByTheCommit() {
+        TweetWriter writer = new TweetWriter(inputDir, false);
+        writer.writeTweetToFile(tweet(1));
+
+        assertTrue(Files.exists(inputDir.resolve(SpoolCodec.JSON.fileName(1))));
+        assertEquals(Set.of(), writer.commitBatch());
+    }
+
+    private static TweetData tweet(long id) {
+        return new TweetData(id, "tweet " + id, "https://x.com/streamer/status/" + id, null, null, "Streamer",
+                null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.twitch;
+
+import com.example.file.DirectoryManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TwitchAppTokenProviderTest {
+
+    private static final String CLIENT_ID = "client";
+    private static final Duration REFRESH_MARGIN = Duration.ofMinutes(30);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private HttpServer server;
+    private String tokenUrl;
+
+    @TempDir
+    Path dataDir;
+
+    @BeforeEach
+    void startTokenEndpoint() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/oauth2/token", exchange -> {
+            int request = tokenRequests.incrementAndGet();
+            byte[] body = ("{\"access_token\":\"fetched-" + request + "\",\"expires_in\":5000000,\"token_type\":\"bearer\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        tokenUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/oauth2/token";
+    }
+
+    @AfterEach
+    void stopTokenEndpoint() {
+        server.stop(0);
+    }
+
+    @Test
+    void reusesPersistedToken() throws IOException {
+        long now = Instant.now().getEpochSecond();
+        writeToken(new TwitchAppToken(CLIENT_ID, "persisted", now, now + Duration.ofDays(30).toSeconds()));
+
+        assertEquals(Optional.of("persisted"), provider().getAccessToken());
+        assertEquals(0, tokenRequests.get());
+    }
+
+    @Test
+    void refreshesInBackgroundBeforeExpiry() throws Exception {
+        long now = Instant.now().getEpochSecond();
+        writeToken(new TwitchAppToken(CLIENT_ID, "expiring", now - Duration.ofDays(30).toSeconds(), now + Duration.ofMinutes(10).toSeconds()));
+        TwitchAppTokenProvider provider = provider();
+
+        // Still valid, so it is used while the new one is fetched
+        assertEquals(Optional.of("expiring"), provider.getAccessToken());
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!"fetched-1".equals(readToken().accessToken()) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals("fetched-1", readToken().accessToken());
+        assertEquals(Optional.of("fetched-1"), provider.getAccessToken());
+        assertEquals(1, tokenRequests.get());
+    }
+
+    @Test
+    void ignoresTokenOfAnotherClientId() throws IOException {
+        long now = Instant.now().getEpochSecond();
+        writeToken(new TwitchAppToken("other-client", "foreign", now, now + Duration.ofDays(30).toSeconds()));
+
+        assertEquals(Optional.of("fetched-1"), provider().getAccessToken());
+        assertEquals(1, tokenRequests.get());
+        TwitchAppToken persisted = readToken();
+        assertEquals(CLIENT_ID, persisted.clientId());
+        assertEquals("fetched-1", persisted.accessToken());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile())));
+        }
+        try (var files = Files.list(dataDir)) {
+            assertTrue(files.allMatch(tokenFile()::equals), "no temp files left behind");
+        }
+    }
+
+    private TwitchAppTokenProvider provider() {
+        return new TwitchAppTokenProvider(CLIENT_ID, "secret", tokenUrl, tokenFile(), REFRESH_MARGIN);
+    }
+
+    private Path tokenFile() {
+        return dataDir.resolve(DirectoryManager.TWITCH_TOKEN_FILENAME);
+    }
+
+    private void writeToken(TwitchAppToken token) throws IOException {
+        objectMapper.writeValue(tokenFile().toFile(), token);
+    }
+
+    private TwitchAppToken readToken() throws IOException {
+        return objectMapper.readValue(tokenFile().toFile(), TwitchAppToken.class);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.twitter;
+
+import io.github.redouane59.twitter.dto.tweet.TweetV2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Micro-benchmark for the media resolution of a timeline page: the per-tweet scan over all
+ * {@code includes.media} used before, against the {@link MediaIndex} built once per page.
+ * Runs on synthetic media-heavy pages (100 tweets, 4 media each, a quarter of them videos).
+ * <p>
+ * Usage: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.twitter.MediaIndexBenchmark -Dexec.args="[pages] [mediaPerTweet]"}
+ */
+public class MediaIndexBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaIndexBenchmark.class);
+    private static final int TWEETS_PER_PAGE = 100;
+    private static final int WARMUP_ROUNDS = 3;
+
+    // Synthetic page: the tweets' attachment keys and the page's includes.media
+    private record Page(List<String[]> mediaKeysPerTweet, List<TweetV2.MediaEntityV2> includedMedia) {
+    }
+
+    public static void main(String[] args) {
+        int pageCount = args.length >= 1 ? Integer.parseInt(args[0]) : 2_000;
+        int mediaPerTweet = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+        List<Page> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(syntheticPage(i, mediaPerTweet));
+        }
+        logger.info("Resolving media of {} pages ({} tweets, {} media per tweet each)...", pageCount, TWEETS_PER_PAGE, mediaPerTweet);
+
+        long checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += runLinearScan(pages) + runIndexed(pages);
+        }
+        long start = System.nanoTime();
+        long linearUrls = runLinearScan(pages);
+        long linearNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        long indexedUrls = runIndexed(pages);
+        long indexedNanos = System.nanoTime() - start;
+
+        if (linearUrls != indexedUrls) {
+            logger.error("Result mismatch: linear scan resolved {} URLs, index resolved {}.", linearUrls, indexedUrls);
+        }
+        logger.info("Linear scan: {} us per page ({} URLs).", String.format("%.1f", linearNanos / 1_000.0 / pageCount), linearUrls);
+        logger.info("Media index: {} us per page ({} URLs).", String.format("%.1f", indexedNanos / 1_000.0 / pageCount), indexedUrls);
+        logger.info("Speedup: {}x (checksum {}).", String.format("%.1f", (double) linearNanos / Math.max(1, indexedNanos)), checksum);
+    }
+
+    // The resolution TwitterService used before the index: Arrays.asList + contains per included media
+    private static long runLinearScan(List<Page> pages) {
+        long urls = 0;
+        for (Page page : pages) {
+            for (String[] keys : page.mediaKeysPerTweet()) {
+                List<String> mediaKeys = Arrays.asList(keys);
+                List<String> imageUrls = page.includedMedia().stream()
+                        .filter(media -> mediaKeys.contains(media.getKey()) && "photo".equals(media.getType()))
+                        .map(TweetV2.MediaEntityV2::getUrl)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                urls += imageUrls.size();
+            }
+        }
+        return urls;
+    }
+
+    private static long runIndexed(List<Page> pages) {
+        long urls = 0;
+        for (Page page : pages) {
+            MediaIndex index = MediaIndex.of(page.includedMedia());
+            for (String[] keys : page.mediaKeysPerTweet()) {
+                urls += index.photoUrls(keys).size();
+            }
+        }
+        return urls;
+    }
+
+    private static Page syntheticPage(int pageNumber, int mediaPerTweet) {
+        List<String[]> mediaKeysPerTweet = new ArrayList<>(TWEETS_PER_PAGE);
+        List<TweetV2.MediaEntityV2> includedMedia = new ArrayList<>(TWEETS_PER_PAGE * mediaPerTweet);
+        for (int t = 0; t < TWEETS_PER_PAGE; t++) {
+            String[] keys = new String[mediaPerTweet];
+            for (int m = 0; m < mediaPerTweet; m++) {
+                String key = "3_" + pageNumber + "_" + t + "_" + m;
+                keys[m] = key;
+                TweetV2.MediaEntityV2 media = new TweetV2.MediaEntityV2();
+                media.setKey(key);
+                media.setType(m % 4 == 3 ? "video" : "photo");
+                media.setUrl("https://pbs.twimg.com/media/" + key + ".jpg");
+                includedMedia.add(media);
+            }
+            mediaKeysPerTweet.add(keys);
+        }
+        return new Page(mediaKeysPerTweet, includedMedia);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.twitter;
+
+import io.github.redouane59.twitter.dto.tweet.TweetV2;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaIndexTest {
+
+    @Test
+    void photoUrlsKeepAttachmentOrderAndSkipOtherMedia() {
+        List<TweetV2.MediaEntityV2> includedMedia = new ArrayList<>();
+        includedMedia.add(media("3_1", "photo", "https://pbs.twimg.com/media/1.jpg"));
+        includedMedia.add(media("3_2", "video", "https://pbs.twimg.com/media/2.jpg"));
+        includedMedia.add(media("3_3", "photo", "https://pbs.twimg.com/media/3.jpg"));
+        includedMedia.add(media("3_4", "photo", null));
+        includedMedia.add(media("3_3", "photo", "https://pbs.twimg.com/media/duplicate.jpg"));
+        includedMedia.add(null);
+
+        MediaIndex index = MediaIndex.of(includedMedia);
+
+        assertEquals(2, index.size());
+        assertEquals(List.of("https://pbs.twimg.com/media/3.jpg", "https://pbs.twimg.com/media/1.jpg"),
+                index.photoUrls(new String[]{"3_3", "3_2", null, "3_1", "3_4", "3_missing"}));
+    }
+
+    @Test
+    void missingIncludesGiveAnEmptyIndex() {
+        assertTrue(MediaIndex.of(null).photoUrls(new String[]{"3_1"}).isEmpty());
+        assertTrue(MediaIndex.of(List.of()).photoUrls(new String[]{"3_1"}).isEmpty());
+    }
+
+    private static TweetV2.MediaEntityV2 media(String key, String type, String url) {
+        TweetV2.MediaEntityV2 media = new TweetV2.MediaEntityV2();
+        media.setKey(key);
+        media.setType(type);
+        media.setUrl(url);
+        return media;
+    }
+}
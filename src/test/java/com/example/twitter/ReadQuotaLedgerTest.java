@@ -0,0 +1,51 @@
+package com.example.twitter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ReadQuotaLedgerTest {
+
+    private static final long MONTHLY_LIMIT = 10;
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void exhaustedBudgetHoldsPollsUntilTheMonthResets() {
+        ReadQuotaLedger ledger = new ReadQuotaLedger(dataDir.resolve("ledger.json"), MONTHLY_LIMIT);
+        for (int i = 0; i < MONTHLY_LIMIT; i++) {
+            ledger.recordRead(true);
+        }
+        Instant now = Instant.now();
+        Instant nextMonth = YearMonth.from(now.atZone(ZoneOffset.UTC)).plusMonths(1).atDay(1)
+                .atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant halfwayToReset = now.plus(Duration.between(now, nextMonth).dividedBy(2));
+
+        assertEquals(0, ledger.remainingReads());
+        assertEquals(Duration.between(now, nextMonth), ledger.untilNextPlannedPoll(now));
+        assertEquals(Duration.between(halfwayToReset, nextMonth), ledger.untilNextPlannedPoll(halfwayToReset));
+        assertEquals(0, new ReadQuotaLedger(dataDir.resolve("ledger.json"), MONTHLY_LIMIT).remainingReads());
+    }
+
+    @Test
+    void exhaustedBudgetBlocksTimelinePolls() {
+        ReadQuotaLedger ledger = new ReadQuotaLedger(dataDir.resolve("ledger.json"), MONTHLY_LIMIT);
+        for (int i = 0; i < MONTHLY_LIMIT; i++) {
+            ledger.recordRead(true);
+        }
+        AdaptivePollScheduler scheduler = new AdaptivePollScheduler(new RateLimitTracker(dataDir.resolve("rate-limit.json")),
+                ledger, Duration.ofMinutes(1), Duration.ofMinutes(15));
+
+        assertFalse(scheduler.isPollAllowedNow());
+        assertFalse(scheduler.isFollowUpRequestAllowedNow());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.twitter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdTest {
+
+    @Test
+    void decodesTheCreationTimeOfAKnownTweet() {
+        // The example tweet of the v2 API docs, created_at "Wed Oct 10 20:19:24 +0000 2018"
+        long id = SnowflakeId.parse("1050118621198921728");
+
+        assertEquals(Optional.of(Instant.parse("2018-10-10T20:19:24.211Z")), SnowflakeId.timestampOf(id));
+    }
+
+    @Test
+    void preSnowflakeIdsHaveNoTimestamp() {
+        long firstSnowflakeId = 1L << 40;
+
+        assertFalse(SnowflakeId.isSnowflake(20)); // "just setting up my twttr", 2006
+        assertEquals(Optional.empty(), SnowflakeId.timestampOf(20));
+        assertEquals(Optional.empty(), SnowflakeId.timestampOf(firstSnowflakeId - 1));
+        assertTrue(SnowflakeId.isSnowflake(firstSnowflakeId));
+        assertEquals(Optional.of(Instant.parse("2010-11-04T01:47:16.801Z")), SnowflakeId.timestampOf(firstSnowflakeId));
+    }
+
+    @Test
+    void parseRejectsValuesThatAreNotTweetIds() {
+        assertThrows(NumberFormatException.class, () -> SnowflakeId.parse("-1050118621198921728"));
+        assertThrows(NumberFormatException.class, () -> SnowflakeId.parse("0"));
+        assertThrows(NumberFormatException.class, () -> SnowflakeId.parse("12ab"));
+        assertThrows(NumberFormatException.class, () -> SnowflakeId.parse(""));
+        assertThrows(NumberFormatException.class, () -> SnowflakeId.parse("99999999999999999999")); // Beyond a long
+    }
+}
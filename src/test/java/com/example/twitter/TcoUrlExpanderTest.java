@@ -0,0 +1,107 @@
+package com.example.twitter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TcoUrlExpanderTest {
+
+    private static final Duration FAILURE_TTL = Duration.ofHours(1);
+
+    @TempDir
+    Path dataDir;
+
+    private final List<String> requests = new ArrayList<>();
+
+    // Resolves https://t.co/<x> to https://example.com/<x>, except for links starting with "dead"
+    private Optional<String> stubResolve(String url) {
+        requests.add(url);
+        String code = url.substring(url.lastIndexOf('/') + 1);
+        return code.startsWith("dead") ? Optional.empty() : Optional.of("https://example.com/" + code);
+    }
+
+    @Test
+    void linksListedInTheEntitiesAreExpandedWithoutARequest() {
+        TcoUrlExpander expander = new TcoUrlExpander(cacheFile(), 10, this::stubResolve, FAILURE_TTL);
+        TweetEntities entities = new TweetEntities(List.of(new TweetEntities.Link("https://t.co/abc", "https://stream.example/live")),
+                null, null, null, null, null, null);
+
+        assertEquals("Live: https://stream.example/live now", expander.expand("Live: https://t.co/abc now", entities));
+        assertEquals(List.of(), requests);
+    }
+
+    @Test
+    void resolvedLinksAreServedFromTheCacheAndSurviveARestart() {
+        TcoUrlExpander expander = new TcoUrlExpander(cacheFile(), 10, this::stubResolve, FAILURE_TTL);
+
+        assertEquals("see https://example.com/a and https://example.com/a",
+                expander.expand("see https://t.co/a and https://t.co/a", TweetEntities.EMPTY));
+        assertEquals("again https://example.com/a", expander.expand("again https://t.co/a", TweetEntities.EMPTY));
+        assertEquals(List.of("https://t.co/a"), requests);
+        assertFalse(Files.exists(cacheFile()), "written every " + TcoUrlExpander.PERSIST_INTERVAL + " links or on close");
+        expander.close();
+
+        TcoUrlExpander reloaded = new TcoUrlExpander(cacheFile(), 10, null, FAILURE_TTL); // Resolving off
+        assertEquals("https://example.com/a", reloaded.expand("https://t.co/a", TweetEntities.EMPTY));
+    }
+
+    @Test
+    void cacheFileIsWrittenAfterABatchOfResolvedLinks() {
+        TcoUrlExpander expander = new TcoUrlExpander(cacheFile(), 100, this::stubResolve, FAILURE_TTL);
+        for (int i = 0; i < TcoUrlExpander.PERSIST_INTERVAL; i++) {
+            expander.expand("https://t.co/link" + i, TweetEntities.EMPTY);
+        }
+
+        assertTrue(Files.exists(cacheFile()));
+        TcoUrlExpander reloaded = new TcoUrlExpander(cacheFile(), 100, null, FAILURE_TTL);
+        assertEquals("https://example.com/link0", reloaded.expand("https://t.co/link0", TweetEntities.EMPTY));
+    }
+
+    @Test
+    void leastRecentlyUsedLinkIsEvictedFirstAfterReloading() {
+        TcoUrlExpander expander = new TcoUrlExpander(cacheFile(), 2, this::stubResolve, FAILURE_TTL);
+        expander.expand("https://t.co/a", TweetEntities.EMPTY);
+        expander.expand("https://t.co/b", TweetEntities.EMPTY);
+        expander.expand("https://t.co/a", TweetEntities.EMPTY); // b is now the least recently used
+        expander.expand("https://t.co/c", TweetEntities.EMPTY); // Evicts b
+        expander.close();
+
+        requests.clear();
+        TcoUrlExpander reloaded = new TcoUrlExpander(cacheFile(), 2, this::stubResolve, FAILURE_TTL);
+        reloaded.expand("https://t.co/d", TweetEntities.EMPTY); // Evicts a, the oldest of the reloaded order a, c
+        reloaded.expand("https://t.co/c", TweetEntities.EMPTY);
+        assertEquals(List.of("https://t.co/d"), requests);
+        reloaded.expand("https://t.co/a", TweetEntities.EMPTY);
+        assertEquals(List.of("https://t.co/d", "https://t.co/a"), requests);
+    }
+
+    @Test
+    void unresolvableLinkIsNotAskedForAgainUntilTheFailureTtlPassed() throws InterruptedException {
+        Duration failureTtl = Duration.ofMillis(200);
+        TcoUrlExpander expander = new TcoUrlExpander(cacheFile(), 10, this::stubResolve, failureTtl);
+
+        assertEquals("https://t.co/dead1", expander.expand("https://t.co/dead1", TweetEntities.EMPTY));
+        assertEquals("https://t.co/dead1", expander.expand("https://t.co/dead1", TweetEntities.EMPTY));
+        assertEquals(1, requests.size());
+
+        Thread.sleep(failureTtl.toMillis() + 50);
+        expander.expand("https://t.co/dead1", TweetEntities.EMPTY);
+        assertEquals(2, requests.size());
+        expander.close();
+        assertFalse(Files.exists(cacheFile()), "failures are not persisted");
+    }
+
+    private Path cacheFile() {
+        return dataDir.resolve("TCO_LINKS.json");
+    }
+}